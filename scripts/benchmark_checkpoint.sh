@@ -0,0 +1,67 @@
+#!/bin/bash
+
+#-------------------------------------------------------------------------------
+# Checkpoint benchmark: Time 'bds' runs creating a checkpoint having
+# large lists and maps in scope, then recovering from it. A second
+# checkpoint (only a small variable changed) is saved as a delta.
+# The program is run twice: Writing checkpoints synchronously and
+# asynchronously (time the program is stalled by the first checkpoint)
+#
+# Usage: benchmark_checkpoint.sh [num_elements]
+#
+#	Set 'BDS' to use a different command (e.g. BDS="java -cp ... org.bds.Bds")
+#
+#															Pablo Cingolani
+#-------------------------------------------------------------------------------
+
+BDS=${BDS:-bds}
+num=${1:-1000000}
+
+tmpDir=`mktemp -d`
+trap "rm -rf $tmpDir" EXIT
+
+prog=$tmpDir/checkpoint.bds
+cat > $prog <<EOF
+int n = 1000
+string stage = 'init'
+
+int[] li
+string[] ls
+string{} m
+for( int i = 0 ; i < n ; i++ ) {
+	li.add(i)
+	ls.add("sample_\$i.bam")
+	m{"key_\$i"} = "chr" + (i % 20)
+}
+
+print "Create checkpoint\n"
+start := sys date +%s%N
+checkpoint "$tmpDir/checkpoint.chp"
+end := sys date +%s%N
+print "stall\t" + ((end.trim().parseInt() - start.trim().parseInt()) / 1000000) + "\n"
+
+print "Create delta checkpoint\n"
+stage = 'done'
+checkpoint "$tmpDir/checkpoint_delta.chp"
+print "Elements: " + li.size() + ", " + ls.size() + ", " + m.size() + "\n"
+EOF
+
+# Run 'bds', show time (in seconds)
+bench() {
+	start=`date +%s%N`
+	( cd $tmpDir ; $BDS "$@" > $tmpDir/bench.out 2>&1 ) || { cat $tmpDir/bench.out ; exit 1 ; }
+	end=`date +%s%N`
+	echo "$title" | awk -v t=$(( end - start )) '{ printf "%-30s%.3f s\n", $0, t / 1000000000 }'
+}
+
+echo "Elements: $num"
+title="Run and checkpoints" bench $prog -n $num
+awk -F '\t' '/^stall/ { printf "%-30s%.3f s\n", "Checkpoint stall", $2 / 1000 }' $tmpDir/bench.out
+ls -l $tmpDir/checkpoint.chp | awk '{ printf "%-30s%.1f KB\n", "Checkpoint size", $5 / 1024 }'
+ls -l $tmpDir/checkpoint_delta.chp | awk '{ printf "%-30s%.1f KB\n", "Delta checkpoint size", $5 / 1024 }'
+title="Recover" bench -r $tmpDir/checkpoint.chp
+title="Recover (delta)" bench -r $tmpDir/checkpoint_delta.chp
+
+echo "checkpointAsync = true" > $tmpDir/async.config
+title="Run and checkpoints (async)" bench -c $tmpDir/async.config $prog -n $num
+awk -F '\t' '/^stall/ { printf "%-30s%.3f s\n", "Checkpoint stall (async)", $2 / 1000 }' $tmpDir/bench.out
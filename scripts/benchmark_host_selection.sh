@@ -0,0 +1,113 @@
+#!/bin/bash
+
+#-------------------------------------------------------------------------------
+# Host selection benchmark: Simulate running a synthetic workload on a
+# cluster using each host selection strategy, report makespan and time
+# spent selecting hosts
+#
+# Usage: benchmark_host_selection.sh [num_hosts] [num_tasks]
+#
+#	Set 'CP' to use a different classpath (default: 'bin' and 'lib/*.jar')
+#
+#															Pablo Cingolani
+#-------------------------------------------------------------------------------
+
+dir=`cd $(dirname $0)/.. ; pwd`
+CP=${CP:-$dir/bin:`ls $dir/lib/*.jar | tr '\n' ':'`}
+numHosts=${1:-1000}
+numTasks=${2:-100000}
+
+tmpDir=`mktemp -d`
+trap "rm -rf $tmpDir" EXIT
+
+cat > $tmpDir/BenchmarkHostSelection.java <<EOF2
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Random;
+
+import org.bds.cluster.Cluster;
+import org.bds.cluster.HostSelection;
+import org.bds.cluster.host.Host;
+import org.bds.task.Task;
+
+public class BenchmarkHostSelection {
+
+	public static void main(String[] args) {
+		int numHosts = Integer.parseInt(args[0]);
+		int numTasks = Integer.parseInt(args[1]);
+		long gb = 1024L * 1024L * 1024L;
+
+		for (HostSelection hostSelection : HostSelection.values()) {
+			Random random = new Random(20161018);
+
+			// Create cluster: Hosts having 4 to 64 cpus, 2GB per cpu
+			Cluster cluster = new Cluster();
+			for (int i = 0; i < numHosts; i++) {
+				Host host = new Host(cluster, "host_" + i);
+				int cpus = 4 << random.nextInt(5);
+				host.getResources().setCpus(cpus);
+				host.getResources().setMem(cpus * 2L * gb);
+			}
+
+			// Create tasks: Mostly small tasks and a few large ones (1 to 64 cpus)
+			List<Task> tasks = new ArrayList<Task>();
+			for (int i = 0; i < numTasks; i++) {
+				Task task = new Task("task_" + i);
+				boolean large = random.nextInt(20) == 0;
+				int cpus = large ? 8 << random.nextInt(4) : 1 + random.nextInt(2);
+				task.getResources().setCpus(cpus);
+				task.getResources().setMem((large ? 2 : 1 + random.nextInt(4)) * cpus * gb / 2);
+				task.getResources().setTimeout(1 + random.nextInt(100)); // Task duration
+				tasks.add(task);
+			}
+
+			// Simulate: Tasks are started in order, time advances when the next task cannot be started
+			final Map<Task, Long> endTime = new HashMap<Task, Long>();
+			Map<Task, Host> hostByTask = new HashMap<Task, Host>();
+			PriorityQueue<Task> running = new PriorityQueue<Task>(numTasks, new Comparator<Task>() {
+				@Override
+				public int compare(Task t1, Task t2) {
+					return Long.compare(endTime.get(t1), endTime.get(t2));
+				}
+			});
+
+			long time = 0, selectTime = 0;
+			for (Task task : tasks) {
+				while (true) {
+					long t0 = System.nanoTime();
+					Host host = cluster.selectHost(task.getResources(), hostSelection);
+					selectTime += System.nanoTime() - t0;
+
+					if (host != null) {
+						host.add(task);
+						hostByTask.put(task, host);
+						endTime.put(task, time + task.getResources().getTimeout());
+						running.add(task);
+						break;
+					}
+
+					// Wait for the next task to finish
+					if (running.isEmpty()) throw new RuntimeException("Task '" + task.getId() + "' cannot run in any host");
+					Task finished = running.poll();
+					time = endTime.get(finished);
+					hostByTask.get(finished).remove(finished);
+				}
+			}
+
+			// Wait for all tasks to finish
+			while (!running.isEmpty())
+				time = endTime.get(running.poll());
+
+			System.out.printf("%-15s makespan: %8d\tselection time: %8d ms\n", hostSelection, time, selectTime / 1000000);
+		}
+	}
+}
+EOF2
+
+javac -nowarn -cp $CP -d $tmpDir $tmpDir/BenchmarkHostSelection.java || exit 1
+echo "Hosts: $numHosts, tasks: $numTasks"
+java -cp $tmpDir:$CP BenchmarkHostSelection $numHosts $numTasks
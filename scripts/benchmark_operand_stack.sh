@@ -0,0 +1,56 @@
+#!/bin/bash
+
+#-------------------------------------------------------------------------------
+# Operand stack benchmark: Time a numeric loop reading and assigning
+# 'int' and 'real' variables, and estimate the bytes allocated per
+# iteration (from the number of young generation collections)
+#
+# Usage: benchmark_operand_stack.sh [num_iterations]
+#
+#	Set 'CP' to use a different classpath (default: 'bin' and 'lib/*.jar')
+#
+#															Pablo Cingolani
+#-------------------------------------------------------------------------------
+
+dir=`cd $(dirname $0)/.. ; pwd`
+CP=${CP:-$dir/bin:`ls $dir/lib/*.jar | tr '\n' ':'`}
+num=${1:-10000000}
+edenMb=8			# Young generation: 10MB, eden is 8/10 (SurvivorRatio=8)
+
+tmpDir=`mktemp -d`
+trap "rm -rf $tmpDir" EXIT
+
+prog=$tmpDir/operand_stack.bds
+cat > $prog <<EOF2
+int n = 1000
+int sum = 0
+real avg = 0.0
+
+for( int i = 0 ; i < n ; i++ ) {
+	sum = sum + i * 3 - 1
+	avg = avg + 0.5 * i
+	sum++
+}
+
+print("\$sum\t\$avg\n")
+EOF2
+
+# Run 'bds' using 'n' iterations, count young generation collections
+# Output: time (nanoseconds) and number of collections
+run() {
+	start=`date +%s%N`
+	gcs=`cd $tmpDir ; java -Xmn10m -XX:+UseSerialGC -verbose:gc -cp $CP org.bds.Bds -noReport $prog -n $1 2>&1 | grep -c "Allocation Failure"`
+	end=`date +%s%N`
+	echo "$(( end - start )) $gcs"
+}
+
+base=( `run 1` )
+res=( `run $num` )
+echo "Iterations: $num"
+echo "${base[@]} ${res[@]}" | awk -v n=$num -v eden=$edenMb '{
+	t = ($3 - $1) / 1000000000
+	gcs = $4 - $2
+	printf "Time:                %.3f s\n", t
+	printf "Young collections:   %d\n", gcs
+	printf "Allocated:           %.1f bytes / iteration\n", gcs * eden * 1024 * 1024 / n
+}'
@@ -0,0 +1,69 @@
+#!/bin/bash
+
+#-------------------------------------------------------------------------------
+# 'par' benchmark: Time 'bds' runs creating many trivial 'par' blocks,
+# and many 'par' blocks that block (sleep). Shows the peak number of
+# Java threads (only on Linux, using '/proc')
+#
+# Usage: benchmark_par.sh [num_par] [num_par_sleep]
+#
+#	Set 'BDS' to use a different command (e.g. BDS="java -cp ... org.bds.Bds")
+#
+#															Pablo Cingolani
+#-------------------------------------------------------------------------------
+
+BDS=${BDS:-bds}
+num=${1:-100000}
+numSleep=${2:-2000}
+
+tmpDir=`mktemp -d`
+trap "rm -rf $tmpDir" EXIT
+
+cat > $tmpDir/par.bds <<EOF2
+int n = 1000
+
+for( int i = 0 ; i < n ; i++ ) {
+	par {
+		int x = i * 2
+	}
+}
+wait
+EOF2
+
+cat > $tmpDir/par_sleep.bds <<EOF2
+int n = 1000
+
+for( int i = 0 ; i < n ; i++ ) {
+	par sleep(0.5)
+}
+wait
+EOF2
+
+# Run 'bds', show time (in seconds) and peak number of threads
+bench() {
+	prog=$tmpDir/$1.bds
+	start=`date +%s%N`
+	( cd $tmpDir ; $BDS -noReport $prog -n $2 > /dev/null 2>&1 ) &
+	pid=$!
+
+	# Sample number of threads (all processes running the program)
+	maxThreads=0
+	while kill -0 $pid 2>/dev/null
+	do
+		threads=0
+		for p in `pgrep -f $prog`
+		do
+			t=`ls /proc/$p/task 2>/dev/null | wc -l`
+			threads=$(( threads + t ))
+		done
+		[ $threads -gt $maxThreads ] && maxThreads=$threads
+		sleep 0.1
+	done
+	wait $pid || { echo "Error running '$prog'" ; exit 1 ; }
+	end=`date +%s%N`
+
+	echo "$1 $2" | awk -v t=$(( end - start )) -v m=$maxThreads '{ printf "%-12s n: %-10d%10.3f s\tpeak threads: %d\n", $1, $2, t / 1000000000, m }'
+}
+
+bench par $num
+bench par_sleep $numSleep
@@ -0,0 +1,55 @@
+#!/bin/bash
+
+#-------------------------------------------------------------------------------
+# Startup benchmark: Time 'bds' runs with and without the compile cache
+#
+# Usage: benchmark_startup.sh [program.bds] [num_runs]
+#
+#	If no program is given, a large program (many functions) is created.
+#	Set 'BDS' to use a different command (e.g. BDS="java -cp ... org.bds.Bds")
+#
+#															Pablo Cingolani
+#-------------------------------------------------------------------------------
+
+BDS=${BDS:-bds}
+runs=${2:-10}
+
+tmpDir=`mktemp -d`
+trap "rm -rf $tmpDir" EXIT
+
+# Program to run
+prog=$1
+if [ -z "$prog" ]; then
+	prog=$tmpDir/startup.bds
+	for i in `seq 1 1000`
+	do
+		echo "int f$i(int x) {"
+		echo "	int y = x + $i"
+		echo "	for( int j = 0 ; j < 3 ; j++ ) y += j"
+		echo "	if( y > 10 ) return y - 1"
+		echo "	return y"
+		echo "}"
+		echo
+	done > $prog
+	echo "res := f1(0) + f1000(0)" >> $prog
+fi
+
+# Config files: Compile cache disabled and enabled
+echo "compileCacheDir = " > $tmpDir/nocache.config
+echo "compileCacheDir = $tmpDir/cache" > $tmpDir/cache.config
+
+# Run 'bds' several times, show average time (in seconds)
+bench() {
+	start=`date +%s%N`
+	for i in `seq 1 $runs`
+	do
+		$BDS -c $2 $prog > /dev/null || exit 1
+	done
+	end=`date +%s%N`
+	echo "$1" | awk -v t=$(( (end - start) / runs )) '{ printf "%-25s%.3f s\n", $0, t / 1000000000 }'
+}
+
+echo "Program: $prog, runs: $runs"
+bench "No cache" $tmpDir/nocache.config
+$BDS -c $tmpDir/cache.config $prog > /dev/null		# Create cache entry
+bench "Compile cache" $tmpDir/cache.config
@@ -0,0 +1,85 @@
+#!/bin/bash
+
+#-------------------------------------------------------------------------------
+# Task dependencies benchmark: Time 'bds' runs declaring large
+# dependency graphs (no task is executed)
+#
+# Usage: benchmark_task_dependencies.sh [num_tasks]
+#
+#	Graph shapes:
+#		deep    : A chain of tasks, each one using the previous task's output
+#		reverse : Same chain, declared from the last task to the first one
+#		wide    : Many tasks using the same input, one task using all their outputs
+#		layers  : Layers of tasks, each task using two outputs from the previous layer
+#
+#	Set 'BDS' to use a different command (e.g. BDS="java -cp ... org.bds.Bds")
+#
+#															Pablo Cingolani
+#-------------------------------------------------------------------------------
+
+BDS=${BDS:-bds}
+num=${1:-10000}
+
+tmpDir=`mktemp -d`
+trap "rm -rf $tmpDir" EXIT
+
+prog=$tmpDir/task_deps.bds
+cat > $prog <<EOF
+int n = 1000
+string shape = 'deep'
+bool runGoal = false
+string last
+
+if( shape == 'deep' ) {
+	for( int i = 1 ; i <= n ; i++ ) {
+		string in = "deep_" + (i - 1) + ".txt"
+		string out = "deep_\$i.txt"
+		dep( out <- in ) sys touch \$out
+	}
+	last = "deep_\$n.txt"
+} else if( shape == 'reverse' ) {
+	for( int i = n ; i > 0 ; i-- ) {
+		string in = "rev_" + (i - 1) + ".txt"
+		string out = "rev_\$i.txt"
+		dep( out <- in ) sys touch \$out
+	}
+	last = "rev_\$n.txt"
+} else if( shape == 'wide' ) {
+	string[] outs
+	for( int i = 1 ; i <= n ; i++ ) {
+		string out = "wide_\$i.txt"
+		dep( out <- 'wide_0.txt' ) sys touch \$out
+		outs.add(out)
+	}
+	dep( 'wide.txt' <- outs ) sys touch wide.txt
+	last = 'wide.txt'
+} else if( shape == 'layers' ) {
+	int width = 100
+	for( int i = 1 ; i <= n / width ; i++ ) {
+		for( int j = 0 ; j < width ; j++ ) {
+			string[] ins = ["layer_" + (i - 1) + "_" + j + ".txt", "layer_" + (i - 1) + "_" + ((j + 1) % width) + ".txt"]
+			string out = "layer_" + i + "_" + j + ".txt"
+			dep( out <- ins ) sys touch \$out
+			last = out
+		}
+	}
+}
+
+if( runGoal ) goal( last )
+EOF
+
+# Run 'bds', show time (in seconds)
+# Note: Exit status is ignored, tasks in '-dryRun' do not create output files (so they fail)
+bench() {
+	start=`date +%s%N`
+	( cd $tmpDir ; $BDS $2 $prog -shape $1 -n $num $3 > /dev/null 2>&1 )
+	end=`date +%s%N`
+	echo "$1 $3" | awk -v t=$(( end - start )) '{ printf "%-25s%.3f s\n", $0, t / 1000000000 }'
+}
+
+echo "Tasks: $num"
+for shape in deep reverse wide layers
+do
+	bench $shape
+	bench $shape -dryRun -runGoal
+done
@@ -0,0 +1,49 @@
+#!/bin/bash
+
+#-------------------------------------------------------------------------------
+# Task submission benchmark: Time 'bds' runs submitting many no-op tasks
+# from several 'par' threads at once
+#
+# Usage: benchmark_task_submit.sh [num_tasks] [num_threads]
+#
+#	Tasks require more cpus than any host has, so the executioner finishes
+#	them without starting any process (only task bookkeeping is measured).
+#	Set 'BDS' to use a different command (e.g. BDS="java -cp ... org.bds.Bds")
+#
+#															Pablo Cingolani
+#-------------------------------------------------------------------------------
+
+BDS=${BDS:-bds}
+num=${1:-100000}
+threads=${2:-32}
+
+tmpDir=`mktemp -d`
+trap "rm -rf $tmpDir" EXIT
+
+prog=$tmpDir/task_submit.bds
+cat > $prog <<EOF2
+int n = 1000
+int threads = 32
+
+void submit(int t) {
+	for( int i = t ; i < n ; i += threads ) {
+		task( cpus := 1000000, canFail := true ) sys true
+	}
+}
+
+string[] pids
+for( int t = 0 ; t < threads ; t++ ) pids.add( par submit(t) )
+wait pids
+EOF2
+
+# Run 'bds', show time (in seconds)
+bench() {
+	start=`date +%s%N`
+	( cd $tmpDir ; $BDS -noReport $prog -n $num -threads $1 > /dev/null 2>&1 ) || { echo "Error running '$prog'" ; exit 1 ; }
+	end=`date +%s%N`
+	echo "$1" | awk -v t=$(( end - start )) '{ printf "Threads: %-16s%.3f s\n", $0, t / 1000000000 }'
+}
+
+echo "Tasks: $num"
+bench 1
+bench $threads
@@ -20,6 +20,7 @@ import org.antlr.v4.runtime.tree.Tree;
 import org.bds.antlr.BigDataScriptLexer;
 import org.bds.antlr.BigDataScriptParser;
 import org.bds.antlr.BigDataScriptParser.IncludeFileContext;
+import org.bds.compile.CompileCache;
 import org.bds.compile.CompileErrorStrategy;
 import org.bds.compile.CompilerErrorListener;
 import org.bds.compile.CompilerMessage.MessageType;
@@ -88,6 +89,7 @@ public class Bds {
 	String system; // System type
 	String queue; // Queue name
 	BdsAction bdsAction;
+	CompileCache compileCache; // Cache of compiled programs
 	Config config;
 	ProgramUnit programUnit; // Program (parsed nodes)
 	BdsThread bdsThread;
@@ -276,6 +278,17 @@ public class Bds {
 	public boolean compile() {
 		if (debug) log("Loading file: '" + programFileName + "'");
 
+		//---
+		// Compiled program in cache?
+		//---
+		CompilerMessages.reset();
+		compileCache = new CompileCache(programFileName, config);
+		programUnit = compileCache.load();
+		if (programUnit != null) {
+			if (debug) log("Compiled program loaded from cache file '" + compileCache.getCacheFileName() + "'");
+			return true;
+		}
+
 		//---
 		// Convert to AST
 		//---
@@ -325,9 +338,15 @@ public class Bds {
 		if (!CompilerMessages.get().isEmpty()) System.err.println("Compiler messages:\n" + CompilerMessages.get());
 		if (CompilerMessages.get().hasErrors()) return false;
 
+		// Resolve variable references (scopes that are not needed are only known after type checking)
+		programUnit.resolveReferences();
+
 		// Free some memory by reseting structure we won't use any more
 		TypeCheckedNodes.get().reset();
 
+		// Save to cache (only if there are no warnings, otherwise they would not be shown when loading from cache)
+		if (CompilerMessages.get().isEmpty()) compileCache.save(programUnit);
+
 		// OK
 		return true;
 	}
@@ -405,6 +424,10 @@ public class Bds {
 		return bdsThread;
 	}
 
+	public CompileCache getCompileCache() {
+		return compileCache;
+	}
+
 	public CompilerMessages getCompilerMessages() {
 		return CompilerMessages.get();
 	}
@@ -511,6 +534,7 @@ public class Bds {
 		globalScope.add(new ScopeSymbol(ExpressionTask.TASK_OPTION_MEM, Type.INT, mem)); // Default amount of memory (unrestricted)
 		globalScope.add(new ScopeSymbol(ExpressionTask.TASK_OPTION_QUEUE, Type.STRING, queue)); // Default queue: none
 		globalScope.add(new ScopeSymbol(ExpressionTask.TASK_OPTION_NODE, Type.STRING, node)); // Default node: none
+		globalScope.add(new ScopeSymbol(ExpressionTask.TASK_OPTION_PRIORITY, Type.INT, 0L)); // Default priority (higher priority tasks are run first)
 		globalScope.add(new ScopeSymbol(ExpressionTask.TASK_OPTION_CAN_FAIL, Type.BOOL, false)); // Task fail triggers checkpoint & exit (a task cannot fail)
 		globalScope.add(new ScopeSymbol(ExpressionTask.TASK_OPTION_ALLOW_EMPTY, Type.BOOL, false)); // Tasks are allowed to have empty output file/s
 		globalScope.add(new ScopeSymbol(ExpressionTask.TASK_OPTION_RETRY, Type.INT, (long) taskFailCount)); // Task fail can be re-tried (re-run) N times before considering failed.
@@ -842,6 +866,8 @@ public class Bds {
 		for (BdsThread bdsThread : bdsThreads) {
 			if (bdsThread.isFinished()) {
 				// Thread finished before serialization: Nothing to do
+			} else if (bdsThread.isPending()) {
+				// Thread did not start running before serialization: Run it from the beginning
 			} else {
 				bdsThread.setRunState(RunState.CHECKPOINT_RECOVER); // Set run state to recovery
 				bdsThread.restoreUnserializedTasks(); // Re-execute or add tasks
@@ -10,6 +10,7 @@ import java.util.Collections;
 import java.util.Date;
 import java.util.Properties;
 
+import org.bds.cluster.HostSelection;
 import org.bds.executioner.MonitorTask;
 import org.bds.executioner.TaskLogger;
 import org.bds.task.Tail;
@@ -52,6 +53,9 @@ public class Config {
 
 	// Disable checkpoint creation
 	public static final String DISABLE_CHECKPOINT_CREATE = "disableCheckpoint";
+	public static final String CHECKPOINT_DELTAS = "checkpointDeltas"; // Maximum number of delta checkpoints between full checkpoints (zero or negative disables delta checkpoints)
+	public static final int DEFAULT_CHECKPOINT_DELTAS = 10;
+	public static final String CHECKPOINT_ASYNC = "checkpointAsync"; // Write checkpoint files in a background thread
 	public static final String DISABLE_RM_ON_EXIT = "disableRmOnExit";
 	public static final String TAIL_LINES = "tailLines"; // Number of lie to use in 'tail'
 	public static final String FILTER_OUT_TASK_HINT = "filterOutTaskHint"; // Lines to filter out from task hint
@@ -84,6 +88,22 @@ public class Config {
 
 	public static final String TASK_MAX_HINT_LEN = "taskMaxHintLen";
 
+	public static final String SCHEDULER_EVENT_DRIVEN = "schedulerEventDriven"; // Executioners wait for events (task added, finished, resources released) instead of polling
+	public static final String HOST_SELECTION = "hostSelection"; // How to select a host to run a task: firstFit, bestFit, worstFit or drf
+
+	public static final String COMPILE_THRESHOLD = "compileThreshold"; // Number of calls before a function is compiled (zero or negative disables compilation)
+	public static final int DEFAULT_COMPILE_THRESHOLD = 1000;
+	public static final String COMPILE_BACKGROUND = "compileBackground"; // Compile functions in a background thread (the function is interpreted until it is compiled)
+
+	public static final String COMPILE_CACHE_DIR = "compileCacheDir"; // Directory used to cache compiled programs (empty disables the cache)
+	public static final String DEFAULT_COMPILE_CACHE_DIR = ""; // Compile cache is disabled by default
+	public static final String COMPILE_CACHE_SIZE = "compileCacheSize"; // Maximum number of programs in the compile cache (least recently used are removed)
+	public static final int DEFAULT_COMPILE_CACHE_SIZE = 100;
+
+	public static final String PARALLEL_THREADS = "parallelThreads"; // Number of threads used to run 'par' blocks (zero or negative means number of CPUs)
+	public static final String PARALLEL_THREADS_MAX = "parallelThreadsMax"; // Maximum number of threads used to run 'par' blocks, including threads started while others are blocked (zero or negative means no limit)
+	public static final int DEFAULT_PARALLEL_THREADS_MAX = 256;
+
 	private static Config configInstance = null; // Config is some kind of singleton because we want to make it accessible from everywhere
 
 	public static final String[] EMPTY_STRING_ARRAY = new String[0];
@@ -94,11 +114,21 @@ public class Config {
 	boolean log = false; // Log all commands?
 	boolean dryRun = false; // Is this a dry run? (i.e. don't run commands, just show what they do).
 	boolean noCheckpoint; // Do not create checkpoint files
+	int checkpointDeltas = DEFAULT_CHECKPOINT_DELTAS; // Maximum number of delta checkpoints between full checkpoints
+	boolean checkpointAsync; // Write checkpoint files in a background thread
 	boolean noRmOnExit; // Avoid removing files on exit
 	boolean extractSource = false; // Extract source code from checkpoint file
 	boolean reportYaml = false; // Use YAML report format
 	boolean reportHtml = true; // Use HTML report format
 	boolean showTaskCode; // Always show task's code (sys statements)
+	boolean schedulerEventDriven; // Use event driven task scheduler
+	HostSelection hostSelection = HostSelection.FIRST_FIT; // How to select a host to run a task
+	int compileThreshold = DEFAULT_COMPILE_THRESHOLD; // Number of calls before a function is compiled
+	boolean compileBackground = true; // Compile functions in a background thread
+	String compileCacheDir = DEFAULT_COMPILE_CACHE_DIR; // Directory used to cache compiled programs
+	int compileCacheSize = DEFAULT_COMPILE_CACHE_SIZE; // Maximum number of programs in the compile cache
+	int parallelThreads = 0; // Number of threads used to run 'par' blocks
+	int parallelThreadsMax = DEFAULT_PARALLEL_THREADS_MAX; // Maximum number of threads used to run 'par' blocks
 	int taskFailCount = 0; // Number of times a task is allowed to fail (i.e. number of re-tries)
 	int maxThreads = -1; // Maximum number of simultaneous threads (e.g. when running 'qsub' commands)
 	int waitAfterTaskRun = -1; // Wait some milisecs after task run
@@ -152,6 +182,22 @@ public class Config {
 		return Gpr.parseBoolSafe(val.trim());
 	}
 
+	public int getCheckpointDeltas() {
+		return checkpointDeltas;
+	}
+
+	public String getCompileCacheDir() {
+		return compileCacheDir;
+	}
+
+	public int getCompileCacheSize() {
+		return compileCacheSize;
+	}
+
+	public int getCompileThreshold() {
+		return compileThreshold;
+	}
+
 	public String getConfigDirName() {
 		return configDirName;
 	}
@@ -173,6 +219,10 @@ public class Config {
 		return filterOutTaskHint;
 	}
 
+	public HostSelection getHostSelection() {
+		return hostSelection;
+	}
+
 	/**
 	 * A collection of strings showing where to search for include files
 	 *
@@ -235,10 +285,19 @@ public class Config {
 			monitorTask = new MonitorTask();
 			monitorTask.setDebug(isDebug());
 			monitorTask.setVerbose(isVerbose());
+			monitorTask.start();
 		}
 		return monitorTask;
 	}
 
+	public int getParallelThreads() {
+		return parallelThreads;
+	}
+
+	public int getParallelThreadsMax() {
+		return parallelThreadsMax;
+	}
+
 	public String getPidFile() {
 		return pidFile;
 	}
@@ -379,6 +438,14 @@ public class Config {
 		return waitAfterTaskRun;
 	}
 
+	public boolean isCheckpointAsync() {
+		return checkpointAsync;
+	}
+
+	public boolean isCompileBackground() {
+		return compileBackground;
+	}
+
 	public boolean isDebug() {
 		return debug;
 	}
@@ -415,6 +482,10 @@ public class Config {
 		return reportYaml;
 	}
 
+	public boolean isSchedulerEventDriven() {
+		return schedulerEventDriven;
+	}
+
 	public boolean isShowTaskCode() {
 		return showTaskCode;
 	}
@@ -430,7 +501,7 @@ public class Config {
 		}
 
 		if (monitorTask != null) {
-			// monitorTask.kill();
+			monitorTask.kill();
 			monitorTask = null;
 		}
 	}
@@ -440,8 +511,19 @@ public class Config {
 	 */
 	void parse() {
 		noCheckpoint = getBool(DISABLE_CHECKPOINT_CREATE, false);
+		checkpointDeltas = (int) getLong(CHECKPOINT_DELTAS, DEFAULT_CHECKPOINT_DELTAS);
+		checkpointAsync = getBool(CHECKPOINT_ASYNC, false);
 		noRmOnExit = getBool(DISABLE_RM_ON_EXIT, false);
 		showTaskCode = getBool(SHOW_TASK_CODE, false);
+		schedulerEventDriven = getBool(SCHEDULER_EVENT_DRIVEN, false);
+		hostSelection = HostSelection.parseSafe(getString(HOST_SELECTION, HostSelection.FIRST_FIT.toString()));
+		compileThreshold = (int) getLong(COMPILE_THRESHOLD, DEFAULT_COMPILE_THRESHOLD);
+		compileBackground = getBool(COMPILE_BACKGROUND, true);
+		compileCacheDir = getString(COMPILE_CACHE_DIR, DEFAULT_COMPILE_CACHE_DIR);
+		if (compileCacheDir.startsWith("~/")) compileCacheDir = Gpr.HOME + "/" + compileCacheDir.substring(2); // Relative to 'home' dir?
+		compileCacheSize = (int) getLong(COMPILE_CACHE_SIZE, DEFAULT_COMPILE_CACHE_SIZE);
+		parallelThreads = (int) getLong(PARALLEL_THREADS, 0);
+		parallelThreadsMax = (int) getLong(PARALLEL_THREADS_MAX, DEFAULT_PARALLEL_THREADS_MAX);
 		tailLines = (int) getLong(TAIL_LINES, TailFile.DEFAULT_TAIL);
 
 		// Split and add all items
@@ -493,6 +575,30 @@ public class Config {
 		properties.setProperty(propertyName, value);
 	}
 
+	public void setCheckpointAsync(boolean checkpointAsync) {
+		this.checkpointAsync = checkpointAsync;
+	}
+
+	public void setCheckpointDeltas(int checkpointDeltas) {
+		this.checkpointDeltas = checkpointDeltas;
+	}
+
+	public void setCompileBackground(boolean compileBackground) {
+		this.compileBackground = compileBackground;
+	}
+
+	public void setCompileCacheDir(String compileCacheDir) {
+		this.compileCacheDir = compileCacheDir;
+	}
+
+	public void setCompileCacheSize(int compileCacheSize) {
+		this.compileCacheSize = compileCacheSize;
+	}
+
+	public void setCompileThreshold(int compileThreshold) {
+		this.compileThreshold = compileThreshold;
+	}
+
 	public void setDebug(boolean debug) {
 		this.debug = debug;
 	}
@@ -505,6 +611,10 @@ public class Config {
 		this.extractSource = extractSource;
 	}
 
+	public void setHostSelection(HostSelection hostSelection) {
+		this.hostSelection = hostSelection;
+	}
+
 	public void setLog(boolean log) {
 		this.log = log;
 	}
@@ -517,6 +627,14 @@ public class Config {
 		this.noRmOnExit = noRmOnExit;
 	}
 
+	public void setParallelThreads(int parallelThreads) {
+		this.parallelThreads = parallelThreads;
+	}
+
+	public void setParallelThreadsMax(int parallelThreadsMax) {
+		this.parallelThreadsMax = parallelThreadsMax;
+	}
+
 	public void setPidFile(String pidFile) {
 		this.pidFile = pidFile;
 	}
@@ -537,6 +655,10 @@ public class Config {
 		reportYaml = yamlReport;
 	}
 
+	public void setSchedulerEventDriven(boolean schedulerEventDriven) {
+		this.schedulerEventDriven = schedulerEventDriven;
+	}
+
 	public void setShowTaskCode(boolean showTaskCode) {
 		this.showTaskCode = showTaskCode;
 	}
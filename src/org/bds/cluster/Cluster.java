@@ -2,9 +2,12 @@ package org.bds.cluster;
 
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.Iterator;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
 import java.util.concurrent.ConcurrentHashMap;
 
 import org.bds.cluster.host.Host;
@@ -14,17 +17,75 @@ import org.bds.util.Gpr;
 /**
  * Cluster: A bunch of hosts
  *
+ * Hosts are indexed by available resources (cpus, then memory), so
+ * selecting a host for a task does not require scanning all hosts.
+ *
  * @author pcingola
  */
 public class Cluster implements Iterable<Host> {
 
+	/**
+	 * A host's available resources (index entry).
+	 * Note: Entries are never modified, a new entry is created every time the host's available resources change
+	 */
+	protected static class HostAvailable implements Comparable<HostAvailable> {
+		int cpus; // Available cpus (unknown is considered unlimited)
+		long mem; // Available memory (unknown is considered unlimited)
+		String hostName;
+		Host host;
+		HostResources resources; // Available resources
+
+		public HostAvailable(Host host, HostResources resources) {
+			this(resources.getCpus() < 0 ? Integer.MAX_VALUE : resources.getCpus() //
+					, resources.getMem() < 0 ? Long.MAX_VALUE : resources.getMem() //
+					, host.toString());
+			this.host = host;
+			this.resources = resources;
+		}
+
+		public HostAvailable(int cpus, long mem, String hostName) {
+			this.cpus = cpus;
+			this.mem = mem;
+			this.hostName = hostName;
+		}
+
+		@Override
+		public int compareTo(HostAvailable ha) {
+			if (cpus != ha.cpus) return cpus < ha.cpus ? -1 : 1;
+			if (mem != ha.mem) return mem < ha.mem ? -1 : 1;
+			return hostName.compareTo(ha.hostName);
+		}
+
+		/**
+		 * Can this host run a task requiring 'hr' resources?
+		 */
+		boolean fits(HostResources hr) {
+			return resources.hasResources(hr) && host.isAlive();
+		}
+
+		/**
+		 * Dominant resource share (fraction of cpus or memory in use, whichever is larger) after adding 'hr'
+		 */
+		double share(HostResources hr) {
+			HostResources total = host.getResources();
+			double shareCpus = 0, shareMem = 0;
+			if (total.getCpus() > 0) shareCpus = (total.getCpus() - resources.getCpus() + Math.max(0, hr.getCpus())) / ((double) total.getCpus());
+			if (total.getMem() > 0) shareMem = (total.getMem() - resources.getMem() + Math.max(0, hr.getMem())) / ((double) total.getMem());
+			return Math.max(shareCpus, shareMem);
+		}
+	}
+
 	public static final Cluster FAKE_CLUSTER = new Cluster();
 
 	protected boolean doNotRunOnRed = true; // If a host has a 'red' condition => do not run any tasks on them
 	protected ConcurrentHashMap<String, Host> hosts; // All hosts indexed by name
+	protected TreeSet<HostAvailable> hostsByAvailable; // Hosts sorted by available resources
+	protected Map<Host, HostAvailable> availableByHost; // Index entry for each host
 
 	public Cluster() {
 		hosts = new ConcurrentHashMap<String, Host>();
+		hostsByAvailable = new TreeSet<HostAvailable>();
+		availableByHost = new HashMap<Host, HostAvailable>();
 	}
 
 	/**
@@ -32,7 +93,19 @@ public class Cluster implements Iterable<Host> {
 	 */
 	public void add(Host host) {
 		String hostName = host.toString();
-		hosts.put(hostName, host);
+		Host old = hosts.put(hostName, host);
+		if (old != null && old != host) removeIndex(old);
+	}
+
+	/**
+	 * Can any host run a task requiring 'hr' resources (assuming all
+	 * running tasks finish)? Hosts that are not alive may be able to
+	 * run the task, we don't know.
+	 */
+	public boolean canRun(HostResources hr) {
+		for (Host host : this)
+			if (!host.isAlive() || host.getResources().hasResources(hr)) return true;
+		return false;
 	}
 
 	/**
@@ -52,6 +125,27 @@ public class Cluster implements Iterable<Host> {
 		return lhi;
 	}
 
+	/**
+	 * Make sure all hosts are in the index
+	 * Note: Hosts are indexed lazily, since host's resources are
+	 *       usually set after the host has been added to the cluster
+	 */
+	protected void index() {
+		synchronized (this) {
+			if (availableByHost.size() == hosts.size()) return;
+		}
+
+		for (Host host : this) {
+			boolean indexed;
+			synchronized (this) {
+				indexed = availableByHost.containsKey(host);
+			}
+
+			// Note: Do not hold the cluster's lock, updateResourcesAvailable() locks the host and updates the index
+			if (!indexed) host.updateResourcesAvailable();
+		}
+	}
+
 	public String info() {
 		long totMem = 0, totCpus = 0, totHosts = 0;
 		for (Host h : hosts.values()) {
@@ -77,7 +171,66 @@ public class Cluster implements Iterable<Host> {
 
 	public void remove(Host host) {
 		String hostName = host.toString();
-		hosts.remove(hostName);
+		if (hosts.remove(hostName, host)) removeIndex(host);
+	}
+
+	/**
+	 * Remove host from index
+	 */
+	protected synchronized void removeIndex(Host host) {
+		HostAvailable ha = availableByHost.remove(host);
+		if (ha != null) hostsByAvailable.remove(ha);
+	}
+
+	/**
+	 * Select a host having enough resources to run a task requiring 'hr' resources
+	 * @return A host or null if no host has enough resources available
+	 */
+	public Host selectHost(HostResources hr, HostSelection hostSelection) {
+		// First fit: Original (unsorted) order
+		if (hostSelection == HostSelection.FIRST_FIT) {
+			for (Host host : this)
+				if (host.isAlive() && host.getResourcesAvaialble().hasResources(hr)) return host;
+			return null;
+		}
+
+		index();
+		synchronized (this) {
+			// Only hosts having at least 'hr.cpus' available are considered
+			HostAvailable from = new HostAvailable(Math.max(0, hr.getCpus()), Long.MIN_VALUE, "");
+			switch (hostSelection) {
+			case BEST_FIT:
+				// Host with the least resources available that can run the task
+				for (HostAvailable ha : hostsByAvailable.tailSet(from, true))
+					if (ha.fits(hr)) return ha.host;
+				return null;
+
+			case WORST_FIT:
+				// Host with the most resources available
+				for (HostAvailable ha : hostsByAvailable.descendingSet()) {
+					if (ha.compareTo(from) < 0) break; // Not enough cpus in any of the remaining hosts
+					if (ha.fits(hr)) return ha.host;
+				}
+				return null;
+
+			case DRF:
+				// Host having the lowest dominant share after adding the task
+				Host best = null;
+				double bestShare = Double.MAX_VALUE;
+				for (HostAvailable ha : hostsByAvailable.tailSet(from, true)) {
+					if (!ha.fits(hr)) continue;
+					double share = ha.share(hr);
+					if (share < bestShare) {
+						best = ha.host;
+						bestShare = share;
+					}
+				}
+				return best;
+
+			default:
+				throw new RuntimeException("Unimplemented host selection '" + hostSelection + "'");
+			}
+		}
 	}
 
 	public int size() {
@@ -103,4 +256,15 @@ public class Cluster implements Iterable<Host> {
 		return sb.toString();
 	}
 
+	/**
+	 * Update host's available resources in the index
+	 */
+	public synchronized void update(Host host, HostResources resourcesAvailable) {
+		if (hosts.get(host.toString()) != host) return; // Host is not in this cluster
+		removeIndex(host);
+		HostAvailable ha = new HostAvailable(host, resourcesAvailable);
+		availableByHost.put(host, ha);
+		hostsByAvailable.add(ha);
+	}
+
 }
@@ -0,0 +1,28 @@
+package org.bds.cluster;
+
+/**
+ * How to select a host (among the ones having enough resources) to run a task
+ *
+ * @author pcingola
+ */
+public enum HostSelection {
+	FIRST_FIT // First host found having enough resources
+	, BEST_FIT // Host having the least available resources (pack tasks, leave large hosts available for large tasks)
+	, WORST_FIT // Host having the most available resources (spread tasks across hosts)
+	, DRF // Host having the lowest dominant resource share (cpus or memory) after adding the task
+	;
+
+	/**
+	 * Parse a host selection name (e.g. 'bestFit', 'best_fit' or 'BEST_FIT')
+	 * @return Corresponding HostSelection or FIRST_FIT if there is any error
+	 */
+	public static HostSelection parseSafe(String name) {
+		String n = name.replaceAll("[_\\-]", "");
+		for (HostSelection hs : values())
+			if (hs.name().replace("_", "").equalsIgnoreCase(n)) return hs;
+
+		System.out.println("Unknown host selection '" + name + "', using '" + FIRST_FIT + "'");
+		return FIRST_FIT;
+	}
+
+}
@@ -117,11 +117,14 @@ public class Host implements Comparable<Host> {
 	}
 
 	/**
-	 * Update 'resources available'
+	 * Update 'resources available' (and cluster's host index)
 	 */
 	public synchronized void updateResourcesAvailable() {
-		resourcesAvaialble = resources.clone();
+		HostResources ra = resources.clone();
 		for (Task t : tasksRunning)
-			resourcesAvaialble.consume(t.getResources());
+			ra.consume(t.getResources());
+
+		resourcesAvaialble = ra;
+		cluster.update(this, ra);
 	}
 }
@@ -147,8 +147,11 @@ public class HostResources implements Comparable<HostResources>, BdsSerialize, C
 	}
 
 	@Override
-	public String serializeSave(BdsSerializer serializer) {
-		return cpus + "\t" + mem + "\t" + timeout + "\t" + wallTimeout;
+	public void serializeSave(BdsSerializer serializer) {
+		serializer.serializeSaveField(cpus);
+		serializer.serializeSaveField(mem);
+		serializer.serializeSaveField(timeout);
+		serializer.serializeSaveField(wallTimeout);
 	}
 
 	public void set(HostResources hr) {
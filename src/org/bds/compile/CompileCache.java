@@ -0,0 +1,446 @@
+package org.bds.compile;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.InputStream;
+import java.io.PrintStream;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.zip.GZIPOutputStream;
+
+import org.bds.Bds;
+import org.bds.Config;
+import org.bds.lang.BdsNode;
+import org.bds.lang.BdsNodeFactory;
+import org.bds.lang.FunctionDeclaration;
+import org.bds.lang.ProgramUnit;
+import org.bds.lang.StatementInclude;
+import org.bds.lang.TypeFunc;
+import org.bds.scope.Scope;
+import org.bds.scope.ScopeSymbol;
+import org.bds.serialize.BdsSerializer;
+import org.bds.util.Gpr;
+import org.bds.util.Timer;
+
+/**
+ * Cache of compiled (i.e. parsed and type-checked) programs
+ *
+ * Programs are saved using BdsSerializer's format, in a file named
+ * after a hash of the program, so an unchanged program is loaded
+ * without lexing, parsing or type-checking it. Included files are
+ * stored in the cache file's header (name and hash) and checked
+ * before the cached program is used.
+ *
+ * The hash also includes the bds build (see 'codeStamp'), so a program
+ * cached by a different build is never used. The cache holds at most
+ * 'compileCacheSize' programs, least recently used ones are removed
+ * (see 'evict').
+ *
+ * Note: Native functions and methods are not serialized, they are
+ * referenced by node ID. So the hash includes the nodes created
+ * before compiling (see 'key()') and programs whose compilation
+ * creates native nodes are not cached.
+ *
+ * @author pcingola
+ */
+public class CompileCache {
+
+	public static final String CACHE_FILE_EXT = ".cache";
+	public static final String INCLUDE_FILE = "IncludeFile"; // Header line: Included file name and hash
+	public static final String SCOPE = "TypeCheckScope"; // Scope created when type-checking a node
+	public static final Pattern NODE_REFERENCE = Pattern.compile(BdsSerializer.NODE_IDENTIFIER + "(\\d+)");
+
+	private static String codeStamp; // Identifies the code (bds build) we are running
+
+	public static boolean debug = false;
+
+	String cacheDir;
+	Config config;
+	String programFileName;
+	String key;
+	int firstNodeId; // First node ID used when compiling the program
+	boolean loaded; // Was the program loaded from the cache?
+
+	/**
+	 * Identify the code we are running: A program cached by a different
+	 * build of bds cannot be used, since nodes may have different fields.
+	 * The stamp is a hash of the whole build: The jar file's contents or,
+	 * when running from a classes directory (e.g. development), the name,
+	 * size and modification time of every file in it
+	 */
+	static synchronized String codeStamp() {
+		if (codeStamp != null) return codeStamp;
+
+		codeStamp = "";
+		try {
+			File code = new File(Bds.class.getProtectionDomain().getCodeSource().getLocation().toURI());
+			MessageDigest md = MessageDigest.getInstance("SHA-1");
+			if (code.isFile()) {
+				// Jar file
+				InputStream in = new FileInputStream(code);
+				try {
+					byte buffer[] = new byte[64 * 1024];
+					for (int len = in.read(buffer); len >= 0; len = in.read(buffer))
+						md.update(buffer, 0, len);
+				} finally {
+					in.close();
+				}
+			} else {
+				// Classes directory
+				codeStamp(md, code, "");
+			}
+			codeStamp = code + "\t" + toHex(md.digest());
+		} catch (Exception e) {
+			// Nothing to do: Code source not available
+		}
+
+		return codeStamp;
+	}
+
+	/**
+	 * Add all files in a directory (recursively) to the code stamp
+	 */
+	static void codeStamp(MessageDigest md, File dir, String path) throws Exception {
+		File files[] = dir.listFiles();
+		if (files == null) return;
+
+		Arrays.sort(files);
+		for (File f : files) {
+			String name = path + "/" + f.getName();
+			if (f.isDirectory()) codeStamp(md, f, name);
+			else md.update((name + "\t" + f.length() + "\t" + f.lastModified() + "\n").getBytes("UTF-8"));
+		}
+	}
+
+	/**
+	 * Hash a file's contents
+	 * @return Hash or null if the file cannot be read
+	 */
+	static String hash(String fileName) {
+		try {
+			MessageDigest md = MessageDigest.getInstance("SHA-1");
+			md.update(Files.readAllBytes(new File(fileName).toPath()));
+			return toHex(md.digest());
+		} catch (Exception e) {
+			return null;
+		}
+	}
+
+	static String toHex(byte bytes[]) {
+		StringBuilder sb = new StringBuilder();
+		for (byte b : bytes)
+			sb.append(String.format("%02x", b & 0xff));
+		return sb.toString();
+	}
+
+	/**
+	 * Create a cache for a program. This must be done before compiling
+	 * the program (node IDs created so far are part of the hash)
+	 */
+	public CompileCache(String programFileName, Config config) {
+		this.programFileName = programFileName;
+		this.config = config;
+		cacheDir = config.getCompileCacheDir();
+		firstNodeId = BdsNodeFactory.get().getCurrentNodeId();
+	}
+
+	/**
+	 * Remove least recently used programs, so that the cache has at most 'compileCacheSize' programs
+	 * Note: Programs loaded from the cache are 'touched' (see 'load'), so the
+	 * modification time is the last time a program was used
+	 */
+	void evict() {
+		int maxSize = config.getCompileCacheSize();
+		if (maxSize <= 0) return;
+
+		File files[] = new File(cacheDir).listFiles();
+		if (files == null) return;
+
+		// Modification time of each cache file
+		final Map<File, Long> lastModified = new HashMap<File, Long>();
+		for (File f : files)
+			if (f.getName().endsWith(CACHE_FILE_EXT)) lastModified.put(f, f.lastModified());
+		if (lastModified.size() <= maxSize) return;
+
+		// Sort by modification time (oldest first)
+		List<File> cacheFiles = new ArrayList<File>(lastModified.keySet());
+		Collections.sort(cacheFiles, new Comparator<File>() {
+			@Override
+			public int compare(File f1, File f2) {
+				return Long.compare(lastModified.get(f1), lastModified.get(f2));
+			}
+		});
+
+		// Remove oldest files
+		for (int i = 0; i < cacheFiles.size() - maxSize; i++) {
+			File f = cacheFiles.get(i);
+			if (debug) Timer.showStdErr("Removing cache file '" + f + "'");
+			f.delete();
+		}
+	}
+
+	public String getCacheFileName() {
+		if (key == null) key = key();
+		if (key == null) return null;
+		return cacheDir + "/" + key + CACHE_FILE_EXT;
+	}
+
+	/**
+	 * Are all nodes referenced by a serialized program either serialized or created before
+	 * compiling? E.g. native methods created while compiling (such as the methods of a
+	 * list type declared in the program) would not exist when loading the program
+	 */
+	boolean isComplete(String nodes) {
+		Set<String> ids = new HashSet<String>();
+		for (String line : nodes.split("\n")) {
+			String fields[] = line.split("\t", 3);
+			if (fields.length > 1) ids.add(fields[1]);
+		}
+
+		Matcher matcher = NODE_REFERENCE.matcher(nodes);
+		while (matcher.find()) {
+			String id = matcher.group(1);
+			if (!ids.contains(id) && Gpr.parseIntSafe(id) >= firstNodeId) {
+				if (debug) Gpr.debug("Node '" + id + "' is not serialized, not caching program '" + programFileName + "'");
+				return false;
+			}
+		}
+
+		return true;
+	}
+
+	/**
+	 * Is the cache enabled?
+	 */
+	public boolean isEnabled() {
+		return cacheDir != null && !cacheDir.isEmpty() && programFileName != null;
+	}
+
+	/**
+	 * Was the program loaded from the cache?
+	 */
+	public boolean isLoaded() {
+		return loaded;
+	}
+
+	/**
+	 * Hash the program and everything its compilation depends on
+	 * @return A hash or null if the program cannot be read
+	 */
+	String key() {
+		try {
+			File programFile = new File(programFileName);
+			byte program[] = Files.readAllBytes(programFile.toPath());
+
+			MessageDigest md = MessageDigest.getInstance("SHA-1");
+			StringBuilder sb = new StringBuilder();
+			sb.append(Bds.VERSION + "\n");
+			sb.append(codeStamp() + "\n");
+			sb.append(programFile.getCanonicalPath() + "\n");
+			sb.append(new File(".").getCanonicalPath() + "\n"); // Included files can be relative to current dir
+			sb.append(config.getIncludePath() + "\n");
+
+			// Native functions and methods (referenced by ID)
+			sb.append(firstNodeId + "\n");
+			BdsNodeFactory nodeFactory = BdsNodeFactory.get();
+			for (int id = 1; id < firstNodeId; id++) {
+				BdsNode node = nodeFactory.getNode(id);
+				if (node instanceof FunctionDeclaration && ((FunctionDeclaration) node).isNative()) {
+					sb.append(id + "\t" + ((FunctionDeclaration) node).signature() + "\n");
+				}
+			}
+
+			md.update(sb.toString().getBytes("UTF-8"));
+			md.update(program);
+			return toHex(md.digest());
+		} catch (Exception e) {
+			if (debug) Gpr.debug("Cannot hash program '" + programFileName + "': " + e.getMessage());
+			return null;
+		}
+	}
+
+	/**
+	 * Load program from cache
+	 * @return The compiled program or null if it is not in the cache (or it is not valid)
+	 */
+	public ProgramUnit load() {
+		if (!isEnabled()) return null;
+
+		String cacheFileName = getCacheFileName();
+		if (cacheFileName == null || !Gpr.exists(cacheFileName)) return null;
+
+		try {
+			if (debug) Timer.showStdErr("Loading compiled program from cache file '" + cacheFileName + "'");
+			String file = Gpr.read(Gpr.reader(cacheFileName, true));
+			if ((file == null) || file.isEmpty()) return null;
+
+			// Check included files, use all other lines as program nodes (and their scopes)
+			BdsSerializer serializer = new BdsSerializer(cacheFileName, null);
+			List<String> lines = new ArrayList<String>();
+			List<String> scopeLines = new ArrayList<String>();
+			for (String line : file.split("\n")) {
+				if (line.startsWith(INCLUDE_FILE + "\t")) {
+					String fields[] = line.split("\t");
+					String includeFileName = serializer.parseString(fields[1]);
+					if (!fields[2].equals(hash(includeFileName))) {
+						if (debug) Gpr.debug("Included file '" + includeFileName + "' changed, cannot use cache file '" + cacheFileName + "'");
+						return null;
+					}
+				} else if (line.startsWith(SCOPE + "\t")) scopeLines.add(line);
+				else lines.add(line);
+			}
+
+			ProgramUnit programUnit = serializer.parseProgramUnit(lines.toArray(new String[0]));
+			if (programUnit == null) return null;
+			loadScopes(serializer, scopeLines);
+
+			new File(cacheFileName).setLastModified(System.currentTimeMillis()); // Most recently used (see 'evict')
+			loaded = true;
+			return programUnit;
+		} catch (Exception e) {
+			// Corrupted or incompatible cache file: The program will be compiled
+			BdsNodeFactory.get().setCreateFakeIds(false);
+			if (debug) Gpr.debug("Cannot load cache file '" + cacheFileName + "': " + e.getMessage());
+			return null;
+		}
+	}
+
+	/**
+	 * Restore scopes created when type-checking (see 'saveScopes')
+	 */
+	void loadScopes(BdsSerializer serializer, List<String> scopeLines) {
+		BdsNodeFactory nodeFactory = BdsNodeFactory.get();
+		List<BdsNode> nodes = new ArrayList<BdsNode>();
+		List<BdsNode> parentNodes = new ArrayList<BdsNode>();
+
+		// Create scopes and add symbols
+		for (String line : scopeLines) {
+			String fields[] = line.split("\t");
+			BdsNode node = nodeFactory.getNode(serializer.parseNodeId(fields[1]));
+			nodes.add(node);
+			parentNodes.add(nodeFactory.getNode(serializer.parseNodeId(fields[2])));
+
+			Scope scope = new Scope(null, node);
+			for (int i = 3; i < fields.length; i += 2) {
+				String name = serializer.parseString(fields[i]);
+				if (fields[i + 1].startsWith(BdsSerializer.NODE_IDENTIFIER)) {
+					FunctionDeclaration fdecl = (FunctionDeclaration) nodeFactory.getNode(serializer.parseNodeId(fields[i + 1]));
+					scope.add(new ScopeSymbol(name, new TypeFunc(fdecl), fdecl));
+				} else scope.addSlot(new ScopeSymbol(name, serializer.parseType(fields[i + 1]))); // Variables are saved in slot order
+			}
+
+			node.setScope(scope);
+		}
+
+		// Set parent scopes
+		Scope programScope = new Scope(); // Parent of the program's scope (see Bds.compile())
+		for (int i = 0; i < nodes.size(); i++) {
+			BdsNode parentNode = parentNodes.get(i);
+			nodes.get(i).getScope().setParent(parentNode != null ? parentNode.getScope() : programScope);
+		}
+	}
+
+	/**
+	 * Save a type-checked program to the cache
+	 * @return true if the program was saved
+	 */
+	public boolean save(ProgramUnit programUnit) {
+		if (!isEnabled()) return false;
+
+		String cacheFileName = getCacheFileName();
+		if (cacheFileName == null) return false;
+
+		File tmpFile = null;
+		try {
+			BdsSerializer serializer = new BdsSerializer(cacheFileName, null);
+			StringBuilder sb = new StringBuilder();
+			sb.append(Bds.class.getSimpleName() + "\t" + Bds.VERSION_SHORT + "\n");
+
+			// Included files
+			for (BdsNode node : programUnit.findNodes(StatementInclude.class, true)) {
+				String includeFileName = ((StatementInclude) node).getFileName();
+				String hash = hash(includeFileName);
+				if (hash == null) return false;
+				sb.append(INCLUDE_FILE + "\t" + serializer.serializeSaveValue(includeFileName) + "\t" + hash + "\n");
+			}
+
+			String nodes = serializer.serializeSaveText(programUnit);
+			if (!isComplete(nodes)) return false;
+			sb.append(nodes);
+			sb.append(saveScopes(serializer, programUnit));
+
+			// Write to a temporary file and rename it, so that
+			// other processes never read a partially written file
+			File dir = new File(cacheDir);
+			dir.mkdirs();
+			tmpFile = File.createTempFile(key, ".tmp", dir);
+			PrintStream out = new PrintStream(new GZIPOutputStream(new FileOutputStream(tmpFile)));
+			out.print(sb);
+			out.close();
+			Files.move(tmpFile.toPath(), new File(cacheFileName).toPath(), StandardCopyOption.REPLACE_EXISTING);
+			evict();
+
+			if (debug) Timer.showStdErr("Compiled program saved to cache file '" + cacheFileName + "'");
+			return true;
+		} catch (Exception e) {
+			// The cache is just an optimization: Nothing to do
+			if (tmpFile != null) tmpFile.delete();
+			if (debug) Gpr.debug("Cannot save cache file '" + cacheFileName + "': " + e.getMessage());
+			return false;
+		}
+	}
+
+	/**
+	 * Serialize the scopes created when type-checking. They are not serialized
+	 * with their nodes, but they are used when running (functions are copied
+	 * to the scopes created at runtime) and when compiling functions
+	 * Format: node, parent scope's node, symbols (name and type, or node for functions)
+	 */
+	String saveScopes(BdsSerializer serializer, ProgramUnit programUnit) {
+		List<BdsNode> nodes = programUnit.findNodes(null, true);
+		nodes.add(0, programUnit);
+
+		StringBuilder sb = new StringBuilder();
+		Set<BdsNode> done = new HashSet<BdsNode>();
+		for (BdsNode node : nodes) {
+			Scope scope = node.getScope();
+			if (scope == null || !done.add(node)) continue;
+
+			// Parent scope (scopes that were empty are not kept by their nodes, skip them)
+			Scope parent = scope.getParent();
+			while (parent != null && (parent.getNode() == null || parent.getNode().getScope() != parent))
+				parent = parent.getParent();
+
+			sb.append(SCOPE //
+					+ "\t" + serializer.serializeSaveValue(node) //
+					+ "\t" + serializer.serializeSaveValue(parent != null ? parent.getNode() : null) //
+			);
+
+			for (ScopeSymbol ss : scope.getSymbols())
+				sb.append("\t" + serializer.serializeSaveValue(ss.getName()) + "\t" + serializer.serializeSaveValue(ss.getType()));
+
+			if (scope.hasFunctions()) {
+				for (ScopeSymbol ss : scope.getFunctions())
+					sb.append("\t" + serializer.serializeSaveValue(ss.getName()) + "\t" + serializer.serializeSaveValue(ss.getValue()));
+			}
+
+			sb.append("\n");
+		}
+
+		return sb.toString();
+	}
+
+}
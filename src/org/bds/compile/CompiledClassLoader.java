@@ -0,0 +1,117 @@
+package org.bds.compile;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.StringWriter;
+import java.net.URI;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import javax.tools.FileObject;
+import javax.tools.ForwardingJavaFileManager;
+import javax.tools.JavaCompiler;
+import javax.tools.JavaFileManager;
+import javax.tools.JavaFileObject;
+import javax.tools.JavaFileObject.Kind;
+import javax.tools.SimpleJavaFileObject;
+import javax.tools.StandardJavaFileManager;
+import javax.tools.ToolProvider;
+
+/**
+ * Compile Java source code in memory and load the resulting classes
+ *
+ * Each compiled function uses its own class loader, so classes can
+ * be garbage collected once the function is no longer referenced.
+ *
+ * Note: The Java compiler is only available when running on a JDK,
+ * see 'isAvailable()'
+ *
+ * @author pcingola
+ */
+public class CompiledClassLoader extends ClassLoader {
+
+	Map<String, byte[]> classBytes; // Compiled classes, indexed by class name
+
+	/**
+	 * Is a Java compiler available?
+	 */
+	public static boolean isAvailable() {
+		return ToolProvider.getSystemJavaCompiler() != null;
+	}
+
+	public CompiledClassLoader() {
+		super(CompiledClassLoader.class.getClassLoader());
+		classBytes = new HashMap<String, byte[]>();
+	}
+
+	/**
+	 * Compile a class and load it
+	 * @param className : Fully qualified class name
+	 * @param source : Java source code
+	 */
+	public Class<?> compile(String className, final String source) {
+		JavaCompiler javac = ToolProvider.getSystemJavaCompiler();
+		if (javac == null) throw new RuntimeException("Java compiler not available");
+
+		// Source code
+		JavaFileObject sourceFile = new SimpleJavaFileObject(URI.create("string:///" + className.replace('.', '/') + Kind.SOURCE.extension), Kind.SOURCE) {
+			@Override
+			public CharSequence getCharContent(boolean ignoreEncodingErrors) {
+				return source;
+			}
+		};
+
+		// Keep compiled classes in memory
+		StandardJavaFileManager stdFileManager = javac.getStandardFileManager(null, null, null);
+		JavaFileManager fileManager = new ForwardingJavaFileManager<JavaFileManager>(stdFileManager) {
+			@Override
+			public JavaFileObject getJavaFileForOutput(Location location, final String name, Kind kind, FileObject sibling) {
+				return new SimpleJavaFileObject(URI.create("mem:///" + name.replace('.', '/') + kind.extension), kind) {
+					@Override
+					public OutputStream openOutputStream() {
+						return new ByteArrayOutputStream() {
+							@Override
+							public void close() throws IOException {
+								super.close();
+								classBytes.put(name, toByteArray());
+							}
+						};
+					}
+				};
+			}
+		};
+
+		// Compile
+		// Note: Source files are never looked up (otherwise javac could compile any sources
+		// found in the classpath, e.g. a 'src' directory, instead of using the loaded classes)
+		StringWriter messages = new StringWriter();
+		List<String> options = Arrays.asList("-classpath", System.getProperty("java.class.path"), "-sourcepath", "", "-implicit:none", "-g:none", "-nowarn", "-proc:none");
+		Boolean ok = javac.getTask(messages, fileManager, null, options, null, Arrays.asList(sourceFile)).call();
+
+		try {
+			fileManager.close();
+		} catch (IOException e) {
+			// Nothing to do
+		}
+
+		if (ok == null || !ok) throw new RuntimeException("Error compiling class '" + className + "'\n" + messages);
+
+		// Load class
+		try {
+			return loadClass(className);
+		} catch (ClassNotFoundException e) {
+			throw new RuntimeException(e);
+		}
+	}
+
+	@Override
+	protected Class<?> findClass(String name) throws ClassNotFoundException {
+		byte bytes[] = classBytes.get(name);
+		if (bytes == null) return super.findClass(name);
+		return defineClass(name, bytes, 0, bytes.length);
+	}
+
+}
@@ -0,0 +1,266 @@
+package org.bds.compile;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.bds.lang.FunctionDeclaration;
+import org.bds.lang.InterpolateVars;
+import org.bds.lang.Type;
+import org.bds.run.BdsThread;
+import org.bds.run.RunState;
+import org.bds.scope.ScopeSymbol;
+import org.bds.util.CowArrayList;
+import org.bds.util.CowHashMap;
+
+/**
+ * A function declaration compiled to a Java class (see FunctionCompiler)
+ *
+ * Compiled classes extend this one and implement 'run'. The static
+ * methods are helpers used by compiled code, they mimic what the
+ * corresponding nodes do when interpreted.
+ *
+ * @author pcingola
+ */
+public abstract class CompiledFunction {
+
+	/**
+	 * Thrown to stop running a compiled function (e.g. a fatal error
+	 * in a called function). The thread's runState is left untouched,
+	 * so the interpreter handles it as usual.
+	 */
+	@SuppressWarnings("serial")
+	public static class Abort extends RuntimeException {
+	}
+
+	protected FunctionDeclaration functionDeclaration;
+
+	/**
+	 * Call a function
+	 */
+	public static Object call(BdsThread bdsThread, FunctionDeclaration fdecl, Object values[]) {
+		Object retVal = fdecl.apply(bdsThread, values);
+		if (bdsThread.getRunState() != RunState.OK) throw new Abort(); // Fatal error, exit, thread killed, etc.
+		return retVal;
+	}
+
+	public static Object cast(Type type, Object value) {
+		return type.cast(value);
+	}
+
+	@SuppressWarnings({ "rawtypes", "unchecked" })
+	public static List copyList(Object value) {
+		return CowArrayList.copyOf((List) value);
+	}
+
+	@SuppressWarnings("rawtypes")
+	public static Map copyMap(Object value) {
+		return CowHashMap.copyOf((Map) value);
+	}
+
+	/**
+	 * Evaluate an expression and ignore the result
+	 */
+	public static void eval(Object value) {
+		// Nothing to do
+	}
+
+	/**
+	 * Get a variable's value (variables not declared in the compiled function)
+	 */
+	public static Object getVar(BdsThread bdsThread, String name) {
+		ScopeSymbol ss = bdsThread.getScope().getSymbol(name);
+		if (ss == null) throw new RuntimeException("Cannot find variable '" + name + "'");
+		return ss.getValue();
+	}
+
+	/**
+	 * Increment (or decrement) a variable not declared in the compiled function
+	 * @param pre : If true, return the new value (pre-increment), otherwise the old one
+	 */
+	public static long incVar(BdsThread bdsThread, String name, long delta, boolean pre) {
+		long value = toInt(getVar(bdsThread, name));
+		setVar(bdsThread, name, Type.INT, value + delta);
+		return pre ? value + delta : value;
+	}
+
+	public static String interpolate(Object value) {
+		return InterpolateVars.interpolateValue(value);
+	}
+
+	/**
+	 * Values to iterate in a 'for( x : expr )' loop
+	 */
+	@SuppressWarnings({ "rawtypes", "unchecked" })
+	public static List iterable(Object value) {
+		if (value instanceof List) return CowArrayList.copyOf((List) value);
+
+		ArrayList iterableValues = new ArrayList();
+		if (value instanceof Map) {
+			iterableValues.addAll(((Map) value).values());
+			Collections.sort(iterableValues);
+		} else iterableValues.add(value);
+		return iterableValues;
+	}
+
+	@SuppressWarnings({ "rawtypes", "unchecked" })
+	public static ArrayList list(Object values[]) {
+		ArrayList list = new ArrayList(values.length);
+		Collections.addAll(list, values);
+		return list;
+	}
+
+	@SuppressWarnings("rawtypes")
+	public static Object listGet(Object value, long index, String name) {
+		List list = (List) value;
+		int idx = (int) index;
+		if ((idx < 0) || (idx >= list.size())) throw new RuntimeException("Trying to access element number " + idx + " from list '" + name + "' (list size: " + list.size() + ").");
+		return list.get(idx);
+	}
+
+	@SuppressWarnings({ "rawtypes", "unchecked" })
+	public static Object listSet(Object value, long index, Object listObj, Type baseType) {
+		if (value == null) return value;
+
+		List list = (List) listObj;
+		int idx = (int) index;
+		if (idx >= list.size()) {
+			// Extend the list, fill with default values
+			while (list.size() <= idx)
+				list.add(baseType.defaultValue());
+		}
+		list.set(idx, value);
+		return value;
+	}
+
+	/**
+	 * Create a map (keys and values are interleaved)
+	 */
+	@SuppressWarnings({ "rawtypes", "unchecked" })
+	public static HashMap map(Object keyValues[]) {
+		HashMap map = new HashMap(keyValues.length / 2);
+		for (int i = 0; i < keyValues.length; i += 2)
+			map.put(keyValues[i].toString(), keyValues[i + 1]);
+		return map;
+	}
+
+	@SuppressWarnings("rawtypes")
+	public static Object mapGet(Object value, String key, String name) {
+		Object ret = ((Map) value).get(key);
+		if (ret == null) throw new RuntimeException("Map '" + name + "' does not have key '" + key + "'.");
+		return ret;
+	}
+
+	@SuppressWarnings({ "rawtypes", "unchecked" })
+	public static Object mapSet(Object value, String key, Object mapObj) {
+		if (value == null) return value;
+		((Map) mapObj).put(key, value);
+		return value;
+	}
+
+	/**
+	 * List 'plus' list or item
+	 */
+	@SuppressWarnings({ "rawtypes", "unchecked" })
+	public static ArrayList plusList(Object lval, boolean leftIsList, Object rval, boolean rightIsList) {
+		ArrayList list = new ArrayList();
+		if (leftIsList) list.addAll((Collection) lval);
+		else list.add(lval);
+
+		if (rightIsList) list.addAll((Collection) rval);
+		else list.add(rval);
+		return list;
+	}
+
+	public static void print(Object value) {
+		String msg = (value != null ? value.toString() : "");
+		if (!msg.isEmpty()) System.out.print(msg);
+	}
+
+	public static void println(Object value) {
+		String msg = (value != null ? value.toString() : "");
+		System.out.println(msg);
+	}
+
+	/**
+	 * Set a variable's value (variables not declared in the compiled function)
+	 */
+	public static Object setVar(BdsThread bdsThread, String name, Type type, Object value) {
+		if (value == null) return value;
+		ScopeSymbol ss = bdsThread.getScope().getSymbol(name);
+		if (ss == null) throw new RuntimeException("Cannot find variable '" + name + "'");
+		ss.setValue(type.cast(value));
+		return value;
+	}
+
+	/**
+	 * String 'times' int
+	 */
+	public static String times(Object lval, boolean leftIsNum, Object rval) {
+		String str = (leftIsNum ? rval : lval).toString();
+		long num = (Long) (leftIsNum ? lval : rval);
+
+		StringBuilder sb = new StringBuilder();
+		for (int i = 0; i < num; i++)
+			sb.append(str);
+		return sb.toString();
+	}
+
+	public static boolean toBool(Object value) {
+		return (Boolean) Type.BOOL.cast(value);
+	}
+
+	public static long toInt(Object value) {
+		return (Long) Type.INT.cast(value);
+	}
+
+	public static double toReal(Object value) {
+		return (Double) Type.REAL.cast(value);
+	}
+
+	public static String toStr(Object value) {
+		return value != null ? value.toString() : null;
+	}
+
+	public CompiledFunction(FunctionDeclaration functionDeclaration) {
+		this.functionDeclaration = functionDeclaration;
+	}
+
+	/**
+	 * Apply function to arguments, return function's result
+	 */
+	public Object apply(BdsThread bdsThread, Object values[]) {
+		Object retVal = null;
+		try {
+			retVal = run(bdsThread, values);
+		} catch (Abort a) {
+			retVal = null;
+		}
+
+		bdsThread.setReturnValue(retVal);
+		return retVal;
+	}
+
+	public FunctionDeclaration getFunctionDeclaration() {
+		return functionDeclaration;
+	}
+
+	/**
+	 * Value returned when the function ends without a 'return' statement
+	 */
+	protected Object returnDefault(BdsThread bdsThread) {
+		Object retVal = bdsThread.getReturnValue();
+		Type returnType = functionDeclaration.getReturnType();
+		if (!returnType.canCastObject(retVal)) retVal = returnType.defaultValue();
+		return retVal;
+	}
+
+	/**
+	 * Run function's body
+	 */
+	protected abstract Object run(BdsThread bdsThread, Object args[]);
+
+}
@@ -230,6 +230,15 @@ public abstract class Data {
 	 */
 	public abstract long size();
 
+	/**
+	 * Get all attributes (exists, size, etc.)
+	 */
+	public DataStat stat() {
+		if (!exists()) return DataStat.NOT_EXISTS;
+		Date lastModified = getLastModified();
+		return new DataStat(true, isFile(), isDirectory(), size(), lastModified != null ? lastModified.getTime() : 0);
+	}
+
 	/**
 	 * Upload local version of the file to remote file system
 	 */
@@ -155,6 +155,11 @@ public class DataFile extends Data {
 		return file.length();
 	}
 
+	@Override
+	public DataStat stat() {
+		return DataStat.stat(file);
+	}
+
 	@Override
 	public boolean upload(String filename) {
 		throw new RuntimeException("Error: Cannot upload local file '" + this + "'");
@@ -58,6 +58,7 @@ public class DataS3 extends DataRemote {
 	public boolean delete() {
 		if (!isFile()) return false; // Do not delete bucket
 		getS3().deleteObject(bucketName, key);
+		DataStatCache.get().invalidate(this);
 		return true;
 	}
 
@@ -280,6 +281,36 @@ public class DataS3 extends DataRemote {
 		}
 	}
 
+	/**
+	 * Get attributes of all objects having the same prefix (i.e. 'directory') as this one.
+	 * A single listing request (per page of results) instead of one request per object
+	 * @return A map of object key to attributes
+	 */
+	public Map<String, DataStat> statPrefix() {
+		int idx = (key != null ? key.lastIndexOf('/') : -1);
+		String prefix = (idx >= 0 ? key.substring(0, idx + 1) : "");
+
+		ObjectListing objectListing = getS3().listObjects( //
+				new ListObjectsRequest() //
+						.withBucketName(bucketName) //
+						.withPrefix(prefix) //
+						.withDelimiter("/") // Only objects in this 'directory'
+		);
+
+		Map<String, DataStat> statByKey = new HashMap<>();
+		while (true) {
+			for (S3ObjectSummary objectSummary : objectListing.getObjectSummaries()) {
+				long lastModified = (objectSummary.getLastModified() != null ? objectSummary.getLastModified().getTime() : 0L);
+				statByKey.put(objectSummary.getKey(), new DataStat(true, true, false, objectSummary.getSize(), lastModified));
+			}
+
+			if (!objectListing.isTruncated()) break;
+			objectListing = getS3().listNextBatchOfObjects(objectListing);
+		}
+
+		return statByKey;
+	}
+
 	/**
 	 * Connect and update info
 	 */
@@ -366,6 +397,7 @@ public class DataS3 extends DataRemote {
 
 		// Upload
 		getS3().putObject(new PutObjectRequest(bucketName, key, file));
+		DataStatCache.get().invalidate(this);
 		return true;
 	}
 }
@@ -0,0 +1,78 @@
+package org.bds.data;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Date;
+
+/**
+ * Data object's attributes (existence, type, size and modification time)
+ * obtained in one call (e.g. a single 'stat' or a single remote request)
+ *
+ * @author pcingola
+ */
+public class DataStat {
+
+	public static final DataStat NOT_EXISTS = new DataStat(false, false, false, 0, 0);
+
+	protected boolean exists, isFile, isDirectory;
+	protected long size;
+	protected long lastModified; // Last modification time (milliseconds)
+	protected long time; // Time when these attributes were obtained (milliseconds)
+
+	/**
+	 * Get all attributes of a local file using only one 'stat' call
+	 */
+	public static DataStat stat(File file) {
+		try {
+			BasicFileAttributes attrs = Files.readAttributes(file.toPath(), BasicFileAttributes.class);
+			return new DataStat(true, attrs.isRegularFile(), attrs.isDirectory(), attrs.size(), attrs.lastModifiedTime().toMillis());
+		} catch (IOException e) {
+			return NOT_EXISTS;
+		}
+	}
+
+	public DataStat(boolean exists, boolean isFile, boolean isDirectory, long size, long lastModified) {
+		this.exists = exists;
+		this.isFile = isFile;
+		this.isDirectory = isDirectory;
+		this.size = size;
+		this.lastModified = lastModified;
+		time = System.currentTimeMillis();
+	}
+
+	public boolean exists() {
+		return exists;
+	}
+
+	public Date getLastModified() {
+		return new Date(lastModified);
+	}
+
+	/**
+	 * Have these attributes been obtained more than 'timeout' milliseconds ago?
+	 */
+	public boolean isExpired(long timeout) {
+		return (System.currentTimeMillis() - time) > timeout;
+	}
+
+	public boolean isDirectory() {
+		return isDirectory;
+	}
+
+	public boolean isFile() {
+		return isFile;
+	}
+
+	public long size() {
+		return size;
+	}
+
+	@Override
+	public String toString() {
+		if (!exists) return "not exists";
+		return (isDirectory ? "dir" : (isFile ? "file" : "other")) + ", size: " + size + ", last modified: " + getLastModified();
+	}
+
+}
@@ -0,0 +1,181 @@
+package org.bds.data;
+
+import java.io.File;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Get data objects' attributes (exists, size, etc.), querying many objects at once
+ *
+ * Files in the same directory (or S3 objects with the same prefix) are
+ * queried using one directory listing, instead of one request per file.
+ *
+ * Note: Only remote data is cached, since local files can be modified
+ * at any time (e.g. by a 'sys' command). Cached entries expire after
+ * DataRemote.CACHE_TIMEOUT or when a task writing the data finishes.
+ *
+ * @author pcingola
+ */
+public class DataStatCache {
+
+	private static DataStatCache dataStatCache = new DataStatCache();
+
+	Map<String, DataStat> statByPath; // Cached (remote) data attributes, indexed by absolute path
+
+	/**
+	 * Get singleton
+	 */
+	public static DataStatCache get() {
+		return dataStatCache;
+	}
+
+	public DataStatCache() {
+		statByPath = new HashMap<String, DataStat>();
+	}
+
+	/**
+	 * Add an entry to the cache (only remote data is cached)
+	 */
+	protected synchronized void cache(Data data, DataStat dataStat) {
+		if (data.isRemote()) statByPath.put(data.getAbsolutePath(), dataStat);
+	}
+
+	/**
+	 * Get a (fresh) cached entry
+	 */
+	protected synchronized DataStat cached(Data data) {
+		if (!data.isRemote()) return null;
+		DataStat dataStat = statByPath.get(data.getAbsolutePath());
+		if (dataStat == null || dataStat.isExpired(DataRemote.CACHE_TIMEOUT)) return null;
+		return dataStat;
+	}
+
+	/**
+	 * Remove all cached entries
+	 */
+	public synchronized void clear() {
+		statByPath.clear();
+	}
+
+	/**
+	 * Remove cached entries (e.g. files have been written by a task)
+	 */
+	public synchronized void invalidate(Collection<String> fileNames) {
+		if (statByPath.isEmpty()) return;
+		for (String fileName : fileNames)
+			statByPath.remove(Data.factory(fileName).getAbsolutePath());
+	}
+
+	/**
+	 * Remove cached entry (e.g. data has been deleted or uploaded)
+	 */
+	public synchronized void invalidate(Data data) {
+		statByPath.remove(data.getAbsolutePath());
+	}
+
+	/**
+	 * Directory (or S3 prefix) we can list to obtain this data object's
+	 * attributes, or null if it cannot be queried using a listing
+	 */
+	protected String listingDir(Data data) {
+		if (data instanceof DataFile) return data.getParent();
+		if ((data instanceof DataS3) && data.isFile()) return data.getParent();
+		return null;
+	}
+
+	/**
+	 * Get data object's attributes
+	 */
+	public DataStat stat(Data data) {
+		DataStat dataStat = cached(data);
+		if (dataStat != null) return dataStat;
+
+		dataStat = data.stat();
+		cache(data, dataStat);
+		return dataStat;
+	}
+
+	/**
+	 * Get attributes for all files
+	 * @return A map of file name to attributes
+	 */
+	public Map<String, DataStat> stat(Collection<String> fileNames) {
+		Map<String, DataStat> statByName = new HashMap<String, DataStat>();
+
+		// Group by directory
+		Map<String, List<String>> namesByDir = new HashMap<String, List<String>>();
+		Map<String, Data> dataByName = new HashMap<String, Data>();
+		for (String fileName : fileNames) {
+			if (dataByName.containsKey(fileName)) continue;
+
+			Data data = Data.factory(fileName);
+			dataByName.put(fileName, data);
+
+			DataStat dataStat = cached(data);
+			String dir = listingDir(data);
+			if (dataStat != null) statByName.put(fileName, dataStat);
+			else if (dir == null) statByName.put(fileName, stat(data));
+			else {
+				List<String> names = namesByDir.get(dir);
+				if (names == null) {
+					names = new LinkedList<String>();
+					namesByDir.put(dir, names);
+				}
+				names.add(fileName);
+			}
+		}
+
+		// Query each directory (only worth it if there are several files in the same directory)
+		for (String dir : namesByDir.keySet()) {
+			List<String> names = namesByDir.get(dir);
+			if (names.size() <= 1) {
+				for (String fileName : names)
+					statByName.put(fileName, stat(dataByName.get(fileName)));
+			} else if (dataByName.get(names.get(0)) instanceof DataS3) {
+				statS3(names, dataByName, statByName);
+			} else {
+				statLocal(dir, names, dataByName, statByName);
+			}
+		}
+
+		return statByName;
+	}
+
+	/**
+	 * Local files in the same directory: List the directory once and
+	 * only query files that exist
+	 */
+	protected void statLocal(String dir, List<String> names, Map<String, Data> dataByName, Map<String, DataStat> statByName) {
+		String dirNames[] = new File(dir).list();
+		Set<String> dirFiles = (dirNames != null ? new HashSet<String>(Arrays.asList(dirNames)) : null);
+
+		for (String fileName : names) {
+			Data data = dataByName.get(fileName);
+			if (dirFiles != null && !dirFiles.contains(data.getName())) statByName.put(fileName, DataStat.NOT_EXISTS);
+			else statByName.put(fileName, data.stat());
+		}
+	}
+
+	/**
+	 * S3 objects with the same prefix: A single listing provides all attributes
+	 */
+	protected void statS3(List<String> names, Map<String, Data> dataByName, Map<String, DataStat> statByName) {
+		DataS3 dataS3 = (DataS3) dataByName.get(names.get(0));
+		Map<String, DataStat> statByKey = dataS3.statPrefix();
+
+		for (String fileName : names) {
+			DataS3 data = (DataS3) dataByName.get(fileName);
+			DataStat dataStat = statByKey.get(data.getKey());
+			if (dataStat == null) dataStat = DataStat.NOT_EXISTS;
+			cache(data, dataStat);
+			statByName.put(fileName, dataStat);
+		}
+	}
+
+}
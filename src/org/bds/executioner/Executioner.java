@@ -1,15 +1,33 @@
 package org.bds.executioner;
 
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
 import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
 
 import org.bds.Config;
 import org.bds.cluster.Cluster;
+import org.bds.cluster.HostSelection;
 import org.bds.cluster.host.Host;
 import org.bds.cluster.host.HostLocal;
+import org.bds.data.DataStat;
+import org.bds.data.DataStatCache;
 import org.bds.osCmd.Cmd;
 import org.bds.osCmd.Exec;
 import org.bds.task.DependencyState;
@@ -39,12 +57,26 @@ public abstract class Executioner extends Thread implements NotifyTaskState, Pid
 	protected boolean log;
 	protected boolean running, valid;
 	protected boolean removeTaskCannotExecute; // Should a task be finished if there are no resources to execute it? In most cases yes, but some clusters host are dynamic (they appear and disappear), so even if there are no resources now there might be resources in the future.
+	protected boolean eventDriven; // Event driven scheduler: Wait for events instead of polling and only dispatch tasks from 'tasksReady'
+	protected HostSelection hostSelection; // How to select a host for a task
+	protected boolean checkDependencies; // Event driven scheduler: Check all tasks in 'tasksWaiting' having no unfinished dependencies
 	protected int hostIdx = 0;
+	protected boolean tasksToRunSorted; // Is 'tasksToRun' sorted by priority?
+	protected long taskOrderNext; // Next value in 'taskOrder'
 	protected List<Task> tasksToRun; // Tasks queued for execution
+	protected Map<Task, Long> taskOrder; // Order in which tasks were queued (tasks having the same priority run in this order)
+	protected Comparator<Task> taskPriorityComparator; // Sort tasks by priority: User defined priority first, then critical path
+	protected Queue<Task> tasksSubmitted; // Tasks added, not yet moved to 'tasksToRun' (see 'tasksSubmittedUpdate')
+	protected Set<Task> tasksWaiting; // Event driven scheduler: Tasks queued, waiting for dependencies
+	protected Set<Task> tasksReady; // Event driven scheduler: Tasks queued, all dependencies satisfied
+	protected Queue<Task> tasksDependencyChanged; // Event driven scheduler: Tasks whose dependency state changed (ready to run or dependency error)
 	protected Map<Task, Host> tasksSelected; // Tasks that has been selected and it will be immediately start execution in host
 	protected Map<String, Task> tasksRunning; // Tasks running
 	protected Map<String, Task> tasksDone; // Tasks that fin
-	protected List<Tuple<Task, TaskState>> taskUpdateStates; // Tasks to be updated
+	protected Queue<Tuple<Task, TaskState>> taskUpdateStates; // Tasks to be updated (state transitions notified by other threads)
+	protected Queue<Tuple<Task, TaskState>> tasksCheckOutputs; // Tasks finished, waiting for output files to be checked (see 'checkOutputFiles')
+	protected ExecutorService outputChecker; // Check finished tasks' output files, off the executioner's thread (one thread, exits when idle)
+	protected List<Tuple<Task, TaskState>> taskUpdateStatesPending; // Tasks to be updated: State transitions that could not be applied yet
 	private Map<String, Cmd> cmdById;
 	protected Tail tail;
 	protected Config config;
@@ -54,22 +86,47 @@ public abstract class Executioner extends Thread implements NotifyTaskState, Pid
 	protected Timer timer; // Task timer (when was the task started)
 	protected CheckTasksRunning checkTasksRunning;
 	protected LinkedList<Task> finishTask;
+	private final Object eventLock = new Object(); // Event driven scheduler: Used to signal events to the executioner's thread
+	private boolean event; // Event driven scheduler: An event has been signaled
 
 	public Executioner(Config config) {
 		super();
 		valid = true;
 		this.config = config;
 		tasksToRun = new ArrayList<Task>();
-		taskUpdateStates = new ArrayList<Tuple<Task, TaskState>>();
+		tasksSubmitted = new ConcurrentLinkedQueue<Task>();
+		taskUpdateStates = new ConcurrentLinkedQueue<Tuple<Task, TaskState>>();
+		taskUpdateStatesPending = new ArrayList<Tuple<Task, TaskState>>();
+		tasksCheckOutputs = new ConcurrentLinkedQueue<Tuple<Task, TaskState>>();
+		outputChecker = new ThreadPoolExecutor(0, 1, 1, TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>(), new ThreadFactory() {
+			@Override
+			public Thread newThread(Runnable r) {
+				Thread thread = new Thread(r, "OutputChecker");
+				thread.setDaemon(true);
+				return thread;
+			}
+		});
 		tail = config.getTail();
 		taskLogger = config.getTaskLogger();
 		tasksSelected = new HashMap<Task, Host>();
-		tasksRunning = new HashMap<String, Task>();
-		tasksDone = new HashMap<String, Task>();
-		cmdById = new HashMap<String, Cmd>();
+		tasksRunning = new ConcurrentHashMap<String, Task>();
+		tasksDone = new ConcurrentHashMap<String, Task>();
+		cmdById = new ConcurrentHashMap<String, Cmd>();
 		debug = config.isDebug();
 		verbose = config.isVerbose();
 		removeTaskCannotExecute = true;
+		eventDriven = config.isSchedulerEventDriven();
+		hostSelection = config.getHostSelection();
+		tasksWaiting = new LinkedHashSet<Task>();
+		taskOrder = new HashMap<Task, Long>();
+		taskPriorityComparator = new Comparator<Task>() {
+			@Override
+			public int compare(Task t1, Task t2) {
+				return compareTaskPriority(t1, t2);
+			}
+		};
+		tasksReady = new TreeSet<Task>(taskPriorityComparator);
+		tasksDependencyChanged = new ConcurrentLinkedQueue<Task>();
 
 		// Create a cluster having only one host (this computer)
 		cluster = new Cluster();
@@ -78,17 +135,67 @@ public abstract class Executioner extends Thread implements NotifyTaskState, Pid
 
 	/**
 	 * Queue an Exec and return a the id
+	 * Note: This is invoked from many threads, so it doesn't lock the executioner.
+	 *       Tasks are moved to 'tasksToRun' by the executioner's thread.
 	 */
-	public synchronized void add(Task task) {
+	public void add(Task task) {
 		if (verbose) log("Queuing task: " + task.getId());
 		task.state(TaskState.SCHEDULED);
-		tasksToRun.add(task);
+		tasksSubmitted.add(task);
+		signal();
 	}
 
-	protected synchronized void addCmd(Task task, Cmd cmd) {
+	protected void addCmd(Task task, Cmd cmd) {
 		cmdById.put(task.getId(), cmd);
 	}
 
+	/**
+	 * Check output files for all finished tasks in 'tasksCheckOutputs', then
+	 * queue their state updates. Output files from all tasks are queried in
+	 * one batch (see DataStatCache), the result is stored in each task.
+	 * Note: This is invoked by 'outputChecker' thread
+	 */
+	protected void checkOutputFiles() {
+		List<Tuple<Task, TaskState>> finished = new ArrayList<Tuple<Task, TaskState>>();
+		for (Tuple<Task, TaskState> taskAndState = tasksCheckOutputs.poll(); taskAndState != null; taskAndState = tasksCheckOutputs.poll())
+			finished.add(taskAndState);
+		if (finished.isEmpty()) return;
+
+		try {
+			List<String> outputs = new ArrayList<String>();
+			for (Tuple<Task, TaskState> taskAndState : finished)
+				outputs.addAll(taskAndState.first.getOutputs());
+
+			// Output files have been (re)written: Forget cached attributes
+			DataStatCache.get().invalidate(outputs);
+			Map<String, DataStat> statByName = DataStatCache.get().stat(outputs);
+
+			for (Tuple<Task, TaskState> taskAndState : finished)
+				taskAndState.first.checkOutputFiles(statByName);
+		} catch (Throwable t) {
+			// Output files will be checked when the task changes state
+			log("Error checking output files: " + t.getMessage());
+			if (debug) t.printStackTrace();
+		} finally {
+			taskUpdateStates.addAll(finished);
+			signal();
+		}
+	}
+
+	/**
+	 * Compare tasks priority: Higher user defined priority first, then
+	 * longest critical path first, then the order tasks were queued
+	 */
+	protected int compareTaskPriority(Task t1, Task t2) {
+		if (t1.getPriority() != t2.getPriority()) return t1.getPriority() > t2.getPriority() ? -1 : 1;
+
+		long cp1 = t1.getCriticalPath(), cp2 = t2.getCriticalPath();
+		if (cp1 != cp2) return cp1 > cp2 ? -1 : 1;
+
+		Long o1 = taskOrder.get(t1), o2 = taskOrder.get(t2);
+		return Long.compare(o1 != null ? o1 : Long.MAX_VALUE, o2 != null ? o2 : Long.MAX_VALUE);
+	}
+
 	/**
 	 * Count the number of failed tasks
 	 */
@@ -109,19 +216,33 @@ public abstract class Executioner extends Thread implements NotifyTaskState, Pid
 		throw new RuntimeException("Unimplemented method for class: " + getClass().getCanonicalName());
 	}
 
+	/**
+	 * Dependency state changed for these tasks (event driven scheduler)
+	 * Note: Tasks that are not queued in this executioner are ignored
+	 */
+	public void dependencyChanged(Collection<Task> tasks) {
+		tasksDependencyChanged.addAll(tasks);
+		signal();
+	}
+
 	/**
 	 * Find a task by ID
 	 */
-	public synchronized Task findTask(String id) {
+	public Task findTask(String id) {
 		Task t = tasksRunning.get(id);
 		if (t != null) return t;
 
 		t = tasksDone.get(id);
 		if (t != null) return t;
 
-		for (Task tt : tasksToRun)
+		for (Task tt : tasksSubmitted)
 			if (tt.getId().equals(id)) return tt;
 
+		synchronized (this) {
+			for (Task tt : tasksToRun)
+				if (tt.getId().equals(id)) return tt;
+		}
+
 		return null;
 	}
 
@@ -157,7 +278,7 @@ public abstract class Executioner extends Thread implements NotifyTaskState, Pid
 		return cluster;
 	}
 
-	protected synchronized Cmd getCmd(Task task) {
+	protected Cmd getCmd(Task task) {
 		return cmdById.get(task.getId());
 	}
 
@@ -179,7 +300,7 @@ public abstract class Executioner extends Thread implements NotifyTaskState, Pid
 	/**
 	 * Any task running?
 	 */
-	public synchronized boolean hasTaskRunning() {
+	public boolean hasTaskRunning() {
 		return tasksRunning.size() > 0;
 	}
 
@@ -187,7 +308,7 @@ public abstract class Executioner extends Thread implements NotifyTaskState, Pid
 	 * Are there any tasks either running or to be run?
 	 */
 	public synchronized boolean hasTaskToRun() {
-		return tasksToRun.size() - tasksSelected.size() > 0;
+		return !tasksSubmitted.isEmpty() || (tasksToRun.size() - tasksSelected.size() > 0);
 	}
 
 	/**
@@ -234,6 +355,7 @@ public abstract class Executioner extends Thread implements NotifyTaskState, Pid
 
 		// Kill all 'tasksToRun'.
 		// Note: We need to create a new list to avoid concurrent modification exceptions
+		tasksSubmittedUpdate();
 		ArrayList<Task> tokill = new ArrayList<Task>();
 		tokill.addAll(tasksToRun);
 		tokill.addAll(tasksRunning.values());
@@ -241,6 +363,7 @@ public abstract class Executioner extends Thread implements NotifyTaskState, Pid
 			kill(t);
 
 		running = valid = false;
+		signal();
 	}
 
 	/**
@@ -273,6 +396,25 @@ public abstract class Executioner extends Thread implements NotifyTaskState, Pid
 		Timer.showStdErr(getClass().getSimpleName() + " '" + getExecutionerId() + "': " + msg);
 	}
 
+	/**
+	 * Notify all executioners that dependency state changed for these tasks
+	 * (tasks may depend on tasks running on a different executioner)
+	 */
+	protected void notifyDependencyChanged(Collection<Task> tasks) {
+		if (tasks.isEmpty()) return;
+
+		boolean notified = false;
+		Executioners executioners = Executioners.getInstance();
+		if (executioners != null) {
+			for (Executioner ex : executioners.getAll()) {
+				ex.dependencyChanged(tasks);
+				notified |= (ex == this);
+			}
+		}
+
+		if (!notified) dependencyChanged(tasks);
+	}
+
 	/**
 	 * Return the appropriate 'kill' command to be used by the OS
 	 * E.g.: For a local task it would be 'kill' whereas for a cluster task it would be 'qdel'
@@ -301,12 +443,13 @@ public abstract class Executioner extends Thread implements NotifyTaskState, Pid
 	protected synchronized void remove(Task task, Host host) {
 		tasksSelected.remove(task);
 		host.remove(task);
+		signal(); // Resources released
 	}
 
 	/**
 	 * Remove a command (task)
 	 */
-	protected synchronized void removeCmd(Task task) {
+	protected void removeCmd(Task task) {
 		cmdById.remove(task.getId());
 	}
 
@@ -316,9 +459,6 @@ public abstract class Executioner extends Thread implements NotifyTaskState, Pid
 	protected void reportsChecksUpdates() {
 		taskUpdateStates();
 
-		// Check if tasks finished running
-		if (monitorTask != null) monitorTask.check();
-
 		// Report tasks
 		reportTasks();
 
@@ -368,7 +508,8 @@ public abstract class Executioner extends Thread implements NotifyTaskState, Pid
 					if (debug) log("Queue: No more tasks to run.");
 				}
 
-				sleepLong();
+				if (eventDriven) waitEvent(SLEEP_TIME_LONG);
+				else sleepLong();
 			}
 
 		} catch (Throwable t) {
@@ -403,6 +544,8 @@ public abstract class Executioner extends Thread implements NotifyTaskState, Pid
 			if (taskHostPair != null) {
 				// Get next task and run it
 				runTask(taskHostPair.first, taskHostPair.second);
+			} else if (eventDriven) {
+				waitEvent(SLEEP_TIME_LONG);
 			} else {
 				sleepMid();
 			}
@@ -477,11 +620,20 @@ public abstract class Executioner extends Thread implements NotifyTaskState, Pid
 	 *       many clusters the deciding where to run is trivial.
 	 */
 	protected synchronized Tuple<Task, Host> selectTask() {
+		tasksSubmittedUpdate();
+
 		// Nothing to run?
 		if (tasksToRun.isEmpty()) return null;
+		if (eventDriven) return selectTaskReady();
 
 		finishTask = null;
 
+		// Try higher priority tasks first
+		if (!tasksToRunSorted) {
+			Collections.sort(tasksToRun, taskPriorityComparator);
+			tasksToRunSorted = true;
+		}
+
 		// Try to find a task matching a host
 		for (Task task : tasksToRun) {
 			// Already selected? Skip
@@ -516,13 +668,7 @@ public abstract class Executioner extends Thread implements NotifyTaskState, Pid
 		}
 
 		// These tasks cannot be executed due to "lack of resources"
-		if (finishTask != null) {
-			for (Task task : finishTask) {
-				task.setExitValue(Task.EXITCODE_ERROR);
-				taskFinished(task, TaskState.START_FAILED);
-			}
-			finishTask = null;
-		}
+		selectTaskFinish();
 
 		// Cannot run any task in any host
 		return null;
@@ -532,41 +678,28 @@ public abstract class Executioner extends Thread implements NotifyTaskState, Pid
 	 * Select a suitable host for this task
 	 */
 	protected synchronized Tuple<Task, Host> selectTask(Task task) {
-		boolean canBeExecuted = false;
-
 		//---
-		// Select the first host in the cluster that satisfies requirements
+		// Select a host in the cluster that satisfies requirements
 		//---
-		for (Host host : cluster) {
-			// Host is not alive?
-			if (!host.isAlive()) {
-				canBeExecuted = true; // May be this host can actually execute this task, we don't know.
-				continue;
-			}
+		Host host = cluster.selectHost(task.getResources(), hostSelection);
+		if (host != null) {
+			// OK, execute this task in this host
+			if (debug) log("Selected task:" //
+					+ "\n\ttask ID        : " + task.getId() //
+					+ "\n\ttask hint      : " + task.getProgramHint()//
+					+ "\n\ttask resources : " + task.getResources() //
+					+ "\n\thost           : " + host //
+					+ "\n\thost resources : " + host.getResourcesAvaialble() //
+			);
 
-			// Do we have enough resources to run this task in this host?
-			if (host.getResourcesAvaialble().hasResources(task.getResources())) {
-				// OK, execute this task in this host
-				if (debug) log("Selected task:" //
-						+ "\n\ttask ID        : " + task.getId() //
-						+ "\n\ttask hint      : " + task.getProgramHint()//
-						+ "\n\ttask resources : " + task.getResources() //
-						+ "\n\thost           : " + host //
-						+ "\n\thost resources : " + host.getResourcesAvaialble() //
-				);
-
-				selectTask(task, host); // Add task to host (make sure resources are reserved)
-				return new Tuple<Task, Host>(task, host);
-			} else if (!canBeExecuted) {
-				// Can any host actually run this task?
-				canBeExecuted = host.getResources().hasResources(task.getResources());
-			}
+			selectTask(task, host); // Add task to host (make sure resources are reserved)
+			return new Tuple<Task, Host>(task, host);
 		}
 
 		//---
 		// There is no host that can execute this task?
 		//---
-		if (removeTaskCannotExecute && !canBeExecuted) {
+		if (removeTaskCannotExecute && !cluster.canRun(task.getResources())) {
 			if (debug) Gpr.debug("Cluster info: " + cluster.info() + "\n\tCluster: " + cluster);
 			task.setErrorMsg("Not enough resources to execute task: " + task.getResources());
 
@@ -587,6 +720,51 @@ public abstract class Executioner extends Thread implements NotifyTaskState, Pid
 		host.add(task);
 	}
 
+	/**
+	 * Mark tasks in 'finishTask' as failed to start (e.g. due to
+	 * dependency errors or "lack of resources")
+	 */
+	protected void selectTaskFinish() {
+		if (finishTask == null) return;
+
+		for (Task task : finishTask) {
+			task.setExitValue(Task.EXITCODE_ERROR);
+			taskFinished(task, TaskState.START_FAILED);
+		}
+		finishTask = null;
+	}
+
+	/**
+	 * Select next task to run and assign host (event driven scheduler).
+	 * Only tasks in 'tasksReady' are considered, these tasks have all
+	 * their dependencies satisfied, so we don't need to check them again.
+	 */
+	protected synchronized Tuple<Task, Host> selectTaskReady() {
+		finishTask = null;
+
+		// Update 'ready' queue
+		updateTasksReady();
+
+		Tuple<Task, Host> taskHost = null;
+		for (Iterator<Task> it = tasksReady.iterator(); it.hasNext();) {
+			Task task = it.next();
+
+			// Select a suitable host in the cluster that satisfies task resources
+			if (task.canRun()) taskHost = selectTask(task);
+			else it.remove(); // Task no longer runnable (e.g. killed)
+
+			if (taskHost != null) {
+				it.remove(); // Task selected, no longer 'ready'
+				break;
+			}
+		}
+
+		// These tasks cannot be executed due to dependency errors or "lack of resources"
+		selectTaskFinish();
+
+		return taskHost;
+	}
+
 	public void setDebug(boolean debug) {
 		this.debug = debug;
 	}
@@ -599,6 +777,18 @@ public abstract class Executioner extends Thread implements NotifyTaskState, Pid
 		this.verbose = verbose;
 	}
 
+	/**
+	 * Signal an event to the executioner's thread (event driven scheduler)
+	 */
+	protected void signal() {
+		if (!eventDriven) return;
+
+		synchronized (eventLock) {
+			event = true;
+			eventLock.notifyAll();
+		}
+	}
+
 	void sleepLong() {
 		try {
 			sleep(SLEEP_TIME_LONG);
@@ -627,7 +817,7 @@ public abstract class Executioner extends Thread implements NotifyTaskState, Pid
 	 * Task finished executing
 	 */
 	@Override
-	public synchronized void taskFinished(Task task, TaskState taskState) {
+	public void taskFinished(Task task, TaskState taskState) {
 		if (taskState == null) {
 			// Set task state. Infer form exit code if no state is available.
 			// Note: This is the last thing we do in order for wait() methods to
@@ -638,21 +828,35 @@ public abstract class Executioner extends Thread implements NotifyTaskState, Pid
 			taskState = TaskState.exitCode2taskState(task.getExitValue());
 		}
 
-		taskUpdateStates.add(new Tuple<Task, TaskState>(task, taskState));
+		Tuple<Task, TaskState> taskAndState = new Tuple<Task, TaskState>(task, taskState);
+		if (taskState.isFinished() && !task.getOutputs().isEmpty()) {
+			// Check output files before updating state (off the executioner's thread)
+			tasksCheckOutputs.add(taskAndState);
+			outputChecker.execute(new Runnable() {
+				@Override
+				public void run() {
+					checkOutputFiles();
+				}
+			});
+		} else {
+			taskUpdateStates.add(taskAndState);
+			signal();
+		}
 	}
 
 	/**
 	 * Move a task from 'tasksToRun' to 'tasksRunning'
 	 */
 	@Override
-	public synchronized void taskRunning(Task task) {
+	public void taskRunning(Task task) {
 		taskUpdateStates.add(new Tuple<Task, TaskState>(task, TaskState.RUNNING));
-
+		signal();
 	}
 
 	@Override
-	public synchronized void taskStarted(Task task) {
+	public void taskStarted(Task task) {
 		taskUpdateStates.add(new Tuple<Task, TaskState>(task, TaskState.STARTED));
+		signal();
 	}
 
 	protected synchronized boolean taskUpdateFinished(Task task, TaskState taskState) {
@@ -673,35 +877,45 @@ public abstract class Executioner extends Thread implements NotifyTaskState, Pid
 		followStop(task); // Remove from 'tail' thread
 
 		// Move from 'running' (or 'toRun') to 'done'
-		tasksToRun.remove(task);
-		tasksSelected.remove(task);
+		tasksToRunRemove(task);
 		tasksRunning.remove(task.getId());
 		tasksDone.put(task.getId(), task);
 
 		// Schedule removal of TMP files (if not logging)
 		if (!log) task.deleteOnExit();
 
+		// Output files have been (re)written: Forget cached attributes
+		DataStatCache.get().invalidate(task.getOutputs());
+
 		// Set task state
-		task.state(taskState);
-
-		// Task finished in error condition?
-		if (task.isFailed()) {
-			// Can we re-try?
-			if (!task.isCanFail() && task.canRetry()) {
-				// Retry task
-				log("Task failed, retrying ( " + task.getMaxFailCount() + " remaining retries ): task ID '" + task.getId() + "'" + (verbose ? "\n" : ", ") + task.toString(verbose));
-
-				// Move task form 'taskDone' back to 'tasksToRun' queue
-				task.reset(); // Prepare to re-run task
-				tasksDone.remove(task.getId());
-				tasksToRun.add(task);
-				task.state(TaskState.SCHEDULED);
-			} else {
-				// May be we can look for additional information to asses the error
-				postMortemInfo(task);
+		// Note: We hold the task's lock so that threads waiting for the
+		//       task (see Task.waitDone) never see a failed task that
+		//       is about to be re-tried
+		synchronized (task) {
+			task.state(taskState);
+
+			// Task finished in error condition?
+			if (task.isFailed()) {
+				// Can we re-try?
+				if (!task.isCanFail() && task.canRetry()) {
+					// Retry task
+					log("Task failed, retrying ( " + task.getMaxFailCount() + " remaining retries ): task ID '" + task.getId() + "'" + (verbose ? "\n" : ", ") + task.toString(verbose));
+
+					// Move task form 'taskDone' back to 'tasksToRun' queue
+					task.reset(); // Prepare to re-run task
+					tasksDone.remove(task.getId());
+					task.state(TaskState.SCHEDULED);
+					tasksToRunAdd(task);
+				} else {
+					// May be we can look for additional information to asses the error
+					postMortemInfo(task);
+				}
 			}
 		}
 
+		// Event driven scheduler: Update tasks depending on this one (unless it will be re-tried)
+		if (eventDriven && task.isDone()) notifyDependencyChanged(task.updateDependants());
+
 		return true;
 	}
 
@@ -732,8 +946,7 @@ public abstract class Executioner extends Thread implements NotifyTaskState, Pid
 		if (!task.canChangeState(TaskState.STARTED)) return false;
 
 		// Move from 'tasksToRun' to 'tasksRunning'
-		tasksToRun.remove(task);
-		tasksSelected.remove(task);
+		tasksToRunRemove(task);
 		tasksRunning.put(task.getId(), task);
 
 		// Change state
@@ -741,17 +954,61 @@ public abstract class Executioner extends Thread implements NotifyTaskState, Pid
 		return true;
 	}
 
+	/**
+	 * Move tasks added by other threads to 'tasksToRun' queue
+	 */
+	protected synchronized void tasksSubmittedUpdate() {
+		for (Task task = tasksSubmitted.poll(); task != null; task = tasksSubmitted.poll())
+			tasksToRunAdd(task);
+	}
+
+	/**
+	 * Add a task to 'tasksToRun' queue
+	 */
+	protected void tasksToRunAdd(Task task) {
+		taskOrder.put(task, taskOrderNext++);
+		tasksToRun.add(task);
+		tasksToRunSorted = false;
+		updateCriticalPath(task);
+
+		if (eventDriven) {
+			tasksWaiting.add(task);
+			if (task.initDependencyCount() <= 0) tasksDependencyChanged.add(task); // No unfinished dependencies or dependency error
+		}
+	}
+
+	/**
+	 * Remove a task from 'tasksToRun' queue (and all related collections)
+	 */
+	protected void tasksToRunRemove(Task task) {
+		tasksToRun.remove(task);
+		tasksSelected.remove(task);
+
+		if (eventDriven) {
+			tasksWaiting.remove(task);
+			tasksReady.remove(task);
+		}
+
+		taskOrder.remove(task);
+	}
+
 	/**
 	 * Update task states
 	 */
 	protected synchronized void taskUpdateStates() {
-		if (taskUpdateStates.isEmpty()) return;
+		tasksSubmittedUpdate(); // Make sure all tasks are in 'tasksToRun' before updating states
+		if (taskUpdateStates.isEmpty() && taskUpdateStatesPending.isEmpty()) return;
+
+		// Updates that could not be applied last time go first (keep notification order)
+		ArrayList<Tuple<Task, TaskState>> taskUpdateStatesCurrent = new ArrayList<Tuple<Task, TaskState>>(taskUpdateStatesPending);
+		for (Tuple<Task, TaskState> taskAndState = taskUpdateStates.poll(); taskAndState != null; taskAndState = taskUpdateStates.poll())
+			taskUpdateStatesCurrent.add(taskAndState);
 
 		// Get a list ready for next iteration
 		ArrayList<Tuple<Task, TaskState>> taskUpdateStatesNew = new ArrayList<Tuple<Task, TaskState>>();
 
 		// Update each task sequentially, to avoid race conditions
-		for (Tuple<Task, TaskState> taskAndState : taskUpdateStates) {
+		for (Tuple<Task, TaskState> taskAndState : taskUpdateStatesCurrent) {
 			Task task = taskAndState.first;
 			TaskState state = taskAndState.second;
 
@@ -766,7 +1023,7 @@ public abstract class Executioner extends Thread implements NotifyTaskState, Pid
 		}
 
 		// Keep unchanged states for next time
-		taskUpdateStates = taskUpdateStatesNew;
+		taskUpdateStatesPending = taskUpdateStatesNew;
 	}
 
 	@Override
@@ -820,6 +1077,98 @@ public abstract class Executioner extends Thread implements NotifyTaskState, Pid
 		return tt.toString();
 	}
 
+	/**
+	 * A task was added: Update critical path of all (queued) tasks it depends on.
+	 * Note: Only tasks queued in this executioner are updated, since tasks in
+	 *       'tasksReady' must be removed before their priority changes
+	 */
+	protected void updateCriticalPath(Task task) {
+		LinkedList<Task> toVisit = new LinkedList<Task>();
+		toVisit.add(task);
+
+		while (!toVisit.isEmpty()) {
+			Task t = toVisit.removeFirst();
+			long criticalPath = t.getCriticalPath();
+
+			for (Task dep : t.getDependencies()) {
+				long cp = dep.getCost() + criticalPath;
+				if (!taskOrder.containsKey(dep) || cp <= dep.getCriticalPath()) continue; // Not queued here or critical path did not change
+
+				boolean ready = eventDriven && tasksReady.remove(dep);
+				dep.setCriticalPath(cp);
+				if (ready) tasksReady.add(dep);
+
+				tasksToRunSorted = false;
+				toVisit.add(dep);
+			}
+		}
+	}
+
+	/**
+	 * Check dependency state for a task in 'tasksWaiting' (event driven scheduler).
+	 * If all dependencies are satisfied, move it to 'tasksReady'. If there
+	 * is a dependency error, mark the task to be finished.
+	 */
+	protected void updateTaskReady(Task task) {
+		DependencyState dep = task.getDependencyCount() == Task.DEPENDENCY_COUNT_ERROR ? DependencyState.ERROR : task.dependencyState();
+
+		switch (dep) {
+		case OK:
+			tasksWaiting.remove(task);
+			tasksReady.add(task);
+			break;
+
+		case WAIT:
+			break;
+
+		case ERROR:
+			// Dependency error => Finish this task
+			tasksWaiting.remove(task);
+			if (finishTask == null) finishTask = new LinkedList<Task>();
+			finishTask.add(task);
+			break;
+
+		default:
+			throw new RuntimeException("Unimplemented dependency state '" + dep + "'");
+		}
+	}
+
+	/**
+	 * Update 'tasksReady' queue (event driven scheduler).
+	 * Only tasks whose dependency counters changed are checked
+	 */
+	protected synchronized void updateTasksReady() {
+		for (Task task = tasksDependencyChanged.poll(); task != null; task = tasksDependencyChanged.poll())
+			if (tasksWaiting.contains(task)) updateTaskReady(task);
+
+		// Check waiting tasks having no unfinished dependencies. This should
+		// not be necessary, but we do it every now and then just in case
+		// (e.g. a dependency was re-tried while the task was being registered)
+		if (checkDependencies) {
+			checkDependencies = false;
+			for (Task task : new ArrayList<Task>(tasksWaiting))
+				if (task.getDependencyCount() <= 0) updateTaskReady(task);
+		}
+	}
+
+	/**
+	 * Wait until an event is signaled or 'timeout' milliseconds elapsed (event driven scheduler)
+	 *
+	 * Note: On timeout we also re-check dependencies (see 'updateTasksReady')
+	 */
+	void waitEvent(long timeout) {
+		synchronized (eventLock) {
+			try {
+				if (!event) eventLock.wait(timeout);
+			} catch (InterruptedException e) {
+				throw new RuntimeException(e);
+			}
+
+			if (!event) checkDependencies = true; // Timed out
+			event = false;
+		}
+	}
+
 	/**
 	 * Wait for a task to start
 	 */
@@ -1,8 +1,23 @@
 package org.bds.executioner;
 
 import java.io.File;
-import java.util.ArrayList;
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.Arrays;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
 
 import org.bds.task.Task;
 import org.bds.task.TaskState;
@@ -12,22 +27,49 @@ import org.bds.util.Timer;
 /**
  * Monitor a task: Check if a task finished by checking if 'exitFile' exists
  *
+ * Exit files are detected as soon as they are created, using file system
+ * notifications (WatchService) on the directories containing them.
+ * Since notifications are not available on many file systems (e.g. an exit
+ * file written by a cluster node on NFS), directories are also listed
+ * periodically. Each directory is listed only once per check, and the
+ * time between checks increases (up to SLEEP_TIME) while no task finishes.
+ *
  * @author pcingola
  */
-public class MonitorTask {
+public class MonitorTask extends Thread {
 
 	// Cluster scheduling is usually quite slow, so we don't need a short monitoring interval.
 	// Reducing this sleep time adds processing and probably has not many benefits.
 	public static final int SLEEP_TIME = 500;
+	public static final int SLEEP_TIME_MIN = 50; // Check often right after a task finished (other tasks are likely to finish soon)
 
 	boolean debug = false;
 	boolean verbose;
-	HashMap<Task, Executioner> execByTask;
+	boolean running;
+	Map<Task, Executioner> execByTask;
+	Map<Path, Task> taskByExitFile; // Tasks indexed by (absolute) exit file path
+	WatchService watchService; // Null if file system notifications are not available
+	Map<Path, WatchKey> watchKeyByDir; // Directories being watched
+	Map<Path, Integer> countByDir; // Number of tasks monitored in each directory
+	int sleepTime; // Time between directory listings
 	Timer latestUpdate;
 
 	public MonitorTask() {
-		execByTask = new HashMap<Task, Executioner>();
+		execByTask = new ConcurrentHashMap<Task, Executioner>();
+		taskByExitFile = new ConcurrentHashMap<Path, Task>();
+		watchKeyByDir = new HashMap<Path, WatchKey>();
+		countByDir = new HashMap<Path, Integer>();
+		sleepTime = SLEEP_TIME_MIN;
 		latestUpdate = new Timer();
+		running = true;
+
+		try {
+			watchService = FileSystems.getDefault().newWatchService();
+		} catch (IOException | UnsupportedOperationException e) {
+			watchService = null; // Use polling
+		}
+
+		setDaemon(true);
 	}
 
 	/**
@@ -36,29 +78,84 @@ public class MonitorTask {
 	 * @param executioner : Executioner executing this task (we must be able to kill the task)
 	 * @param task : Task (timeout is inferred from task.resources)
 	 */
-	public synchronized void add(Executioner executioner, Task task) {
-		if (debug) Timer.showStdErr("MonitorTask: Adding task " + task.getId());
+	public void add(Executioner executioner, Task task) {
 		if (task == null) return;
-		execByTask.put(task, executioner);
+		if (debug) Timer.showStdErr("MonitorTask: Adding task " + task.getId());
+		if (execByTask.put(task, executioner) != null) return; // Already monitored
+
+		Path exitFile = exitFile(task);
+		taskByExitFile.put(exitFile, task);
+		watch(exitFile.getParent());
 	}
 
 	/**
-	 * Run once every SLEEP_TIME
+	 * Exit file's absolute path
 	 */
-	public synchronized void check() {
-		// Is it time to update?
-		if (latestUpdate.elapsed() < SLEEP_TIME) return;
+	Path exitFile(Task task) {
+		return new File(task.getExitCodeFile()).getAbsoluteFile().toPath();
+	}
 
-		updateFinished();
-		latestUpdate.start();
+	/**
+	 * Check that 'exitFile' exists and it is not zero length
+	 */
+	boolean isExitFileOk(Task task) {
+		// From 'Fedor Gusev':
+		//     ...here NFS is somewhat slow, and the file is still empty
+		//     and it report exit code as 1. But if I check the file manually, it
+		//     has 0 in it. I've introduced a check for non-zero length of
+		//     the file and the problem is gone.
+		File exitFile = new File(task.getExitCodeFile());
+		return exitFile.length() > 0;
+	}
+
+	/**
+	 * Stop monitoring
+	 */
+	public void kill() {
+		running = false;
+		try {
+			if (watchService != null) watchService.close();
+		} catch (IOException e) {
+			// Nothing to do
+		}
 	}
 
 	/**
 	 * Remove task (do not monitor)
 	 */
-	public synchronized void remove(Task task) {
+	public void remove(Task task) {
 		if (debug) Timer.showStdErr("MonitorTask: Removing task " + task.getId());
-		execByTask.remove(task);
+		if (execByTask.remove(task) == null) return; // Not monitored
+		Path exitFile = exitFile(task);
+		taskByExitFile.remove(exitFile);
+		unwatch(exitFile.getParent());
+	}
+
+	@Override
+	public void run() {
+		while (running) {
+			try {
+				// Wait for notifications (or sleep)
+				WatchKey watchKey = null;
+				if (watchService != null) watchKey = watchService.poll(sleepTime, TimeUnit.MILLISECONDS);
+				else sleep(sleepTime);
+
+				if (watchKey != null) updateFinished(watchKey);
+
+				// List directories every now and then (notifications may not work on network file systems)
+				if (latestUpdate.elapsed() >= sleepTime) {
+					int count = updateFinished();
+					sleepTime = (count > 0 ? SLEEP_TIME_MIN : Math.min(2 * sleepTime, SLEEP_TIME));
+					latestUpdate.start();
+				}
+			} catch (InterruptedException | ClosedWatchServiceException e) {
+				running = false; // Killed, nothing to do
+			} catch (RuntimeException e) {
+				// Keep monitoring other tasks
+				Timer.showStdErr("MonitorTask: Error checking tasks: " + e.getMessage());
+				if (debug) e.printStackTrace();
+			}
+		}
 	}
 
 	public void setDebug(boolean debug) {
@@ -72,42 +169,53 @@ public class MonitorTask {
 	/**
 	 * Update finished tasks.
 	 * Check if 'exitFile' exist and update states accordingly
+	 * Note: Each directory is listed only once
+	 * @return Number of finished tasks
 	 */
-	synchronized void updateFinished() {
-		ArrayList<Task> toUpdate = null;
-
+	int updateFinished() {
+		// Group tasks by exit file's directory
+		Map<Path, List<Task>> tasksByDir = new HashMap<Path, List<Task>>();
 		for (Task task : execByTask.keySet()) {
-			String exitFileName = task.getExitCodeFile();
-
-			// Check that 'exitFile' exists and it is not zero length
-			// From 'Fedor Gusev':
-			//     ...here NFS is somewhat slow, and the file is still empty
-			//     and it report exit code as 1. But if I check the file manually, it
-			//     has 0 in it. I've introduced a check for non-zero length of
-			//     the file and the problem is gone.
-			File exitFile = new File(exitFileName);
-			boolean exitFileOk = exitFile.exists() && exitFile.length() > 0;
-
-			if (exitFileOk || task.isTimedOut()) {
-				// Create (or add) to tasks to delete
-				if (toUpdate == null) toUpdate = new ArrayList<Task>();
-				toUpdate.add(task);
+			Path dir = exitFile(task).getParent();
+			List<Task> tasks = tasksByDir.get(dir);
+			if (tasks == null) {
+				tasks = new LinkedList<Task>();
+				tasksByDir.put(dir, tasks);
 			}
+			tasks.add(task);
 		}
 
-		// An task to delete?
-		if (toUpdate != null) {
-			for (Task task : toUpdate) {
-				updateFinished(task);
-				remove(task); // We don't need to monitor this task any more
+		// List each directory and check exit files
+		int count = 0;
+		for (Path dir : tasksByDir.keySet()) {
+			String names[] = dir.toFile().list();
+			Set<String> dirFiles = (names != null ? new HashSet<String>(Arrays.asList(names)) : null);
+
+			for (Task task : tasksByDir.get(dir)) {
+				boolean exitFileOk = (dirFiles != null) //
+						&& dirFiles.contains(exitFile(task).getFileName().toString()) //
+						&& isExitFileOk(task);
+
+				if ((exitFileOk || task.isTimedOut()) && updateFinished(task)) count++;
 			}
 		}
+
+		return count;
 	}
 
 	/**
 	 * Update finished task.
+	 * @return true if the task was updated
 	 */
-	synchronized void updateFinished(Task task) {
+	boolean updateFinished(Task task) {
+		// Remove task: We don't need to monitor this task any more
+		// Note: Only one thread can remove it, so executioner is notified only once
+		Executioner executioner = execByTask.remove(task);
+		if (executioner == null) return false;
+		Path exitFile = exitFile(task);
+		taskByExitFile.remove(exitFile);
+		unwatch(exitFile.getParent());
+
 		if (debug) Timer.showStdErr("MonitorTask: Found exit file " + task.getExitCodeFile());
 
 		int exitCode = 0;
@@ -126,8 +234,71 @@ public class MonitorTask {
 		}
 
 		// Inform executioner that task has finished
-		Executioner executioner = execByTask.get(task);
 		task.setExitValue(exitCode);
 		executioner.taskFinished(task, taskState);
+		return true;
+	}
+
+	/**
+	 * Update tasks notified by the WatchService
+	 */
+	void updateFinished(WatchKey watchKey) {
+		int count = 0;
+		while (watchKey != null) {
+			Path dir = (Path) watchKey.watchable();
+			for (WatchEvent<?> event : watchKey.pollEvents()) {
+				if (event.kind() == StandardWatchEventKinds.OVERFLOW) {
+					count += updateFinished(); // Some events were lost, check all tasks
+				} else {
+					Task task = taskByExitFile.get(dir.resolve((Path) event.context()));
+					if (task != null && isExitFileOk(task) && updateFinished(task)) count++;
+				}
+			}
+			watchKey.reset();
+
+			watchKey = watchService.poll(); // Any other notification?
+		}
+
+		if (count > 0) sleepTime = SLEEP_TIME_MIN;
+	}
+
+	/**
+	 * Stop watching a directory (if there are no other tasks having exit files in that directory)
+	 */
+	void unwatch(Path dir) {
+		if (watchService == null || dir == null) return;
+
+		synchronized (watchKeyByDir) {
+			Integer count = countByDir.get(dir);
+			if (count == null) return;
+
+			if (count > 1) {
+				countByDir.put(dir, count - 1);
+			} else {
+				countByDir.remove(dir);
+				WatchKey watchKey = watchKeyByDir.remove(dir);
+				if (watchKey != null) watchKey.cancel();
+			}
+		}
+	}
+
+	/**
+	 * Watch a directory for new exit files
+	 */
+	void watch(Path dir) {
+		if (watchService == null || dir == null) return;
+
+		synchronized (watchKeyByDir) {
+			Integer count = countByDir.get(dir);
+			countByDir.put(dir, count == null ? 1 : count + 1);
+			if (watchKeyByDir.containsKey(dir)) return;
+
+			try {
+				if (!dir.toFile().isDirectory()) return; // Directory doesn't exist yet, we'll rely on polling
+				watchKeyByDir.put(dir, dir.register(watchService, StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_MODIFY));
+			} catch (IOException e) {
+				if (debug) Timer.showStdErr("MonitorTask: Cannot watch directory '" + dir + "', using polling");
+			}
+		}
 	}
 }
@@ -510,21 +510,21 @@ public abstract class BdsNode implements BdsSerialize {
 	 * Pop a bool from stack
 	 */
 	public boolean popBool(BdsThread bdsThread) {
-		return (Boolean) Type.BOOL.cast(bdsThread.pop());
+		return bdsThread.popBool();
 	}
 
 	/**
 	 * Pop an int from stack
 	 */
 	public long popInt(BdsThread bdsThread) {
-		return (Long) Type.INT.cast(bdsThread.pop());
+		return bdsThread.popInt();
 	}
 
 	/**
 	 * Pop a real from stack
 	 */
 	public double popReal(BdsThread bdsThread) {
-		return (Double) Type.REAL.cast(bdsThread.pop());
+		return bdsThread.popReal();
 	}
 
 	/**
@@ -651,73 +651,56 @@ public abstract class BdsNode implements BdsSerialize {
 	}
 
 	/**
-	 * Create a string to serialize to a file
-	 * @return
+	 * Serialize this node and all nodes it references
 	 */
 	@SuppressWarnings("rawtypes")
 	@Override
-	public String serializeSave(BdsSerializer serializer) {
-		StringBuilder out = new StringBuilder();
-
-		// Not an array: Single field. Show
-		out.append(getClass().getSimpleName() //
-				+ "\t" + id //
-				+ "\t" + lineNum //
-				+ "\t" + charPosInLine //
-				+ "\t" + serializer.serializeSaveValue(parent) //
-				+ "\t" + serializer.serializeSaveValue(returnType) //
-				+ "\t" //
-		);
+	public void serializeSave(BdsSerializer serializer) {
+		serializer.serializeSaveRecord(getClass().getSimpleName());
+		serializer.serializeSaveField(id);
+		serializer.serializeSaveField(lineNum);
+		serializer.serializeSaveField(charPosInLine);
+		serializer.serializeSaveField(parent);
+		serializer.serializeSaveField(returnType);
 		ArrayList<BdsNode> nodesToRecurse = new ArrayList<BdsNode>();
 
 		// Iterate over fields
 		for (Field field : getAllClassFields(false)) {
 			try {
 				Object fieldObj = field.get(this);
-				Class fieldClass = field.getDeclaringClass();
 
 				// Does the field have a value?
 				if (fieldObj != null) {
 					// If it's an array, iterate on all objects
 					if (fieldObj.getClass().isArray()) {
-						for (Object fieldObjSingle : (Object[]) fieldObj) {
-							out.append(serializer.serializeSaveValue(fieldObjSingle) + ",");
+						serializer.serializeSaveFieldArray((Object[]) fieldObj);
 
-							// Can we recurse into this field?
+						// Can we recurse into this field?
+						for (Object fieldObjSingle : (Object[]) fieldObj)
 							if ((fieldObjSingle != null) && (fieldObjSingle instanceof BdsNode)) nodesToRecurse.add((BdsNode) fieldObjSingle);
-						}
-
-						out.deleteCharAt(out.length() - 1); // Remove last comma
-						out.append("\t");
 					} else {
 						// Serialize field value
 						if (fieldObj instanceof Scope) {
 							// Do not serialize scope here
-						} else out.append(serializer.serializeSaveValue(fieldObj) + "\t");
+						} else serializer.serializeSaveField(fieldObj);
 
 						// Can we recurse into this field?
 						if (fieldObj instanceof BdsNode) nodesToRecurse.add((BdsNode) fieldObj);
 					}
 				} else {
 					// Value of this field is null
-					if (fieldClass.getCanonicalName().startsWith(BdsNodeFactory.get().packageName())) out.append("null\t");
-					else out.append(serializer.serializeSaveValue(fieldObj) + "\t");
+					serializer.serializeSaveField(null);
 				}
 			} catch (Exception e) {
 				throw new RuntimeException("Error getting field '" + field.getName() + "' from class '" + this.getClass().getCanonicalName() + "'", e);
 			}
 		}
 
-		out.deleteCharAt(out.length() - 1); // Remove last tab
-		out.append("\n");
-
 		serializer.add(this);
 
 		// Recurse
 		for (BdsNode node : nodesToRecurse)
-			if (!serializer.isSerialized(node)) out.append(serializer.serializeSave(node));
-
-		return out.toString();
+			if (!serializer.isSerialized(node)) serializer.serializeSave(node);
 	}
 
 	/**
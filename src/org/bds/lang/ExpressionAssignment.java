@@ -40,6 +40,22 @@ public class ExpressionAssignment extends ExpressionBinary {
 
 		// Get value
 		bdsThread.run(right);
+
+		// Assign primitive values to variables without boxing them
+		if (left instanceof ReferenceVar) {
+			if (isInt()) {
+				long value = popInt(bdsThread);
+				((ReferenceVar) left).setValue(bdsThread, value);
+				bdsThread.push(value);
+				return;
+			} else if (isReal()) {
+				double value = popReal(bdsThread);
+				((ReferenceVar) left).setValue(bdsThread, value);
+				bdsThread.push(value);
+				return;
+			}
+		}
+
 		Object value = bdsThread.pop();
 
 		if (left instanceof Reference) ((Reference) left).setValue(bdsThread, value);
@@ -45,19 +45,28 @@ public abstract class ExpressionCompare extends ExpressionBinary {
 
 		if (bdsThread.isCheckpointRecover()) return;
 
-		Object rval = bdsThread.pop();
-		Object lval = bdsThread.pop();
-
 		if (left.isNumeric() && right.isNumeric()) {
 
-			// Both are numeric types
-			if (left.isReal() || right.isReal()) bdsThread.push(cmp((double) Type.REAL.cast(lval), (double) Type.REAL.cast(rval)));
-			else if (left.isInt() || right.isInt()) bdsThread.push(cmp((long) Type.INT.cast(lval), (long) Type.INT.cast(rval)));
-			else if (left.isBool() || right.isBool()) bdsThread.push(cmp((boolean) lval, (boolean) rval));
-			else throw new RuntimeException("Unknown return type " + returnType + " for expression " + getClass().getSimpleName() + "( " + lval + " , " + rval + " )");
-
-		} else if (left.isString() || right.isString()) bdsThread.push(cmp(lval.toString(), rval.toString()));
-		else throw new RuntimeException("Unknown return type " + returnType + " for expression " + getClass().getSimpleName());
+			// Both are numeric types (values are popped without boxing)
+			if (left.isReal() || right.isReal()) {
+				double rval = popReal(bdsThread);
+				double lval = popReal(bdsThread);
+				bdsThread.push(cmp(lval, rval));
+			} else if (left.isInt() || right.isInt()) {
+				long rval = popInt(bdsThread);
+				long lval = popInt(bdsThread);
+				bdsThread.push(cmp(lval, rval));
+			} else if (left.isBool() || right.isBool()) {
+				boolean rval = popBool(bdsThread);
+				boolean lval = popBool(bdsThread);
+				bdsThread.push(cmp(lval, rval));
+			} else throw new RuntimeException("Unknown return type " + returnType + " for expression " + getClass().getSimpleName() + "( " + bdsThread.pop() + " , " + bdsThread.pop() + " )");
+
+		} else if (left.isString() || right.isString()) {
+			Object rval = bdsThread.pop();
+			Object lval = bdsThread.pop();
+			bdsThread.push(cmp(lval.toString(), rval.toString()));
+		} else throw new RuntimeException("Unknown return type " + returnType + " for expression " + getClass().getSimpleName());
 	}
 
 	@Override
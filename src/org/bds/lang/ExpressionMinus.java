@@ -44,14 +44,15 @@ public class ExpressionMinus extends ExpressionMath {
 			bdsThread.run(right);
 			if (bdsThread.isCheckpointRecover()) return;
 
-			Object rval = bdsThread.pop();
-			Object lval = bdsThread.pop();
-
 			if (isInt()) {
-				bdsThread.push(((long) lval) - ((long) rval));
+				long rval = popInt(bdsThread);
+				long lval = popInt(bdsThread);
+				bdsThread.push(lval - rval);
 				return;
 			} else if (isReal()) {
-				bdsThread.push(((double) lval) - ((double) rval));
+				double rval = popReal(bdsThread);
+				double lval = popReal(bdsThread);
+				bdsThread.push(lval - rval);
 				return;
 			}
 
@@ -60,16 +60,22 @@ public class ExpressionPlus extends ExpressionMath {
 		bdsThread.run(right);
 		if (bdsThread.isCheckpointRecover()) return;
 
-		Object rval = bdsThread.pop();
-		Object lval = bdsThread.pop();
-
 		if (isInt()) {
-			bdsThread.push(((long) lval) + ((long) rval));
+			long rval = popInt(bdsThread);
+			long lval = popInt(bdsThread);
+			bdsThread.push(lval + rval);
 			return;
 		} else if (isReal()) {
-			bdsThread.push(((double) lval) + ((double) rval));
+			double rval = popReal(bdsThread);
+			double lval = popReal(bdsThread);
+			bdsThread.push(lval + rval);
 			return;
-		} else if (isString()) {
+		}
+
+		Object rval = bdsThread.pop();
+		Object lval = bdsThread.pop();
+
+		if (isString()) {
 			bdsThread.push(lval.toString() + rval.toString());
 			return;
 		} else if (isList()) {
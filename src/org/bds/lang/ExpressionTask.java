@@ -12,6 +12,7 @@ import org.bds.executioner.Executioner;
 import org.bds.executioner.Executioners;
 import org.bds.run.BdsThread;
 import org.bds.scope.Scope;
+import org.bds.scope.ScopeSymbol;
 import org.bds.task.Task;
 import org.bds.task.TaskDependency;
 import org.bds.task.TaskState;
@@ -32,6 +33,7 @@ public class ExpressionTask extends ExpressionWithScope {
 	public static final String TASK_OPTION_ALLOW_EMPTY = "allowEmpty";
 	public static final String TASK_OPTION_NODE = "node";
 	public static final String TASK_OPTION_PHYSICAL_PATH = "ppwd";
+	public static final String TASK_OPTION_PRIORITY = "priority";
 	public static final String TASK_OPTION_QUEUE = "queue";
 	public static final String TASK_OPTION_RETRY = "retry";
 	public static final String TASK_OPTION_SYSTEM = "system";
@@ -187,6 +189,7 @@ public class ExpressionTask extends ExpressionWithScope {
 		task.setQueue(bdsThread.getString(TASK_OPTION_QUEUE));
 		task.setMaxFailCount((int) bdsThread.getInt(TASK_OPTION_RETRY) + 1); // Note: Max fail count is the number of retries plus one (we always run at least once)
 		task.setCurrentDir(bdsThread.getCurrentDir());
+		task.setPriority((int) bdsThread.getInt(TASK_OPTION_PRIORITY));
 
 		// Set task options: Resources
 		task.getResources().setCpus((int) bdsThread.getInt(TASK_OPTION_CPUS));
@@ -449,6 +452,14 @@ public class ExpressionTask extends ExpressionWithScope {
 		returnType(scope);
 		if (options != null) options.typeCheck(scope, compilerMessages);
 		if (statement != null) statement.typeCheck(scope, compilerMessages);
+
+		// Task priority is read from the scope when the task is created, so it must be an 'int'
+		Type priorityType = (options != null ? options.getVarInitType(TASK_OPTION_PRIORITY, scope) : null);
+		if (priorityType == null) {
+			ScopeSymbol ssPriority = scope.getSymbol(TASK_OPTION_PRIORITY);
+			if (ssPriority != null) priorityType = ssPriority.getType();
+		}
+		if (priorityType != null && !priorityType.isInt()) compilerMessages.add(this, "Variable '" + TASK_OPTION_PRIORITY + "' is used as task priority, it must be of type 'int' instead of '" + priorityType + "'", MessageType.ERROR);
 	}
 
 }
@@ -59,6 +59,16 @@ public class ExpressionTaskOptions extends ExpressionList {
 		return sat ? taskDeps : null;
 	}
 
+	/**
+	 * Type of a variable declared in these options (e.g. 'priority := 3')
+	 * @return Variable's type, or null if the variable is not declared in these options
+	 */
+	public Type getVarInitType(String varName, Scope scope) {
+		for (Expression expr : expressions)
+			if ((expr instanceof ExpressionVariableInitImplicit) && varName.equals(((ExpressionVariableInitImplicit) expr).vInit.getVarName())) return expr.returnType(scope);
+		return null;
+	}
+
 	/**
 	 * Evaluate: Returns 'true' if all boolean expressions are 'true'.
 	 *
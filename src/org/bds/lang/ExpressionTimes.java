@@ -46,20 +46,24 @@ public class ExpressionTimes extends ExpressionMath {
 
 		if (bdsThread.isCheckpointRecover()) return;
 
-		Object rval = bdsThread.pop();
-		Object lval = bdsThread.pop();
-
 		// Combine results
 		if (isInt()) {
-			bdsThread.push(((long) lval) * ((long) rval));
+			long rval = popInt(bdsThread);
+			long lval = popInt(bdsThread);
+			bdsThread.push(lval * rval);
 			return;
 		}
 
 		if (isReal()) {
-			bdsThread.push(((double) lval) * ((double) rval));
+			double rval = popReal(bdsThread);
+			double lval = popReal(bdsThread);
+			bdsThread.push(lval * rval);
 			return;
 		}
 
+		Object rval = bdsThread.pop();
+		Object lval = bdsThread.pop();
+
 		if (isString()) {
 			// string * int : Get number and string
 			String str = "";
@@ -46,7 +46,7 @@ public class ExpressionVariableInitImplicit extends Expression {
 		Scope scope = null;
 		if (!bdsThread.isCheckpointRecover()) {
 			scope = bdsThread.getScope();
-			scope.add(new ScopeSymbol(vInit.getVarName(), returnType));
+			scope.add(new ScopeSymbol(vInit.getVarName(), returnType), vInit.getSlot());
 		}
 
 		// Evaluate assignment
@@ -54,7 +54,8 @@ public class ExpressionVariableInitImplicit extends Expression {
 		if (bdsThread.isCheckpointRecover()) return;
 
 		// Return initialization's result
-		ScopeSymbol ssym = scope.getSymbol(vInit.getVarName());
+		ScopeSymbol ssym = scope.getSymbolLocal(vInit.getVarName(), vInit.getSlot());
+		if (ssym == null) ssym = scope.getSymbol(vInit.getVarName());
 		bdsThread.push(ssym.getValue());
 	}
 
@@ -75,6 +76,6 @@ public class ExpressionVariableInitImplicit extends Expression {
 		Type type = vInit.getExpression().returnType(scope);
 
 		// Add variable to scope
-		if ((varName != null) && (type != null)) scope.add(new ScopeSymbol(varName, type));
+		if ((varName != null) && (type != null)) vInit.setSlot(scope.addSlot(new ScopeSymbol(varName, type)));
 	}
 }
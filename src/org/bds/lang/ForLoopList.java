@@ -12,6 +12,7 @@ import org.bds.run.BdsThread;
 import org.bds.run.RunState;
 import org.bds.scope.Scope;
 import org.bds.scope.ScopeSymbol;
+import org.bds.util.CowArrayList;
 import org.bds.util.Gpr;
 
 /**
@@ -41,8 +42,9 @@ public class ForLoopList extends StatementWithScope {
 	 */
 	protected ScopeSymbol initBeginDecl(BdsThread bdsThread) {
 		bdsThread.run(beginVarDecl);
-		String varName = beginVarDecl.getVarInit()[0].getVarName();
-		ScopeSymbol varSym = bdsThread.getScope().getSymbol(varName);
+		VariableInit vi = beginVarDecl.getVarInit()[0];
+		ScopeSymbol varSym = bdsThread.getScope().getSymbolLocal(vi.getVarName(), vi.getSlot());
+		if (varSym == null) varSym = bdsThread.getScope().getSymbol(vi.getVarName());
 		return varSym;
 	}
 
@@ -68,28 +70,30 @@ public class ForLoopList extends StatementWithScope {
 	 * Iterable values (list of elements to iterate)
 	 */
 	@SuppressWarnings({ "rawtypes", "unchecked" })
-	protected ArrayList initIterableValues(BdsThread bdsThread, ScopeSymbol varSym) {
+	protected List initIterableValues(BdsThread bdsThread, ScopeSymbol varSym) {
 		// Evaluate list
 		bdsThread.run(expression);
 
 		// Are we recovering state from a checkpoint file?
 		if (bdsThread.isCheckpointRecover()) {
 			ScopeSymbol ssIterableList = bdsThread.getScope().getSymbol(iterableListName);
-			return (ArrayList) ssIterableList.getValue();
+			return (List) ssIterableList.getValue();
 		}
 
 		//---
 		// Find (or create) a collection we can iterate on
 		//---
 		Object res = bdsThread.pop();
-		ArrayList iterableValues = new ArrayList();
-		if (res instanceof List) iterableValues.addAll((List) res);
+		List iterableValues;
+		if (res instanceof List) iterableValues = CowArrayList.copyOf((List) res); // Elements are shared until one of the lists is modified
 		else if (res instanceof Map) {
+			iterableValues = new ArrayList();
 			// Create a sorted list of values
 			iterableValues.addAll(((Map) res).values());
 			Collections.sort(iterableValues);
 		} else {
 			// Single object
+			iterableValues = new ArrayList();
 			iterableValues.add(res);
 		}
 
@@ -130,7 +134,7 @@ public class ForLoopList extends StatementWithScope {
 	@Override
 	public void runStep(BdsThread bdsThread) {
 		ScopeSymbol varSym = initBeginDecl(bdsThread);
-		ArrayList iterableValues = initIterableValues(bdsThread, varSym);
+		List iterableValues = initIterableValues(bdsThread, varSym);
 		ScopeSymbol iterableCount = initIterableCounter(bdsThread);
 
 		// First element to iterate.
@@ -0,0 +1,868 @@
+package org.bds.lang;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import org.bds.Config;
+import org.bds.compile.CompiledClassLoader;
+import org.bds.compile.CompiledFunction;
+import org.bds.scope.Scope;
+import org.bds.scope.ScopeSymbol;
+import org.bds.util.Gpr;
+
+/**
+ * Compile a function declaration to a Java class
+ *
+ * The function's body is translated to Java source code, which is
+ * compiled in memory and loaded (see CompiledClassLoader). Local
+ * variables become Java local variables and numeric expressions use
+ * primitive types, so there are no scopes, no operand stack and no
+ * program counter involved.
+ *
+ * Only a subset of the language is supported (no tasks, 'par', 'wait',
+ * 'checkpoint', etc.). Functions using anything else are not compiled
+ * and they are interpreted as usual. Functions called from a compiled
+ * function must be compiled as well, so a compiled function never goes
+ * back to the interpreter (a thread is never frozen in the middle of
+ * a compiled function).
+ *
+ * Functions are usually compiled in a background thread (see
+ * 'background'), so the thread invoking a function does not stall while
+ * javac runs. The function is interpreted until it is compiled.
+ *
+ * @author pcingola
+ */
+public class FunctionCompiler {
+
+	/**
+	 * Java expression: code and bds type
+	 */
+	class Expr {
+		String code;
+		Type type;
+		boolean boxed; // Value is an 'Object' (e.g. the result of a function call)
+
+		Expr(String code, Type type, boolean boxed) {
+			this.code = code;
+			this.type = type;
+			this.boxed = boxed;
+		}
+	}
+
+	/**
+	 * A local variable
+	 */
+	class Local {
+		String name;
+		String javaName;
+		Type type;
+
+		Local(String name, String javaName, Type type) {
+			this.name = name;
+			this.javaName = javaName;
+			this.type = type;
+		}
+	}
+
+	public static final String PACKAGE_NAME = "org.bds.compiled";
+
+	// Native functions that can block the thread for a long time. A thread cannot be
+	// checkpointed while running a compiled function, so functions calling these are not compiled
+	public static final String BLOCKING_NATIVE_FUNCTIONS[] = { "sleep", "download", "upload" };
+
+	private static int classNum = 0;
+	private static ThreadPoolExecutor backgroundCompiler; // Compile functions in a background thread (created when first used)
+
+	FunctionDeclaration fdecl;
+	StringBuilder code;
+	int indent;
+	int varNum;
+	List<Map<String, Local>> frames; // Local variables in each (nested) scope
+	Set<String> localNames; // Names of all local variables
+	List<Object> constants; // Constant values (passed to the compiled class' constructor)
+	List<String> constantTypes; // Java type for each constant
+	Map<Object, String> constantNames;
+	Set<FunctionDeclaration> callees; // Non-native functions called
+	boolean callsUserCode; // Does this function call any non-native function?
+
+	/**
+	 * Run a compilation in a background thread
+	 */
+	static synchronized void background(Runnable compilation) {
+		if (backgroundCompiler == null) {
+			backgroundCompiler = new ThreadPoolExecutor(0, 1, 1, TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>(), new ThreadFactory() {
+				@Override
+				public Thread newThread(Runnable r) {
+					Thread thread = new Thread(r, "FunctionCompiler");
+					thread.setDaemon(true);
+					return thread;
+				}
+			});
+		}
+
+		backgroundCompiler.execute(compilation);
+	}
+
+	/**
+	 * Compile a function declaration
+	 * @return A compiled function or null if the function cannot be compiled
+	 */
+	public static CompiledFunction compile(FunctionDeclaration fdecl) {
+		try {
+			if (!CompiledClassLoader.isAvailable()) return null;
+			if (fdecl.getClass() != FunctionDeclaration.class || fdecl.isNative() || fdecl.getScope() == null) return null;
+
+			// Create Java source code
+			FunctionCompiler functionCompiler = new FunctionCompiler(fdecl);
+			String className = "Function_" + fdecl.getFunctionName().replaceAll("[^A-Za-z0-9_]", "_") + "_" + nextClassNum();
+			String source = functionCompiler.source(className);
+
+			// All called functions must be compiled
+			for (FunctionDeclaration callee : functionCompiler.callees)
+				if (!callee.compile()) throw new RuntimeException("Called function '" + callee.getFunctionName() + "' cannot be compiled");
+
+			// Compile and create an instance
+			Class<?> clazz = new CompiledClassLoader().compile(PACKAGE_NAME + "." + className, source);
+			CompiledFunction compiled = (CompiledFunction) clazz.getConstructor(FunctionDeclaration.class, Object[].class).newInstance(fdecl, functionCompiler.constants.toArray());
+			if (Config.get().isDebug()) Gpr.debug("Function '" + fdecl.signature() + "' compiled to class '" + className + "'");
+			return compiled;
+		} catch (Throwable t) {
+			if (Config.get().isDebug()) Gpr.debug("Function '" + fdecl.signature() + "' cannot be compiled: " + t.getMessage());
+			return null;
+		}
+	}
+
+	/**
+	 * Java code for a string literal
+	 */
+	static String javaString(String str) {
+		StringBuilder sb = new StringBuilder();
+		sb.append('"');
+		for (char c : str.toCharArray()) {
+			switch (c) {
+			case '"':
+				sb.append("\\\"");
+				break;
+
+			case '\\':
+				sb.append("\\\\");
+				break;
+
+			case '\n':
+				sb.append("\\n");
+				break;
+
+			case '\r':
+				sb.append("\\r");
+				break;
+
+			case '\t':
+				sb.append("\\t");
+				break;
+
+			default:
+				if (c < 32 || c > 126) sb.append(String.format("\\u%04x", (int) c));
+				else sb.append(c);
+			}
+		}
+		sb.append('"');
+		return sb.toString();
+	}
+
+	/**
+	 * Java type used for a bds type
+	 */
+	static String javaType(Type type) {
+		if (type.isInt()) return "long";
+		if (type.isReal()) return "double";
+		if (type.isBool()) return "boolean";
+		if (type.isString()) return "String";
+		if (type.isMap()) return "java.util.Map";
+		if (type.isList()) return "java.util.List";
+		return "Object";
+	}
+
+	static synchronized int nextClassNum() {
+		return ++classNum;
+	}
+
+	public FunctionCompiler(FunctionDeclaration fdecl) {
+		this.fdecl = fdecl;
+		code = new StringBuilder();
+		frames = new ArrayList<Map<String, Local>>();
+		localNames = new LinkedHashSet<String>();
+		constants = new ArrayList<Object>();
+		constantTypes = new ArrayList<String>();
+		constantNames = new IdentityHashMap<Object, String>();
+		callees = new LinkedHashSet<FunctionDeclaration>();
+	}
+
+	/**
+	 * Convert an expression to a Java expression of type 'type'
+	 */
+	String as(Expr expr, Type type) {
+		String javaType = javaType(type);
+
+		if (expr.boxed) {
+			if (type.isInt()) return "toInt(" + expr.code + ")";
+			if (type.isReal()) return "toReal(" + expr.code + ")";
+			if (type.isBool()) return "toBool(" + expr.code + ")";
+			if (type.isString()) return "toStr(" + expr.code + ")";
+			if (javaType.equals("Object")) return expr.code;
+			return "((" + javaType + ") cast(" + constant(type) + ", " + expr.code + "))";
+		}
+
+		Type exprType = expr.type;
+		if (javaType(exprType).equals(javaType)) return expr.code;
+		if (type.isString()) return "String.valueOf(" + expr.code + ")";
+		if (type.isInt() && exprType.isBool()) return "(" + expr.code + " ? 1L : 0L)";
+		if (type.isReal() && exprType.isBool()) return "(" + expr.code + " ? 1.0 : 0.0)";
+		if (type.isReal() && exprType.isInt()) return "((double) " + expr.code + ")";
+		if (type.isBool() && exprType.isInt()) return "(" + expr.code + " != 0L)";
+		if (type.isBool() && exprType.isReal()) return "(" + expr.code + " != 0.0)";
+
+		// Any other conversion is done the same way the interpreter does it
+		return as(new Expr(box(expr), exprType, true), type);
+	}
+
+	/**
+	 * Java code for an expression as an 'Object'
+	 */
+	String box(Expr expr) {
+		if (expr.boxed) return expr.code;
+		if (expr.type.isInt() || expr.type.isReal() || expr.type.isBool()) return "((Object) " + expr.code + ")";
+		return expr.code;
+	}
+
+	/**
+	 * Add a constant, return the name of the field holding it
+	 */
+	String constant(Object value, String javaType) {
+		String name = constantNames.get(value);
+		if (name != null) return name;
+
+		name = "k" + constants.size();
+		constants.add(value);
+		constantTypes.add(javaType);
+		constantNames.put(value, name);
+		return name;
+	}
+
+	String constant(Type type) {
+		return constant(type, "org.bds.lang.Type");
+	}
+
+	/**
+	 * Declare a local variable
+	 */
+	Local declare(String name, Type type) {
+		if (type == null || type.isFunction()) throw new RuntimeException("Cannot compile variable '" + name + "' of type " + type);
+		Local local = new Local(name, "v" + (varNum++) + "_" + name, type);
+		frames.get(frames.size() - 1).put(name, local);
+		localNames.add(name);
+		return local;
+	}
+
+	/**
+	 * Default value for a variable
+	 */
+	String defaultValue(Type type) {
+		if (type.isInt()) return "0L";
+		if (type.isReal()) return "0.0";
+		if (type.isBool()) return "false";
+		if (type.isString()) return "\"\"";
+		if (type.isMap()) return "new java.util.HashMap()";
+		if (type.isList()) return "new java.util.ArrayList()";
+		return "cast(" + constant(type) + ", " + constant(type) + ".defaultValue())";
+	}
+
+	/**
+	 * Expressions in a (possibly nested) list of expressions
+	 */
+	List<Expression> expressions(Expression exprs[]) {
+		List<Expression> list = new ArrayList<Expression>();
+		if (exprs == null) return list;
+
+		for (Expression expr : exprs) {
+			if (expr instanceof ExpressionList) list.addAll(expressions(((ExpressionList) expr).expressions));
+			else list.add(expr);
+		}
+		return list;
+	}
+
+	/**
+	 * Generate code for an expression
+	 */
+	Expr gen(Expression expr) {
+		if (expr == null) throw new RuntimeException("Cannot compile null expression");
+		Type type = expr.getReturnType();
+		if (type == null || type.isFunction()) unsupported(expr);
+
+		Class<?> clazz = expr.getClass();
+		if (expr instanceof ExpressionAssignment) return genAssignment((ExpressionAssignment) expr, false);
+		if (expr instanceof Literal) return genLiteral((Literal) expr);
+		if (clazz == ReferenceVar.class) return genReferenceVar((ReferenceVar) expr);
+		if (clazz == ReferenceList.class) return genReferenceList((ReferenceList) expr);
+		if (clazz == ReferenceMap.class) return genReferenceMap((ReferenceMap) expr);
+		if (expr instanceof Pre) return genPrePost((Pre) expr, false);
+		if (expr instanceof FunctionCall) return genCall((FunctionCall) expr);
+		if (clazz == ExpressionCond.class) return genCond((ExpressionCond) expr);
+		if (clazz == ForCondition.class || clazz == ExpressionWrapper.class) return gen(((ExpressionWrapper) expr).getExpression());
+		if (expr instanceof ExpressionUnary) return genUnary((ExpressionUnary) expr);
+		if (expr instanceof ExpressionBinary) return genBinary((ExpressionBinary) expr);
+
+		unsupported(expr);
+		return null;
+	}
+
+	/**
+	 * Assignment
+	 * @param statement : The result is not used, so we can assign local variables directly
+	 */
+	Expr genAssignment(ExpressionAssignment ea, boolean statement) {
+		if (ea instanceof ExpressionAssignmentList) unsupported(ea);
+
+		Expression left = ea.left;
+		Expression right = ea.right;
+		Class<?> clazz = left.getClass();
+
+		if (clazz == ReferenceVar.class) {
+			String name = ((ReferenceVar) left).getVariableName();
+			Local local = lookup(name);
+
+			// Assign to a variable that is not declared in this function
+			if (local == null) return new Expr("setVar(bdsThread, " + javaString(name) + ", " + constant(left.getReturnType()) + ", " + box(gen(right)) + ")", right.getReturnType(), true);
+
+			Expr value = gen(right);
+			String assign = local.javaName + " = " + value(value, local.type);
+			if (statement) return new Expr(assign, local.type, false);
+
+			// Used as an expression: Only when the value is the same as the one assigned
+			if (value.boxed || local.type.isList() || local.type.isMap() || !javaType(value.type).equals(javaType(local.type))) unsupported(ea);
+			return new Expr("(" + assign + ")", local.type, false);
+		}
+
+		if (clazz == ReferenceList.class) {
+			ReferenceList rl = (ReferenceList) left;
+			if (!(rl.exprList instanceof ReferenceVar)) unsupported(ea);
+			Type listType = rl.exprList.getReturnType();
+			if (listType == null || !listType.isList()) unsupported(ea);
+
+			Expr value = gen(right);
+			String idx = as(gen(rl.exprIdx), Type.INT);
+			String list = box(gen(rl.exprList));
+			return new Expr("listSet(" + box(value) + ", " + idx + ", " + list + ", " + constant(((TypeList) listType).getBaseType()) + ")", right.getReturnType(), true);
+		}
+
+		if (clazz == ReferenceMap.class) {
+			ReferenceMap rm = (ReferenceMap) left;
+			if (!(rm.variable instanceof ReferenceVar)) unsupported(ea);
+
+			Expr value = gen(right);
+			String key = as(gen(rm.expressionKey), Type.STRING);
+			String map = box(gen(rm.variable));
+			return new Expr("mapSet(" + box(value) + ", " + key + ", " + map + ")", right.getReturnType(), true);
+		}
+
+		unsupported(ea);
+		return null;
+	}
+
+	/**
+	 * Binary expressions
+	 */
+	Expr genBinary(ExpressionBinary eb) {
+		if (eb instanceof ExpressionCompare) return genCompare((ExpressionCompare) eb);
+
+		Class<?> clazz = eb.getClass();
+		Type type = eb.getReturnType();
+		Expression left = eb.left;
+		Expression right = eb.right;
+		if (left == null || right == null) unsupported(eb);
+
+		if (clazz == ExpressionLogicAnd.class || clazz == ExpressionLogicOr.class) {
+			if (!left.isBool() || !right.isBool()) unsupported(eb);
+			String op = (clazz == ExpressionLogicAnd.class ? " && " : " || ");
+			return new Expr("(" + as(gen(left), Type.BOOL) + op + as(gen(right), Type.BOOL) + ")", Type.BOOL, false);
+		}
+
+		if (clazz == ExpressionBitAnd.class || clazz == ExpressionBitOr.class || clazz == ExpressionBitXor.class || clazz == ExpressionModulo.class) {
+			return new Expr("(" + as(gen(left), Type.INT) + " " + eb.op() + " " + as(gen(right), Type.INT) + ")", Type.INT, false);
+		}
+
+		if (clazz == ExpressionPlus.class || clazz == ExpressionMinus.class || clazz == ExpressionTimes.class || clazz == ExpressionDivide.class) {
+			// Numeric operations
+			if (type.isInt() || type.isReal()) {
+				Type opType = (type.isInt() ? Type.INT : Type.REAL);
+				return new Expr("(" + as(gen(left), opType) + " " + eb.op() + " " + as(gen(right), opType) + ")", opType, false);
+			}
+
+			// String and list operations
+			if (clazz == ExpressionPlus.class && type.isString()) return new Expr("(" + toStr(gen(left)) + " + " + toStr(gen(right)) + ")", Type.STRING, false);
+			if (clazz == ExpressionPlus.class && type.isList()) return new Expr("plusList(" + box(gen(left)) + ", " + left.isList() + ", " + box(gen(right)) + ", " + right.isList() + ")", type, false);
+			if (clazz == ExpressionTimes.class && type.isString()) return new Expr("times(" + box(gen(left)) + ", " + left.canCastInt() + ", " + box(gen(right)) + ")", Type.STRING, false);
+		}
+
+		unsupported(eb);
+		return null;
+	}
+
+	/**
+	 * Call a function or a (native) method
+	 */
+	Expr genCall(FunctionCall fc) {
+		FunctionDeclaration fd = fc.functionDeclaration;
+		if (fd == null) unsupported(fc);
+
+		if (fd.isNative()) {
+			// Native functions and methods are called using 'apply'
+			for (String name : BLOCKING_NATIVE_FUNCTIONS)
+				if (name.equals(fd.getFunctionName())) unsupported(fc);
+		} else if (fc instanceof MethodCall || fd.getClass() != FunctionDeclaration.class) {
+			unsupported(fc);
+		} else {
+			callsUserCode = true;
+			if (fd != fdecl) callees.add(fd);
+		}
+
+		VarDeclaration fparam[] = fd.getParameters().getVarDecl();
+		Expression arguments[] = fc.args.getArguments();
+
+		StringBuilder sb = new StringBuilder();
+		sb.append("call(bdsThread, " + constant(fd, "org.bds.lang.FunctionDeclaration") + ", new Object[] {");
+		for (int i = 0; i < fparam.length; i++) {
+			Type argType = fparam[i].type;
+			if (argType.isFunction()) unsupported(fc);
+			sb.append((i > 0 ? ", " : " ") + box(new Expr(as(gen(arguments[i]), argType), argType, false)));
+		}
+		sb.append(" })");
+
+		return new Expr(sb.toString(), fc.getReturnType(), true);
+	}
+
+	/**
+	 * Comparison operators
+	 */
+	Expr genCompare(ExpressionCompare ec) {
+		Expression left = ec.left;
+		Expression right = ec.right;
+		String op = ec.op();
+
+		if (left.isNumeric() && right.isNumeric()) {
+			if (left.isReal() || right.isReal()) return new Expr("(" + as(gen(left), Type.REAL) + " " + op + " " + as(gen(right), Type.REAL) + ")", Type.BOOL, false);
+			if (left.isInt() || right.isInt()) return new Expr("(" + as(gen(left), Type.INT) + " " + op + " " + as(gen(right), Type.INT) + ")", Type.BOOL, false);
+			return new Expr("(Boolean.compare(" + as(gen(left), Type.BOOL) + ", " + as(gen(right), Type.BOOL) + ") " + op + " 0)", Type.BOOL, false);
+		}
+
+		if (left.isString() || right.isString()) {
+			String lstr = toStr(gen(left));
+			String rstr = toStr(gen(right));
+			if (op.equals("==")) return new Expr(lstr + ".equals(" + rstr + ")", Type.BOOL, false);
+			if (op.equals("!=")) return new Expr("(!" + lstr + ".equals(" + rstr + "))", Type.BOOL, false);
+			return new Expr("(" + lstr + ".compareTo(" + rstr + ") " + op + " 0)", Type.BOOL, false);
+		}
+
+		unsupported(ec);
+		return null;
+	}
+
+	/**
+	 * Conditional expression: 'cond ? exprTrue : exprFalse'
+	 */
+	Expr genCond(ExpressionCond ec) {
+		String cond = as(gen(ec.expr), Type.BOOL);
+		Expr exprTrue = gen(ec.exprTrue);
+		Expr exprFalse = gen(ec.exprFalse);
+
+		if (!exprTrue.boxed && !exprFalse.boxed && javaType(exprTrue.type).equals(javaType(exprFalse.type))) {
+			return new Expr("(" + cond + " ? " + exprTrue.code + " : " + exprFalse.code + ")", exprTrue.type, false);
+		}
+
+		return new Expr("(" + cond + " ? " + box(exprTrue) + " : " + box(exprFalse) + ")", ec.getReturnType(), true);
+	}
+
+	/**
+	 * Expression used as a statement
+	 */
+	void genExpressionStatement(Expression expr) {
+		if (expr.getClass() == ExpressionVariableInitImplicit.class) {
+			ExpressionVariableInitImplicit evi = (ExpressionVariableInitImplicit) expr;
+			genVariableInit(evi.vInit, evi.getReturnType());
+		} else line(genStatementExpr(expr) + ";");
+	}
+
+	Expr genLiteral(Literal literal) {
+		Class<?> clazz = literal.getClass();
+
+		if (clazz == LiteralBool.class) return new Expr(Boolean.toString(((LiteralBool) literal).value), Type.BOOL, false);
+
+		if (clazz == LiteralInt.class) {
+			long value = ((LiteralInt) literal).value;
+			return new Expr(value < 0 ? "(" + value + "L)" : value + "L", Type.INT, false);
+		}
+
+		if (clazz == LiteralReal.class) {
+			double value = ((LiteralReal) literal).value;
+			if (Double.isNaN(value)) return new Expr("Double.NaN", Type.REAL, false);
+			if (Double.isInfinite(value)) return new Expr(value > 0 ? "Double.POSITIVE_INFINITY" : "Double.NEGATIVE_INFINITY", Type.REAL, false);
+			return new Expr("(" + Double.toString(value) + "d)", Type.REAL, false);
+		}
+
+		if (clazz == LiteralString.class) {
+			LiteralString ls = (LiteralString) literal;
+			InterpolateVars iv = ls.interpolateVars;
+			if (iv == null) return new Expr(javaString(ls.getValue()), Type.STRING, false);
+
+			// Variable interpolation
+			StringBuilder sb = new StringBuilder();
+			sb.append("(\"\"");
+			for (int i = 0; i < iv.literals.length; i++) {
+				if (iv.literals[i] == null) unsupported(literal);
+				if (!iv.literals[i].isEmpty()) sb.append(" + " + javaString(iv.literals[i]));
+				if (iv.exprs[i] != null) sb.append(" + interpolate(" + box(gen(iv.exprs[i])) + ")");
+			}
+			sb.append(")");
+			return new Expr(sb.toString(), Type.STRING, false);
+		}
+
+		if (clazz == LiteralList.class || clazz == LiteralListEmpty.class) {
+			LiteralList ll = (LiteralList) literal;
+			Type baseType = ll.baseType();
+			StringBuilder sb = new StringBuilder();
+			sb.append("list(new Object[] {");
+			for (int i = 0; i < ll.values.length; i++)
+				sb.append((i > 0 ? ", " : " ") + box(new Expr(as(gen(ll.values[i]), baseType), baseType, false)));
+			sb.append(" })");
+			return new Expr(sb.toString(), ll.getReturnType(), false);
+		}
+
+		if (clazz == LiteralMap.class || clazz == LiteralMapEmpty.class) {
+			LiteralMap lm = (LiteralMap) literal;
+			Type baseType = lm.baseType();
+			StringBuilder sb = new StringBuilder();
+			sb.append("map(new Object[] {");
+			for (int i = 0; i < lm.keys.length; i++)
+				sb.append((i > 0 ? ", " : " ") + box(gen(lm.keys[i])) + ", " + box(new Expr(as(gen(lm.values[i]), baseType), baseType, false)));
+			sb.append(" })");
+			return new Expr(sb.toString(), lm.getReturnType(), false);
+		}
+
+		unsupported(literal);
+		return null;
+	}
+
+	/**
+	 * Pre and post increment / decrement
+	 * @param statement : The result is not used
+	 */
+	Expr genPrePost(Pre pre, boolean statement) {
+		if (pre.expr.getClass() != ReferenceVar.class) unsupported(pre);
+		String name = ((ReferenceVar) pre.expr).getVariableName();
+		boolean isPost = (pre instanceof Post);
+		String op = (pre.operation == PrePostOperation.INCREMENT ? "++" : "--");
+
+		// Not a local variable
+		Local local = lookup(name);
+		if (local != null && !local.type.isInt()) unsupported(pre);
+		if (local == null) {
+			String delta = (pre.operation == PrePostOperation.INCREMENT ? "1L" : "-1L");
+			return new Expr("incVar(bdsThread, " + javaString(name) + ", " + delta + ", " + !isPost + ")", Type.INT, false);
+		}
+
+		String expr = (isPost ? local.javaName + op : op + local.javaName);
+		return new Expr(statement ? expr : "(" + expr + ")", Type.INT, false);
+	}
+
+	Expr genReferenceList(ReferenceList rl) {
+		Expr list = gen(rl.exprList);
+		String idx = as(gen(rl.exprIdx), Type.INT);
+		String name = (rl.getVariableName() != null ? rl.getVariableName() : "null");
+		return new Expr("listGet(" + box(list) + ", " + idx + ", " + javaString(name) + ")", rl.getReturnType(), true);
+	}
+
+	Expr genReferenceMap(ReferenceMap rm) {
+		Expr map = gen(rm.variable);
+		String key = as(gen(rm.expressionKey), Type.STRING);
+		String name = (rm.getVariableName() != null ? rm.getVariableName() : "null");
+		return new Expr("mapGet(" + box(map) + ", " + key + ", " + javaString(name) + ")", rm.getReturnType(), true);
+	}
+
+	Expr genReferenceVar(ReferenceVar rv) {
+		String name = rv.getVariableName();
+		Local local = lookup(name);
+		if (local != null) return new Expr(local.javaName, local.type, false);
+
+		// Not declared in this function (e.g. a global variable)
+		return new Expr("getVar(bdsThread, " + javaString(name) + ")", rv.getReturnType(), true);
+	}
+
+	/**
+	 * Generate code for a statement
+	 */
+	void genStatement(Statement statement) {
+		if (statement == null) return;
+		Class<?> clazz = statement.getClass();
+
+		if (clazz == Block.class) {
+			frames.add(new HashMap<String, Local>());
+			line("{");
+			for (Statement st : ((Block) statement).getStatements())
+				genStatement(st);
+			line("}");
+			frames.remove(frames.size() - 1);
+		} else if (clazz == VarDeclaration.class) {
+			VarDeclaration vd = (VarDeclaration) statement;
+			for (VariableInit vi : vd.getVarInit())
+				genVariableInit(vi, vd.getType());
+		} else if (clazz == StatementExpr.class) {
+			genExpressionStatement(((StatementExpr) statement).getExpression());
+		} else if (clazz == If.class) {
+			If ifst = (If) statement;
+			line("if (" + as(gen(ifst.condition), Type.BOOL) + ") {");
+			genStatement(ifst.statement);
+			if (ifst.elseStatement != null) {
+				line("} else {");
+				genStatement(ifst.elseStatement);
+			}
+			line("}");
+		} else if (clazz == While.class) {
+			While wh = (While) statement;
+			line("while (true) {");
+			if (wh.condition != null) line("if (!" + as(gen(wh.condition), Type.BOOL) + ") break;");
+			genStatement(wh.statement);
+			line("}");
+		} else if (clazz == ForLoop.class) {
+			genForLoop((ForLoop) statement);
+		} else if (clazz == ForLoopList.class) {
+			genForLoopList((ForLoopList) statement);
+		} else if (clazz == Return.class) {
+			Return ret = (Return) statement;
+			line("if (true) return " + (ret.expr != null ? box(gen(ret.expr)) : "null") + ";");
+		} else if (clazz == Break.class) {
+			line("if (true) break;");
+		} else if (clazz == Continue.class) {
+			line("if (true) continue;");
+		} else if (clazz == Print.class) {
+			line("print(" + (((Print) statement).expr != null ? box(gen(((Print) statement).expr)) : "null") + ");");
+		} else if (clazz == Println.class) {
+			line("println(" + (((Println) statement).expr != null ? box(gen(((Println) statement).expr)) : "null") + ");");
+		} else unsupported(statement);
+	}
+
+	/**
+	 * Java statement expression (i.e. a valid Java statement)
+	 */
+	String genStatementExpr(Expression expr) {
+		if (expr instanceof ExpressionAssignment) return genAssignment((ExpressionAssignment) expr, true).code;
+		if (expr instanceof Pre) return genPrePost((Pre) expr, true).code;
+
+		Expr e = gen(expr);
+		if (expr instanceof FunctionCall) return e.code;
+		return "eval(" + box(e) + ")";
+	}
+
+	void genForLoop(ForLoop forLoop) {
+		frames.add(new HashMap<String, Local>());
+		line("{");
+
+		// Initialization
+		ForInit begin = forLoop.begin;
+		if (begin != null) {
+			if (begin.varDeclaration != null) genStatement(begin.varDeclaration);
+			else {
+				for (Expression expr : expressions(begin.expressions))
+					genExpressionStatement(expr);
+			}
+		}
+
+		// Loop end
+		StringBuilder end = new StringBuilder();
+		if (forLoop.end != null) {
+			for (Expression expr : expressions(forLoop.end.expressions)) {
+				if (expr.getClass() == ExpressionVariableInitImplicit.class) unsupported(expr);
+				end.append((end.length() > 0 ? ", " : "") + genStatementExpr(expr));
+			}
+		}
+
+		line("for (;; " + end + ") {");
+		if (forLoop.condition != null) line("if (!" + as(gen(forLoop.condition), Type.BOOL) + ") break;");
+		genStatement(forLoop.statement);
+		line("}");
+
+		line("}");
+		frames.remove(frames.size() - 1);
+	}
+
+	void genForLoopList(ForLoopList forLoop) {
+		if (forLoop.beginVarDecl == null || forLoop.expression == null) unsupported(forLoop);
+
+		frames.add(new HashMap<String, Local>());
+		line("{");
+
+		genStatement(forLoop.beginVarDecl);
+		Local var = lookup(forLoop.beginVarDecl.getVarInit()[0].getVarName());
+
+		int num = varNum++;
+		String list = "t" + num + "_list";
+		String idx = "t" + num + "_idx";
+		line("java.util.List " + list + " = iterable(" + box(gen(forLoop.expression)) + ");");
+		line("for (int " + idx + " = 0; " + idx + " < " + list + ".size(); " + idx + "++) {");
+		line(var.javaName + " = " + value(new Expr(list + ".get(" + idx + ")", var.type, true), var.type) + ";");
+		genStatement(forLoop.statement);
+		line("}");
+
+		line("}");
+		frames.remove(frames.size() - 1);
+	}
+
+	Expr genUnary(ExpressionUnary eu) {
+		Class<?> clazz = eu.getClass();
+		Type type = eu.getReturnType();
+
+		if (clazz == ExpressionLogicNot.class) return new Expr("(!" + as(gen(eu.expr), Type.BOOL) + ")", Type.BOOL, false);
+		if (clazz == ExpressionBitNegation.class) return new Expr("(~" + as(gen(eu.expr), Type.INT) + ")", Type.INT, false);
+
+		if (type == Type.INT || type == Type.REAL) {
+			if (clazz == ExpressionUnaryPlus.class) return new Expr(as(gen(eu.expr), type), type, false);
+			if (clazz == ExpressionUnaryMinus.class) return new Expr("(-" + as(gen(eu.expr), type) + ")", type, false);
+		}
+
+		unsupported(eu);
+		return null;
+	}
+
+	/**
+	 * Variable declaration and initialization
+	 */
+	void genVariableInit(VariableInit vi, Type type) {
+		String name = vi.getVarName();
+		Expression init = vi.getExpression();
+
+		// Does the initialization refer to this variable's name? (then it already refers to the new variable)
+		boolean selfRef = false;
+		if (init != null) {
+			for (BdsNode node : init.findNodes(ReferenceVar.class, true))
+				selfRef |= name.equals(((ReferenceVar) node).getVariableName());
+		}
+
+		Local local = declare(name, type);
+		String javaType = javaType(type);
+		if (init == null) {
+			line(javaType + " " + local.javaName + " = " + defaultValue(type) + ";");
+		} else if (selfRef) {
+			line(javaType + " " + local.javaName + " = " + defaultValue(type) + ";");
+			line(local.javaName + " = " + value(gen(init), type) + ";");
+		} else {
+			line(javaType + " " + local.javaName + " = " + value(gen(init), type) + ";");
+		}
+	}
+
+	/**
+	 * Add a line of code
+	 */
+	void line(String line) {
+		if (line.startsWith("}")) indent--;
+		for (int i = 0; i < indent; i++)
+			code.append('\t');
+		code.append(line);
+		code.append('\n');
+		if (line.endsWith("{")) indent++;
+	}
+
+	/**
+	 * Find a local variable
+	 */
+	Local lookup(String name) {
+		for (int i = frames.size() - 1; i >= 0; i--) {
+			Local local = frames.get(i).get(name);
+			if (local != null) return local;
+		}
+		return null;
+	}
+
+	/**
+	 * Create Java source code
+	 */
+	public String source(String className) {
+		// Function body
+		indent = 2;
+		frames.add(new HashMap<String, Local>());
+
+		VarDeclaration fparam[] = fdecl.getParameters().getVarDecl();
+		for (int i = 0; i < fparam.length; i++) {
+			Type type = fparam[i].type;
+			Local local = declare(fparam[i].getVarInit()[0].getVarName(), type);
+			line(javaType(type) + " " + local.javaName + " = " + as(new Expr("args[" + i + "]", type, true), type) + ";");
+		}
+
+		genStatement(fdecl.getStatement());
+		line("return returnDefault(bdsThread);");
+		frames.remove(frames.size() - 1);
+
+		// Variables are dynamically scoped: A called function could
+		// 'see' a local variable instead of a global one
+		if (callsUserCode) {
+			Scope scope = fdecl.getScope().getParent();
+			for (String name : localNames) {
+				ScopeSymbol ss = (scope != null ? scope.getSymbol(name) : null);
+				if (ss != null && !ss.getType().isFunction()) throw new RuntimeException("Local variable '" + name + "' hides a global variable");
+			}
+		}
+
+		// Class
+		StringBuilder sb = new StringBuilder();
+		sb.append("package " + PACKAGE_NAME + ";\n\n");
+		sb.append("@SuppressWarnings(\"all\")\n");
+		sb.append("public final class " + className + " extends org.bds.compile.CompiledFunction {\n\n");
+
+		for (int i = 0; i < constants.size(); i++)
+			sb.append("\tprivate final " + constantTypes.get(i) + " k" + i + ";\n");
+
+		sb.append("\n\tpublic " + className + "(org.bds.lang.FunctionDeclaration fdecl, Object k[]) {\n");
+		sb.append("\t\tsuper(fdecl);\n");
+		for (int i = 0; i < constants.size(); i++)
+			sb.append("\t\tk" + i + " = (" + constantTypes.get(i) + ") k[" + i + "];\n");
+		sb.append("\t}\n\n");
+
+		sb.append("\t@Override\n");
+		sb.append("\tprotected Object run(org.bds.run.BdsThread bdsThread, Object args[]) {\n");
+		sb.append(code);
+		sb.append("\t}\n");
+		sb.append("}\n");
+
+		return sb.toString();
+	}
+
+	/**
+	 * Java code for a string conversion (same as 'toString()')
+	 */
+	String toStr(Expr expr) {
+		if (!expr.boxed && expr.type.isString()) return expr.code;
+		if (expr.boxed) return "toStr(" + expr.code + ")";
+		return "String.valueOf(" + expr.code + ")";
+	}
+
+	void unsupported(BdsNode node) {
+		throw new RuntimeException("Cannot compile " + node.getClass().getSimpleName() + " (" + node.getFileName() + ", line " + node.getLineNum() + ")");
+	}
+
+	/**
+	 * Value assigned to a variable (lists and maps are copied)
+	 */
+	String value(Expr expr, Type type) {
+		String value = as(expr, type);
+		if (type.isMap()) return "copyMap(" + value + ")";
+		if (type.isList()) return "copyList(" + value + ")";
+		return value;
+	}
+
+}
@@ -3,6 +3,7 @@ package org.bds.lang;
 import java.util.List;
 
 import org.antlr.v4.runtime.tree.ParseTree;
+import org.bds.compile.CompiledFunction;
 import org.bds.compile.CompilerMessages;
 import org.bds.compile.CompilerMessage.MessageType;
 import org.bds.run.BdsThread;
@@ -23,6 +24,11 @@ public class FunctionDeclaration extends StatementWithScope {
 	protected Parameters parameters;
 	protected Statement statement;
 	protected String signature;
+	private volatile CompiledFunction compiled; // Compiled version of this function (see FunctionCompiler)
+	private volatile boolean compileFailed; // Function cannot be compiled, don't try again
+	private volatile boolean compileQueued; // Function is queued to be compiled in a background thread
+	private boolean compiling; // Function is being compiled
+	private volatile int invocations; // Number of times this function was invoked. Note: Not atomic, increments from different threads may be lost
 
 	public FunctionDeclaration(BdsNode parent, ParseTree tree) {
 		super(parent, tree);
@@ -32,6 +38,8 @@ public class FunctionDeclaration extends StatementWithScope {
 	 * Apply function to arguments, return function's result
 	 */
 	public Object apply(BdsThread bdsThread, Object values[]) {
+		CompiledFunction compiled = getCompiled(bdsThread);
+		if (compiled != null) return compiled.apply(bdsThread, values);
 
 		// Create scope and add function arguments
 		if (!bdsThread.isCheckpointRecover()) {
@@ -44,8 +52,8 @@ public class FunctionDeclaration extends StatementWithScope {
 			Scope scope = bdsThread.getScope();
 			for (int i = 0; i < fparam.length; i++) {
 				Type argType = fparam[i].type;
-				String argName = fparam[i].getVarInit()[0].varName;
-				scope.add(new ScopeSymbol(argName, argType, values[i]));
+				VariableInit vi = fparam[i].getVarInit()[0];
+				scope.add(new ScopeSymbol(vi.varName, argType, values[i]), vi.getSlot());
 			}
 		}
 
@@ -66,6 +74,13 @@ public class FunctionDeclaration extends StatementWithScope {
 	 * Apply function to arguments, return function's result
 	 */
 	public Object apply(BdsThread bdsThread, Object value) {
+		CompiledFunction compiled = getCompiled(bdsThread);
+		if (compiled != null) {
+			Object retVal = compiled.apply(bdsThread, new Object[] { value });
+			if (bdsThread.isFatalError()) throw new RuntimeException("Fatal error");
+			return retVal;
+		}
+
 		// Create scope and add function arguments
 		if (!bdsThread.isCheckpointRecover()) {
 			VarDeclaration fparam[] = getParameters().getVarDecl();
@@ -78,8 +93,8 @@ public class FunctionDeclaration extends StatementWithScope {
 
 			// Only one argument
 			Type argType = fparam[0].type;
-			String argName = fparam[0].getVarInit()[0].varName;
-			scope.add(new ScopeSymbol(argName, argType, value));
+			VariableInit vi = fparam[0].getVarInit()[0];
+			scope.add(new ScopeSymbol(vi.varName, argType, value), vi.getSlot());
 		}
 
 		// Run function body
@@ -96,6 +111,68 @@ public class FunctionDeclaration extends StatementWithScope {
 		return retVal;
 	}
 
+	/**
+	 * Compile this function (and all functions it calls)
+	 * @return true if the function is compiled
+	 */
+	public boolean compile() {
+		synchronized (FunctionCompiler.class) {
+			if (compiled != null || compiling) return true;
+			if (compileFailed) return false;
+
+			compiling = true;
+			try {
+				compiled = FunctionCompiler.compile(this);
+			} finally {
+				compiling = false;
+			}
+
+			compileFailed = (compiled == null);
+			return !compileFailed;
+		}
+	}
+
+	/**
+	 * Compile this function in a background thread (see FunctionCompiler.background)
+	 */
+	protected void compileBackground() {
+		if (compileQueued) return;
+		synchronized (this) {
+			if (compileQueued) return;
+			compileQueued = true;
+		}
+
+		FunctionCompiler.background(new Runnable() {
+			@Override
+			public void run() {
+				compile();
+			}
+		});
+	}
+
+	/**
+	 * Get compiled version of this function.
+	 * The function is compiled after being invoked 'compileThreshold' times.
+	 * Unless 'compileBackground' is disabled, the function is compiled in a
+	 * background thread and interpreted until it is compiled. Otherwise the
+	 * invocation reaching the threshold waits until the function (and all
+	 * functions it calls) are compiled
+	 * @return Compiled function or null if the function should be interpreted
+	 */
+	protected CompiledFunction getCompiled(BdsThread bdsThread) {
+		// Checkpoint recovery and debugging require the interpreter
+		if (bdsThread.isCheckpointRecover() || bdsThread.getDebugMode() != null) return null;
+		if (compiled != null) return compiled;
+		if (compileFailed) return null;
+
+		int compileThreshold = bdsThread.getConfig().getCompileThreshold();
+		if (compileThreshold <= 0 || ++invocations < compileThreshold) return null;
+
+		if (bdsThread.getConfig().isCompileBackground()) compileBackground();
+		else compile();
+		return compiled;
+	}
+
 	public String getFunctionName() {
 		return functionName;
 	}
@@ -121,6 +198,10 @@ public class FunctionDeclaration extends StatementWithScope {
 		return funcType;
 	}
 
+	public boolean isCompiled() {
+		return compiled != null;
+	}
+
 	public boolean isNative() {
 		return false;
 	}
@@ -254,7 +254,7 @@ public class InterpolateVars extends Literal {
 	 * How to show objects in interpolation
 	 */
 	@SuppressWarnings({ "rawtypes", "unchecked" })
-	String interpolateValue(Object val) {
+	public static String interpolateValue(Object val) {
 		if (val instanceof Map) {
 			StringBuilder sb = new StringBuilder();
 
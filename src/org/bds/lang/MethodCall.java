@@ -85,6 +85,12 @@ public class MethodCall extends FunctionCall {
 			values[i] = value;
 		}
 
+		// Native methods get their arguments directly (no scope is created)
+		if (functionDeclaration.isNative()) {
+			if (!bdsThread.isCheckpointRecover()) bdsThread.push(functionDeclaration.apply(bdsThread, values));
+			return;
+		}
+
 		if (!bdsThread.isCheckpointRecover()) {
 			// Create new scope
 			// TODO: Add class scope? (class variables & methods)
@@ -35,10 +35,14 @@ public class Post extends Pre {
 		if (bdsThread.isCheckpointRecover()) return;
 
 		long value = popInt(bdsThread);
-		if (operation == PrePostOperation.INCREMENT) ref.setValue(bdsThread, value + 1);
-		else if (operation == PrePostOperation.DECREMENT) ref.setValue(bdsThread, value - 1);
+		long newValue;
+		if (operation == PrePostOperation.INCREMENT) newValue = value + 1;
+		else if (operation == PrePostOperation.DECREMENT) newValue = value - 1;
 		else throw new RuntimeException("Unknown operator " + operation);
 
+		if (ref instanceof ReferenceVar) ((ReferenceVar) ref).setValue(bdsThread, newValue); // Variable: Do not box value
+		else ref.setValue(bdsThread, newValue);
+
 		bdsThread.push(value);
 	}
 
@@ -43,7 +43,8 @@ public class Pre extends ExpressionUnary {
 		else if (operation == PrePostOperation.DECREMENT) value--;
 		else throw new RuntimeException("Unknown operator " + operation);
 
-		ref.setValue(bdsThread, value);
+		if (ref instanceof ReferenceVar) ((ReferenceVar) ref).setValue(bdsThread, value); // Variable: Do not box value
+		else ref.setValue(bdsThread, value);
 		bdsThread.push(value);
 	}
 
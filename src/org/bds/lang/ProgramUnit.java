@@ -52,10 +52,21 @@ public class ProgramUnit extends BlockWithFile {
 		super.parse(tree);
 	}
 
+	/**
+	 * Resolve variable references, so they can index the declaring scope
+	 * at run-time (see ReferenceVar.resolveScopeDepth).
+	 * Note: This must be invoked after type checking
+	 */
+	public void resolveReferences() {
+		for (BdsNode ref : findNodes(ReferenceVar.class, true))
+			((ReferenceVar) ref).resolveScopeDepth();
+	}
+
 	@Override
 	public void runStep(BdsThread bdsThread) {
 		super.runStep(bdsThread);
 		runScope = bdsThread.getScope();
+		runScope.setShared(); // Used after the program finishes, do not reuse
 	}
 
 	public void setBigDataScriptThread(BdsThread bigDataScriptThread) {
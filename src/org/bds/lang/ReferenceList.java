@@ -1,6 +1,5 @@
 package org.bds.lang;
 
-import java.util.ArrayList;
 import java.util.List;
 
 import org.antlr.v4.runtime.tree.ParseTree;
@@ -28,10 +27,10 @@ public class ReferenceList extends Reference {
 	}
 
 	@SuppressWarnings("rawtypes")
-	public ArrayList getList(Scope scope) {
+	public List getList(Scope scope) {
 		ScopeSymbol ss = getScopeSymbol(scope);
 		if (ss == null) return null;
-		return (ArrayList) ss.getValue();
+		return (List) ss.getValue();
 	}
 
 	/**
@@ -140,15 +139,13 @@ public class ReferenceList extends Reference {
 		int idx = (int) popInt(bdsThread);
 		if (bdsThread.isCheckpointRecover()) return;
 
-		ArrayList<Object> list = getList(bdsThread.getScope());
+		List<Object> list = getList(bdsThread.getScope());
 		if (list == null) bdsThread.fatalError(this, "Cannot assign to non-variable '" + this + "'");
 
 		// Make sure the array is big enough to hold the data
 		if (idx >= list.size()) {
 			TypeList type = (TypeList) getType(bdsThread.getScope());
 			Type baseType = type.getBaseType();
-			list.ensureCapacity(idx + 1);
-
 			while (list.size() <= idx)
 				list.add(baseType.defaultValue());
 		}
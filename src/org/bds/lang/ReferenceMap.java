@@ -1,6 +1,5 @@
 package org.bds.lang;
 
-import java.util.HashMap;
 import java.util.Map;
 
 import org.antlr.v4.runtime.tree.ParseTree;
@@ -26,9 +25,9 @@ public class ReferenceMap extends Reference {
 	}
 
 	@SuppressWarnings("rawtypes")
-	public HashMap getMap(Scope scope) {
+	public Map getMap(Scope scope) {
 		ScopeSymbol ss = getScopeSymbol(scope);
-		return (HashMap) ss.getValue();
+		return (Map) ss.getValue();
 	}
 
 	/**
@@ -139,7 +138,7 @@ public class ReferenceMap extends Reference {
 		String key = popString(bdsThread);
 		if (bdsThread.isCheckpointRecover()) return;
 
-		HashMap map = getMap(bdsThread.getScope());
+		Map map = getMap(bdsThread.getScope());
 		if (map == null) bdsThread.fatalError(this, "Cannot assign to non-variable '" + this + "'");
 		map.put(key, value);
 	}
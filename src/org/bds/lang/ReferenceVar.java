@@ -15,6 +15,10 @@ import org.bds.scope.ScopeSymbol;
 public class ReferenceVar extends Reference {
 
 	protected String name;
+	private BdsNode scopeNode; // Node whose scope declares this variable (null if not resolved, see 'resolve'). Note: Private fields are neither serialized nor considered sub-nodes
+	protected int scopeNodeId; // Node ID of 'scopeNode', used to restore it when un-serializing (e.g. a cached program)
+	protected int scopeDepth = -1; // Number of run-time scopes between this reference and the declaring scope (-1 if not resolved, see 'resolveScopeDepth')
+	protected int slot = -1; // Variable's slot in that scope
 
 	/**
 	 * Create a reference form a string
@@ -46,9 +50,30 @@ public class ReferenceVar extends Reference {
 	 */
 	@Override
 	public ScopeSymbol getScopeSymbol(Scope scope) {
+		// Resolved at compile time? Go up to the declaring scope and use the variable's slot
+		if (scopeDepth >= 0) {
+			Scope s = scope;
+			for (int i = 0; i < scopeDepth && s != null; i++)
+				s = s.getParent();
+
+			// Make sure this is the declaring scope (e.g. method calls create scopes for other nodes)
+			if (s != null && s.getNode() == getScopeNode()) {
+				ScopeSymbol ss = s.getSymbolLocal(name, slot);
+				if (ss != null) return ss;
+			}
+		}
+
 		return scope.getSymbol(name);
 	}
 
+	/**
+	 * Node whose scope declares this variable
+	 */
+	BdsNode getScopeNode() {
+		if (scopeNode == null && scopeNodeId > 0) scopeNode = BdsNodeFactory.get().getNode(scopeNodeId); // Un-serialized node?
+		return scopeNode;
+	}
+
 	@Override
 	public String getVariableName() {
 		return name;
@@ -80,14 +105,77 @@ public class ReferenceVar extends Reference {
 		return returnType;
 	}
 
+	/**
+	 * Resolve the scope and slot where this variable is declared, so it
+	 * can be found at runtime without looking up its name in every scope.
+	 * Note: Only variables declared within the same function (or outside
+	 * any function) are resolved, since at runtime the parent of a
+	 * function's scope is the caller's scope
+	 */
+	protected void resolve(Scope scope) {
+		Scope ssScope = scope.getSymbolScope(name);
+		if (ssScope == null || ssScope.getNode() == null) return; // Not found or global scope
+
+		for (Scope s = scope; s != ssScope; s = s.getParent())
+			if (s.getNode() instanceof FunctionDeclaration) return; // Declared outside this function
+
+		scopeNode = ssScope.getNode();
+		scopeNodeId = scopeNode.getId();
+		slot = ssScope.getSlot(name);
+	}
+
+	/**
+	 * Resolve the number of scopes created at run-time between this
+	 * reference and the declaring scope.
+	 * Note: This has to be invoked after type checking is finished,
+	 * since nodes whose scopes are empty are changed not to create a
+	 * scope (see BdsNode.typeChecking)
+	 */
+	public void resolveScopeDepth() {
+		BdsNode scopeNode = getScopeNode();
+		if (scopeNode == null) return;
+
+		int depth = 0;
+		for (BdsNode n = getParent(); n != null; n = n.getParent()) {
+			if (n == scopeNode) {
+				scopeDepth = depth;
+				return;
+			}
+
+			if (n.isNeedsScope()) depth++;
+		}
+	}
+
 	/**
 	 * Evaluate an expression
 	 */
 	@Override
 	public void runStep(BdsThread bdsThread) {
-		ScopeSymbol ss = bdsThread.getScope().getSymbol(name);
+		ScopeSymbol ss = getScopeSymbol(bdsThread.getScope());
 		if (ss == null) bdsThread.fatalError(this, "Cannot find variable '" + name + "'");
-		bdsThread.push(ss.getValue());
+
+		// Push primitive values without boxing them
+		if (isInt()) bdsThread.push(ss.getValueInt());
+		else if (isReal()) bdsThread.push(ss.getValueReal());
+		else bdsThread.push(ss.getValue());
+	}
+
+	/**
+	 * Set value to a 'real' variable (without boxing it)
+	 */
+	public void setValue(BdsThread bdsThread, double value) {
+		ScopeSymbol ssym = getScopeSymbol(bdsThread.getScope());
+		if (isReal()) ssym.setValue(value);
+		else ssym.setValue(getReturnType().cast(value));
+	}
+
+	/**
+	 * Set value to an 'int' variable (without boxing it)
+	 */
+	public void setValue(BdsThread bdsThread, long value) {
+		ScopeSymbol ssym = getScopeSymbol(bdsThread.getScope());
+		if (isInt()) ssym.setValue(value);
+		else ssym.setValue(getReturnType().cast(value));
 	}
 
 	/**
@@ -112,6 +200,7 @@ public class ReferenceVar extends Reference {
 		returnType(scope);
 
 		if (!scope.hasSymbol(name)) compilerMessages.add(this, "Symbol '" + name + "' cannot be resolved", MessageType.ERROR);
+		else resolve(scope);
 	}
 
 	@Override
@@ -84,11 +84,15 @@ public class Type extends BdsNode implements Comparable<Type> {
 	 * Reset all types
 	 */
 	public static void reset() {
+		HashMap<String, Type> oldTypes = types;
 		types = new HashMap<String, Type>();
 
-		// Add base types
-		for (PrimitiveType pt : PrimitiveType.values())
-			put(get(pt));
+		// Add base types. Note: Keep the same instances, since
+		// they are compared by reference (e.g. 'Type.INT')
+		for (PrimitiveType pt : PrimitiveType.values()) {
+			Type type = oldTypes.get(pt.toString());
+			put(type != null ? type : get(pt));
+		}
 	}
 
 	public Type() {
@@ -137,8 +141,8 @@ public class Type extends BdsNode implements Comparable<Type> {
 		else if (isVoid()) return true;
 		else if (isInt()) return (obj instanceof Long) || (obj instanceof Boolean);
 		else if (isReal()) return (obj instanceof Boolean) || (obj instanceof Long) || (obj instanceof Double);
-		else if (isList()) return (obj instanceof ArrayList);
-		else if (isMap()) return (obj instanceof HashMap);
+		else if (isList()) return (obj instanceof List);
+		else if (isMap()) return (obj instanceof Map);
 		else if (isString()) return true;
 		return false;
 	}
@@ -169,9 +173,9 @@ public class Type extends BdsNode implements Comparable<Type> {
 			if (obj instanceof Integer) return new Double((Integer) obj);
 			if (obj instanceof Double) return obj;
 		} else if (isList()) {
-			if (obj instanceof ArrayList) return obj;
+			if (obj instanceof List) return obj;
 		} else if (isMap()) {
-			if (obj instanceof HashMap) { //
+			if (obj instanceof Map) { //
 				return obj; //
 			}
 		} else if (isFunction()) {
@@ -345,8 +349,8 @@ public class Type extends BdsNode implements Comparable<Type> {
 	}
 
 	@Override
-	public String serializeSave(BdsSerializer serializer) {
-		return ""; // We don't save data type nodes
+	public void serializeSave(BdsSerializer serializer) {
+		// We don't save data type nodes
 	}
 
 	@Override
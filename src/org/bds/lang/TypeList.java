@@ -20,6 +20,9 @@ import org.bds.lang.nativeMethods.list.MethodNativeListMap;
 import org.bds.lang.nativeMethods.list.MethodNativeListMapToInt;
 import org.bds.lang.nativeMethods.list.MethodNativeListMapToReal;
 import org.bds.lang.nativeMethods.list.MethodNativeListMapToString;
+import org.bds.lang.nativeMethods.list.MethodNativeListPfilter;
+import org.bds.lang.nativeMethods.list.MethodNativeListPforEach;
+import org.bds.lang.nativeMethods.list.MethodNativeListPmap;
 import org.bds.lang.nativeMethods.list.MethodNativeListPop;
 import org.bds.lang.nativeMethods.list.MethodNativeListPush;
 import org.bds.lang.nativeMethods.list.MethodNativeListRemove;
@@ -97,6 +100,9 @@ public class TypeList extends Type {
 			methods.add(new MethodNativeListMapToInt(baseType));
 			methods.add(new MethodNativeListMapToReal(baseType));
 			methods.add(new MethodNativeListMapToString(baseType));
+			methods.add(new MethodNativeListPfilter(baseType));
+			methods.add(new MethodNativeListPforEach(baseType));
+			methods.add(new MethodNativeListPmap(baseType));
 			methods.add(new MethodNativeListPop(baseType));
 			methods.add(new MethodNativeListPush(baseType));
 			methods.add(new MethodNativeListSize(baseType));
@@ -85,7 +85,7 @@ public class VarDeclaration extends Statement {
 	public void runStep(BdsThread bdsThread) {
 		for (VariableInit vi : varInit) {
 			if (!bdsThread.isCheckpointRecover()) {
-				bdsThread.getScope().add(new ScopeSymbol(vi.varName, type)); // Add variable to scope
+				bdsThread.getScope().add(new ScopeSymbol(vi.varName, type), vi.getSlot()); // Add variable to scope
 			}
 
 			bdsThread.run(vi);
@@ -147,7 +147,7 @@ public class VarDeclaration extends Statement {
 				}
 
 				// Add variable to scope
-				if ((varName != null) && (type != null)) scope.add(new ScopeSymbol(varName, type));
+				if ((varName != null) && (type != null)) vi.setSlot(scope.addSlot(new ScopeSymbol(varName, type)));
 			}
 		}
 	}
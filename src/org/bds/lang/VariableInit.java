@@ -20,6 +20,7 @@ public class VariableInit extends BdsNode {
 	String varName;
 	Expression expression;
 	String help;
+	int slot = -1; // Variable's slot in scope (see Scope.addSlot)
 
 	public static VariableInit get(BdsNode parent, String name, Expression expression) {
 		VariableInit vi = new VariableInit(null, null);
@@ -54,6 +55,10 @@ public class VariableInit extends BdsNode {
 		return help;
 	}
 
+	public int getSlot() {
+		return slot;
+	}
+
 	public String getVarName() {
 		return varName;
 	}
@@ -94,7 +99,8 @@ public class VariableInit extends BdsNode {
 
 			// Change variable's value
 			Scope scope = bdsThread.getScope();
-			ScopeSymbol ssym = scope.getSymbol(varName);
+			ScopeSymbol ssym = scope.getSymbolLocal(varName, slot);
+			if (ssym == null) ssym = scope.getSymbol(varName);
 			value = ssym.getType().cast(value);
 			ssym.setValue(value);
 		}
@@ -105,6 +111,10 @@ public class VariableInit extends BdsNode {
 		this.expression = expression;
 	}
 
+	public void setSlot(int slot) {
+		this.slot = slot;
+	}
+
 	@Override
 	public String toString() {
 		return varName //
@@ -5,6 +5,7 @@ import java.util.Collections;
 
 import org.bds.compile.CompilerMessages;
 import org.bds.lang.FunctionDeclaration;
+import org.bds.lang.VarDeclaration;
 import org.bds.run.BdsThread;
 import org.bds.scope.Scope;
 import org.bds.scope.ScopeSymbol;
@@ -13,6 +14,9 @@ import org.bds.serialize.BdsSerializer;
 /**
  * A native function declaration
  *
+ * Native functions get their arguments as an array (positional
+ * arguments), no scope is created when they are invoked.
+ *
  * @author pcingola
  */
 public abstract class FunctionNative extends FunctionDeclaration {
@@ -31,6 +35,25 @@ public abstract class FunctionNative extends FunctionDeclaration {
 		classScope.add(ssym);
 	}
 
+	/**
+	 * Invoke function using positional arguments
+	 */
+	@Override
+	public Object apply(BdsThread bdsThread, Object args[]) {
+		try {
+			return runFunctionNative(bdsThread, args);
+		} catch (Throwable t) {
+			if (bdsThread.isVerbose()) t.printStackTrace();
+			bdsThread.fatalError(this, t.getMessage());
+			return null;
+		}
+	}
+
+	@Override
+	public Object apply(BdsThread bdsThread, Object value) {
+		return apply(bdsThread, new Object[] { value });
+	}
+
 	/**
 	 * Convert an array to a list
 	 */
@@ -62,23 +85,25 @@ public abstract class FunctionNative extends FunctionDeclaration {
 		return true;
 	}
 
+	/**
+	 * Run function using arguments from current scope
+	 */
 	@Override
 	public void runFunction(BdsThread bdsThread) {
-		try {
-			// Run function
-			Object result = runFunctionNative(bdsThread);
-			bdsThread.setReturnValue(result); // Set result in scope
-		} catch (Throwable t) {
-			if (bdsThread.isVerbose()) t.printStackTrace();
-			bdsThread.fatalError(this, t.getMessage());
-		}
+		VarDeclaration fparam[] = getParameters().getVarDecl();
+		Object args[] = new Object[fparam.length];
+		for (int i = 0; i < fparam.length; i++)
+			args[i] = bdsThread.getObject(fparam[i].getVarInit()[0].getVarName());
 
+		Object result = apply(bdsThread, args);
+		if (!bdsThread.isFatalError()) bdsThread.setReturnValue(result); // Set result in scope
 	}
 
 	/**
-	 * Run a method
+	 * Run a function
+	 * @param args : Arguments (same order as parameters)
 	 */
-	protected abstract Object runFunctionNative(BdsThread csThread);
+	protected abstract Object runFunctionNative(BdsThread bdsThread, Object args[]);
 
 	@Override
 	public void serializeParse(BdsSerializer serializer) {
@@ -86,9 +111,8 @@ public abstract class FunctionNative extends FunctionDeclaration {
 	}
 
 	@Override
-	public String serializeSave(BdsSerializer serializer) {
+	public void serializeSave(BdsSerializer serializer) {
 		// Nothing to do: Native methods are not serialized
-		return "";
 	}
 
 	@Override
@@ -1,6 +1,7 @@
 package org.bds.lang.nativeFunctions;
 
 import java.util.HashMap;
+import java.util.Map;
 
 import org.bds.lang.Parameters;
 import org.bds.lang.Type;
@@ -30,7 +31,7 @@ public class FunctionNativeConfig extends FunctionNative {
 		addNativeFunctionToScope();
 	}
 
-	protected Object parseFile(BdsThread csThread, String fileName, HashMap<String, String> configOri) {
+	protected Object parseFile(BdsThread csThread, String fileName, Map<String, String> configOri) {
 		// Sanity check
 		if (!Gpr.canRead(fileName)) csThread.fatalError(this, "Cannot read config file '" + fileName + "'");
 
@@ -73,8 +74,8 @@ public class FunctionNativeConfig extends FunctionNative {
 	}
 
 	@Override
-	protected Object runFunctionNative(BdsThread csThread) {
-		String fileName = csThread.getString("file");
+	protected Object runFunctionNative(BdsThread csThread, Object args[]) {
+		String fileName = args[0].toString();
 		return parseFile(csThread, fileName, null);
 	}
 }
@@ -1,6 +1,6 @@
 package org.bds.lang.nativeFunctions;
 
-import java.util.HashMap;
+import java.util.Map;
 
 import org.bds.lang.Parameters;
 import org.bds.lang.Type;
@@ -32,9 +32,9 @@ public class FunctionNativeConfigOri extends FunctionNativeConfig {
 
 	@SuppressWarnings("unchecked")
 	@Override
-	protected Object runFunctionNative(BdsThread csThread) {
-		String fileName = csThread.getString("file");
-		HashMap<String, String> configOri = (HashMap<String, String>) csThread.getObject("configOri");
+	protected Object runFunctionNative(BdsThread csThread, Object args[]) {
+		String fileName = args[0].toString();
+		Map<String, String> configOri = (Map<String, String>) args[1];
 		return parseFile(csThread, fileName, configOri);
 	}
 }
@@ -29,8 +29,8 @@ public class FunctionNativeLog extends FunctionNative {
 	}
 
 	@Override
-	protected Object runFunctionNative(BdsThread csThread) {
-		String str = csThread.getString("str");
+	protected Object runFunctionNative(BdsThread csThread, Object args[]) {
+		String str = args[0].toString();
 		Timer.showStdErr(str);
 		return str;
 	}
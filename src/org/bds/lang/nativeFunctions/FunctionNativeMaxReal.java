@@ -27,9 +27,9 @@ public class FunctionNativeMaxReal extends FunctionNative {
 	}
 
 	@Override
-	protected Object runFunctionNative(BdsThread csThread) {
-		double n1 = csThread.getInt("n1");
-		double n2 = csThread.getInt("n2");
+	protected Object runFunctionNative(BdsThread csThread, Object args[]) {
+		double n1 = (Long) args[0];
+		double n2 = (Long) args[1];
 		return Math.max(n1, n2);
 	}
 }
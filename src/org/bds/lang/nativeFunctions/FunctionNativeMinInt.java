@@ -27,9 +27,9 @@ public class FunctionNativeMinInt extends FunctionNative {
 	}
 
 	@Override
-	protected Object runFunctionNative(BdsThread csThread) {
-		long n1 = csThread.getInt("n1");
-		long n2 = csThread.getInt("n2");
+	protected Object runFunctionNative(BdsThread csThread, Object args[]) {
+		long n1 = (Long) args[0];
+		long n2 = (Long) args[1];
 		return Math.min(n1, n2);
 	}
 }
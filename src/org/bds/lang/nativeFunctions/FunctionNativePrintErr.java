@@ -28,8 +28,8 @@ public class FunctionNativePrintErr extends FunctionNative {
 	}
 
 	@Override
-	protected Object runFunctionNative(BdsThread csThread) {
-		String str = csThread.getString("str");
+	protected Object runFunctionNative(BdsThread csThread, Object args[]) {
+		String str = args[0].toString();
 		System.err.print(str);
 		return str;
 	}
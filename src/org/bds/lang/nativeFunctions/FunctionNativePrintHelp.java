@@ -29,7 +29,7 @@ public class FunctionNativePrintHelp extends FunctionNative {
 	}
 
 	@Override
-	protected Object runFunctionNative(BdsThread bdsThread) {
+	protected Object runFunctionNative(BdsThread bdsThread, Object args[]) {
 		HelpCreator hc = new HelpCreator(bdsThread.getRoot().getProgramUnit());
 		System.out.println(hc);
 		return true;
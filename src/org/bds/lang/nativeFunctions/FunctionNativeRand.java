@@ -27,7 +27,7 @@ public class FunctionNativeRand extends FunctionNative {
 	}
 
 	@Override
-	protected Object runFunctionNative(BdsThread csThread) {
+	protected Object runFunctionNative(BdsThread csThread, Object args[]) {
 		return csThread.getRandom().nextDouble();
 	}
 }
@@ -27,8 +27,8 @@ public class FunctionNativeRandIntRange extends FunctionNative {
 	}
 
 	@Override
-	protected Object runFunctionNative(BdsThread csThread) {
-		long range = csThread.getInt("range");
+	protected Object runFunctionNative(BdsThread csThread, Object args[]) {
+		long range = (Long) args[0];
 		return Math.abs(csThread.getRandom().nextLong() % range);
 	}
 }
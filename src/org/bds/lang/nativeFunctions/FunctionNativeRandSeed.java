@@ -27,8 +27,8 @@ public class FunctionNativeRandSeed extends FunctionNative {
 	}
 
 	@Override
-	protected Object runFunctionNative(BdsThread csThread) {
-		long seed = csThread.getInt("seed");
+	protected Object runFunctionNative(BdsThread csThread, Object args[]) {
+		long seed = (Long) args[0];
 		csThread.setRandomSeed(seed);
 		return null;
 	}
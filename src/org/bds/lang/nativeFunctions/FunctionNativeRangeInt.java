@@ -30,9 +30,9 @@ public class FunctionNativeRangeInt extends FunctionNative {
 	}
 
 	@Override
-	protected Object runFunctionNative(BdsThread bdsThread) {
-		long min = bdsThread.getInt("min");
-		long max = bdsThread.getInt("max");
+	protected Object runFunctionNative(BdsThread bdsThread, Object args[]) {
+		long min = (Long) args[0];
+		long max = (Long) args[1];
 
 		ArrayList<Long> list = new ArrayList<>();
 		for (long i = min; i <= max; i++)
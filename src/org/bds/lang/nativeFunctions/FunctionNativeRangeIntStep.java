@@ -30,10 +30,10 @@ public class FunctionNativeRangeIntStep extends FunctionNative {
 	}
 
 	@Override
-	protected Object runFunctionNative(BdsThread bdsThread) {
-		long min = bdsThread.getInt("min");
-		long max = bdsThread.getInt("max");
-		long step = bdsThread.getInt("step");
+	protected Object runFunctionNative(BdsThread bdsThread, Object args[]) {
+		long min = (Long) args[0];
+		long max = (Long) args[1];
+		long step = (Long) args[2];
 
 		ArrayList<Long> list = new ArrayList<>();
 		for (long i = min; i <= max; i += step)
@@ -30,10 +30,10 @@ public class FunctionNativeRangeReal extends FunctionNative {
 	}
 
 	@Override
-	protected Object runFunctionNative(BdsThread bdsThread) {
-		double min = bdsThread.getReal("min");
-		double max = bdsThread.getReal("max");
-		double step = bdsThread.getReal("step");
+	protected Object runFunctionNative(BdsThread bdsThread, Object args[]) {
+		double min = (Double) args[0];
+		double max = (Double) args[1];
+		double step = (Double) args[2];
 
 		ArrayList<Double> list = new ArrayList<>();
 		for (double d = min; d <= max; d += step)
@@ -4,6 +4,7 @@ import org.bds.lang.Parameters;
 import org.bds.lang.Type;
 import org.bds.lang.TypeList;
 import org.bds.run.BdsThread;
+import org.bds.run.BdsThreads;
 
 /**
  * Native function "sleep"
@@ -28,11 +29,11 @@ public class FunctionNativeSleepReal extends FunctionNative {
 	}
 
 	@Override
-	protected Object runFunctionNative(BdsThread csThread) {
-		double secs = csThread.getReal("seconds");
+	protected Object runFunctionNative(BdsThread csThread, Object args[]) {
+		double secs = (Double) args[0];
 		if (secs <= 0) return false;
 		try {
-			Thread.sleep((long) (secs * 1000));
+			BdsThreads.sleep((long) (secs * 1000));
 		} catch (InterruptedException e) {
 			return false;
 		}
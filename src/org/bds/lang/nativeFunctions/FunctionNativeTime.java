@@ -29,7 +29,7 @@ public class FunctionNativeTime extends FunctionNative {
 	}
 
 	@Override
-	protected Object runFunctionNative(BdsThread csThread) {
+	protected Object runFunctionNative(BdsThread csThread, Object args[]) {
 		return (new Date()).getTime();
 	}
 }
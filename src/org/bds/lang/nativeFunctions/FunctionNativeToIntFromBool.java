@@ -27,8 +27,8 @@ public class FunctionNativeToIntFromBool extends FunctionNative {
 	}
 
 	@Override
-	protected Object runFunctionNative(BdsThread csThread) {
-		boolean num = csThread.getBool("num");
+	protected Object runFunctionNative(BdsThread csThread, Object args[]) {
+		boolean num = (Boolean) args[0];
 		return (long) (num ? 1 : 0);
 	}
 }
@@ -27,8 +27,8 @@ public class FunctionNativeToIntFromReal extends FunctionNative {
 	}
 
 	@Override
-	protected Object runFunctionNative(BdsThread csThread) {
-		double num = csThread.getReal("num");
+	protected Object runFunctionNative(BdsThread csThread, Object args[]) {
+		double num = (Double) args[0];
 		return ((long) num);
 	}
 }
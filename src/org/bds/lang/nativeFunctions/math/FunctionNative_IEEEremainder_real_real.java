@@ -22,7 +22,7 @@ public class FunctionNative_IEEEremainder_real_real extends FunctionNative {
 	}
 
 	@Override
-	protected Object runFunctionNative(BdsThread bdsThread) {
-		return (Double) Math.IEEEremainder(bdsThread.getReal("f1"), bdsThread.getReal("f2"));
+	protected Object runFunctionNative(BdsThread bdsThread, Object args[]) {
+		return (Double) Math.IEEEremainder((Double) args[0], (Double) args[1]);
 	}
 }
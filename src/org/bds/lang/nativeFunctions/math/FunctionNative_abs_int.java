@@ -22,7 +22,7 @@ public class FunctionNative_abs_int extends FunctionNative {
 	}
 
 	@Override
-	protected Object runFunctionNative(BdsThread bdsThread) {
-		return (Long) Math.abs(bdsThread.getInt("x"));
+	protected Object runFunctionNative(BdsThread bdsThread, Object args[]) {
+		return (Long) Math.abs((Long) args[0]);
 	}
 }
@@ -22,7 +22,7 @@ public class FunctionNative_abs_real extends FunctionNative {
 	}
 
 	@Override
-	protected Object runFunctionNative(BdsThread bdsThread) {
-		return (Double) Math.abs(bdsThread.getReal("a"));
+	protected Object runFunctionNative(BdsThread bdsThread, Object args[]) {
+		return (Double) Math.abs((Double) args[0]);
 	}
 }
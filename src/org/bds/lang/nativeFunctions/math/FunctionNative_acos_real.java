@@ -22,7 +22,7 @@ public class FunctionNative_acos_real extends FunctionNative {
 	}
 
 	@Override
-	protected Object runFunctionNative(BdsThread bdsThread) {
-		return (Double) Math.acos(bdsThread.getReal("a"));
+	protected Object runFunctionNative(BdsThread bdsThread, Object args[]) {
+		return (Double) Math.acos((Double) args[0]);
 	}
 }
@@ -22,7 +22,7 @@ public class FunctionNative_asin_real extends FunctionNative {
 	}
 
 	@Override
-	protected Object runFunctionNative(BdsThread bdsThread) {
-		return (Double) Math.asin(bdsThread.getReal("a"));
+	protected Object runFunctionNative(BdsThread bdsThread, Object args[]) {
+		return (Double) Math.asin((Double) args[0]);
 	}
 }
@@ -22,7 +22,7 @@ public class FunctionNative_atan2_real_real extends FunctionNative {
 	}
 
 	@Override
-	protected Object runFunctionNative(BdsThread bdsThread) {
-		return (Double) Math.atan2(bdsThread.getReal("y"), bdsThread.getReal("x"));
+	protected Object runFunctionNative(BdsThread bdsThread, Object args[]) {
+		return (Double) Math.atan2((Double) args[0], (Double) args[1]);
 	}
 }
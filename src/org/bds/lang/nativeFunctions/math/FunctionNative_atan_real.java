@@ -22,7 +22,7 @@ public class FunctionNative_atan_real extends FunctionNative {
 	}
 
 	@Override
-	protected Object runFunctionNative(BdsThread bdsThread) {
-		return (Double) Math.atan(bdsThread.getReal("a"));
+	protected Object runFunctionNative(BdsThread bdsThread, Object args[]) {
+		return (Double) Math.atan((Double) args[0]);
 	}
 }
@@ -22,7 +22,7 @@ public class FunctionNative_cbrt_real extends FunctionNative {
 	}
 
 	@Override
-	protected Object runFunctionNative(BdsThread bdsThread) {
-		return (Double) Math.cbrt(bdsThread.getReal("a"));
+	protected Object runFunctionNative(BdsThread bdsThread, Object args[]) {
+		return (Double) Math.cbrt((Double) args[0]);
 	}
 }
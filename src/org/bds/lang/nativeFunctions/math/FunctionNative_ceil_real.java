@@ -22,7 +22,7 @@ public class FunctionNative_ceil_real extends FunctionNative {
 	}
 
 	@Override
-	protected Object runFunctionNative(BdsThread bdsThread) {
-		return (Double) Math.ceil(bdsThread.getReal("a"));
+	protected Object runFunctionNative(BdsThread bdsThread, Object args[]) {
+		return (Double) Math.ceil((Double) args[0]);
 	}
 }
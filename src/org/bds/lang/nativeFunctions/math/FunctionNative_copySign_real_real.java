@@ -22,7 +22,7 @@ public class FunctionNative_copySign_real_real extends FunctionNative {
 	}
 
 	@Override
-	protected Object runFunctionNative(BdsThread bdsThread) {
-		return (Double) Math.copySign(bdsThread.getReal("magnitude"), bdsThread.getReal("sign"));
+	protected Object runFunctionNative(BdsThread bdsThread, Object args[]) {
+		return (Double) Math.copySign((Double) args[0], (Double) args[1]);
 	}
 }
@@ -22,7 +22,7 @@ public class FunctionNative_cosh_real extends FunctionNative {
 	}
 
 	@Override
-	protected Object runFunctionNative(BdsThread bdsThread) {
-		return (Double) Math.cosh(bdsThread.getReal("x"));
+	protected Object runFunctionNative(BdsThread bdsThread, Object args[]) {
+		return (Double) Math.cosh((Double) args[0]);
 	}
 }
@@ -22,7 +22,7 @@ public class FunctionNative_expm1_real extends FunctionNative {
 	}
 
 	@Override
-	protected Object runFunctionNative(BdsThread bdsThread) {
-		return (Double) Math.expm1(bdsThread.getReal("x"));
+	protected Object runFunctionNative(BdsThread bdsThread, Object args[]) {
+		return (Double) Math.expm1((Double) args[0]);
 	}
 }
@@ -22,7 +22,7 @@ public class FunctionNative_getExponent_real extends FunctionNative {
 	}
 
 	@Override
-	protected Object runFunctionNative(BdsThread bdsThread) {
-		return (long) Math.getExponent(bdsThread.getReal("d"));
+	protected Object runFunctionNative(BdsThread bdsThread, Object args[]) {
+		return (long) Math.getExponent((Double) args[0]);
 	}
 }
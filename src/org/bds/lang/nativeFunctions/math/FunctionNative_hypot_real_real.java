@@ -22,7 +22,7 @@ public class FunctionNative_hypot_real_real extends FunctionNative {
 	}
 
 	@Override
-	protected Object runFunctionNative(BdsThread bdsThread) {
-		return (Double) Math.hypot(bdsThread.getReal("x"), bdsThread.getReal("y"));
+	protected Object runFunctionNative(BdsThread bdsThread, Object args[]) {
+		return (Double) Math.hypot((Double) args[0], (Double) args[1]);
 	}
 }
@@ -22,7 +22,7 @@ public class FunctionNative_log1p_real extends FunctionNative {
 	}
 
 	@Override
-	protected Object runFunctionNative(BdsThread bdsThread) {
-		return (Double) Math.log1p(bdsThread.getReal("x"));
+	protected Object runFunctionNative(BdsThread bdsThread, Object args[]) {
+		return (Double) Math.log1p((Double) args[0]);
 	}
 }
@@ -22,7 +22,7 @@ public class FunctionNative_max_real_real extends FunctionNative {
 	}
 
 	@Override
-	protected Object runFunctionNative(BdsThread bdsThread) {
-		return (Double) Math.max(bdsThread.getReal("a"), bdsThread.getReal("b"));
+	protected Object runFunctionNative(BdsThread bdsThread, Object args[]) {
+		return (Double) Math.max((Double) args[0], (Double) args[1]);
 	}
 }
@@ -22,7 +22,7 @@ public class FunctionNative_nextAfter_real_real extends FunctionNative {
 	}
 
 	@Override
-	protected Object runFunctionNative(BdsThread bdsThread) {
-		return (Double) Math.nextAfter(bdsThread.getReal("start"), bdsThread.getReal("direction"));
+	protected Object runFunctionNative(BdsThread bdsThread, Object args[]) {
+		return (Double) Math.nextAfter((Double) args[0], (Double) args[1]);
 	}
 }
@@ -22,7 +22,7 @@ public class FunctionNative_nextUp_real extends FunctionNative {
 	}
 
 	@Override
-	protected Object runFunctionNative(BdsThread bdsThread) {
-		return (Double) Math.nextUp(bdsThread.getReal("d"));
+	protected Object runFunctionNative(BdsThread bdsThread, Object args[]) {
+		return (Double) Math.nextUp((Double) args[0]);
 	}
 }
@@ -22,7 +22,7 @@ public class FunctionNative_round_real extends FunctionNative {
 	}
 
 	@Override
-	protected Object runFunctionNative(BdsThread bdsThread) {
-		return (Long) Math.round(bdsThread.getReal("a"));
+	protected Object runFunctionNative(BdsThread bdsThread, Object args[]) {
+		return (Long) Math.round((Double) args[0]);
 	}
 }
@@ -22,7 +22,7 @@ public class FunctionNative_scalb_real_int extends FunctionNative {
 	}
 
 	@Override
-	protected Object runFunctionNative(BdsThread bdsThread) {
-		return (Double) Math.scalb(bdsThread.getReal("d"), (int) bdsThread.getInt("scaleFactor"));
+	protected Object runFunctionNative(BdsThread bdsThread, Object args[]) {
+		return (Double) Math.scalb((Double) args[0], ((Long) args[1]).intValue());
 	}
 }
@@ -22,7 +22,7 @@ public class FunctionNative_signum_real extends FunctionNative {
 	}
 
 	@Override
-	protected Object runFunctionNative(BdsThread bdsThread) {
-		return (Double) Math.signum(bdsThread.getReal("d"));
+	protected Object runFunctionNative(BdsThread bdsThread, Object args[]) {
+		return (Double) Math.signum((Double) args[0]);
 	}
 }
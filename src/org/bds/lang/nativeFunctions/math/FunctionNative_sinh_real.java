@@ -22,7 +22,7 @@ public class FunctionNative_sinh_real extends FunctionNative {
 	}
 
 	@Override
-	protected Object runFunctionNative(BdsThread bdsThread) {
-		return (Double) Math.sinh(bdsThread.getReal("x"));
+	protected Object runFunctionNative(BdsThread bdsThread, Object args[]) {
+		return (Double) Math.sinh((Double) args[0]);
 	}
 }
@@ -22,7 +22,7 @@ public class FunctionNative_sqrt_real extends FunctionNative {
 	}
 
 	@Override
-	protected Object runFunctionNative(BdsThread bdsThread) {
-		return (Double) Math.sqrt(bdsThread.getReal("a"));
+	protected Object runFunctionNative(BdsThread bdsThread, Object args[]) {
+		return (Double) Math.sqrt((Double) args[0]);
 	}
 }
@@ -22,7 +22,7 @@ public class FunctionNative_tanh_real extends FunctionNative {
 	}
 
 	@Override
-	protected Object runFunctionNative(BdsThread bdsThread) {
-		return (Double) Math.tanh(bdsThread.getReal("x"));
+	protected Object runFunctionNative(BdsThread bdsThread, Object args[]) {
+		return (Double) Math.tanh((Double) args[0]);
 	}
 }
@@ -22,7 +22,7 @@ public class FunctionNative_toDegrees_real extends FunctionNative {
 	}
 
 	@Override
-	protected Object runFunctionNative(BdsThread bdsThread) {
-		return (Double) Math.toDegrees(bdsThread.getReal("angrad"));
+	protected Object runFunctionNative(BdsThread bdsThread, Object args[]) {
+		return (Double) Math.toDegrees((Double) args[0]);
 	}
 }
@@ -22,7 +22,7 @@ public class FunctionNative_toRadians_real extends FunctionNative {
 	}
 
 	@Override
-	protected Object runFunctionNative(BdsThread bdsThread) {
-		return (Double) Math.toRadians(bdsThread.getReal("angdeg"));
+	protected Object runFunctionNative(BdsThread bdsThread, Object args[]) {
+		return (Double) Math.toRadians((Double) args[0]);
 	}
 }
@@ -22,7 +22,7 @@ public class FunctionNative_ulp_real extends FunctionNative {
 	}
 
 	@Override
-	protected Object runFunctionNative(BdsThread bdsThread) {
-		return (Double) Math.ulp(bdsThread.getReal("d"));
+	protected Object runFunctionNative(BdsThread bdsThread, Object args[]) {
+		return (Double) Math.ulp((Double) args[0]);
 	}
 }
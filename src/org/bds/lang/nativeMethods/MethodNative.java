@@ -5,6 +5,7 @@ import java.util.Collections;
 
 import org.bds.compile.CompilerMessages;
 import org.bds.lang.MethodDeclaration;
+import org.bds.lang.VarDeclaration;
 import org.bds.run.BdsThread;
 import org.bds.scope.Scope;
 import org.bds.scope.ScopeSymbol;
@@ -13,6 +14,9 @@ import org.bds.serialize.BdsSerializer;
 /**
  * A native method declaration
  *
+ * Native methods get their arguments as an array (positional
+ * arguments), no scope is created when they are invoked.
+ *
  * @author pcingola
  */
 public abstract class MethodNative extends MethodDeclaration {
@@ -31,6 +35,20 @@ public abstract class MethodNative extends MethodDeclaration {
 		classScope.add(ssym);
 	}
 
+	/**
+	 * Invoke method using positional arguments (args[0] is 'this')
+	 */
+	@Override
+	public Object apply(BdsThread bdsThread, Object args[]) {
+		try {
+			return runMethodNative(bdsThread, args[0], args);
+		} catch (Throwable t) {
+			if (bdsThread.isVerbose()) t.printStackTrace();
+			bdsThread.fatalError(this, t.getMessage());
+			return null;
+		}
+	}
+
 	/**
 	 * Convert an array to a list
 	 */
@@ -64,26 +82,26 @@ public abstract class MethodNative extends MethodDeclaration {
 		return true;
 	}
 
+	/**
+	 * Run method using arguments from current scope
+	 */
 	@Override
 	public void runFunction(BdsThread bdsThread) {
-		// Get object 'this'
-		ScopeSymbol symThis = bdsThread.getScope().getSymbol(THIS_KEYWORD);
-		Object objThis = symThis.getValue();
+		VarDeclaration fparam[] = getParameters().getVarDecl();
+		Object args[] = new Object[fparam.length];
+		for (int i = 0; i < fparam.length; i++)
+			args[i] = bdsThread.getObject(fparam[i].getVarInit()[0].getVarName());
 
-		// Run method
-		try {
-			Object result = runMethodNative(bdsThread, objThis);
-			bdsThread.setReturnValue(result); // Set result in scope
-		} catch (Throwable t) {
-			if (bdsThread.isVerbose()) t.printStackTrace();
-			bdsThread.fatalError(this, t.getMessage());
-		}
+		Object result = apply(bdsThread, args);
+		if (!bdsThread.isFatalError()) bdsThread.setReturnValue(result); // Set result in scope
 	}
 
 	/**
 	 * Run a method
+	 * @param objThis : Object 'this'
+	 * @param args : Arguments (same order as parameters, i.e. args[0] is 'this')
 	 */
-	protected Object runMethodNative(BdsThread csThread, Object objThis) {
+	protected Object runMethodNative(BdsThread bdsThread, Object objThis, Object args[]) {
 		throw new RuntimeException("Unimplemented method for class " + this.getClass().getSimpleName());
 	}
 
@@ -93,9 +111,8 @@ public abstract class MethodNative extends MethodDeclaration {
 	}
 
 	@Override
-	public String serializeSave(BdsSerializer serializer) {
+	public void serializeSave(BdsSerializer serializer) {
 		// Nothing to do: Native methods are not serialized
-		return "";
 	}
 
 	@Override
@@ -28,7 +28,7 @@ public class MethodNativeZzz extends MethodNative {
 	}
 
 	@Override
-	protected Object runMethodNative(BdsThread csThread, Object objThis) {
+	protected Object runMethodNative(BdsThread csThread, Object objThis, Object args[]) {
 		return objThis.toString();
 	}
 }
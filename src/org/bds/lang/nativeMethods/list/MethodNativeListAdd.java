@@ -1,6 +1,6 @@
 package org.bds.lang.nativeMethods.list;
 
-import java.util.ArrayList;
+import java.util.List;
 
 import org.bds.lang.Parameters;
 import org.bds.lang.Type;
@@ -35,9 +35,9 @@ public class MethodNativeListAdd extends MethodNativeList {
 
 	@SuppressWarnings({ "rawtypes", "unchecked" })
 	@Override
-	protected Object runMethodNative(BdsThread csThread, Object objThis) {
-		ArrayList list = (ArrayList) objThis;
-		Object toPush = csThread.getObject("toPush");
+	protected Object runMethodNative(BdsThread csThread, Object objThis, Object args[]) {
+		List list = (List) objThis;
+		Object toPush = args[1];
 		list.add(toPush);
 		return toPush;
 	}
@@ -1,6 +1,6 @@
 package org.bds.lang.nativeMethods.list;
 
-import java.util.ArrayList;
+import java.util.List;
 
 import org.bds.lang.Parameters;
 import org.bds.lang.Type;
@@ -33,10 +33,10 @@ public class MethodNativeListAddIndex extends MethodNativeList {
 
 	@SuppressWarnings({ "rawtypes", "unchecked" })
 	@Override
-	protected Object runMethodNative(BdsThread csThread, Object objThis) {
-		ArrayList list = (ArrayList) objThis;
-		long idx = csThread.getInt("idx");
-		Object toPush = csThread.getObject("toPush");
+	protected Object runMethodNative(BdsThread csThread, Object objThis, Object args[]) {
+		List list = (List) objThis;
+		long idx = (Long) args[1];
+		Object toPush = args[2];
 		list.add((int) idx, toPush);
 		return toPush;
 	}
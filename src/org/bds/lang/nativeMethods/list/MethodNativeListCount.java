@@ -1,6 +1,6 @@
 package org.bds.lang.nativeMethods.list;
 
-import java.util.ArrayList;
+import java.util.List;
 
 import org.bds.lang.Parameters;
 import org.bds.lang.Type;
@@ -33,9 +33,9 @@ public class MethodNativeListCount extends MethodNativeList {
 
 	@SuppressWarnings({ "rawtypes" })
 	@Override
-	protected Object runMethodNative(BdsThread csThread, Object objThis) {
-		ArrayList list = (ArrayList) objThis;
-		Object toCount = csThread.getObject("toCount");
+	protected Object runMethodNative(BdsThread csThread, Object objThis, Object args[]) {
+		List list = (List) objThis;
+		Object toCount = args[1];
 
 		long count = 0;
 		for (Object o : list)
@@ -1,6 +1,7 @@
 package org.bds.lang.nativeMethods.list;
 
 import java.util.ArrayList;
+import java.util.List;
 
 import org.bds.lang.FunctionDeclaration;
 import org.bds.lang.Parameters;
@@ -24,8 +25,8 @@ public class MethodNativeListFilter extends MethodNativeList {
 	 * Find a function
 	 * TODO: Move this to Scope?
 	 */
-	protected FunctionDeclaration findFunction(BdsThread bdsThread, String fname) {
-		FunctionDeclaration function = (FunctionDeclaration) bdsThread.getObject("f");
+	protected FunctionDeclaration findFunction(BdsThread bdsThread, Object args[]) {
+		FunctionDeclaration function = (FunctionDeclaration) args[1];
 
 		// Type checking
 		// TODO: This is awful to say the least!
@@ -41,7 +42,11 @@ public class MethodNativeListFilter extends MethodNativeList {
 
 	@Override
 	protected void initMethod(Type baseType) {
-		functionName = "filter";
+		initMethod(baseType, "filter");
+	}
+
+	protected void initMethod(Type baseType, String functionName) {
+		this.functionName = functionName;
 		classType = TypeList.get(baseType);
 		returnType = TypeList.get(baseType);;
 
@@ -55,12 +60,12 @@ public class MethodNativeListFilter extends MethodNativeList {
 
 	@SuppressWarnings({ "rawtypes", "unchecked" })
 	@Override
-	protected Object runMethodNative(BdsThread bdsThread, Object objThis) {
-		ArrayList list = (ArrayList) objThis;
+	protected Object runMethodNative(BdsThread bdsThread, Object objThis, Object args[]) {
+		List list = (List) objThis;
 		ArrayList newList = new ArrayList();
 
 		// Get function
-		FunctionDeclaration function = findFunction(bdsThread, "f");
+		FunctionDeclaration function = findFunction(bdsThread, args);
 
 		for (Object val : list) {
 			Object ret = function.apply(bdsThread, val);
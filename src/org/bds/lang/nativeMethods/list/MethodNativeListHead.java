@@ -1,6 +1,6 @@
 package org.bds.lang.nativeMethods.list;
 
-import java.util.ArrayList;
+import java.util.List;
 
 import org.bds.lang.Parameters;
 import org.bds.lang.Type;
@@ -33,9 +33,9 @@ public class MethodNativeListHead extends MethodNativeList {
 
 	@SuppressWarnings("rawtypes")
 	@Override
-	protected Object runMethodNative(BdsThread csThread, Object objThis) {
-		ArrayList list = ((ArrayList) objThis);
+	protected Object runMethodNative(BdsThread csThread, Object objThis, Object args[]) {
+		List list = (List) objThis;
 		if (list.isEmpty()) throw new RuntimeException("Invoking 'head' on an empty list.");
-		return ((ArrayList) objThis).get(0);
+		return list.get(0);
 	}
 }
@@ -1,6 +1,6 @@
 package org.bds.lang.nativeMethods.list;
 
-import java.util.ArrayList;
+import java.util.List;
 
 import org.bds.lang.Parameters;
 import org.bds.lang.Type;
@@ -32,7 +32,7 @@ public class MethodNativeListJoin extends MethodNativeList {
 	}
 
 	@SuppressWarnings("rawtypes")
-	String join(ArrayList list, String str) {
+	String join(List list, String str) {
 		StringBuilder sb = new StringBuilder();
 
 		if (list.isEmpty()) return "";
@@ -47,8 +47,8 @@ public class MethodNativeListJoin extends MethodNativeList {
 
 	@SuppressWarnings("rawtypes")
 	@Override
-	protected Object runMethodNative(BdsThread csThread, Object objThis) {
-		ArrayList list = (ArrayList) objThis;
+	protected Object runMethodNative(BdsThread csThread, Object objThis, Object args[]) {
+		List list = (List) objThis;
 		return join(list, " ");
 	}
 }
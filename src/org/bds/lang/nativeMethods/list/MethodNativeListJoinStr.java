@@ -1,6 +1,6 @@
 package org.bds.lang.nativeMethods.list;
 
-import java.util.ArrayList;
+import java.util.List;
 
 import org.bds.lang.Parameters;
 import org.bds.lang.Type;
@@ -33,9 +33,9 @@ public class MethodNativeListJoinStr extends MethodNativeListJoin {
 
 	@SuppressWarnings("rawtypes")
 	@Override
-	protected Object runMethodNative(BdsThread csThread, Object objThis) {
-		ArrayList list = (ArrayList) objThis;
-		String ext = csThread.getString("separator");
+	protected Object runMethodNative(BdsThread csThread, Object objThis, Object args[]) {
+		List list = (List) objThis;
+		String ext = args[1].toString();
 		return join(list, ext);
 	}
 }
@@ -1,6 +1,7 @@
 package org.bds.lang.nativeMethods.list;
 
 import java.util.ArrayList;
+import java.util.List;
 
 import org.bds.lang.FunctionDeclaration;
 import org.bds.lang.Parameters;
@@ -32,8 +33,8 @@ public class MethodNativeListMap extends MethodNativeList {
 	 * Find a function
 	 * TODO: Move this to Scope?
 	 */
-	protected FunctionDeclaration findFunction(BdsThread bdsThread, String fname) {
-		FunctionDeclaration function = (FunctionDeclaration) bdsThread.getObject("f");
+	protected FunctionDeclaration findFunction(BdsThread bdsThread, Object args[]) {
+		FunctionDeclaration function = (FunctionDeclaration) args[1];
 
 		// Type checking
 		// TODO: This is awful to say the least!
@@ -68,11 +69,11 @@ public class MethodNativeListMap extends MethodNativeList {
 
 	@SuppressWarnings({ "rawtypes", "unchecked" })
 	@Override
-	protected Object runMethodNative(BdsThread bdsThread, Object objThis) {
-		ArrayList list = (ArrayList) objThis;
+	protected Object runMethodNative(BdsThread bdsThread, Object objThis, Object args[]) {
+		List list = (List) objThis;
 
 		// Get function
-		FunctionDeclaration function = findFunction(bdsThread, "f");
+		FunctionDeclaration function = findFunction(bdsThread, args);
 
 		// Map
 		ArrayList res = new ArrayList();
@@ -0,0 +1,43 @@
+package org.bds.lang.nativeMethods.list;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.bds.lang.FunctionDeclaration;
+import org.bds.lang.Type;
+import org.bds.run.BdsThread;
+
+/**
+ * Parallel filter: Filter elements form a list by applying a function
+ * that returns a 'bool', using several threads. Elements are in the
+ * same order as the list
+ *
+ * @author pcingola
+ */
+public class MethodNativeListPfilter extends MethodNativeListFilter {
+
+	public MethodNativeListPfilter(Type baseType) {
+		super(baseType);
+	}
+
+	@Override
+	protected void initMethod(Type baseType) {
+		initMethod(baseType, "pfilter");
+	}
+
+	@SuppressWarnings({ "rawtypes", "unchecked" })
+	@Override
+	protected Object runMethodNative(BdsThread bdsThread, Object objThis, Object args[]) {
+		List list = (List) objThis;
+		ArrayList newList = new ArrayList();
+
+		// Get function
+		FunctionDeclaration function = findFunction(bdsThread, args);
+
+		Object results[] = bdsThread.applyParallel(function, list);
+		for (int i = 0; i < results.length; i++)
+			if ((Boolean) Type.BOOL.cast(results[i])) newList.add(list.get(i));
+
+		return newList;
+	}
+}
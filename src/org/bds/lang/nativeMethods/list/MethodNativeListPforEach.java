@@ -0,0 +1,38 @@
+package org.bds.lang.nativeMethods.list;
+
+import java.util.List;
+
+import org.bds.lang.FunctionDeclaration;
+import org.bds.lang.Type;
+import org.bds.run.BdsThread;
+
+/**
+ * Parallel foreach: Apply a function to all elements in the list,
+ * using several threads
+ *
+ * @author pcingola
+ */
+public class MethodNativeListPforEach extends MethodNativeListForEach {
+
+	public MethodNativeListPforEach(Type baseType) {
+		super(baseType);
+	}
+
+	@Override
+	protected void initMethod(Type baseType) {
+		initMethod(baseType, "pforeach");
+	}
+
+	@SuppressWarnings({ "rawtypes" })
+	@Override
+	protected Object runMethodNative(BdsThread bdsThread, Object objThis, Object args[]) {
+		List list = (List) objThis;
+
+		// Get function
+		FunctionDeclaration function = findFunction(bdsThread, args);
+
+		bdsThread.applyParallel(function, list);
+
+		return list;
+	}
+}
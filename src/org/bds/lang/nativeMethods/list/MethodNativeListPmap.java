@@ -0,0 +1,38 @@
+package org.bds.lang.nativeMethods.list;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.bds.lang.FunctionDeclaration;
+import org.bds.lang.Type;
+import org.bds.run.BdsThread;
+
+/**
+ * Parallel map: Apply a function to all elements in the list, using
+ * several threads. Results are in the same order as the list
+ *
+ * @author pcingola
+ */
+public class MethodNativeListPmap extends MethodNativeListMap {
+
+	public MethodNativeListPmap(Type baseType) {
+		super(baseType, baseType, "pmap");
+	}
+
+	@SuppressWarnings({ "rawtypes", "unchecked" })
+	@Override
+	protected Object runMethodNative(BdsThread bdsThread, Object objThis, Object args[]) {
+		List list = (List) objThis;
+
+		// Get function
+		FunctionDeclaration function = findFunction(bdsThread, args);
+
+		// Map
+		Object results[] = bdsThread.applyParallel(function, list);
+		ArrayList res = new ArrayList(results.length);
+		for (Object r : results)
+			res.add(returnBaseType.cast(r)); // Cast to list's type
+
+		return res;
+	}
+}
@@ -1,6 +1,6 @@
 package org.bds.lang.nativeMethods.list;
 
-import java.util.ArrayList;
+import java.util.List;
 
 import org.bds.lang.Parameters;
 import org.bds.lang.Type;
@@ -33,8 +33,8 @@ public class MethodNativeListPop extends MethodNativeList {
 
 	@SuppressWarnings("rawtypes")
 	@Override
-	protected Object runMethodNative(BdsThread csThread, Object objThis) {
-		ArrayList list = (ArrayList) objThis;
+	protected Object runMethodNative(BdsThread csThread, Object objThis, Object args[]) {
+		List list = (List) objThis;
 		if (list.isEmpty()) throw new RuntimeException("Invoking 'pop' element on an empty list.");
 		return list.remove(list.size() - 1);
 	}
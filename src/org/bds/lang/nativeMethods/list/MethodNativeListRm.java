@@ -32,7 +32,7 @@ public class MethodNativeListRm extends MethodNativeList {
 
 	@SuppressWarnings({ "rawtypes" })
 	@Override
-	protected Object runMethodNative(BdsThread bdsThread, Object objThis) {
+	protected Object runMethodNative(BdsThread bdsThread, Object objThis, Object args[]) {
 		List list = (List) objThis;
 
 		for (Object o : list)
@@ -32,7 +32,7 @@ public class MethodNativeListRmOnExit extends MethodNativeList {
 
 	@SuppressWarnings({ "rawtypes", "unchecked" })
 	@Override
-	protected Object runMethodNative(BdsThread bdsThread, Object objThis) {
+	protected Object runMethodNative(BdsThread bdsThread, Object objThis, Object args[]) {
 		List list = (List) objThis;
 		bdsThread.rmOnExit(list);
 		return objThis;
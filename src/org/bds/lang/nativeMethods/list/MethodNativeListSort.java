@@ -2,6 +2,7 @@ package org.bds.lang.nativeMethods.list;
 
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.List;
 
 import org.bds.lang.Parameters;
 import org.bds.lang.Type;
@@ -34,8 +35,8 @@ public class MethodNativeListSort extends MethodNativeList {
 
 	@SuppressWarnings({ "rawtypes", "unchecked" })
 	@Override
-	protected Object runMethodNative(BdsThread csThread, Object objThis) {
-		ArrayList list = (ArrayList) objThis;
+	protected Object runMethodNative(BdsThread csThread, Object objThis, Object args[]) {
+		List list = (List) objThis;
 
 		// Empty list? => Nothing to do
 		if (list.size() <= 0) return new ArrayList();
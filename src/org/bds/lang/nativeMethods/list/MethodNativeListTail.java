@@ -1,6 +1,7 @@
 package org.bds.lang.nativeMethods.list;
 
 import java.util.ArrayList;
+import java.util.List;
 
 import org.bds.lang.Parameters;
 import org.bds.lang.Type;
@@ -32,8 +33,8 @@ public class MethodNativeListTail extends MethodNativeList {
 
 	@SuppressWarnings({ "rawtypes", "unchecked" })
 	@Override
-	protected Object runMethodNative(BdsThread csThread, Object objThis) {
-		ArrayList list = (ArrayList) objThis;
+	protected Object runMethodNative(BdsThread csThread, Object objThis, Object args[]) {
+		List list = (List) objThis;
 
 		// Empty list or only one element? => Nothing to do
 		if (list.size() <= 1) return new ArrayList();
@@ -1,6 +1,6 @@
 package org.bds.lang.nativeMethods.map;
 
-import java.util.ArrayList;
+import java.util.List;
 
 import org.bds.lang.Type;
 import org.bds.lang.nativeMethods.MethodNative;
@@ -27,9 +27,9 @@ public abstract class MethodNativeMap extends MethodNative {
 
 	@SuppressWarnings({ "rawtypes", "unchecked" })
 	@Override
-	protected Object runMethodNative(BdsThread csThread, Object objThis) {
-		ArrayList list = (ArrayList) objThis;
-		Object toPush = csThread.getObject("toPush");
+	protected Object runMethodNative(BdsThread csThread, Object objThis, Object args[]) {
+		List list = (List) objThis;
+		Object toPush = args[1];
 		list.add(toPush);
 		return toPush;
 	}
@@ -1,6 +1,6 @@
 package org.bds.lang.nativeMethods.map;
 
-import java.util.HashMap;
+import java.util.Map;
 
 import org.bds.lang.Parameters;
 import org.bds.lang.Type;
@@ -33,9 +33,9 @@ public class MethodNativeMapRemove extends MethodNativeMap {
 
 	@SuppressWarnings({ "rawtypes" })
 	@Override
-	protected Object runMethodNative(BdsThread csThread, Object objThis) {
-		HashMap map = (HashMap) objThis;
-		String key = csThread.getObject("key").toString();
+	protected Object runMethodNative(BdsThread csThread, Object objThis, Object args[]) {
+		Map map = (Map) objThis;
+		String key = args[1].toString();
 		return map.remove(key);
 	}
 }
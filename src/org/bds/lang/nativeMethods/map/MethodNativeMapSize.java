@@ -1,6 +1,6 @@
 package org.bds.lang.nativeMethods.map;
 
-import java.util.HashMap;
+import java.util.Map;
 
 import org.bds.lang.Parameters;
 import org.bds.lang.Type;
@@ -33,8 +33,8 @@ public class MethodNativeMapSize extends MethodNativeMap {
 
 	@SuppressWarnings({ "rawtypes" })
 	@Override
-	protected Object runMethodNative(BdsThread csThread, Object objThis) {
-		HashMap map = (HashMap) objThis;
+	protected Object runMethodNative(BdsThread csThread, Object objThis, Object args[]) {
+		Map map = (Map) objThis;
 		return (long) map.size();
 	}
 }
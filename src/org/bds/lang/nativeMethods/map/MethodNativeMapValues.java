@@ -2,7 +2,7 @@ package org.bds.lang.nativeMethods.map;
 
 import java.util.ArrayList;
 import java.util.Collections;
-import java.util.HashMap;
+import java.util.Map;
 
 import org.bds.lang.Parameters;
 import org.bds.lang.Type;
@@ -36,8 +36,8 @@ public class MethodNativeMapValues extends MethodNativeMap {
 
 	@SuppressWarnings({ "rawtypes", "unchecked" })
 	@Override
-	protected Object runMethodNative(BdsThread csThread, Object objThis) {
-		HashMap map = (HashMap) objThis;
+	protected Object runMethodNative(BdsThread csThread, Object objThis, Object args[]) {
+		Map map = (Map) objThis;
 		ArrayList list = new ArrayList();
 		list.addAll(map.values());
 		Collections.sort(list);
@@ -23,8 +23,8 @@ public class MethodNative_string_baseName_ext extends MethodNative {
 	}
 
 	@Override
-	protected Object runMethodNative(BdsThread bdsThread, Object objThis) {
-		String ext = bdsThread.getString("ext");
+	protected Object runMethodNative(BdsThread bdsThread, Object objThis, Object args[]) {
+		String ext = args[1].toString();
 		String b = (bdsThread.data(objThis.toString())).getName();
 		if (b.endsWith(ext)) return b.substring(0, b.length() - ext.length());
 		return b;
@@ -23,7 +23,7 @@ public class MethodNative_string_canRead extends MethodNative {
 	}
 
 	@Override
-	protected Object runMethodNative(BdsThread bdsThread, Object objThis) {
+	protected Object runMethodNative(BdsThread bdsThread, Object objThis, Object args[]) {
 		return (bdsThread.data(objThis.toString())).canRead();
 	}
 }
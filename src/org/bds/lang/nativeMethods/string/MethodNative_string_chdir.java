@@ -26,7 +26,7 @@ public class MethodNative_string_chdir extends MethodNative {
 	}
 
 	@Override
-	protected Object runMethodNative(BdsThread bdsThread, Object objThis) {
+	protected Object runMethodNative(BdsThread bdsThread, Object objThis, Object args[]) {
 		String dirName = objThis.toString();
 		Data dir = bdsThread.data(dirName);
 
@@ -27,7 +27,7 @@ public class MethodNative_string_dir extends MethodNative {
 	}
 
 	@Override
-	protected Object runMethodNative(BdsThread bdsThread, Object objThis) {
+	protected Object runMethodNative(BdsThread bdsThread, Object objThis, Object args[]) {
 		ArrayList<String> list = bdsThread.data(objThis.toString()).list();
 		Collections.sort(list);
 		return list;
@@ -23,7 +23,7 @@ public class MethodNative_string_dirName extends MethodNative {
 	}
 
 	@Override
-	protected Object runMethodNative(BdsThread bdsThread, Object objThis) {
+	protected Object runMethodNative(BdsThread bdsThread, Object objThis, Object args[]) {
 		try {
 			String d = (bdsThread.data(objThis.toString())).getParent();
 			return d != null ? d : ".";
@@ -28,7 +28,7 @@ public class MethodNative_string_dirPath extends MethodNative {
 	}
 
 	@Override
-	protected Object runMethodNative(BdsThread bdsThread, Object objThis) {
+	protected Object runMethodNative(BdsThread bdsThread, Object objThis, Object args[]) {
 		ArrayList<String> list = new ArrayList<>();
 
 		String baseDir = objThis.toString();
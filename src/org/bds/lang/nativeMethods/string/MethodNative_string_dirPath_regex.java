@@ -40,8 +40,8 @@ public class MethodNative_string_dirPath_regex extends MethodNative {
 	}
 
 	@Override
-	protected Object runMethodNative(BdsThread bdsThread, Object objThis) {
-		String glob = bdsThread.getString("glob");
+	protected Object runMethodNative(BdsThread bdsThread, Object objThis, Object args[]) {
+		String glob = args[1].toString();
 
 		//---
 		// List all files, filtered by 'glob'
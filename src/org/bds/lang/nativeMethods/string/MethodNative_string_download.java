@@ -24,7 +24,7 @@ public class MethodNative_string_download extends MethodNative {
 	}
 
 	@Override
-	protected Object runMethodNative(BdsThread bdsThread, Object objThis) {
+	protected Object runMethodNative(BdsThread bdsThread, Object objThis, Object args[]) {
 		Data data = bdsThread.data(objThis.toString());
 		if (!data.download()) return "";
 		return data.getLocalPath();
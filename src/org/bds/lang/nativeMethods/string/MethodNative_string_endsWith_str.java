@@ -30,7 +30,7 @@ public class MethodNative_string_endsWith_str extends MethodNative {
 	}
 
 	@Override
-	protected Object runMethodNative(BdsThread csThread, Object objThis) {
-		return objThis.toString().endsWith( csThread.getString("str") );
+	protected Object runMethodNative(BdsThread csThread, Object objThis, Object args[]) {
+		return objThis.toString().endsWith( args[1].toString() );
 	}
 }
@@ -23,7 +23,7 @@ public class MethodNative_string_extName extends MethodNative {
 	}
 
 	@Override
-	protected Object runMethodNative(BdsThread bdsThread, Object objThis) {
+	protected Object runMethodNative(BdsThread bdsThread, Object objThis, Object args[]) {
 		String base = objThis.toString();
 		int idx = base.lastIndexOf('.');
 		return idx >= 0 ? base.substring(idx + 1) : "";
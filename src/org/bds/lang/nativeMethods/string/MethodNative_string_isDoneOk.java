@@ -30,7 +30,7 @@ public class MethodNative_string_isDoneOk extends MethodNative {
 	}
 
 	@Override
-	protected Object runMethodNative(BdsThread csThread, Object objThis) {
+	protected Object runMethodNative(BdsThread csThread, Object objThis, Object args[]) {
 		String taskId = objThis.toString(); Task task = csThread.getTask(taskId); if (task == null) return false; return task.isDoneOk();
 	}
 }
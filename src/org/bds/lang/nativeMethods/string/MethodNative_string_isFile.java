@@ -1,5 +1,6 @@
 package org.bds.lang.nativeMethods.string;
 
+import org.bds.data.DataStatCache;
 import org.bds.lang.Parameters;
 import org.bds.lang.Type;
 import org.bds.lang.nativeMethods.MethodNative;
@@ -23,7 +24,7 @@ public class MethodNative_string_isFile extends MethodNative {
 	}
 
 	@Override
-	protected Object runMethodNative(BdsThread bdsThread, Object objThis) {
-		return (bdsThread.data(objThis.toString())).isFile();
+	protected Object runMethodNative(BdsThread bdsThread, Object objThis, Object args[]) {
+		return DataStatCache.get().stat(bdsThread.data(objThis.toString())).isFile();
 	}
 }
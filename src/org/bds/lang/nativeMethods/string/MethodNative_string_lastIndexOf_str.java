@@ -30,7 +30,7 @@ public class MethodNative_string_lastIndexOf_str extends MethodNative {
 	}
 
 	@Override
-	protected Object runMethodNative(BdsThread csThread, Object objThis) {
-		return (long) objThis.toString().lastIndexOf( csThread.getString("str") );
+	protected Object runMethodNative(BdsThread csThread, Object objThis, Object args[]) {
+		return (long) objThis.toString().lastIndexOf( args[1].toString() );
 	}
 }
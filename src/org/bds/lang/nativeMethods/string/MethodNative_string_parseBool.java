@@ -30,7 +30,7 @@ public class MethodNative_string_parseBool extends MethodNative {
 	}
 
 	@Override
-	protected Object runMethodNative(BdsThread csThread, Object objThis) {
+	protected Object runMethodNative(BdsThread csThread, Object objThis, Object args[]) {
 		return Gpr.parseBoolSafe( objThis.toString().trim() );
 	}
 }
@@ -23,7 +23,7 @@ public class MethodNative_string_path extends MethodNative {
 	}
 
 	@Override
-	protected Object runMethodNative(BdsThread bdsThread, Object objThis) {
+	protected Object runMethodNative(BdsThread bdsThread, Object objThis, Object args[]) {
 		try {
 			return (bdsThread.data(objThis.toString())).getAbsolutePath();
 		} catch (Exception e) {
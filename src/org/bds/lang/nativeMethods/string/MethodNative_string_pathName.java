@@ -24,7 +24,7 @@ public class MethodNative_string_pathName extends MethodNative {
 	}
 
 	@Override
-	protected Object runMethodNative(BdsThread bdsThread, Object objThis) {
+	protected Object runMethodNative(BdsThread bdsThread, Object objThis, Object args[]) {
 		try {
 			String parenPath = bdsThread.data(objThis.toString()).getParent();
 			Data d = bdsThread.data(parenPath);
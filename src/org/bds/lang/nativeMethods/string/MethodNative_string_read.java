@@ -25,7 +25,7 @@ public class MethodNative_string_read extends MethodNative {
 	}
 
 	@Override
-	protected Object runMethodNative(BdsThread bdsThread, Object objThis) {
+	protected Object runMethodNative(BdsThread bdsThread, Object objThis, Object args[]) {
 		// Download data if necessary
 		Data data = bdsThread.data(objThis.toString());
 
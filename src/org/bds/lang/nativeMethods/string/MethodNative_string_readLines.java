@@ -28,7 +28,7 @@ public class MethodNative_string_readLines extends MethodNative {
 	}
 
 	@Override
-	protected Object runMethodNative(BdsThread bdsThread, Object objThis) {
+	protected Object runMethodNative(BdsThread bdsThread, Object objThis, Object args[]) {
 		// Download data if necessary
 		Data data = bdsThread.data(objThis.toString());
 
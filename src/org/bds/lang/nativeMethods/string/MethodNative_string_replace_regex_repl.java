@@ -23,7 +23,7 @@ public class MethodNative_string_replace_regex_repl extends MethodNative {
 	}
 
 	@Override
-	protected Object runMethodNative(BdsThread csThread, Object objThis) {
-		return objThis.toString().replaceAll(csThread.getString("regex"), csThread.getString("repl"));
+	protected Object runMethodNative(BdsThread csThread, Object objThis, Object args[]) {
+		return objThis.toString().replaceAll(args[1].toString(), args[2].toString());
 	}
 }
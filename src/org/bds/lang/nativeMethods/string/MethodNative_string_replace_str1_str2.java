@@ -23,7 +23,7 @@ public class MethodNative_string_replace_str1_str2 extends MethodNative {
 	}
 
 	@Override
-	protected Object runMethodNative(BdsThread csThread, Object objThis) {
-		return objThis.toString().replace(csThread.getString("str1"), csThread.getString("str2"));
+	protected Object runMethodNative(BdsThread csThread, Object objThis, Object args[]) {
+		return objThis.toString().replace(args[1].toString(), args[2].toString());
 	}
 }
@@ -23,7 +23,7 @@ public class MethodNative_string_rmOnExit extends MethodNative {
 	}
 
 	@Override
-	protected Object runMethodNative(BdsThread bdsThread, Object objThis) {
+	protected Object runMethodNative(BdsThread bdsThread, Object objThis, Object args[]) {
 		bdsThread.rmOnExit(objThis.toString());
 		return objThis;
 	}
@@ -30,7 +30,7 @@ public class MethodNative_string_startsWith_str extends MethodNative {
 	}
 
 	@Override
-	protected Object runMethodNative(BdsThread csThread, Object objThis) {
-		return objThis.toString().startsWith( csThread.getString("str") );
+	protected Object runMethodNative(BdsThread csThread, Object objThis, Object args[]) {
+		return objThis.toString().startsWith( args[1].toString() );
 	}
 }
@@ -25,7 +25,7 @@ public class MethodNative_string_stderr extends MethodNative {
 	}
 
 	@Override
-	protected Object runMethodNative(BdsThread bdsThread, Object objThis) {
+	protected Object runMethodNative(BdsThread bdsThread, Object objThis, Object args[]) {
 		String taskId = objThis.toString();
 		Task task = bdsThread.getTask(taskId);
 		if (task == null) return "";
@@ -30,7 +30,7 @@ public class MethodNative_string_substr_start extends MethodNative {
 	}
 
 	@Override
-	protected Object runMethodNative(BdsThread csThread, Object objThis) {
-		String s = objThis.toString(); int start = (int) csThread.getInt("start") ; start=Math.max(0,start); return s.substring(start);
+	protected Object runMethodNative(BdsThread csThread, Object objThis, Object args[]) {
+		String s = objThis.toString(); int start = ((Long) args[1]).intValue() ; start=Math.max(0,start); return s.substring(start);
 	}
 }
@@ -30,7 +30,7 @@ public class MethodNative_string_substr_start_end extends MethodNative {
 	}
 
 	@Override
-	protected Object runMethodNative(BdsThread csThread, Object objThis) {
-		String s = objThis.toString(); int start = (int) csThread.getInt("start"), end = (int) csThread.getInt("end") ; start=Math.max(0,start); end=Math.min(end,s.length()); return (start>=end? "" : s.substring(start,end));
+	protected Object runMethodNative(BdsThread csThread, Object objThis, Object args[]) {
+		String s = objThis.toString(); int start = ((Long) args[1]).intValue(), end = ((Long) args[2]).intValue() ; start=Math.max(0,start); end=Math.min(end,s.length()); return (start>=end? "" : s.substring(start,end));
 	}
 }
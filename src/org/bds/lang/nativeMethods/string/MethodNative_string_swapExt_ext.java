@@ -23,7 +23,7 @@ public class MethodNative_string_swapExt_ext extends MethodNative {
 	}
 
 	@Override
-	protected Object runMethodNative(BdsThread csThread, Object objThis) {
-		String ext = csThread.getString("ext"); String b = objThis.toString(); if (b.endsWith(ext)) return b.substring(0, b.length() - ext.length()); return b;
+	protected Object runMethodNative(BdsThread csThread, Object objThis, Object args[]) {
+		String ext = args[1].toString(); String b = objThis.toString(); if (b.endsWith(ext)) return b.substring(0, b.length() - ext.length()); return b;
 	}
 }
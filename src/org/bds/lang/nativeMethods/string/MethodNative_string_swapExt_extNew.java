@@ -30,7 +30,7 @@ public class MethodNative_string_swapExt_extNew extends MethodNative {
 	}
 
 	@Override
-	protected Object runMethodNative(BdsThread csThread, Object objThis) {
-		String base = objThis.toString(); String extNew = csThread.getString("extNew"); int idx = base.lastIndexOf('.'); return idx >= 0 ? base.substring(0, idx) + "." + extNew : base + "." + extNew;
+	protected Object runMethodNative(BdsThread csThread, Object objThis, Object args[]) {
+		String base = objThis.toString(); String extNew = args[1].toString(); int idx = base.lastIndexOf('.'); return idx >= 0 ? base.substring(0, idx) + "." + extNew : base + "." + extNew;
 	}
 }
@@ -30,7 +30,7 @@ public class MethodNative_string_swapExt_extOld_extNew extends MethodNative {
 	}
 
 	@Override
-	protected Object runMethodNative(BdsThread csThread, Object objThis) {
-		String extNew = csThread.getString("extNew"); String extOld = csThread.getString("extOld"); String b = objThis.toString(); if (b.endsWith(extOld)) return b.substring(0, b.length() - extOld.length()) + extNew; return b + extNew;
+	protected Object runMethodNative(BdsThread csThread, Object objThis, Object args[]) {
+		String extNew = args[2].toString(); String extOld = args[1].toString(); String b = objThis.toString(); if (b.endsWith(extOld)) return b.substring(0, b.length() - extOld.length()) + extNew; return b + extNew;
 	}
 }
@@ -25,7 +25,7 @@ public class MethodNative_string_upload extends MethodNative {
 	}
 
 	@Override
-	protected Object runMethodNative(BdsThread bdsThread, Object objThis) {
+	protected Object runMethodNative(BdsThread bdsThread, Object objThis, Object args[]) {
 		Data data = bdsThread.data(objThis.toString());
 		return data.upload();
 	}
@@ -25,8 +25,8 @@ public class MethodNative_string_upload_localname extends MethodNative {
 	}
 
 	@Override
-	protected Object runMethodNative(BdsThread bdsThread, Object objThis) {
-		String localName = bdsThread.getString("localName");
+	protected Object runMethodNative(BdsThread bdsThread, Object objThis, Object args[]) {
+		String localName = args[1].toString();
 
 		Data data = bdsThread.data(objThis.toString());
 		Data localData = bdsThread.data(localName);
@@ -28,12 +28,12 @@ public class MethodNative_string_write_str extends MethodNative {
 	}
 
 	@Override
-	protected Object runMethodNative(BdsThread bdsThread, Object objThis) {
+	protected Object runMethodNative(BdsThread bdsThread, Object objThis, Object args[]) {
 		// Download data if nescesary
 		Data data = bdsThread.data(objThis.toString());
 
 		// Save to file
-		String str = bdsThread.getString("str");
+		String str = args[1].toString();
 		if (data.isRemote()) {
 			DataRemote dr = (DataRemote) data;
 			if (!dr.isFile()) bdsThread.fatalError(this, "Cannot write to non-file: " + dr.getAbsolutePath());
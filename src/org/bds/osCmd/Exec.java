@@ -3,6 +3,7 @@ package org.bds.osCmd;
 import java.io.File;
 import java.lang.management.ManagementFactory;
 import java.util.List;
+import java.util.concurrent.ForkJoinPool;
 
 import org.bds.run.BdsThread;
 import org.bds.run.BdsThreads;
@@ -73,7 +74,22 @@ public class Exec {
 			stderr.start();
 
 			// Wait for process to finish
-			exitValue = process.waitFor();
+			final Process proc = process;
+			BdsThreads.block(new ForkJoinPool.ManagedBlocker() {
+				boolean done = false;
+
+				@Override
+				public boolean block() throws InterruptedException {
+					exitValue = proc.waitFor();
+					done = true;
+					return true;
+				}
+
+				@Override
+				public boolean isReleasable() {
+					return done;
+				}
+			});
 
 			// Wait for Gobblers to finish (otherwise we may have an incomplete stdout/stderr)
 			stdout.join();
@@ -6,13 +6,15 @@ import java.io.InputStreamReader;
 import java.util.ArrayList;
 import java.util.Calendar;
 import java.util.Collection;
-import java.util.Deque;
 import java.util.HashMap;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
 import java.util.Random;
 import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
 
 import org.bds.Config;
 import org.bds.data.Data;
@@ -23,6 +25,7 @@ import org.bds.lang.BlockWithFile;
 import org.bds.lang.Checkpoint;
 import org.bds.lang.ExpressionTask;
 import org.bds.lang.FunctionCall;
+import org.bds.lang.FunctionDeclaration;
 import org.bds.lang.MethodCall;
 import org.bds.lang.ProgramUnit;
 import org.bds.lang.Statement;
@@ -36,6 +39,7 @@ import org.bds.scope.Scope;
 import org.bds.scope.ScopeSymbol;
 import org.bds.serialize.BdsSerialize;
 import org.bds.serialize.BdsSerializer;
+import org.bds.serialize.CheckpointWriter;
 import org.bds.task.Task;
 import org.bds.task.TaskDependecies;
 import org.bds.util.Gpr;
@@ -46,11 +50,16 @@ import org.bds.util.Timer;
  *
  * It has all information to run a program (scope, pc, run state, etc)
  *
+ * Note: A BdsThread is not a Java thread, it is executed by a thread
+ * pool (see BdsThreads). So a large number of 'par' blocks does not
+ * require the same number of Java threads.
+ *
  * @author pcingola
  */
-public class BdsThread extends Thread implements BdsSerialize {
+public class BdsThread implements Runnable, BdsSerialize {
 
 	public static final int MAX_TASK_FAILED_NAMES = 10; // Maximum number of failed tasks to show in summary
+	public static final int MAX_SCOPE_POOL_SIZE = 32; // Maximum number of scopes kept for reuse
 	public static final int FROZEN_SLEEP_TIME = 25; // Sleep time when frozen (milliseconds)
 	private static int threadNumber = 1;
 
@@ -67,6 +76,7 @@ public class BdsThread extends Thread implements BdsSerialize {
 	List<String> removeOnExit; // Files to be removed on exit
 	Timer timer; // Program timer
 	boolean freeze; // Freeze execution in next execution step
+	CheckpointWriter checkpointWriter; // Writes checkpoint files (root thread only)
 
 	// Debug stuff
 	BufferedReader console; // Read debug commands from console
@@ -76,13 +86,16 @@ public class BdsThread extends Thread implements BdsSerialize {
 	// Scope
 	Scope scope; // Base scope
 	String scopeNodeId; // Scope's ID, used only when un-serializing
-	Deque<Object> stack;
+	ArrayList<Scope> scopePool = new ArrayList<Scope>(); // Scopes that can be reused by 'newScope'
+	OperandStack stack; // Operand stack used to evaluate expressions
 
 	// BdsThread
 	String currentDir; // Program's 'current directoy'
 	BdsThread parent; // Parent thread
 	String bdsThreadId; // BdsThread ID
 	int bdsThreadNum; // Thread number
+	volatile boolean started; // Has this thread been started?
+	CountDownLatch runDone = new CountDownLatch(1); // Reaches zero when 'run' finishes
 	Map<String, BdsThread> bdsChildThreadsById; // Child threads
 
 	// Task management
@@ -102,8 +115,9 @@ public class BdsThread extends Thread implements BdsSerialize {
 		bdsThreadNum = bigDataScriptThreadId();
 		pc = new ProgramCounter(parent.getPc());
 		scope = parent.scope;
-		stack = new LinkedList<>();
-		runState = RunState.OK;
+		scope.setShared(); // Both threads use these scopes, they cannot be reused
+		stack = new OperandStack();
+		runState = RunState.PENDING; // Changed to 'OK' when a worker starts running this thread
 		config = parent.config;
 		random = parent.random;
 		removeOnExit = parent.removeOnExit;
@@ -124,7 +138,7 @@ public class BdsThread extends Thread implements BdsSerialize {
 		bdsThreadNum = bigDataScriptThreadId();
 		pc = new ProgramCounter();
 		scope = Scope.getGlobalScope();
-		stack = new LinkedList<>();
+		stack = new OperandStack();
 		runState = RunState.OK;
 		this.config = config;
 		random = new Random();
@@ -161,6 +175,57 @@ public class BdsThread extends Thread implements BdsSerialize {
 		restoredTasks.add(task);
 	}
 
+	/**
+	 * Apply a function to all values, using the thread pool (fork-join)
+	 * Each worker uses its own BdsThreadWorker, so function calls do not
+	 * share program counters, stacks or function scopes.
+	 * Results are in the same order as 'values'
+	 */
+	public Object[] applyParallel(final FunctionDeclaration function, final List<?> values) {
+		final Object results[] = new Object[values.size()];
+		if (values.isEmpty()) return results;
+
+		final int numWorkers = Math.min(BdsThreads.getInstance().getParallelism(config), values.size());
+		final AtomicInteger next = new AtomicInteger(0); // Next value to process
+		final AtomicReference<Throwable> error = new AtomicReference<Throwable>();
+		final CountDownLatch done = new CountDownLatch(numWorkers);
+
+		for (int i = 0; i < numWorkers; i++) {
+			final BdsThreadWorker worker = new BdsThreadWorker(this);
+
+			BdsThreads.getInstance().execute(new Runnable() {
+
+				@Override
+				public void run() {
+					BdsThreads.getInstance().addWorker(worker);
+					try {
+						for (int idx = next.getAndIncrement(); idx < results.length && error.get() == null; idx = next.getAndIncrement()) {
+							results[idx] = function.apply(worker, values.get(idx));
+							if (worker.isFatalError()) throw new RuntimeException("Fatal error in function '" + function.getFunctionName() + "'");
+						}
+					} catch (Throwable t) {
+						error.compareAndSet(null, t);
+					} finally {
+						BdsThreads.getInstance().removeWorker();
+						done.countDown();
+					}
+				}
+			}, config);
+		}
+
+		// Wait for all workers to finish
+		try {
+			BdsThreads.await(done);
+		} catch (InterruptedException e) {
+			throw new RuntimeException(e);
+		}
+
+		Throwable t = error.get();
+		if (t instanceof RuntimeException) throw (RuntimeException) t;
+		if (t != null) throw new RuntimeException(t);
+		return results;
+	}
+
 	/**
 	 * Has this or any child thread created tasks?
 	 */
@@ -200,12 +265,30 @@ public class BdsThread extends Thread implements BdsSerialize {
 
 		// Save
 		if (isVerbose()) System.err.println("Creating checkpoint file: '" + checkpointFileName + "'");
-		BdsSerializer bdsSer = new BdsSerializer(checkpointFileName, config);
-		bdsSer.save(getRoot()); // Save root thread
+		getRoot().checkpointSave(checkpointFileName); // Save root thread
 
 		return checkpointFileName;
 	}
 
+	/**
+	 * Save this (root) thread to a checkpoint file
+	 * Only changes since the last full checkpoint are saved, unless
+	 * deltas are disabled or it's time to create a new full checkpoint
+	 *
+	 * In asynchronous mode, we only take a snapshot of the program's state
+	 * here, the file is written by a background thread (see CheckpointWriter)
+	 */
+	synchronized void checkpointSave(String checkpointFileName) {
+		if (checkpointWriter == null) {
+			checkpointWriter = new CheckpointWriter(Config.get().getCheckpointDeltas(), Config.get().isCheckpointAsync());
+			checkpointWriter.setDebug(isDebug());
+		}
+
+		BdsSerializer bdsSer = new BdsSerializer(checkpointFileName, config);
+		bdsSer.snapshot(this, checkpointWriter.isAsync());
+		checkpointWriter.write(bdsSer);
+	}
+
 	/**
 	 * Make sure that the statement node is the first in the checkpoint recovery
 	 */
@@ -225,7 +308,7 @@ public class BdsThread extends Thread implements BdsSerialize {
 		// Create ID
 		String name = Gpr.baseName(statement.getFileName());
 		if (isRoot()) bdsThreadId = String.format("%s.%2$tY%2$tm%2$td_%2$tH%2$tM%2$tS_%2$tL", name, Calendar.getInstance());
-		else bdsThreadId = parent.bdsThreadId + "_parallel_" + getId();
+		else bdsThreadId = parent.bdsThreadId + "_parallel_" + bdsThreadNum;
 	}
 
 	/**
@@ -416,7 +499,7 @@ public class BdsThread extends Thread implements BdsSerialize {
 
 		while (freeze) {
 			try {
-				Thread.sleep(FROZEN_SLEEP_TIME);
+				BdsThreads.sleep(FROZEN_SLEEP_TIME);
 				if (isDebug()) Gpr.debug("Frozen bdsThread: '" + getBdsThreadId() + "'");
 			} catch (InterruptedException e) {
 				// Nothing to do
@@ -430,6 +513,10 @@ public class BdsThread extends Thread implements BdsSerialize {
 		return bdsThreadId;
 	}
 
+	public int getBdsThreadNum() {
+		return bdsThreadNum;
+	}
+
 	public List<BdsThread> getBdsThreads() {
 		List<BdsThread> list = new ArrayList<BdsThread>();
 		list.addAll(bdsChildThreadsById.values());
@@ -623,6 +710,13 @@ public class BdsThread extends Thread implements BdsSerialize {
 		return getScope().getSymbol(varName) != null;
 	}
 
+	/**
+	 * Has this thread been started and not yet finished running?
+	 */
+	public boolean isAlive() {
+		return started && runDone.getCount() > 0;
+	}
+
 	/**
 	 * Are we in CHECKPOINT_RECOVER mode?
 	 */
@@ -656,6 +750,13 @@ public class BdsThread extends Thread implements BdsSerialize {
 		return runState.isFrozen();
 	}
 
+	/**
+	 * Has this thread been created, but not started running yet?
+	 */
+	public boolean isPending() {
+		return runState.isPending();
+	}
+
 	public boolean isReturn() {
 		return runState.isReturn();
 	}
@@ -675,6 +776,13 @@ public class BdsThread extends Thread implements BdsSerialize {
 		return config != null && config.isVerbose();
 	}
 
+	/**
+	 * Wait for this thread to finish running
+	 */
+	public void join() throws InterruptedException {
+		BdsThreads.await(runDone);
+	}
+
 	/**
 	 * Kill: Stop execution of current thread
 	 */
@@ -714,14 +822,24 @@ public class BdsThread extends Thread implements BdsSerialize {
 	 * Create a new scope
 	 */
 	public void newScope(BdsNode node) {
-		scope = new Scope(scope, node);
+		int size = scopePool.size();
+		if (size > 0) {
+			// Reuse a scope
+			Scope newScope = scopePool.remove(size - 1);
+			newScope.reset(scope, node);
+			scope = newScope;
+		} else scope = new Scope(scope, node);
 	}
 
 	/**
 	 * Back to old scope
 	 */
 	public void oldScope() {
+		Scope oldScope = scope;
 		scope = scope.getParent();
+
+		// Can we reuse the scope?
+		if (!oldScope.isShared() && scopePool.size() < MAX_SCOPE_POOL_SIZE) scopePool.add(oldScope);
 	}
 
 	public Object peek() {
@@ -731,7 +849,22 @@ public class BdsThread extends Thread implements BdsSerialize {
 
 	public Object pop() {
 		if (isCheckpointRecover()) return null;
-		return stack.removeFirst();
+		return stack.pop();
+	}
+
+	public boolean popBool() {
+		if (isCheckpointRecover()) return false;
+		return stack.popBool();
+	}
+
+	public long popInt() {
+		if (isCheckpointRecover()) return 0;
+		return stack.popInt();
+	}
+
+	public double popReal() {
+		if (isCheckpointRecover()) return 0;
+		return stack.popReal();
 	}
 
 	public void print() {
@@ -774,8 +907,20 @@ public class BdsThread extends Thread implements BdsSerialize {
 		System.out.println("");
 	}
 
+	public void push(boolean value) {
+		if (!isCheckpointRecover()) stack.push(value);
+	}
+
+	public void push(double value) {
+		if (!isCheckpointRecover()) stack.push(value);
+	}
+
+	public void push(long value) {
+		if (!isCheckpointRecover()) stack.push(value);
+	}
+
 	public void push(Object obj) {
-		if (!isCheckpointRecover()) stack.addFirst(obj);
+		if (!isCheckpointRecover()) stack.push(obj);
 
 	}
 
@@ -858,6 +1003,7 @@ public class BdsThread extends Thread implements BdsSerialize {
 	@Override
 	public void run() {
 		timer = new Timer();
+		if (isPending()) runState = RunState.OK;
 
 		createLogDir(); // Create log dir
 
@@ -915,6 +1061,9 @@ public class BdsThread extends Thread implements BdsSerialize {
 			if (ev != null && ev instanceof Long) exitValue = (int) ((long) ((Long) ev)); // Yes, it's a very weird cast....
 		}
 
+		// Wait until all checkpoint files are written
+		if (checkpointWriter != null) checkpointWriter.waitFinished();
+
 		// We are completely done
 		runState = RunState.FINISHED;
 
@@ -1068,90 +1217,73 @@ public class BdsThread extends Thread implements BdsSerialize {
 
 		// Stack
 		String b64 = serializer.getNextField();
-		stack = (b64 != null && !b64.isEmpty() ? (Deque<Object>) serializer.base64Decode(b64) : null);
+		Object stackObj = (b64 != null && !b64.isEmpty() ? serializer.base64Decode(b64) : null);
+		if (stackObj instanceof Collection) stack = new OperandStack((Collection<?>) stackObj); // Old checkpoint format
+		else stack = (OperandStack) stackObj;
 	}
 
 	@Override
-	public String serializeSave(BdsSerializer serializer) {
+	public void serializeSave(BdsSerializer serializer) {
 		// This 'serializeSave' method can be called form another thread
 		// We have to make sure that the thread is not running while
 		// serializing (otherwise we'll recover an inconsistent state)
+		// Note: Records are streamed to the file, so we cannot serialize
+		// again if the thread changes while serializing
 
 		// Set this thread to freeze (it will be frozen in the next 'run' call)
 		setFreeze(true);
-		String pcOld = pc.toString(); // Save current program counter
 
 		// Serialize
-		String serStr = serializeSaveAll(serializer);
-
-		// Has program counter changed?
-		String pcNew = pc.toString();
-		if (!pcNew.equals(pcOld)) {
-			// PC changed => We have to serialize again
-			// This time we are 'safe' because thread should be frozen
-			serStr = serializeSaveAll(serializer);
-		}
+		serializeSaveAll(serializer);
 
 		// Un-freeze
 		setFreeze(false);
-
-		return serStr.toString();
 	}
 
 	/**
 	 * Serialize main and data
 	 */
-	public String serializeSaveAll(BdsSerializer serializer) {
-		StringBuilder out = new StringBuilder();
-		out.append(serializeSaveThreadMain(serializer));
-		out.append("\n");
-		out.append(serializeSaveThreadData(serializer));
-		return out.toString();
+	public void serializeSaveAll(BdsSerializer serializer) {
+		serializeSaveThreadMain(serializer);
+		serializeSaveThreadData(serializer);
 	}
 
 	/**
 	 * Save thread's data
 	 */
-	protected String serializeSaveThreadData(BdsSerializer serializer) {
-		StringBuilder out = new StringBuilder();
-
+	protected void serializeSaveThreadData(BdsSerializer serializer) {
 		// Save program counter
-		out.append(serializer.serializeSave(pc));
+		serializer.serializeSave(pc);
 
 		// Save scopes
-		out.append(serializer.serializeSave(scope));
+		serializer.serializeSave(scope);
 
 		// Save program nodes
-		out.append(serializer.serializeSave(statement));
+		serializer.serializeSave(statement);
 
 		// Save all tasks (in the same order that they were added)
 		for (Task task : taskDependecies.getTasks())
-			out.append(serializer.serializeSave(task));
+			serializer.serializeSave(task);
 
 		// Save all threads
 		for (BdsThread bdsTh : bdsChildThreadsById.values())
-			out.append(serializer.serializeSave(bdsTh));
-
-		return out.toString();
+			serializer.serializeSave(bdsTh);
 	}
 
 	/**
 	 * Save thread's main information
 	 */
-	protected String serializeSaveThreadMain(BdsSerializer serializer) {
-		StringBuilder out = new StringBuilder();
-
-		out.append(getClass().getSimpleName());
-		out.append("\t" + bdsThreadNum);
-		out.append("\t" + serializer.serializeSaveValue(removeOnExit));
-		out.append("\t" + serializer.serializeSaveValue(getBdsThreadId()));
-		out.append("\t" + serializer.serializeSaveValue(statement.getNodeId()));
-		out.append("\t" + serializer.serializeSaveValue(scope.getNodeId()));
-		out.append("\t" + serializer.serializeSaveValue(parent != null ? parent.getBdsThreadId() : ""));
-		out.append("\t" + serializer.serializeSaveValue(runState.toString()));
-		out.append("\t" + serializer.serializeSaveValue(currentDir));
-		out.append("\t" + serializer.base64encode(stack));
-		return out.toString();
+	protected void serializeSaveThreadMain(BdsSerializer serializer) {
+		serializer.serializeSaveRecord(getClass().getSimpleName());
+		serializer.serializeSaveField(bdsThreadNum);
+		serializer.serializeSaveField(removeOnExit);
+		serializer.serializeSaveField(getBdsThreadId());
+		serializer.serializeSaveField(statement.getNodeId());
+		serializer.serializeSaveField(scope.getNodeId());
+		serializer.serializeSaveField(parent != null ? parent.getBdsThreadId() : "");
+		serializer.serializeSaveField(runState.toString());
+		serializer.serializeSaveField(currentDir);
+		serializer.serializeSaveFieldRaw(serializer.base64encode(stack));
 	}
 
 	public void setCurrentDir(String currentDir) {
@@ -1191,6 +1323,7 @@ public class BdsThread extends Thread implements BdsSerialize {
 
 	public void setScope(Scope scope) {
 		this.scope = scope;
+		if (scope != null) scope.setShared(); // Scope may be referenced from other threads or nodes
 	}
 
 	/**
@@ -1265,6 +1398,26 @@ public class BdsThread extends Thread implements BdsSerialize {
 		return false;
 	}
 
+	/**
+	 * Start running this thread (using a thread pool)
+	 */
+	public synchronized void start() {
+		if (started) throw new RuntimeException("Thread '" + getBdsThreadId() + "' already started");
+		started = true;
+
+		BdsThreads.getInstance().execute(new Runnable() {
+
+			@Override
+			public void run() {
+				try {
+					BdsThread.this.run();
+				} finally {
+					runDone.countDown();
+				}
+			}
+		}, config);
+	}
+
 	/**
 	 * Show BDS calling stack
 	 */
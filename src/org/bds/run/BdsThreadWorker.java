@@ -0,0 +1,36 @@
+package org.bds.run;
+
+/**
+ * A thread that evaluates functions on behalf of another
+ * thread (e.g. applying a function to list elements in 'pmap')
+ *
+ * Workers share the parent's scope, tasks and log directory, but
+ * have their own program counter, stack and function scopes.
+ * They are not 'par' threads: they are not added to the parent's
+ * child threads, so they are not waited for nor checkpointed.
+ *
+ * @author pcingola
+ */
+public class BdsThreadWorker extends BdsThread {
+
+	public BdsThreadWorker(BdsThread parent) {
+		super(null, parent.config);
+		this.parent = parent;
+		pc = new ProgramCounter(parent.getPc());
+		scope = parent.scope;
+		scope.setShared(); // Both threads use these scopes, they cannot be reused
+		random = parent.random;
+		removeOnExit = parent.removeOnExit;
+		currentDir = parent.currentDir;
+		taskDependecies = parent.taskDependecies; // Tasks are added to the parent thread
+		statement = parent.statement;
+		statementNodeId = parent.statementNodeId;
+		bdsThreadId = parent.bdsThreadId; // Use parent's ID (and log directory)
+	}
+
+	@Override
+	public void start() {
+		throw new RuntimeException("Worker threads cannot be started, use 'BdsThread.applyParallel' instead");
+	}
+
+}
@@ -1,23 +1,83 @@
 package org.bds.run;
 
-import java.util.HashMap;
 import java.util.HashSet;
-import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.concurrent.atomic.AtomicInteger;
 
+import org.bds.Config;
 import org.bds.data.Data;
 
 /**
  * All BdsThreads are tracked here
- * 
+ *
+ * BdsThreads are not Java threads: They are executed by a (bounded)
+ * thread pool. Operations that block a BdsThread (waiting for other
+ * threads, tasks, processes, etc.) should use 'block' so that the
+ * pool can use another Java thread in the meantime. The number of
+ * Java threads is limited by 'parallelThreadsMax' (see 'block').
+ *
  * @author pcingola
  */
 public class BdsThreads {
 
 	private static BdsThreads bdsThreads = new BdsThreads();
 
-	Map<Long, BdsThread> bdsThreadByThreadId = new HashMap<Long, BdsThread>();
+	ThreadLocal<BdsThread> bdsThreadCurrent = new ThreadLocal<BdsThread>(); // BdsThread running in the current Java thread
+	Set<BdsThread> bdsThreadRunning = new HashSet<BdsThread>();
 	Set<BdsThread> bdsThreadDone = new HashSet<BdsThread>();
+	ForkJoinPool pool; // Thread pool used to run BdsThreads
+	AtomicInteger blocked = new AtomicInteger(); // Number of pool threads blocked (see 'block')
+	int blockedMax = Integer.MAX_VALUE; // Maximum number of blocked pool threads the pool can start another thread for
+
+	/**
+	 * Wait for 'latch' to reach zero
+	 * Note: This is used to wait for other BdsThreads, which may be waiting
+	 * in the pool's queue. So the pool can always start another thread (the
+	 * number of threads is not limited, see 'block')
+	 */
+	public static void await(final CountDownLatch latch) throws InterruptedException {
+		ForkJoinPool.managedBlock(new ForkJoinPool.ManagedBlocker() {
+
+			@Override
+			public boolean block() throws InterruptedException {
+				latch.await();
+				return true;
+			}
+
+			@Override
+			public boolean isReleasable() {
+				return latch.getCount() == 0;
+			}
+		});
+	}
+
+	/**
+	 * Run a blocking operation. If invoked from a pool thread, the pool
+	 * may start (or re-use) another Java thread while this one is blocked.
+	 * Once the maximum number of threads is reached, pool threads block
+	 * without being replaced (until other blocked threads resume)
+	 */
+	public static void block(ForkJoinPool.ManagedBlocker blocker) throws InterruptedException {
+		if (!(Thread.currentThread() instanceof ForkJoinWorkerThread)) {
+			ForkJoinPool.managedBlock(blocker); // Not a pool thread: Just block
+			return;
+		}
+
+		BdsThreads bdsThreads = getInstance();
+		try {
+			if (bdsThreads.blocked.incrementAndGet() <= bdsThreads.blockedMax) ForkJoinPool.managedBlock(blocker);
+			else {
+				// Too many threads: Block this thread without starting another one
+				while (!blocker.isReleasable())
+					if (blocker.block()) break;
+			}
+		} finally {
+			bdsThreads.blocked.decrementAndGet();
+		}
+	}
 
 	/**
 	 * Get canonical path to file using thread's 'current dir' to de-reference
@@ -32,6 +92,27 @@ public class BdsThreads {
 		return bdsThread.data(url);
 	}
 
+	/**
+	 * Sleep 'millis' milliseconds
+	 */
+	public static void sleep(final long millis) throws InterruptedException {
+		block(new ForkJoinPool.ManagedBlocker() {
+			boolean done = false;
+
+			@Override
+			public boolean block() throws InterruptedException {
+				Thread.sleep(millis);
+				done = true;
+				return true;
+			}
+
+			@Override
+			public boolean isReleasable() {
+				return done;
+			}
+		});
+	}
+
 	/**
 	 * Get singleton
 	 */
@@ -47,38 +128,83 @@ public class BdsThreads {
 	}
 
 	/**
-	 * Add a bdsThread
+	 * Add a bdsThread (running in the current Java thread)
 	 */
 	public synchronized void add(BdsThread bdsThread) {
-		long id = Thread.currentThread().getId();
-		bdsThreadByThreadId.put(id, bdsThread);
+		bdsThreadCurrent.set(bdsThread);
+		bdsThreadRunning.add(bdsThread);
+	}
+
+	/**
+	 * Add a worker (running in the current Java thread), see BdsThread.applyParallel
+	 * Note: Workers are not added to running (or done) threads, so they are
+	 * released once they finish
+	 */
+	public void addWorker(BdsThreadWorker worker) {
+		bdsThreadCurrent.set(worker);
+	}
+
+	/**
+	 * Run a bdsThread using the thread pool
+	 */
+	public void execute(Runnable runnable, Config config) {
+		getPool(config).execute(runnable);
+	}
+
+	/**
+	 * Get bdsThread running in the current Java thread
+	 */
+	public BdsThread get() {
+		return bdsThreadCurrent.get();
 	}
 
 	/**
-	 * Get bdsThread
+	 * Number of Java threads used to run BdsThreads
 	 */
-	public synchronized BdsThread get() {
-		long id = Thread.currentThread().getId();
-		return bdsThreadByThreadId.get(id);
+	public int getParallelism(Config config) {
+		return getPool(config).getParallelism();
 	}
 
 	/**
-	 * Remove a bdsThread
+	 * Get (or create) the thread pool
+	 */
+	synchronized ForkJoinPool getPool(Config config) {
+		if (pool == null) {
+			int parallelThreads = config != null ? config.getParallelThreads() : 0;
+			if (parallelThreads <= 0) parallelThreads = Runtime.getRuntime().availableProcessors();
+			pool = new ForkJoinPool(parallelThreads, ForkJoinPool.defaultForkJoinWorkerThreadFactory, null, true);
+
+			// Limit the number of threads started while other threads are blocked
+			int parallelThreadsMax = config != null ? config.getParallelThreadsMax() : Config.DEFAULT_PARALLEL_THREADS_MAX;
+			if (parallelThreadsMax > 0) blockedMax = Math.max(parallelThreadsMax - parallelThreads, 0);
+		}
+		return pool;
+	}
+
+	/**
+	 * Remove a bdsThread (running in the current Java thread)
 	 */
 	public synchronized void remove() {
-		long id = Thread.currentThread().getId();
 		BdsThread bdsThread = get();
-		if (bdsThreadByThreadId.get(id) == bdsThread) {
-			bdsThreadByThreadId.remove(id);
+		if (bdsThread != null && bdsThreadRunning.remove(bdsThread)) {
+			bdsThreadCurrent.remove();
 			bdsThreadDone.add(bdsThread);
-		} else throw new RuntimeException("Cannot remove thread '" + bdsThread.getBdsThreadId() + "'");
+		} else throw new RuntimeException("Cannot remove thread '" + (bdsThread != null ? bdsThread.getBdsThreadId() : "null") + "'");
+	}
+
+	/**
+	 * Remove a worker (running in the current Java thread), see 'addWorker'
+	 */
+	public void removeWorker() {
+		if (!(get() instanceof BdsThreadWorker)) throw new RuntimeException("Cannot remove worker '" + (get() != null ? get().getBdsThreadId() : "null") + "'");
+		bdsThreadCurrent.remove();
 	}
 
 	@Override
-	public String toString() {
+	public synchronized String toString() {
 		StringBuilder sb = new StringBuilder();
-		for (Long thid : bdsThreadByThreadId.keySet())
-			sb.append(thid + "\t" + bdsThreadByThreadId.get(thid).getBdsThreadId() + "\n");
+		for (BdsThread bdsThread : bdsThreadRunning)
+			sb.append(bdsThread.getBdsThreadNum() + "\t" + bdsThread.getBdsThreadId() + "\n");
 		return sb.toString();
 	}
 }
@@ -75,20 +75,14 @@ public class FunctionCallThread extends BdsThread {
 	 * Save thread's main information
 	 */
 	@Override
-	protected String serializeSaveThreadMain(BdsSerializer serializer) {
-		StringBuilder sb = new StringBuilder();
-		sb.append(super.serializeSaveThreadMain(serializer));
+	protected void serializeSaveThreadMain(BdsSerializer serializer) {
+		super.serializeSaveThreadMain(serializer);
 
 		// Function call (nodeId)
-		sb.append("\t");
-		sb.append(serializer.serializeSaveValue(functionCallNodeId));
+		serializer.serializeSaveField(functionCallNodeId);
 
 		// Arguments encoded as base64 object
-		sb.append("\t");
-		String b64 = serializer.base64encode(arguments);
-		sb.append(b64);
-
-		return sb.toString();
+		serializer.serializeSaveFieldRaw(serializer.base64encode(arguments));
 	}
 
 	public void setFunctionCall(FunctionCall functionCall) {
@@ -0,0 +1,252 @@
+package org.bds.run;
+
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+import org.bds.lang.Type;
+
+/**
+ * Operand stack used by BdsThread to evaluate expressions
+ *
+ * Values are stored in arrays having one 'lane' for each primitive
+ * type (int, real, bool) and one for references, so that numeric
+ * expressions can push and pop values without boxing them.
+ *
+ * Note: Serialized as a list of (boxed) values, from bottom to top
+ *
+ * @author pcingola
+ */
+public class OperandStack implements Serializable, Iterable<Object> {
+
+	private static final long serialVersionUID = 4297375612283916045L;
+
+	public static final int INITIAL_CAPACITY = 16;
+
+	static final byte TYPE_OBJECT = 0;
+	static final byte TYPE_INT = 1;
+	static final byte TYPE_REAL = 2;
+	static final byte TYPE_BOOL = 3;
+
+	transient byte types[]; // Type of each element in the stack
+	transient long ints[]; // Lane for 'int' values
+	transient double reals[]; // Lane for 'real' values
+	transient boolean bools[]; // Lane for 'bool' values
+	transient Object objects[]; // Lane for references (any other value)
+	transient int size;
+
+	public OperandStack() {
+		init(INITIAL_CAPACITY);
+	}
+
+	/**
+	 * Create a stack from a collection (first element is the top of the stack)
+	 * Note: This is used to recover checkpoints having a 'Deque' as a stack
+	 */
+	public OperandStack(Collection<?> values) {
+		init(Math.max(INITIAL_CAPACITY, values.size()));
+		Object vals[] = values.toArray();
+		for (int i = vals.length - 1; i >= 0; i--)
+			push(vals[i]);
+	}
+
+	/**
+	 * Make sure there is room for one more element
+	 */
+	void ensureCapacity() {
+		if (size < types.length) return;
+
+		int capacity = 2 * types.length;
+		byte types[] = new byte[capacity];
+		long ints[] = new long[capacity];
+		double reals[] = new double[capacity];
+		boolean bools[] = new boolean[capacity];
+		Object objects[] = new Object[capacity];
+
+		System.arraycopy(this.types, 0, types, 0, size);
+		System.arraycopy(this.ints, 0, ints, 0, size);
+		System.arraycopy(this.reals, 0, reals, 0, size);
+		System.arraycopy(this.bools, 0, bools, 0, size);
+		System.arraycopy(this.objects, 0, objects, 0, size);
+
+		this.types = types;
+		this.ints = ints;
+		this.reals = reals;
+		this.bools = bools;
+		this.objects = objects;
+	}
+
+	/**
+	 * Get element at position 'idx' (boxed). Position 0 is the bottom of the stack
+	 */
+	Object get(int idx) {
+		switch (types[idx]) {
+		case TYPE_INT:
+			return ints[idx];
+
+		case TYPE_REAL:
+			return reals[idx];
+
+		case TYPE_BOOL:
+			return bools[idx];
+
+		default:
+			return objects[idx];
+		}
+	}
+
+	void init(int capacity) {
+		types = new byte[capacity];
+		ints = new long[capacity];
+		reals = new double[capacity];
+		bools = new boolean[capacity];
+		objects = new Object[capacity];
+		size = 0;
+	}
+
+	public boolean isEmpty() {
+		return size == 0;
+	}
+
+	/**
+	 * Iterate from top to bottom
+	 */
+	@Override
+	public Iterator<Object> iterator() {
+		return new Iterator<Object>() {
+			int idx = size - 1;
+
+			@Override
+			public boolean hasNext() {
+				return idx >= 0;
+			}
+
+			@Override
+			public Object next() {
+				if (idx < 0) throw new NoSuchElementException();
+				return get(idx--);
+			}
+		};
+	}
+
+	/**
+	 * Top of the stack (null if the stack is empty)
+	 */
+	public Object peek() {
+		if (size == 0) return null;
+		return get(size - 1);
+	}
+
+	public Object pop() {
+		if (size == 0) throw new NoSuchElementException();
+		Object obj = get(--size);
+		objects[size] = null; // Don't hold references to popped objects
+		return obj;
+	}
+
+	public boolean popBool() {
+		if (size == 0) throw new NoSuchElementException();
+		switch (types[size - 1]) {
+		case TYPE_BOOL:
+			return bools[--size];
+
+		case TYPE_INT:
+			return ints[--size] != 0;
+
+		case TYPE_REAL:
+			return reals[--size] != 0.0;
+
+		default:
+			return (Boolean) Type.BOOL.cast(pop());
+		}
+	}
+
+	public long popInt() {
+		if (size == 0) throw new NoSuchElementException();
+		switch (types[size - 1]) {
+		case TYPE_INT:
+			return ints[--size];
+
+		case TYPE_BOOL:
+			return bools[--size] ? 1L : 0L;
+
+		default:
+			return (Long) Type.INT.cast(pop());
+		}
+	}
+
+	public double popReal() {
+		if (size == 0) throw new NoSuchElementException();
+		switch (types[size - 1]) {
+		case TYPE_REAL:
+			return reals[--size];
+
+		case TYPE_INT:
+			return ints[--size];
+
+		case TYPE_BOOL:
+			return bools[--size] ? 1.0 : 0.0;
+
+		default:
+			return (Double) Type.REAL.cast(pop());
+		}
+	}
+
+	public void push(boolean value) {
+		ensureCapacity();
+		types[size] = TYPE_BOOL;
+		bools[size++] = value;
+	}
+
+	public void push(double value) {
+		ensureCapacity();
+		types[size] = TYPE_REAL;
+		reals[size++] = value;
+	}
+
+	public void push(long value) {
+		ensureCapacity();
+		types[size] = TYPE_INT;
+		ints[size++] = value;
+	}
+
+	public void push(Object value) {
+		ensureCapacity();
+		types[size] = TYPE_OBJECT;
+		objects[size++] = value;
+	}
+
+	private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+		in.defaultReadObject();
+		int len = in.readInt();
+		init(Math.max(INITIAL_CAPACITY, len));
+		for (int i = 0; i < len; i++)
+			push(in.readObject());
+	}
+
+	public int size() {
+		return size;
+	}
+
+	@Override
+	public String toString() {
+		StringBuilder sb = new StringBuilder();
+		sb.append("[");
+		for (Object obj : this)
+			sb.append((sb.length() > 1 ? ", " : "") + obj);
+		sb.append("]");
+		return sb.toString();
+	}
+
+	private void writeObject(ObjectOutputStream out) throws IOException {
+		out.defaultWriteObject();
+		out.writeInt(size);
+		for (int i = 0; i < size; i++)
+			out.writeObject(get(i));
+	}
+
+}
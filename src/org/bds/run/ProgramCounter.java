@@ -1,7 +1,9 @@
 package org.bds.run;
 
+import java.util.Arrays;
+import java.util.EmptyStackException;
 import java.util.Iterator;
-import java.util.Stack;
+import java.util.NoSuchElementException;
 
 import org.bds.lang.BdsNode;
 import org.bds.serialize.BdsSerialize;
@@ -11,32 +13,42 @@ import org.bds.util.Gpr;
 /**
  * Program counter: A 'stack' of nodes that we are currently executing
  *
+ * Note: Node IDs are stored in a growable int array (no boxing,
+ * no synchronization), since the program counter is updated every
+ * time a node is executed.
+ *
  * @author pcingola
  */
 public class ProgramCounter implements BdsSerialize, Iterable<Integer> {
 
+	public static final int INITIAL_CAPACITY = 64;
+
 	private static int programCounterNum = 0;
 
 	int id;
 	int checkPointRecoverNodeIdx; // Checkpoint recovery node index
 	int initialSize;
-	Stack<Integer> nodeIds;
+	int nodeIds[]; // Node IDs (stack)
+	int size; // Number of node IDs in the stack
 
 	protected static int nextId() {
 		return ++programCounterNum;
 	}
 
 	public ProgramCounter() {
-		nodeIds = new Stack<Integer>();
+		nodeIds = new int[INITIAL_CAPACITY];
 		id = nextId();
 		initialSize = 0;
 	}
 
+	/**
+	 * Create a copy of 'pc' (e.g. for a new thread)
+	 */
 	public ProgramCounter(ProgramCounter pc) {
-		nodeIds = new Stack<Integer>();
-		nodeIds.addAll(pc.nodeIds);
+		nodeIds = Arrays.copyOf(pc.nodeIds, Math.max(INITIAL_CAPACITY, pc.size + INITIAL_CAPACITY));
+		size = pc.size;
 		id = nextId();
-		initialSize = pc.size();
+		initialSize = size;
 	}
 
 	/**
@@ -61,6 +73,13 @@ public class ProgramCounter implements BdsSerialize, Iterable<Integer> {
 	}
 
 	public boolean checkpointRecoverReset(BdsNode statement) {
+		// A thread's statement is the last node of its initial PC. Check that one
+		// first, the same node can appear earlier in the PC (e.g. recursive 'par')
+		if (initialSize > 0 && initialSize <= size() && nodeId(initialSize - 1) == statement.getId()) {
+			checkPointRecoverNodeIdx = initialSize - 1;
+			return true;
+		}
+
 		for (checkPointRecoverNodeIdx = 0; checkPointRecoverNodeIdx < size(); checkPointRecoverNodeIdx++) {
 			if (nodeId(checkPointRecoverNodeIdx) == statement.getId()) return true;
 		}
@@ -80,21 +99,36 @@ public class ProgramCounter implements BdsSerialize, Iterable<Integer> {
 
 	@Override
 	public Iterator<Integer> iterator() {
-		return nodeIds.iterator();
+		return new Iterator<Integer>() {
+			int idx = 0;
+
+			@Override
+			public boolean hasNext() {
+				return idx < size;
+			}
+
+			@Override
+			public Integer next() {
+				if (idx >= size) throw new NoSuchElementException();
+				return nodeIds[idx++];
+			}
+		};
 	}
 
 	/**
 	 * Get node ID for index 'idx'
 	 */
 	public int nodeId(int idx) {
-		return nodeIds.get(idx);
+		if (idx >= size) throw new ArrayIndexOutOfBoundsException("Index: " + idx + ", size: " + size);
+		return nodeIds[idx];
 	}
 
 	/**
-	 * Add to program counter
+	 * Remove from program counter
 	 */
 	public void pop(BdsNode bdsNode) {
-		int nodeId = nodeIds.pop();
+		if (size <= 0) throw new EmptyStackException();
+		int nodeId = nodeIds[--size];
 
 		// Sanity check
 		if (nodeId != bdsNode.getId()) {
@@ -110,41 +144,40 @@ public class ProgramCounter implements BdsSerialize, Iterable<Integer> {
 	 * Add to program counter
 	 */
 	public void push(BdsNode csnode) {
-		nodeIds.push(csnode.getId());
+		push(csnode.getId());
+	}
+
+	void push(int nodeId) {
+		if (size >= nodeIds.length) nodeIds = Arrays.copyOf(nodeIds, 2 * nodeIds.length);
+		nodeIds[size++] = nodeId;
 	}
 
 	@Override
 	public void serializeParse(BdsSerializer serializer) {
 		initialSize = (int) serializer.getNextFieldInt();
 
-		for (int i = 1; i < serializer.getFields().length - 1; i++)
-			nodeIds.push((int) serializer.getNextFieldInt());
+		while (serializer.hasNextField())
+			push((int) serializer.getNextFieldInt());
 	}
 
 	@Override
-	public String serializeSave(BdsSerializer serializer) {
-		StringBuilder out = new StringBuilder();
-		out.append(getClass().getSimpleName() + "\t");
-		out.append(initialSize + "\t");
-
-		for (int nn : nodeIds)
-			out.append(nn + "\t");
-
-		out.deleteCharAt(out.length() - 1); // Remove last tab
-		out.append("\n");
+	public void serializeSave(BdsSerializer serializer) {
+		serializer.serializeSaveRecord(getClass().getSimpleName());
+		serializer.serializeSaveField(initialSize);
 
-		return out.toString();
+		for (int i = 0; i < size; i++)
+			serializer.serializeSaveField(nodeIds[i]);
 	}
 
 	public int size() {
-		return nodeIds.size();
+		return size;
 	}
 
 	@Override
 	public String toString() {
 		StringBuilder pc = new StringBuilder();
-		for (int nn : nodeIds)
-			pc.append((pc.length() > 0 ? " -> " : "") + nn);
+		for (int i = 0; i < size; i++)
+			pc.append((pc.length() > 0 ? " -> " : "") + nodeIds[i]);
 
 		return "PC: size " + size() + " / " + initialSize //
 				+ (isEmpty() ? " [Empty] " : "") //
@@ -15,6 +15,7 @@ public enum RunState {
 	, FATAL_ERROR // Finished executing due to a fatal error
 	, FINISHED // Thread execution completely finished
 	, FROZEN // Frozen execution: running, but waiting for event (e.g. checkpoint or debugging)
+	, PENDING // Thread created, but not running yet (e.g. waiting for a worker in the thread pool)
 	, RETURN // Executing a 'return' statement (return from function)
 	, THREAD_KILLED // Thread was sent a 'kill' signal
 	, WAIT_RECOVER // Recovering from a checkpoint, in a "wait" instruction
@@ -54,6 +55,10 @@ public enum RunState {
 		return this == FROZEN;
 	}
 
+	public boolean isPending() {
+		return this == PENDING;
+	}
+
 	public boolean isReturn() {
 		return this == RunState.RETURN;
 	}
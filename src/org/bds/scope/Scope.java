@@ -1,6 +1,7 @@
 package org.bds.scope;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
@@ -21,6 +22,19 @@ import org.bds.util.AutoHashMap;
 /**
  * Scope: Variables, functions and classes
  *
+ * Variables declared in a scope are assigned a 'slot' during type
+ * checking (see 'addSlot'). At runtime variables are only stored in the
+ * same slot (not in the symbols map), so references resolved at compile
+ * time can find them using an array index instead of looking up the name
+ * in every scope. Name lookups use the slot numbers assigned in the
+ * compile time scope (see 'getSlot').
+ *
+ * Run-time scopes are created every time a block, loop body or function
+ * is executed, so the symbols map is only created when the first symbol
+ * is added. Scopes can also be reused (see 'reset') once they are no
+ * longer needed, unless they are 'shared' (e.g. referenced by a 'par'
+ * thread).
+ *
  * @author pcingola
  */
 public class Scope implements BdsSerialize, Iterable<String> {
@@ -53,9 +67,13 @@ public class Scope implements BdsSerialize, Iterable<String> {
 	int id;
 	Scope parent;
 	String parentNodeId;
-	HashMap<String, ScopeSymbol> symbols;
+	HashMap<String, ScopeSymbol> symbols; // Symbols without a slot. Created when the first symbol is added
+	volatile ScopeSymbol slots[]; // Variables indexed by slot
+	HashMap<String, Integer> slotByName; // Slot assigned to each variable (only in compile time scopes, see 'addSlot')
+	int slotsNext; // Next slot to assign
 	AutoHashMap<String, List<ScopeSymbol>> functions; // Functions can have more than one item under the same name. E.g.: f(int x), f(string s), f(int x, int y), all are called 'f'
 	BdsNode node;
+	volatile boolean shared; // Referenced by other threads or nodes: Cannot be reused
 
 	/**
 	 * Class scope
@@ -91,7 +109,6 @@ public class Scope implements BdsSerialize, Iterable<String> {
 		parent = getGlobalScope();
 		node = null;
 		id = nextId();
-		symbols = new HashMap<String, ScopeSymbol>();
 	}
 
 	/**
@@ -103,7 +120,6 @@ public class Scope implements BdsSerialize, Iterable<String> {
 		this.node = node;
 		id = nextId();
 
-		symbols = new HashMap<String, ScopeSymbol>();
 		if (node != null) copy(node.getScope()); // Copy symbols from other scope
 	}
 
@@ -114,7 +130,53 @@ public class Scope implements BdsSerialize, Iterable<String> {
 
 			// Add function by name
 			functions.getOrCreate(symbol.getName()).add(symbol);
-		} else symbols.put(symbol.getName(), symbol);
+		} else {
+			// Replacing a variable stored in a slot?
+			int slot = getSlot(symbol.getName());
+			if (slot >= 0) {
+				slots[slot] = symbol;
+				return;
+			}
+
+			if (symbols == null) symbols = new HashMap<String, ScopeSymbol>();
+			symbols.put(symbol.getName(), symbol);
+		}
+	}
+
+	/**
+	 * Add a variable in a slot (assigned during type checking, see 'addSlot')
+	 */
+	public synchronized void add(ScopeSymbol symbol, int slot) {
+		if (slot < 0 || symbol.isFunction()) {
+			add(symbol);
+			return;
+		}
+
+		// Make sure the name is not also stored in the map (e.g. scope recovered from a checkpoint)
+		if (symbols != null) symbols.remove(symbol.getName());
+
+		// Make sure there is enough space
+		ScopeSymbol ss[] = slots;
+		if (ss == null || slot >= ss.length) {
+			ScopeSymbol newSlots[] = new ScopeSymbol[Math.max(slot + 1, 2 * (ss != null ? ss.length : 4))];
+			if (ss != null) System.arraycopy(ss, 0, newSlots, 0, ss.length);
+			ss = newSlots;
+		}
+
+		ss[slot] = symbol;
+		slots = ss;
+	}
+
+	/**
+	 * Add a variable and assign it a new slot (type checking)
+	 * @return Slot number
+	 */
+	public synchronized int addSlot(ScopeSymbol symbol) {
+		int slot = slotsNext++;
+		if (slotByName == null) slotByName = new HashMap<String, Integer>();
+		slotByName.put(symbol.getName(), slot);
+		add(symbol, slot);
+		return slot;
 	}
 
 	/**
@@ -232,6 +294,29 @@ public class Scope implements BdsSerialize, Iterable<String> {
 		return parentNodeId;
 	}
 
+	/**
+	 * Get a variable's slot in this scope
+	 * @return Slot number or -1 if not found
+	 */
+	public int getSlot(String symbol) {
+		ScopeSymbol ss[] = slots;
+		if (ss == null) return -1;
+
+		// Use slot numbers from compile time scope
+		Scope compileScope = (node != null && node.getScope() != null ? node.getScope() : this);
+		if (compileScope.slotByName != null) {
+			Integer slot = compileScope.slotByName.get(symbol);
+			if (slot == null || slot >= ss.length || ss[slot] == null || !ss[slot].getName().equals(symbol)) return -1;
+			return slot;
+		}
+
+		// No slot numbers available (e.g. un-serialized program)
+		for (int i = 0; i < ss.length; i++)
+			if (ss[i] != null && ss[i].getName().equals(symbol)) return i;
+
+		return -1;
+	}
+
 	public String getScopeName() {
 		if (node == null) return "Global";
 		return (node.getFileName() != null ? node.getFileName() + ":" + node.getLineNum() + ":" : "") + node.getClass().getSimpleName();
@@ -263,11 +348,59 @@ public class Scope implements BdsSerialize, Iterable<String> {
 	 * Get symbol on this scope (or any parent scope if not local)
 	 */
 	public synchronized ScopeSymbol getSymbolLocal(String symbol) {
-		return symbols.get(symbol);
+		if (symbols != null) {
+			ScopeSymbol ssym = symbols.get(symbol);
+			if (ssym != null) return ssym;
+		}
+
+		int slot = getSlot(symbol);
+		return slot >= 0 ? slots[slot] : null;
+	}
+
+	/**
+	 * Get variable on this scope using its slot. If the slot is not
+	 * available (e.g. scope recovered from a checkpoint), look it up by name
+	 */
+	public ScopeSymbol getSymbolLocal(String symbol, int slot) {
+		ScopeSymbol ss[] = slots;
+		if (ss != null && slot >= 0 && slot < ss.length) {
+			ScopeSymbol ssym = ss[slot];
+			if (ssym != null && ssym.getName().equals(symbol)) return ssym;
+		}
+
+		return getSymbolLocal(symbol);
 	}
 
-	public Collection<ScopeSymbol> getSymbols() {
-		return symbols.values();
+	/**
+	 * Get the scope where a variable is declared (this or any parent scope)
+	 * @return Scope or null if not found (or if it is a function)
+	 */
+	public Scope getSymbolScope(String symbol) {
+		for (Scope scope = this; scope != null; scope = scope.parent) {
+			if (scope.getSymbolLocal(symbol) != null) return scope;
+
+			// Same as 'getSymbol': A function with the same name is found first
+			List<ScopeSymbol> fs = scope.getFunctionsLocal(symbol);
+			if (fs != null && fs.size() == 1) return null;
+		}
+
+		return null;
+	}
+
+	public synchronized Collection<ScopeSymbol> getSymbols() {
+		ScopeSymbol ss[] = slots;
+		if (ss == null) {
+			if (symbols == null) return Collections.emptyList();
+			return symbols.values();
+		}
+
+		// Add symbols from slots (in slot order) and map
+		List<ScopeSymbol> syms = new ArrayList<ScopeSymbol>();
+		for (ScopeSymbol ssym : ss)
+			if (ssym != null) syms.add(ssym);
+		if (symbols != null) syms.addAll(symbols.values());
+
+		return syms;
 	}
 
 	public boolean hasFunctions() {
@@ -289,12 +422,19 @@ public class Scope implements BdsSerialize, Iterable<String> {
 	 * Is this scope empty?
 	 */
 	public boolean isEmpty() {
-		return symbols.isEmpty() && (functions == null || functions.isEmpty());
+		return getSymbols().isEmpty() && (functions == null || functions.isEmpty());
+	}
+
+	public boolean isShared() {
+		return shared;
 	}
 
 	@Override
 	public Iterator<String> iterator() {
-		return symbols.keySet().iterator();
+		List<String> names = new ArrayList<String>();
+		for (ScopeSymbol ss : getSymbols())
+			names.add(ss.getName());
+		return names.iterator();
 	}
 
 	//	public Object peek() {
@@ -317,6 +457,27 @@ public class Scope implements BdsSerialize, Iterable<String> {
 		node = BdsNodeFactory.get().realNode(node);
 	}
 
+	/**
+	 * Reset this scope so it can be reused as a new scope
+	 * Note: Symbols map and slots array are cleared (not re-allocated)
+	 */
+	public synchronized void reset(Scope parent, BdsNode node) {
+		if (shared) throw new RuntimeException("Cannot reset a shared scope");
+
+		this.parent = parent;
+		this.node = node;
+		id = nextId();
+		parentNodeId = null;
+
+		if (symbols != null) symbols.clear();
+		ScopeSymbol ss[] = slots;
+		if (ss != null) Arrays.fill(ss, null);
+		slotsNext = 0;
+		functions = null;
+
+		if (node != null) copy(node.getScope()); // Copy symbols from other scope
+	}
+
 	@Override
 	public void serializeParse(BdsSerializer serializer) {
 		// Nothing to do
@@ -334,29 +495,33 @@ public class Scope implements BdsSerialize, Iterable<String> {
 	}
 
 	@Override
-	public String serializeSave(BdsSerializer serializer) {
-		StringBuilder out = new StringBuilder();
-		out.append("Scope");
-		out.append("\t" + serializer.serializeSaveValue(id));
-		out.append("\t" + serializer.serializeSaveValue(parent != null ? parent.getNodeId() : ""));
-		out.append("\t" + serializer.serializeSaveValue(node));
-		out.append("\n");
-
-		for (ScopeSymbol ss : symbols.values()) {
+	public void serializeSave(BdsSerializer serializer) {
+		serializer.serializeSaveRecord("Scope");
+		serializer.serializeSaveField(id);
+		serializer.serializeSaveField(parent != null ? parent.getNodeId() : "");
+		serializer.serializeSaveField(node);
+
+		for (ScopeSymbol ss : getSymbols()) {
 			if (ss.getType().isNative()) {
 				; // Do not save native functions
-			} else out.append(serializer.serializeSave(ss));
+			} else serializer.serializeSave(ss);
 		}
 
-		if (parent != null) out.append(serializer.serializeSave(parent));
-
-		return out.toString();
+		if (parent != null) serializer.serializeSave(parent);
 	}
 
 	public void setParent(Scope parent) {
 		this.parent = parent;
 	}
 
+	/**
+	 * Mark this scope (and all parent scopes) as shared, so they are never reused
+	 */
+	public void setShared() {
+		for (Scope scope = this; scope != null && !scope.shared; scope = scope.parent)
+			scope.shared = true;
+	}
+
 	@Override
 	public String toString() {
 		return toString(true);
@@ -373,7 +538,7 @@ public class Scope implements BdsSerialize, Iterable<String> {
 		// Show scope symbols
 		StringBuilder sbThis = new StringBuilder();
 		ArrayList<ScopeSymbol> ssyms = new ArrayList<ScopeSymbol>();
-		ssyms.addAll(symbols.values());
+		ssyms.addAll(getSymbols());
 		Collections.sort(ssyms);
 		for (ScopeSymbol ss : ssyms)
 			sbThis.append(ss + "\n");
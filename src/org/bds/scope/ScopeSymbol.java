@@ -1,19 +1,23 @@
 package org.bds.scope;
 
-import java.util.ArrayList;
-import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 
 import org.bds.lang.Type;
 import org.bds.serialize.BdsSerialize;
 import org.bds.serialize.BdsSerializer;
+import org.bds.util.CowArrayList;
+import org.bds.util.CowHashMap;
 import org.bds.util.Gpr;
 import org.bds.util.GprString;
 
 /**
  * A symbol in the scope
  *
+ * Note: Values of 'int' and 'real' variables are stored unboxed (see
+ * 'getValueInt', 'getValueReal'), so that reading and assigning them
+ * from numeric expressions does not allocate objects
+ *
  * @author pcingola
  */
 public class ScopeSymbol implements BdsSerialize, Comparable<ScopeSymbol> {
@@ -28,7 +32,10 @@ public class ScopeSymbol implements BdsSerialize, Comparable<ScopeSymbol> {
 	int id;
 	Type type;
 	String name;
-	Object value;
+	Object value; // Value (if not 'unboxed')
+	long valueInt; // Value of an 'int' variable (if 'unboxed')
+	double valueReal; // Value of a 'real' variable (if 'unboxed')
+	boolean unboxed; // Value is stored in 'valueInt' or 'valueReal'
 	boolean constant = false;
 
 	protected static int nextId() {
@@ -43,13 +50,13 @@ public class ScopeSymbol implements BdsSerialize, Comparable<ScopeSymbol> {
 		this.name = name;
 		this.type = type;
 		id = nextId();
-		value = type.defaultValue();
+		set(type.defaultValue());
 	}
 
 	public ScopeSymbol(String name, Type type, Object value) {
 		this.name = name;
 		this.type = type;
-		this.value = value;
+		set(value);
 		id = nextId();
 	}
 
@@ -72,9 +79,23 @@ public class ScopeSymbol implements BdsSerialize, Comparable<ScopeSymbol> {
 	}
 
 	public Object getValue() {
+		if (unboxed) {
+			if (type.isInt()) return valueInt;
+			return valueReal;
+		}
 		return value;
 	}
 
+	public long getValueInt() {
+		if (unboxed && type.isInt()) return valueInt;
+		return (Long) Type.INT.cast(getValue());
+	}
+
+	public double getValueReal() {
+		if (unboxed && type.isReal()) return valueReal;
+		return (Double) Type.REAL.cast(getValue());
+	}
+
 	public boolean isConstant() {
 		return constant;
 	}
@@ -90,48 +111,86 @@ public class ScopeSymbol implements BdsSerialize, Comparable<ScopeSymbol> {
 		type = serializer.getNextFieldType();
 
 		// Parse value
-		value = serializer.getNextField(type);
+		set(serializer.getNextField(type));
 	}
 
 	@Override
-	public String serializeSave(BdsSerializer serializer) {
-		return getClass().getSimpleName() //
-				+ "\t" + serializer.serializeSaveValue(name) //
-				+ "\t" + BdsSerializer.TYPE_IDENTIFIER + type.toStringSerializer() //
-				+ "\t" + serializer.serializeSaveValue(value) //
-				+ "\n";
+	public void serializeSave(BdsSerializer serializer) {
+		serializer.serializeSaveRecord(getClass().getSimpleName());
+		serializer.serializeSaveField(name);
+		serializer.serializeSaveField(type);
+		serializer.serializeSaveField(getValue());
+	}
+
+	/**
+	 * Store a value ('int' and 'real' values are unboxed)
+	 */
+	void set(Object value) {
+		if (type != null && type.isInt() && value instanceof Long) {
+			valueInt = (Long) value;
+			unboxed = true;
+		} else if (type != null && type.isReal() && value instanceof Double) {
+			valueReal = (Double) value;
+			unboxed = true;
+		} else {
+			this.value = value;
+			unboxed = false;
+		}
 	}
 
 	public void setConstant(boolean constant) {
 		this.constant = constant;
 	}
 
-	@SuppressWarnings({ "rawtypes", "unchecked" })
+	@SuppressWarnings("rawtypes")
 	public void setValue(Object value) {
 		if (debug) Gpr.debug("Setting value:\t" + name + " = " + value);
 
 		if (type.isList()) {
-			// Assign the whole list? => Create a new copy
-			this.value = new ArrayList<>();
-			((List) this.value).addAll((List) value);
+			// Assign the whole list? => Create a new copy (elements are shared until modified)
+			this.value = CowArrayList.copyOf((List) value);
 		} else if (type.isMap()) {
-			// Assign the whole map? => Create a new copy
-			this.value = new HashMap();
-			Map mapNew = ((Map) this.value);
-			Map mapOri = ((Map) value);
-			for (Object key : mapOri.keySet()) {
-				mapNew.put(key, mapOri.get(key));
-			}
+			// Assign the whole map? => Create a new copy (entries are shared until modified)
+			this.value = CowHashMap.copyOf((Map) value);
 		} else {
 			// Assign value
-			this.value = value;
+			set(value);
 		}
 	}
 
+	/**
+	 * Assign a value to a 'real' variable
+	 */
+	public void setValue(double value) {
+		if (!type.isReal()) {
+			setValue((Object) value);
+			return;
+		}
+
+		if (debug) Gpr.debug("Setting value:\t" + name + " = " + value);
+		valueReal = value;
+		unboxed = true;
+	}
+
+	/**
+	 * Assign a value to an 'int' variable
+	 */
+	public void setValue(long value) {
+		if (!type.isInt()) {
+			setValue((Object) value);
+			return;
+		}
+
+		if (debug) Gpr.debug("Setting value:\t" + name + " = " + value);
+		valueInt = value;
+		unboxed = true;
+	}
+
 	@Override
 	public String toString() {
 		String valStr = "null";
 
+		Object value = getValue();
 		if (type != null && value != null) {
 			if (type.isString()) valStr = "\"" + GprString.escape(value.toString()) + "\"";
 			else if (type.isFunction()) return name + " : " + type;
@@ -10,8 +10,8 @@ public interface BdsSerialize {
 	public void serializeParse(BdsSerializer serializer);
 
 	/**
-	 * Create a string to serialize to a file
+	 * Serialize to a file (see BdsSerializer.serializeSaveRecord and serializeSaveField)
 	 */
-	public String serializeSave(BdsSerializer serializer);
+	public void serializeSave(BdsSerializer serializer);
 
 }
@@ -1,19 +1,36 @@
 package org.bds.serialize;
 
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
 import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
 import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.ObjectInputStream;
 import java.io.ObjectOutputStream;
+import java.io.OutputStream;
 import java.io.PrintStream;
 import java.lang.reflect.Array;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Random;
 import java.util.Set;
+import java.util.zip.GZIPInputStream;
 import java.util.zip.GZIPOutputStream;
 
 import org.apache.commons.lang3.StringEscapeUtils;
@@ -24,6 +41,7 @@ import org.bds.lang.BdsNodeFactory;
 import org.bds.lang.BlockWithFile;
 import org.bds.lang.PrePostOperation;
 import org.bds.lang.PrimitiveType;
+import org.bds.lang.ProgramUnit;
 import org.bds.lang.Type;
 import org.bds.lang.TypeList;
 import org.bds.lang.TypeMap;
@@ -33,28 +51,120 @@ import org.bds.run.ProgramCounter;
 import org.bds.scope.Scope;
 import org.bds.scope.ScopeSymbol;
 import org.bds.task.Task;
+import org.bds.util.CowArrayList;
+import org.bds.util.CowHashMap;
 import org.bds.util.Gpr;
 import org.bds.util.GprString;
 
 /**
  * Serialize elemnts to (and from) a file
  *
+ * A file is a sequence of records (one per object), each record
+ * having a class name and a list of fields. There are two formats:
+ *
+ * 	- Text: One line per record, tab separated fields.
+ *
+ * 	- Binary (default for checkpoints): Each field is tagged with its
+ * 	  type. Lists, maps and strings are length-prefixed. Strings are
+ * 	  written only once, then referenced by their index in a string pool.
+ *
+ * Both formats are gzip compressed and read as a stream, one record at
+ * a time. The format is detected when loading a file.
+ *
+ * Binary files are saved in two steps: First a snapshot of all records
+ * is taken (see 'snapshot'), then the snapshot is written to the file
+ * (see 'write'), possibly by another thread (see CheckpointWriter).
+ *
+ * Delta checkpoints (binary format only): Records that did not change
+ * respect to a 'base' checkpoint file (same key, i.e. node ID, and same
+ * contents' fingerprint) are saved as references to the base file's
+ * records. Loading a delta checkpoint replays the base's records, reading
+ * the base file as a stream (records not referenced are skipped).
+ * See CheckpointBase.
+ *
  * @author pcingola
  */
 public class BdsSerializer {
 
+	/**
+	 * A record to be saved (binary format)
+	 */
+	static class Record {
+		String className;
+		String key; // Node ID (null if the record cannot be referenced by delta checkpoints)
+		List<Object> values;
+
+		Record(String className, String key) {
+			this.className = className;
+			this.key = key;
+			values = new ArrayList<Object>();
+		}
+	}
+
 	public static final String LIST_IDENTIFIER = "list:";
 	public static final String MAP_IDENTIFIER = "map:";
 	public static final String NODE_IDENTIFIER = "node:";
 	public static final String TYPE_IDENTIFIER = "type:";
 
+	public static final int BINARY_MAGIC = 0x00424453; // Binary file's first bytes: "\0BDS"
+	public static final int BINARY_FORMAT_VERSION = 2; // Version 2 adds file ID and base file (delta checkpoints)
+	public static final int BUFFER_SIZE = 64 * 1024;
+	public static final String TMP_EXT = ".tmp"; // Files are written to a temporary file, then renamed
+
+	// Binary format tags
+	static final int TAG_EOF = 0; // End of file
+	static final int TAG_RECORD = 1; // New record, followed by class name
+	static final int TAG_NULL = 2;
+	static final int TAG_FALSE = 3;
+	static final int TAG_TRUE = 4;
+	static final int TAG_INT = 5; // Variable length (zig-zag) integer
+	static final int TAG_REAL = 6;
+	static final int TAG_STRING = 7; // New string: length and UTF-8 bytes (added to string pool)
+	static final int TAG_STRING_REF = 8; // String pool index
+	static final int TAG_NODE = 9; // Node ID
+	static final int TAG_TYPE = 10; // Type, followed by type name
+	static final int TAG_LIST = 11; // Size and values
+	static final int TAG_MAP = 12; // Size and key-value pairs
+	static final int TAG_ARRAY = 13; // Size and values
+	static final int TAG_BASE_REF = 14; // Delta checkpoint: Records from base file (first record index, number of records)
+
+	static final long FNV_OFFSET = 0xcbf29ce484222325L; // FNV-1a 64 bit hash (record fingerprints)
+	static final long FNV_PRIME = 0x100000001b3L;
+
 	public static boolean debug = false;
 
 	String fileName;
 	int lineNum;
 	String line;
+	String lines[];
 	int parsedField;
-	String fields[];
+	String fields[]; // Text format: Current record's fields
+	List<Object> values; // Binary format: Current record's values
+	boolean binary = true; // Save using binary format
+	DataInputStream in; // Binary input
+	DataOutputStream out; // Binary output
+	Appendable outText; // Text output
+	boolean recordOpen; // Has any record been written?
+	int nextTag; // Binary format: Tag following current record
+	Map<String, Integer> stringIdx; // Binary format: String pool (save)
+	List<String> strings; // Binary format: String pool (load)
+	long id; // Binary format: File ID
+	String baseFileName; // Delta checkpoint: Base file (null if this is a full checkpoint)
+	long baseId; // Delta checkpoint: Base file ID
+	CheckpointBase base; // Delta checkpoint (save): Base checkpoint
+	CheckpointBase newBase; // Full checkpoint (save): Records information, so this file can be used as base
+	boolean deltas; // Save records information (delta checkpoints)
+	BdsSerialize recordOwner; // Object being serialized (save)
+	List<Record> records; // Binary format (save): Snapshot, i.e. records to write
+	Record record; // Current record (snapshot)
+	boolean copyValues; // Snapshot: Copy lists and maps (copy on write)
+	int refStart, refCount; // Pending references to base records (delta checkpoints, save)
+	long fingerprint; // Current record's fingerprint
+	DataOutputStream outFingerprint; // Calculate record fingerprints
+	BdsSerializer baseReader; // Delta checkpoint (load): Base file, read lazily
+	InputStream baseIs; // Delta checkpoint (load): Base file's stream
+	int recordIdx; // Binary format (load): Number of records read
+	int baseRefIdx, baseRefEnd; // Delta checkpoint (load): Base records being replayed
 	Config config;
 	Set<BdsSerialize> serializedNodes;
 	Map<String, BdsThread> threadsById;
@@ -102,21 +212,118 @@ public class BdsSerializer {
 		}
 	}
 
+	/**
+	 * Delta checkpoint: Close base file
+	 */
+	void closeBase() {
+		if (baseIs != null) {
+			try {
+				baseIs.close();
+			} catch (IOException e) {
+				// Nothing to do: The base file is only read
+			}
+		}
+		baseIs = null;
+		baseReader = null;
+	}
+
+	/**
+	 * Snapshot: Copy lists and maps, so that the program can keep modifying them
+	 * Nested lists and maps are copied as well (see 'copyValueCow')
+	 */
+	Object copyValue(Object value) {
+		if (!copyValues) return value;
+		return copyValueCow(value);
+	}
+
+	/**
+	 * Copy lists and maps (recursively) using 'copy on write' collections
+	 * Note: Copying a CowArrayList or CowHashMap is O(1), other lists and maps
+	 * are copied element by element (O(n)). Nested lists and maps are copied
+	 * the same way. All elements in a list (or values in a map) have the
+	 * same type, so only the first (non-null) one is checked
+	 */
+	@SuppressWarnings({ "rawtypes", "unchecked" })
+	Object copyValueCow(Object value) {
+		if (value instanceof List) {
+			List list = CowArrayList.copyOf((List) value);
+			if (!isNested(list)) return list;
+
+			for (int i = 0; i < list.size(); i++)
+				list.set(i, copyValueCow(list.get(i)));
+			return list;
+		}
+
+		if (value instanceof Map) {
+			Map map = CowHashMap.copyOf((Map) value);
+			if (!isNested(map.values())) return map;
+
+			// Replace values after iterating (the map's entries are copied on the first 'put')
+			List<Object> keys = new ArrayList<Object>(map.keySet());
+			for (Object key : keys)
+				map.put(key, copyValueCow(map.get(key)));
+			return map;
+		}
+
+		return value;
+	}
+
+	/**
+	 * Delta checkpoints: Record's fingerprint
+	 * Values are written in binary format, without using the string
+	 * pool (so that fingerprints do not depend on previous records)
+	 */
+	long fingerprint(Record rec) throws IOException {
+		DataOutputStream outFile = out;
+		Map<String, Integer> stringIdxFile = stringIdx;
+		try {
+			out = outFingerprint;
+			stringIdx = null;
+			fingerprint = FNV_OFFSET;
+
+			writeValue(rec.className);
+			for (Object value : rec.values)
+				writeValue(value);
+		} finally {
+			out = outFile;
+			stringIdx = stringIdxFile;
+		}
+
+		return fingerprint;
+	}
+
+	/**
+	 * Delta checkpoints: Base checkpoint information after saving
+	 * (i.e. the new base if a full checkpoint was saved)
+	 */
+	public CheckpointBase getBase() {
+		return newBase != null ? newBase : base;
+	}
+
+	/**
+	 * Delta checkpoint: Base file name (null if this is a full checkpoint)
+	 */
+	public String getBaseFileName() {
+		return baseFileName;
+	}
+
 	public BdsThread getBdsThread(String bdsThreadId) {
 		return threadsById.get(bdsThreadId);
 	}
 
 	public String getCurrField() {
-		if (fields.length < parsedField) return "";
+		if (!hasNextField()) return "";
+		if (values != null) return toStringValue(values.get(parsedField));
 		return fields[parsedField];
 	}
 
-	public String[] getFields() {
-		return fields;
+	public String getFileName() {
+		return fileName;
 	}
 
 	public String getNextField() {
-		if (fields.length <= parsedField) return "";
+		if (!hasNextField()) return "";
+		if (values != null) return toStringValue(values.get(parsedField++));
 		return fields[parsedField++];
 	}
 
@@ -152,15 +359,18 @@ public class BdsSerializer {
 	}
 
 	public boolean getNextFieldBool() {
+		if (isNextValue(Boolean.class)) return (Boolean) nextValue();
 		return Gpr.parseBoolSafe(getNextField());
 	}
 
 	public long getNextFieldInt() {
+		if (isNextValue(Number.class)) return ((Number) nextValue()).longValue();
 		return Gpr.parseLongSafe(getNextField());
 	}
 
 	@SuppressWarnings({ "rawtypes", "unchecked" })
 	public ArrayList getNextFieldList(TypeList type) {
+		if (values != null) return (ArrayList) nextValue();
 		ArrayList list = new ArrayList();
 
 		// Sanity check: Is it a list?
@@ -182,6 +392,7 @@ public class BdsSerializer {
 
 	@SuppressWarnings({ "rawtypes", "unchecked" })
 	public HashMap getNextFieldMap(TypeMap type) {
+		if (values != null) return (HashMap) nextValue();
 		HashMap map = new HashMap();
 
 		// Sanity check: Is it a list?
@@ -211,52 +422,85 @@ public class BdsSerializer {
 	}
 
 	public double getNextFieldReal() {
+		if (isNextValue(Number.class)) return ((Number) nextValue()).doubleValue();
 		return Gpr.parseDoubleSafe(getNextField());
 	}
 
 	public String getNextFieldString() {
+		if (values != null) return (String) nextValue();
 		String str = getNextField();
 		return parseString(str);
 	}
 
+	@SuppressWarnings("rawtypes")
 	public String[] getNextFieldStringArray() {
+		if (values != null) {
+			List list = (List) nextValue();
+			if (list == null) return null;
+			String strs[] = new String[list.size()];
+			for (int i = 0; i < strs.length; i++)
+				strs[i] = (String) list.get(i);
+			return strs;
+		}
+
 		String str = getNextField();
 		return parseStringArray(str);
 	}
 
 	public Type getNextFieldType() {
-		String typeStr = getNextField();
-
-		if (typeStr.equals("null")) return null;
-
-		if (!typeStr.startsWith(TYPE_IDENTIFIER)) throw new RuntimeException("Serialized Type expected, found '" + typeStr + "'");
-		typeStr = typeStr.substring(TYPE_IDENTIFIER.length());
+		return parseType(getNextField());
+	}
 
-		String fields[] = typeStr.split(":");
+	/**
+	 * Are there any more fields in the current record?
+	 */
+	public boolean hasNextField() {
+		if (values != null) return parsedField < values.size();
+		return parsedField < fields.length;
+	}
 
-		// Base type?
-		if (fields.length == 1) return Type.get(fields[0]);
+	/**
+	 * Binary file? Check the first bytes (stream is reset otherwise)
+	 */
+	boolean isBinary(InputStream is) throws IOException {
+		is.mark(4);
+		byte magic[] = new byte[4];
+		int len = is.read(magic);
+		if (len == 4 && (((magic[0] & 0xff) << 24) | ((magic[1] & 0xff) << 16) | ((magic[2] & 0xff) << 8) | (magic[3] & 0xff)) == BINARY_MAGIC) return true;
+
+		is.reset();
+		return false;
+	}
 
-		// List
-		if (fields[0].equals(PrimitiveType.LIST.toString())) {
-			Type baseType = Type.get(fields[1]);
-			return TypeList.get(baseType);
-		} else if (fields[0].equals(PrimitiveType.MAP.toString())) {
-			Type baseType = Type.get(fields[1]);
-			return TypeMap.get(baseType);
-		}
+	/**
+	 * Is the file (saved or loaded) in binary format?
+	 */
+	public boolean isBinary() {
+		return binary;
+	}
 
-		// Error
-		throw new RuntimeException("Cannot parse type '" + typeStr + "'");
+	/**
+	 * Does this collection contain lists or maps? (only the first non-null element is checked)
+	 */
+	@SuppressWarnings("rawtypes")
+	boolean isNested(Collection values) {
+		for (Object v : values)
+			if (v != null) return (v instanceof List) || (v instanceof Map);
+		return false;
 	}
 
 	/**
 	 * Is the nexf field a node?
 	 */
 	public boolean isNextFieldNode() {
-		String nextVal = "";
-		if (fields.length > parsedField) nextVal = fields[parsedField];
-		return nextVal.startsWith(NODE_IDENTIFIER);
+		return getCurrField().startsWith(NODE_IDENTIFIER);
+	}
+
+	/**
+	 * Binary format: Is the next value an instance of 'clazz'?
+	 */
+	boolean isNextValue(Class<?> clazz) {
+		return values != null && hasNextField() && clazz.isInstance(values.get(parsedField));
 	}
 
 	public boolean isSerialized(BdsSerialize node) {
@@ -267,18 +511,118 @@ public class BdsSerializer {
 	 * Load from a file
 	 */
 	public List<BdsThread> load() {
-		// Read the whole file
-		String file = Gpr.read(Gpr.reader(fileName, true));
-		if ((file == null) || file.isEmpty()) throw new RuntimeException("Cannot read file '" + fileName + "'");
+		if (!Gpr.exists(fileName)) throw new RuntimeException("Cannot read file '" + fileName + "'");
+
+		try (InputStream is = open()) {
+			binary = isBinary(is);
+			if (binary) {
+				// Binary format: Parse records as we read them
+				readHeader(is);
+				if (baseFileName != null) loadBase(); // Delta checkpoint: We need the base file's records
 
-		// Split file into lines
-		String lines[] = file.split("\n");
+				Scope.resetGlobalScope();
+				return parseRecords(null);
+			}
 
-		// Parse everything else
-		Scope.resetGlobalScope();
+			// Text format: Read the whole file
+			String file = Gpr.read(is);
+			if ((file == null) || file.isEmpty()) throw new RuntimeException("Cannot read file '" + fileName + "'");
 
-		List<BdsThread> bdsThreads = parseLines(lines, null);
-		return bdsThreads;
+			// Split file into lines
+			String lines[] = file.split("\n");
+
+			// Parse everything else
+			Scope.resetGlobalScope();
+
+			List<BdsThread> bdsThreads = parseLines(lines, null);
+			return bdsThreads;
+		} catch (IOException e) {
+			throw new RuntimeException("Error reading file '" + fileName + "'", e);
+		} finally {
+			in = null;
+			closeBase();
+		}
+	}
+
+	/**
+	 * Delta checkpoint: Open base file (records are read when referenced, see 'nextRecordBase')
+	 */
+	void loadBase() throws IOException {
+		if (!Gpr.exists(baseFileName)) throw new RuntimeException("Cannot find base checkpoint file '" + baseFileName + "', required by delta checkpoint file '" + fileName + "'");
+
+		closeBase();
+		baseReader = new BdsSerializer(baseFileName, config);
+		baseIs = baseReader.open();
+		if (!baseReader.isBinary(baseIs)) throw new RuntimeException("Base checkpoint file '" + baseFileName + "' is not in binary format");
+		baseReader.readHeader(baseIs);
+		if (baseReader.id != baseId || baseReader.baseFileName != null) throw new RuntimeException("Base checkpoint file '" + baseFileName + "' has been overwritten, cannot recover from delta checkpoint file '" + fileName + "'");
+	}
+
+	/**
+	 * Binary format: Read next record (class name and values)
+	 * @return Class name or null if there are no more records
+	 */
+	String nextRecord() throws IOException {
+		// Delta checkpoint: Replay records from base file
+		if (baseRefIdx >= baseRefEnd && nextTag == TAG_BASE_REF) {
+			if (baseReader == null) throw new RuntimeException("Serialization error: Reference to base checkpoint in a full checkpoint file '" + fileName + "'");
+			baseRefIdx = readVarInt();
+			baseRefEnd = baseRefIdx + readVarInt();
+			nextTag = in.readUnsignedByte();
+		}
+		if (baseRefIdx < baseRefEnd) return nextRecordBase();
+
+		if (nextTag == TAG_EOF) return null;
+		if (nextTag != TAG_RECORD) throw new RuntimeException("Serialization error: Record expected, found tag " + nextTag + ", file '" + fileName + "'");
+
+		String clazz = (String) readValue(in.readUnsignedByte());
+
+		// Read values until next record (or end of file)
+		values = new ArrayList<Object>();
+		int tag;
+		while ((tag = in.readUnsignedByte()) != TAG_RECORD && tag != TAG_BASE_REF && tag != TAG_EOF)
+			values.add(readValue(tag));
+
+		nextTag = tag;
+		parsedField = 0;
+		recordIdx++;
+		return clazz;
+	}
+
+	/**
+	 * Delta checkpoint: Next record from base file
+	 * Note: References are usually in increasing order, so base records in
+	 * between are skipped. A reference to a previous record re-opens the base file
+	 */
+	String nextRecordBase() throws IOException {
+		int idx = baseRefIdx++;
+		if (idx < baseReader.recordIdx) loadBase(); // Already read: Start from the beginning
+
+		// Skip records until the one referenced
+		String clazz;
+		do {
+			clazz = baseReader.nextRecord();
+			if (clazz == null) throw new RuntimeException("Serialization error: Invalid reference to base checkpoint record " + idx + ", file '" + fileName + "'");
+		} while (baseReader.recordIdx <= idx);
+
+		values = baseReader.values;
+		parsedField = 0;
+		return clazz;
+	}
+
+	/**
+	 * Binary format: Get next value
+	 */
+	Object nextValue() {
+		if (!hasNextField()) return null;
+		return values.get(parsedField++);
+	}
+
+	/**
+	 * Open file for reading
+	 */
+	InputStream open() throws IOException {
+		return new BufferedInputStream(new GZIPInputStream(new FileInputStream(fileName), BUFFER_SIZE), BUFFER_SIZE);
 	}
 
 	/**
@@ -296,15 +640,24 @@ public class BdsSerializer {
 			ArrayList list = new ArrayList();
 
 			// Add all nodes to array
-			String arrayVal = getNextField();
-			if (arrayVal != null && !arrayVal.isEmpty()) {
-				for (String nodeNum : arrayVal.split(",")) {
-					BdsNode csnode = BdsNodeFactory.get().factory(componentType.getCanonicalName(), null, null);
-					csnode.setFakeId(parseNodeId(nodeNum));
-					list.add(csnode);
+			List<Object> nodeNums = new ArrayList<Object>();
+			if (values != null) {
+				nodeNums = (List<Object>) nextValue();
+				if (nodeNums == null) return null;
+			} else {
+				String arrayVal = getNextField();
+				if (arrayVal != null && !arrayVal.isEmpty()) {
+					for (String nodeNum : arrayVal.split(","))
+						nodeNums.add(nodeNum);
 				}
 			}
 
+			for (Object nodeNum : nodeNums) {
+				BdsNode csnode = BdsNodeFactory.get().factory(componentType.getCanonicalName(), null, null);
+				csnode.setFakeId(parseNodeId(toStringValue(nodeNum)));
+				list.add(csnode);
+			}
+
 			// Create array
 			Object[] array = (Object[]) Array.newInstance(componentType, 0);
 			return list.toArray(array);
@@ -327,12 +680,27 @@ public class BdsSerializer {
 	}
 
 	/**
-	 * Parse lines
+	 * Parse lines (text format)
 	 *
 	 * @param lines
 	 * @param classNameFilter : If not null, only parse lines matching this className
 	 */
 	List<BdsThread> parseLines(String lines[], String classNameFilter) {
+		this.lines = lines;
+		lineNum = 0;
+		try {
+			return parseRecords(classNameFilter);
+		} catch (IOException e) {
+			throw new RuntimeException(e);
+		}
+	}
+
+	/**
+	 * Parse all records
+	 *
+	 * @param classNameFilter : If not null, only parse records matching this className
+	 */
+	List<BdsThread> parseRecords(String classNameFilter) throws IOException {
 		// Set fake IDs on
 		BdsNodeFactory.get().setCreateFakeIds(true);
 
@@ -343,17 +711,9 @@ public class BdsSerializer {
 		ArrayList<Scope> scopes = new ArrayList<Scope>();
 		Map<String, BdsSerialize> nodesById = new HashMap<String, BdsSerialize>();
 
-		// Parse lines
-		for (int i = 0; i < lines.length; i++) {
-			// Update line info
-			lineNum = i + 1;
-			line = lines[i];
-			fields = line.split("\t");
-
-			// Fields parsed
-			String clazz = fields[0];
-			parsedField = 1;
-
+		// Parse records
+		String clazz;
+		while ((clazz = (in != null ? nextRecord() : nextLine())) != null) {
 			if ((classNameFilter == null) || (classNameFilter.equals(clazz))) {
 				// Object to un-serialize
 				BdsSerialize bdsSerialize = null;
@@ -363,7 +723,7 @@ public class BdsSerializer {
 				//---
 				if (clazz.equals(Bds.class.getSimpleName())) {
 					// Check version number
-					double version = Gpr.parseDoubleSafe(fields[1]);
+					double version = Gpr.parseDoubleSafe(getNextField());
 					double versionThis = Gpr.parseDoubleSafe(Bds.VERSION_MAJOR);
 					if (versionThis < version) throw new RuntimeException("Version numbers do not match.\n\tThis version: " + versionThis + "\n\tFile's version: " + version);
 					bdsSerialize = null; // Nothing to parse
@@ -485,12 +845,41 @@ public class BdsSerializer {
 		return bdsThreads;
 	}
 
+	/**
+	 * Text format: Read next line (record)
+	 * @return Class name or null if there are no more lines
+	 */
+	String nextLine() {
+		if (lineNum >= lines.length) return null;
+
+		// Update line info
+		line = lines[lineNum++];
+		fields = line.split("\t");
+
+		// Fields parsed
+		parsedField = 1;
+		return fields[0];
+	}
+
 	public int parseNodeId(String fielsVal) {
 		if (fielsVal.equals("null")) return 0; // null node
 		String str[] = fielsVal.split(":");
 		return Gpr.parseIntSafe(str[1]);
 	}
 
+	/**
+	 * Parse a program's nodes (e.g. a compiled program, see CompileCache)
+	 * @return The program or null if not found
+	 */
+	public ProgramUnit parseProgramUnit(String lines[]) {
+		parseLines(lines, null);
+
+		for (BdsSerialize bdsSerialize : serializedNodes)
+			if (bdsSerialize instanceof ProgramUnit) return (ProgramUnit) bdsSerialize;
+
+		return null;
+	}
+
 	public String parseString(String str) {
 		if (str.equals("null")) return null;
 		str = StringEscapeUtils.unescapeJava(str); // Un-escape
@@ -509,33 +898,277 @@ public class BdsSerializer {
 		return splitted;
 	}
 
+	/**
+	 * Parse a type
+	 * Format : "type:TYPE_NAME"
+	 * E.g.   : "type:INT", "type:LIST:STRING"
+	 */
+	public Type parseType(String typeStr) {
+		if (typeStr.equals("null")) return null;
+
+		if (!typeStr.startsWith(TYPE_IDENTIFIER)) throw new RuntimeException("Serialized Type expected, found '" + typeStr + "'");
+		typeStr = typeStr.substring(TYPE_IDENTIFIER.length());
+
+		String fields[] = typeStr.split(":");
+
+		// Base type?
+		if (fields.length == 1) return Type.get(fields[0]);
+
+		// List
+		if (fields[0].equals(PrimitiveType.LIST.toString())) {
+			Type baseType = Type.get(fields[1]);
+			return TypeList.get(baseType);
+		} else if (fields[0].equals(PrimitiveType.MAP.toString())) {
+			Type baseType = Type.get(fields[1]);
+			return TypeMap.get(baseType);
+		}
+
+		// Error
+		throw new RuntimeException("Cannot parse type '" + typeStr + "'");
+	}
+
+	/**
+	 * Binary format: Read file header (after 'magic' bytes)
+	 */
+	void readHeader(InputStream is) throws IOException {
+		in = new DataInputStream(is);
+		int version = in.readUnsignedByte();
+		if (version > BINARY_FORMAT_VERSION) throw new RuntimeException("Unsupported file format version " + version + ", file '" + fileName + "'");
+		strings = new ArrayList<String>();
+
+		if (version >= 2) {
+			id = readVarLong();
+			baseFileName = (String) readValue(in.readUnsignedByte());
+			baseId = readVarLong();
+		}
+
+		nextTag = in.readUnsignedByte();
+	}
+
+	/**
+	 * Binary format: Read a value
+	 */
+	@SuppressWarnings({ "rawtypes", "unchecked" })
+	Object readValue(int tag) throws IOException {
+		switch (tag) {
+		case TAG_NULL:
+			return null;
+
+		case TAG_FALSE:
+			return Boolean.FALSE;
+
+		case TAG_TRUE:
+			return Boolean.TRUE;
+
+		case TAG_INT:
+			return readVarLong();
+
+		case TAG_REAL:
+			return in.readDouble();
+
+		case TAG_STRING:
+			byte bytes[] = new byte[readVarInt()];
+			in.readFully(bytes);
+			String str = new String(bytes, StandardCharsets.UTF_8);
+			strings.add(str);
+			return str;
+
+		case TAG_STRING_REF:
+			return strings.get(readVarInt());
+
+		case TAG_NODE:
+			return NODE_IDENTIFIER + readVarLong();
+
+		case TAG_TYPE:
+			return TYPE_IDENTIFIER + readValue(in.readUnsignedByte());
+
+		case TAG_LIST:
+		case TAG_ARRAY:
+			int size = readVarInt();
+			ArrayList list = new ArrayList(size);
+			for (int i = 0; i < size; i++)
+				list.add(readValue(in.readUnsignedByte()));
+			return list;
+
+		case TAG_MAP:
+			size = readVarInt();
+			HashMap map = new HashMap();
+			for (int i = 0; i < size; i++) {
+				Object key = readValue(in.readUnsignedByte());
+				map.put(key, readValue(in.readUnsignedByte()));
+			}
+			return map;
+
+		default:
+			throw new RuntimeException("Serialization error: Unknown tag " + tag + ", file '" + fileName + "'");
+		}
+	}
+
+	int readVarInt() throws IOException {
+		return (int) readVarLong();
+	}
+
+	/**
+	 * Read a variable length (zig-zag encoded) integer
+	 */
+	long readVarLong() throws IOException {
+		long zz = 0;
+		for (int shift = 0;; shift += 7) {
+			int b = in.readUnsignedByte();
+			zz |= (long) (b & 0x7f) << shift;
+			if ((b & 0x80) == 0) break;
+		}
+		return (zz >>> 1) ^ -(zz & 1);
+	}
+
+	/**
+	 * Replace file by 'tmpFileName' (atomically, if the file system supports it)
+	 */
+	void rename(String tmpFileName) throws IOException {
+		Path tmp = Paths.get(tmpFileName);
+		Path path = Paths.get(fileName);
+		try {
+			Files.move(tmp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+		} catch (AtomicMoveNotSupportedException e) {
+			Files.move(tmp, path, StandardCopyOption.REPLACE_EXISTING);
+		}
+	}
+
 	/**
 	 * Save data to file
+	 * The file is written to a temporary file and then renamed, so an
+	 * existing file is never left half written
 	 */
 	public void save(BdsThread bdsThread) {
+		// Binary format
+		if (binary) {
+			snapshot(bdsThread, false);
+			write();
+			return;
+		}
+
+		// Text format
+		String tmpFileName = fileName + TMP_EXT;
 		try {
-			// Open compressed output file
-			PrintStream outFile = new PrintStream(new GZIPOutputStream(new FileOutputStream(fileName)));
+			PrintStream outStream = new PrintStream(new BufferedOutputStream(new GZIPOutputStream(new FileOutputStream(tmpFileName), BUFFER_SIZE), BUFFER_SIZE));
+			outText = outStream;
 
 			// Save version
-			outFile.print(Bds.class.getSimpleName() + "\t" + Bds.VERSION_SHORT + "\n");
+			serializeSaveRecord(Bds.class.getSimpleName());
+			serializeSaveFieldRaw(Bds.VERSION_SHORT);
 
 			// Save main thread
-			outFile.print(this.serializeSave(bdsThread));
-			outFile.close();
+			serializeSave(bdsThread);
+			serializeSaveEnd();
+			outStream.close();
+
+			rename(tmpFileName);
 		} catch (IOException e) {
 			throw new RuntimeException(e);
+		} finally {
+			outText = null;
 		}
 	}
 
 	/**
 	 * Serialize a node
 	 */
-	public String serializeSave(BdsSerialize bdsSer) {
-		if (add(bdsSer)) return bdsSer.serializeSave(this);
-		return "";
+	public void serializeSave(BdsSerialize bdsSer) {
+		if (!add(bdsSer)) return;
+		recordOwner = bdsSer;
+		bdsSer.serializeSave(this);
+	}
+
+	/**
+	 * Text format: Finish last record
+	 */
+	void serializeSaveEnd() throws IOException {
+		if (recordOpen) outText.append('\n');
+		recordOpen = false;
+	}
+
+	/**
+	 * Add a field to the current record
+	 */
+	public void serializeSaveField(Object value) {
+		try {
+			if (records != null) record.values.add(copyValue(value));
+			else {
+				outText.append('\t');
+				writeText(value);
+			}
+		} catch (IOException e) {
+			throw new RuntimeException(e);
+		}
+	}
+
+	/**
+	 * Add an array of values (e.g. nodes) to the current record
+	 */
+	public void serializeSaveFieldArray(Object array[]) {
+		try {
+			if (records != null) record.values.add(array);
+			else if (array.length > 0) {
+				// Comma separated values
+				outText.append('\t');
+				for (int i = 0; i < array.length; i++) {
+					if (i > 0) outText.append(',');
+					outText.append(serializeSaveValue(array[i]));
+				}
+			}
+		} catch (IOException e) {
+			throw new RuntimeException(e);
+		}
+	}
+
+	/**
+	 * Add a string to the current record, without quoting nor escaping it in text format (e.g. IDs, base64 encoded data)
+	 */
+	public void serializeSaveFieldRaw(String value) {
+		try {
+			if (records != null) record.values.add(value);
+			else outText.append('\t').append(value);
+		} catch (IOException e) {
+			throw new RuntimeException(e);
+		}
+	}
+
+	/**
+	 * Start a new record
+	 */
+	public void serializeSaveRecord(String className) {
+		try {
+			if (records != null) {
+				// Binary format: Add record to snapshot
+				record = new Record(className, recordOwner != null ? recordOwner.getNodeId() : null);
+				records.add(record);
+			} else {
+				if (recordOpen) outText.append('\n');
+				outText.append(className);
+			}
+			recordOwner = null; // Only the first record belongs to the object
+			recordOpen = true;
+		} catch (IOException e) {
+			throw new RuntimeException(e);
+		}
 	}
 
+	/**
+	 * Serialize a node (and all nodes it references) using text format
+	 */
+	public String serializeSaveText(BdsSerialize bdsSer) {
+		StringBuilder sb = new StringBuilder();
+		outText = sb;
+		try {
+			serializeSave(bdsSer);
+			serializeSaveEnd();
+		} catch (IOException e) {
+			throw new RuntimeException(e);
+		} finally {
+			outText = null;
+		}
+		return sb.toString();
+	}
 	/**
 	 * Serialize a value
 	 */
@@ -581,4 +1214,244 @@ public class BdsSerializer {
 		String escapedStr = StringEscapeUtils.escapeJava(str);
 		return "\"" + escapedStr + "\"";
 	}
+
+	public void setBinary(boolean binary) {
+		this.binary = binary;
+	}
+
+	/**
+	 * Enable delta checkpoints: Only save records that changed respect
+	 * to 'base'. If 'base' is null, a full checkpoint is saved, which can
+	 * be used as base for later delta checkpoints (see getBase)
+	 */
+	public void setDeltas(CheckpointBase base) {
+		this.base = base;
+		deltas = true;
+	}
+
+	/**
+	 * Binary format: Take a snapshot of the program's state (i.e. all the
+	 * records to save), so that it can be written later (see 'write'),
+	 * e.g. by another thread while the program keeps running
+	 *
+	 * @param copyValues : Copy lists and maps (needed if the program keeps running before the snapshot is written)
+	 */
+	public void snapshot(BdsThread bdsThread, boolean copyValues) {
+		binary = true;
+		records = new ArrayList<Record>();
+		this.copyValues = copyValues;
+		try {
+			// Save version
+			serializeSaveRecord(Bds.class.getSimpleName());
+			serializeSaveFieldRaw(Bds.VERSION_SHORT);
+
+			// Save main thread
+			serializeSave(bdsThread);
+		} catch (RuntimeException e) {
+			records = null;
+			throw e;
+		} finally {
+			record = null;
+		}
+	}
+
+	/**
+	 * Binary format: Value as a string (e.g. for fields saved as 'raw' strings)
+	 */
+	String toStringValue(Object value) {
+		return value == null ? "null" : value.toString();
+	}
+
+	/**
+	 * Binary format: Write a record, or a reference to the base
+	 * file's record if it did not change (delta checkpoints)
+	 */
+	void writeRecord(Record rec) throws IOException {
+		Integer idx = (base != null ? base.getRecordIdx(rec.key) : null);
+		long fp = (idx != null || newBase != null ? fingerprint(rec) : 0);
+
+		if (idx != null && base.getFingerprint(idx) == fp) {
+			// Unchanged record: Reference base file (consecutive records are merged)
+			if (refCount > 0 && refStart + refCount == idx) refCount++;
+			else {
+				writeBaseRef();
+				refStart = idx;
+				refCount = 1;
+			}
+		} else {
+			writeBaseRef();
+			out.writeByte(TAG_RECORD);
+			writeValue(rec.className);
+			for (Object value : rec.values)
+				writeValue(value);
+		}
+
+		if (newBase != null) newBase.add(rec.key, fp);
+	}
+
+	/**
+	 * Text format: Write a value (lists and maps are written one element at a time)
+	 */
+	@SuppressWarnings("rawtypes")
+	void writeText(Object value) throws IOException {
+		if (value instanceof List) {
+			List list = (List) value;
+			outText.append(LIST_IDENTIFIER).append(String.valueOf(list.size()));
+			for (Object o : list) {
+				outText.append('\t');
+				writeText(o);
+			}
+		} else if (value instanceof Map) {
+			Map map = (Map) value;
+			outText.append(MAP_IDENTIFIER).append(String.valueOf(map.size()));
+			for (Object o : map.keySet()) {
+				outText.append('\t');
+				writeText(o);
+				outText.append('\t');
+				writeText(map.get(o));
+			}
+		} else outText.append(serializeSaveValue(value));
+	}
+
+	/**
+	 * Binary format: Write a value
+	 */
+	@SuppressWarnings("rawtypes")
+	void writeValue(Object value) throws IOException {
+		if (value == null) {
+			out.writeByte(TAG_NULL);
+		} else if (value instanceof Type) {
+			out.writeByte(TAG_TYPE);
+			writeValue(((Type) value).toStringSerializer());
+		} else if (value instanceof BdsNode) {
+			out.writeByte(TAG_NODE);
+			writeVarLong(((BdsNode) value).getId());
+		} else if (value instanceof String) {
+			// Use string pool
+			String str = (String) value;
+			Integer idx = (stringIdx != null ? stringIdx.get(str) : null);
+			if (idx != null) {
+				out.writeByte(TAG_STRING_REF);
+				writeVarLong(idx);
+			} else {
+				if (stringIdx != null) stringIdx.put(str, stringIdx.size());
+				byte bytes[] = str.getBytes(StandardCharsets.UTF_8);
+				out.writeByte(TAG_STRING);
+				writeVarLong(bytes.length);
+				out.write(bytes);
+			}
+		} else if (value instanceof Boolean) {
+			out.writeByte(((Boolean) value) ? TAG_TRUE : TAG_FALSE);
+		} else if ((value instanceof Long) || (value instanceof Integer)) {
+			out.writeByte(TAG_INT);
+			writeVarLong(((Number) value).longValue());
+		} else if (value instanceof Double) {
+			out.writeByte(TAG_REAL);
+			out.writeDouble((Double) value);
+		} else if (value instanceof List) {
+			List list = (List) value;
+			out.writeByte(TAG_LIST);
+			writeVarLong(list.size());
+			for (Object o : list)
+				writeValue(o);
+		} else if (value instanceof Map) {
+			Map map = (Map) value;
+			out.writeByte(TAG_MAP);
+			writeVarLong(map.size());
+			for (Object o : map.keySet()) {
+				writeValue(o);
+				writeValue(map.get(o));
+			}
+		} else if (value instanceof Object[]) {
+			Object array[] = (Object[]) value;
+			out.writeByte(TAG_ARRAY);
+			writeVarLong(array.length);
+			for (Object o : array)
+				writeValue(o);
+		} else {
+			// All other values: use default
+			writeValue(value.toString());
+		}
+	}
+
+	/**
+	 * Binary format: Write snapshot to file (see 'snapshot')
+	 * The file is written to a temporary file and then renamed, so an
+	 * existing file is never left half written
+	 */
+	public void write() {
+		if (records == null) throw new RuntimeException("No snapshot to write, file '" + fileName + "'");
+
+		String tmpFileName = fileName + TMP_EXT;
+		try {
+			// Open compressed output file
+			out = new DataOutputStream(new BufferedOutputStream(new GZIPOutputStream(new FileOutputStream(tmpFileName), BUFFER_SIZE), BUFFER_SIZE));
+			out.writeInt(BINARY_MAGIC);
+			out.writeByte(BINARY_FORMAT_VERSION);
+			stringIdx = new HashMap<String, Integer>();
+
+			// File ID and base file (delta checkpoint)
+			id = new Random().nextLong();
+			baseFileName = (base != null ? base.getFileName() : null);
+			baseId = (base != null ? base.getId() : 0);
+			writeVarLong(id);
+			writeValue(baseFileName);
+			writeVarLong(baseId);
+
+			if (deltas) {
+				// Records' fingerprints are used to check whether they changed respect to the base
+				outFingerprint = new DataOutputStream(new OutputStream() {
+					@Override
+					public void write(int b) {
+						fingerprint = (fingerprint ^ (b & 0xff)) * FNV_PRIME;
+					}
+				});
+				if (base == null) newBase = new CheckpointBase(fileName, id);
+			}
+
+			// Write all records
+			for (Record rec : records)
+				writeRecord(rec);
+			writeBaseRef();
+			out.writeByte(TAG_EOF);
+			out.close();
+
+			rename(tmpFileName);
+
+			// Update base checkpoint information
+			long size = new File(fileName).length();
+			if (newBase != null) newBase.setSize(size);
+			else if (base != null) base.addDelta(size);
+		} catch (IOException e) {
+			throw new RuntimeException(e);
+		} finally {
+			out = null;
+			outFingerprint = null;
+			records = null; // Snapshot is no longer needed
+		}
+	}
+
+	/**
+	 * Delta checkpoints: Write references to base file's records (if any)
+	 */
+	void writeBaseRef() throws IOException {
+		if (refCount <= 0) return;
+		out.writeByte(TAG_BASE_REF);
+		writeVarLong(refStart);
+		writeVarLong(refCount);
+		refCount = 0;
+	}
+
+	/**
+	 * Write a variable length (zig-zag encoded) integer
+	 */
+	void writeVarLong(long value) throws IOException {
+		long zz = (value << 1) ^ (value >> 63);
+		while ((zz & ~0x7fL) != 0) {
+			out.writeByte((int) ((zz & 0x7f) | 0x80));
+			zz >>>= 7;
+		}
+		out.writeByte((int) zz);
+	}
+
 }
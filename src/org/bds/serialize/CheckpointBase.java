@@ -0,0 +1,114 @@
+package org.bds.serialize;
+
+import java.io.File;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.bds.util.Gpr;
+
+/**
+ * Information about a full checkpoint file, used as 'base' for
+ * delta checkpoints.
+ *
+ * For each record in the base file we keep its position and a
+ * fingerprint of its contents. A delta checkpoint only saves records
+ * that are new or have a different fingerprint, all other records are
+ * references to the base file (see BdsSerializer).
+ *
+ * Deltas are always relative to the base (not to the previous delta),
+ * so recovering requires only the base and the delta files.
+ *
+ * @author pcingola
+ */
+public class CheckpointBase {
+
+	String fileName; // Base file (absolute path)
+	long id; // Base file's unique ID
+	long size; // Base file size (bytes)
+	int deltas; // Number of delta checkpoints saved using this base
+	long deltaSize; // Last delta checkpoint's size (bytes)
+	int numRecords;
+	long fingerprints[];
+	Map<String, Integer> recordIdxByKey;
+
+	public CheckpointBase(String fileName, long id) {
+		this.fileName = absolutePath(fileName);
+		this.id = id;
+		fingerprints = new long[1024];
+		recordIdxByKey = new HashMap<>();
+	}
+
+	public static String absolutePath(String fileName) {
+		return new File(fileName).getAbsolutePath();
+	}
+
+	/**
+	 * Add a record
+	 * @param key : Record's key (null if the record cannot be referenced)
+	 */
+	void add(String key, long fingerprint) {
+		if (numRecords >= fingerprints.length) fingerprints = Arrays.copyOf(fingerprints, 2 * fingerprints.length);
+		if (key != null) recordIdxByKey.put(key, numRecords);
+		fingerprints[numRecords++] = fingerprint;
+	}
+
+	/**
+	 * A delta checkpoint has been saved
+	 */
+	void addDelta(long deltaSize) {
+		deltas++;
+		this.deltaSize = deltaSize;
+	}
+
+	public int getDeltas() {
+		return deltas;
+	}
+
+	public String getFileName() {
+		return fileName;
+	}
+
+	long getFingerprint(int idx) {
+		return fingerprints[idx];
+	}
+
+	public long getId() {
+		return id;
+	}
+
+	/**
+	 * Record's position in base file
+	 * @return Record index or null if not found
+	 */
+	Integer getRecordIdx(String key) {
+		return key != null ? recordIdxByKey.get(key) : null;
+	}
+
+	/**
+	 * Can a checkpoint be saved as a delta respect to this base?
+	 * Otherwise a full checkpoint should be saved (i.e. deltas are compacted into a new base)
+	 *
+	 * @param maxDeltas : Maximum number of deltas per base
+	 */
+	public boolean isDeltaAllowed(String fileName, int maxDeltas) {
+		if (deltas >= maxDeltas) return false; // Too many deltas
+		if (deltaSize > size / 2) return false; // Deltas are too large, compared to a full checkpoint
+		if (this.fileName.equals(absolutePath(fileName))) return false; // A delta cannot overwrite its own base
+		return Gpr.exists(this.fileName); // Base file deleted?
+	}
+
+	void setSize(long size) {
+		this.size = size;
+	}
+
+	public int size() {
+		return numRecords;
+	}
+
+	@Override
+	public String toString() {
+		return "Checkpoint base '" + fileName + "', id: " + id + ", records: " + numRecords + ", deltas: " + deltas;
+	}
+
+}
@@ -0,0 +1,123 @@
+package org.bds.serialize;
+
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+
+import org.bds.util.Timer;
+
+/**
+ * Write checkpoint files
+ *
+ * Keeps track of the last full checkpoint, which is used as base for
+ * delta checkpoints (see CheckpointBase).
+ *
+ * Asynchronous mode: The program only takes a snapshot of its state
+ * (see BdsSerializer.snapshot), encoding, compressing and writing the
+ * file is done by a background thread. Files are written one at a
+ * time, in the same order they were requested.
+ *
+ * @author pcingola
+ */
+public class CheckpointWriter {
+
+	boolean async; // Write checkpoints in a background thread
+	boolean debug;
+	int maxDeltas; // Maximum number of delta checkpoints per base (zero or negative disables delta checkpoints)
+	CheckpointBase base; // Last full checkpoint
+	ExecutorService executor; // Background writer (asynchronous mode)
+	Future<?> lastWrite; // Last checkpoint submitted to background writer
+
+	public CheckpointWriter(int maxDeltas, boolean async) {
+		this.maxDeltas = maxDeltas;
+		this.async = async;
+	}
+
+	/**
+	 * Get (or create) background writer
+	 */
+	synchronized ExecutorService getExecutor() {
+		if (executor == null) {
+			executor = Executors.newSingleThreadExecutor(new ThreadFactory() {
+				@Override
+				public Thread newThread(Runnable r) {
+					Thread thread = new Thread(r, "CheckpointWriter");
+					thread.setDaemon(true);
+					return thread;
+				}
+			});
+		}
+		return executor;
+	}
+
+	public boolean isAsync() {
+		return async;
+	}
+
+	/**
+	 * Save snapshot to file (delta checkpoint, if possible)
+	 */
+	void save(BdsSerializer serializer) {
+		if (maxDeltas > 0) {
+			boolean delta = (base != null) && base.isDeltaAllowed(serializer.getFileName(), maxDeltas);
+			serializer.setDeltas(delta ? base : null);
+		}
+
+		serializer.write();
+		if (maxDeltas > 0) base = serializer.getBase();
+		if (debug) Timer.showStdErr((serializer.getBaseFileName() != null ? "Delta" : "Full") + " checkpoint '" + serializer.getFileName() + "'. " + base);
+	}
+
+	public void setDebug(boolean debug) {
+		this.debug = debug;
+	}
+
+	/**
+	 * Wait until all checkpoint files have been written
+	 */
+	public void waitFinished() {
+		Future<?> last;
+		synchronized (this) {
+			last = lastWrite;
+		}
+		if (last == null) return;
+
+		try {
+			last.get();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		} catch (ExecutionException e) {
+			; // Errors are reported by the background writer
+		}
+	}
+
+	/**
+	 * Write a checkpoint file (the serializer must have a snapshot)
+	 * In asynchronous mode, this method returns immediately
+	 */
+	public void write(final BdsSerializer serializer) {
+		if (!async) {
+			save(serializer);
+			return;
+		}
+
+		Runnable writer = new Runnable() {
+			@Override
+			public void run() {
+				try {
+					save(serializer);
+				} catch (Throwable t) {
+					System.err.println("Error writing checkpoint file '" + serializer.getFileName() + "': " + t.getMessage());
+					if (debug) t.printStackTrace();
+				}
+			}
+		};
+
+		synchronized (this) {
+			lastWrite = getExecutor().submit(writer);
+		}
+	}
+
+}
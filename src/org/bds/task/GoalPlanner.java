@@ -0,0 +1,229 @@
+package org.bds.task;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.bds.data.DataStat;
+import org.bds.data.DataStatCache;
+import org.bds.lang.ExpressionTask;
+import org.bds.run.BdsThread;
+import org.bds.util.Timer;
+
+/**
+ * Find (and execute) tasks required to achieve a goal
+ *
+ * A goal is a file or a task ID. A goal needs to be updated if it
+ * doesn't exist or is older than any of the 'leaf' nodes it depends
+ * on (i.e. nodes not produced by any task), see TaskDependency.depOperator()
+ *
+ * Each node is visited once: 'Leaf' information (maximum modification
+ * time, any missing or pending leaf) is calculated in one depth first
+ * pass and memoized for every node. File attributes are queried once,
+ * for all nodes at the same time.
+ *
+ * @author pcingola
+ */
+public class GoalPlanner {
+
+	/**
+	 * Information about the leaf nodes a node depends on
+	 */
+	class LeafInfo {
+		long maxModified = Long.MIN_VALUE; // Maximum modification time
+		boolean update; // Any leaf missing or pending (i.e. the node must be updated)?
+
+		void add(LeafInfo li) {
+			maxModified = Math.max(maxModified, li.maxModified);
+			update |= li.update;
+		}
+	}
+
+	/**
+	 * Depth first search 'stack frame'
+	 */
+	class Frame {
+		String node;
+		Iterator<String> children;
+		List<Task> tasks; // Tasks added when visiting this node
+
+		Frame(String node, List<String> children, List<Task> tasks) {
+			this.node = node;
+			this.children = children.iterator();
+			this.tasks = tasks;
+		}
+	}
+
+	BdsThread bdsThread;
+	boolean debug;
+	TaskDependecies taskDependecies;
+	TaskDependency goalDependency; // Used to evaluate the left hand side of the '<-' operator
+	Map<String, LeafInfo> leafInfoByNode; // Memoized leaf information
+	Map<String, DataStat> statByNode; // File attributes snapshot
+	Set<Task> tasks; // Tasks required to achieve the goal
+
+	public GoalPlanner(BdsThread bdsThread, TaskDependecies taskDependecies) {
+		this.bdsThread = bdsThread;
+		this.taskDependecies = taskDependecies;
+		debug = taskDependecies.debug;
+		goalDependency = new TaskDependency();
+		goalDependency.setDebug(debug);
+		leafInfoByNode = new HashMap<>();
+		tasks = new HashSet<>();
+	}
+
+	/**
+	 * Nodes a node depends on: All inputs and dependencies of the tasks producing it
+	 */
+	List<String> children(String node, List<Task> nodeTasks, boolean addDependencies) {
+		List<String> children = new ArrayList<>();
+		if (nodeTasks == null) return children;
+
+		for (Task t : nodeTasks) {
+			if (t.getInputs() != null) children.addAll(t.getInputs());
+
+			if (t.getDependencies() != null) {
+				for (Task dt : t.getDependencies())
+					if (addDependencies || !tasks.contains(dt)) children.add(dt.getId());
+			}
+		}
+
+		return children;
+	}
+
+	/**
+	 * Find and execute all tasks required to achieve goal 'out'
+	 * @return Tasks required
+	 */
+	public Set<Task> goal(String out) {
+		leafInfo(out);
+		goalRun(out);
+		return tasks;
+	}
+
+	/**
+	 * Traverse nodes that need to be updated, executing all tasks
+	 * required (a task is executed after all the tasks it depends on)
+	 */
+	void goalRun(String goal) {
+		Set<String> visited = new HashSet<>();
+		Deque<Frame> stack = new ArrayDeque<>();
+		push(stack, goal, visited);
+
+		while (!stack.isEmpty()) {
+			Frame frame = stack.peek();
+			if (frame.children.hasNext()) {
+				push(stack, frame.children.next(), visited);
+			} else {
+				// All dependencies visited: Run tasks
+				stack.pop();
+				for (Task t : frame.tasks) {
+					t.setDependency(false); // We are executing this task, so it it no long a 'dep'
+					ExpressionTask.execute(bdsThread, t);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Calculate (and memoize) leaf information for 'goal' and every node it depends on
+	 */
+	void leafInfo(String goal) {
+		// Find all nodes (depth first post-order, so dependencies are always before the nodes depending on them)
+		List<String> nodes = new ArrayList<>();
+		Set<String> visited = new HashSet<>();
+		Deque<Iterator<String>> stack = new ArrayDeque<>();
+		Deque<String> stackNodes = new ArrayDeque<>();
+		visited.add(goal);
+		stackNodes.push(goal);
+		stack.push(children(goal, taskDependecies.getTasksByOutput(goal), true).iterator());
+
+		while (!stack.isEmpty()) {
+			Iterator<String> it = stack.peek();
+			if (it.hasNext()) {
+				String child = it.next();
+				if (visited.add(child)) {
+					stackNodes.push(child);
+					stack.push(children(child, taskDependecies.getTasksByOutput(child), true).iterator());
+				}
+			} else {
+				stack.pop();
+				nodes.add(stackNodes.pop());
+			}
+		}
+
+		// Query all files at once
+		statByNode = DataStatCache.get().stat(nodes);
+
+		// Calculate leaf information.
+		// Note: Nodes in a circular dependency may miss some leaves, but
+		//       these tasks cannot be executed anyway (TaskDependecies.add
+		//       fails with a 'Circular dependency' error)
+		for (String node : nodes) {
+			LeafInfo li = new LeafInfo();
+			List<Task> nodeTasks = taskDependecies.getTasksByOutput(node);
+
+			// Leaf node? Use its own information
+			if (!taskDependecies.hasTasksByOutput(node)) {
+				DataStat dataStat = statByNode.get(node);
+				if (nodeTasks != null) {
+					for (Task t : nodeTasks)
+						li.update |= !t.isDone(); // Pending task (e.g. a task ID): Leaf will be modified
+				}
+
+				if (dataStat.exists()) li.maxModified = dataStat.getLastModified().getTime();
+				else li.update = true; // Leaf doesn't exist, probably it will be created by some pending task
+			}
+
+			// Add information from all dependencies
+			for (String child : children(node, nodeTasks, true)) {
+				LeafInfo liChild = leafInfoByNode.get(child);
+				if (liChild != null) li.add(liChild);
+			}
+
+			leafInfoByNode.put(node, li);
+		}
+	}
+
+	/**
+	 * Does this goal need to be updated respect to the leaves
+	 */
+	boolean needsUpdate(String goal) {
+		LeafInfo li = leafInfoByNode.get(goal);
+
+		// Same as TaskDependency.depOperator(), where the left hand side is the goal and the right hand side are its leaves
+		long minModified = goalDependency.minModifiedLeft(Collections.singletonList(goal), statByNode);
+		boolean update = (li == null) // Not found (should not happen)
+				|| (minModified == Long.MIN_VALUE) // Goal doesn't exist, or is empty
+				|| li.update // Any leaf missing or pending
+				|| (minModified < li.maxModified);
+
+		if (debug) Timer.showStdErr("Goal: " + goal + ", needs update: " + update);
+		return update;
+	}
+
+	/**
+	 * Visit a node: Add all tasks producing it (if it needs to be updated)
+	 */
+	void push(Deque<Frame> stack, String node, Set<String> visited) {
+		if (!visited.add(node)) return;
+
+		// Find all tasks required for this node
+		List<Task> nodeTasks = needsUpdate(node) ? taskDependecies.getTasksByOutput(node) : null;
+		List<Task> added = new ArrayList<>();
+		if (nodeTasks != null) {
+			for (Task t : nodeTasks)
+				if (tasks.add(t)) added.add(t); // Don't add twice
+		}
+
+		stack.push(new Frame(node, children(node, added, false), added));
+	}
+
+}
@@ -1,8 +1,21 @@
 package org.bds.task;
 
+import java.io.File;
+import java.io.IOException;
 import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.file.FileSystems;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
 
 import org.bds.util.Timer;
 
@@ -12,20 +25,53 @@ import org.bds.util.Timer;
  * Can 'follow' several files
  * If a file does not exist, tail waits until the file is created
  *
+ * Files are checked when the file system notifies a change (WatchService).
+ * Since notifications may not be available (e.g. NFS), all files are
+ * also checked periodically (every SLEEP_TIME_POLL milliseconds, or
+ * every SLEEP_TIME_DEFAULT if there is no WatchService available).
+ *
  * @author pcingola
  */
 public class Tail extends Thread {
 
 	public static final int SLEEP_TIME_DEFAULT = 100;
+	public static final int SLEEP_TIME_POLL = 1000; // Check all files, even if there were no notifications
+	public static final int BUFFER_SIZE = 64 * 1024;
+	public static final int MAX_OPEN_FILES = 256; // Maximum number of files kept open
+	public static final int MAX_WATCH_KEYS = 16; // Maximum number of additional notifications handled at once (see 'tailWatchKey')
 
 	boolean debug, verbose, quiet;
 	boolean running;
-	HashMap<String, TailFile> files;
+	HashMap<String, TailFile> streams; // Input streams, indexed by 'tailId'
+	HashMap<String, TailFileChannel> files; // Files, indexed by file name
+	HashMap<Path, TailFileChannel> filesByPath; // Files, indexed by absolute path
+	LinkedHashMap<String, TailFileChannel> filesOpen; // Files having an open channel (least recently used first)
 	HashSet<String> toRemove;
+	WatchService watchService; // Null if file system notifications are not available
+	HashMap<Path, WatchKey> watchKeyByDir;
+	HashMap<Path, Integer> countByDir; // Number of files followed in each directory
+	ByteBuffer buffer; // Buffer shared by all files
+	byte bytes[];
+	Timer pollTimer;
 
 	public Tail() {
-		files = new HashMap<String, TailFile>();
+		streams = new HashMap<String, TailFile>();
+		files = new HashMap<String, TailFileChannel>();
+		filesByPath = new HashMap<Path, TailFileChannel>();
+		filesOpen = new LinkedHashMap<String, TailFileChannel>(16, 0.75f, true);
 		toRemove = new HashSet<String>();
+		watchKeyByDir = new HashMap<Path, WatchKey>();
+		countByDir = new HashMap<Path, Integer>();
+		buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+		bytes = new byte[BUFFER_SIZE];
+		pollTimer = new Timer(SLEEP_TIME_POLL);
+
+		try {
+			watchService = FileSystems.getDefault().newWatchService();
+		} catch (IOException | UnsupportedOperationException e) {
+			watchService = null; // Use polling
+		}
+
 		setDaemon(true);
 	}
 
@@ -42,7 +88,7 @@ public class Tail extends Thread {
 		if (debug) log("Adding (" + tf.getClass().getSimpleName() + ") '" + tailId + "'");
 		tf.setDebug(debug);
 		tf.setVerbose(verbose);
-		files.put(tailId, tf);
+		streams.put(tailId, tf);
 	}
 
 	/**
@@ -55,23 +101,41 @@ public class Tail extends Thread {
 		if (inputFileName == null) return;
 		if (quiet) return; // Quiet mode? Nothing to do
 
-		TailFile tf = new TailFileMulti(inputFileName, showStderr);
+		TailFileChannel tf = new TailFileChannel(inputFileName, showStderr, buffer, bytes);
 		if (debug) log("Adding (" + tf.getClass().getSimpleName() + ") '" + inputFileName + "'");
 		tf.setDebug(debug);
 		tf.setVerbose(verbose);
+		if (files.containsKey(inputFileName)) remove(inputFileName);
 		files.put(inputFileName, tf);
+		filesByPath.put(path(tf), tf);
+		watch(tf);
 	}
 
 	/**
 	 * Close all files
 	 */
-	void close() {
+	synchronized void close() {
 		if (debug) log("Closing.");
 
 		// Close all files
+		for (TailFile tf : streams.values())
+			tf.close();
 		for (TailFile tf : files.values())
 			tf.close();
-		files = new HashMap<String, TailFile>();
+
+		streams = new HashMap<String, TailFile>();
+		files = new HashMap<String, TailFileChannel>();
+		filesByPath = new HashMap<Path, TailFileChannel>();
+		filesOpen = new LinkedHashMap<String, TailFileChannel>(16, 0.75f, true);
+		watchKeyByDir = new HashMap<Path, WatchKey>();
+		countByDir = new HashMap<Path, Integer>();
+
+		// Stop watching
+		try {
+			if (watchService != null) watchService.close();
+		} catch (IOException e) {
+			// Nothing to do
+		}
 	}
 
 	/**
@@ -79,31 +143,57 @@ public class Tail extends Thread {
 	 */
 	public void kill() {
 		if (debug) log("Killed");
-		close();
 		running = false;
+		close();
 	}
 
 	public void log(String msg) {
 		Timer.showStdErr(getClass().getSimpleName() + ": " + msg);
 	}
 
+	/**
+	 * Absolute path to a file
+	 */
+	Path path(TailFileChannel tf) {
+		return tf.getInputFile().getAbsoluteFile().toPath();
+	}
+
 	/**
 	 * Remove 'fileName' (do not 'follow' any more)
 	 */
 	public synchronized void remove(String fileName) {
 		try {
-			TailFile tf = files.get(fileName);
+			TailFile tf = streams.remove(fileName);
+			if (tf == null) {
+				TailFileChannel tfc = files.remove(fileName);
+				if (tfc != null) {
+					filesOpen.remove(fileName);
+					filesByPath.remove(path(tfc));
+					unwatch(tfc);
+				}
+				tf = tfc;
+			}
+
 			if (tf != null) {
 				if (debug) log("Removing (" + tf.getClass().getSimpleName() + ") '" + fileName + "'");
 				tf.close();
 			}
-			files.remove(fileName);
 		} catch (Exception e) {
 			// Nothing to do
 			e.printStackTrace();
 		}
 	}
 
+	/**
+	 * Remove entries that had problems (if any)
+	 */
+	synchronized void removePending() {
+		if (toRemove.isEmpty()) return;
+		for (String fileName : toRemove)
+			remove(fileName);
+		toRemove = new HashSet<String>();
+	}
+
 	@Override
 	public void run() {
 		try {
@@ -111,12 +201,27 @@ public class Tail extends Thread {
 
 			// Loop until kill()
 			while (running) {
-				if (!quiet) tail();
-				sleep(SLEEP_TIME_DEFAULT);
-			}
+				if (quiet) {
+					sleep(SLEEP_TIME_DEFAULT);
+				} else if (watchService == null) {
+					// No notifications available: Poll all files
+					tail();
+					sleep(SLEEP_TIME_DEFAULT);
+				} else {
+					// Wait for notifications
+					WatchKey watchKey = watchService.poll(SLEEP_TIME_DEFAULT, TimeUnit.MILLISECONDS);
+					tailStreams();
+					if (watchKey != null) tailWatchKey(watchKey);
 
+					// Check all files every now and then (notifications may not work on network file systems)
+					if (pollTimer.isExpired()) {
+						tail();
+						pollTimer = new Timer(SLEEP_TIME_POLL);
+					}
+				}
+			}
 		} catch (Exception e) {
-			throw new RuntimeException(e);
+			if (running) throw new RuntimeException(e);
 		} finally {
 			close();
 		}
@@ -138,26 +243,108 @@ public class Tail extends Thread {
 	 * Check if there is output available on any file
 	 */
 	synchronized boolean tail() {
+		boolean anyOutput = tailStreams();
+
+		for (String name : files.keySet())
+			anyOutput |= tail(name, files.get(name));
+
+		removePending();
+		return anyOutput;
+	}
+
+	/**
+	 * Check if there is output available on a file
+	 */
+	synchronized boolean tail(String name, TailFile tf) {
+		// Try to 'tail'. Any problems? => Remove the entry
+		int bytes = (tf != null ? tf.tail() : -1);
+		if (bytes < 0) toRemove.add(name); // Problems? Remove the file from this list
+
+		// Keep a limited number of open files
+		if (tf instanceof TailFileChannel && ((TailFileChannel) tf).isOpen()) {
+			filesOpen.put(name, (TailFileChannel) tf);
+			if (filesOpen.size() > MAX_OPEN_FILES) {
+				Iterator<Map.Entry<String, TailFileChannel>> it = filesOpen.entrySet().iterator();
+				it.next().getValue().closeChannel();
+				it.remove();
+			}
+		}
+
+		return bytes > 0; // There was an output of 'bytes' number of bytes
+	}
+
+	/**
+	 * Check if there is output available on any stream
+	 */
+	synchronized boolean tailStreams() {
 		boolean anyOutput = false;
+		for (String name : streams.keySet())
+			anyOutput |= tail(name, streams.get(name));
 
-		// Try to read form all buffers
-		for (String name : files.keySet()) {
-			TailFile tf = files.get(name);
+		removePending();
+		return anyOutput;
+	}
 
-			// Try to 'tail'. Any problems? => Remove the entry
-			int bytes = (tf != null ? tf.tail() : -1);
+	/**
+	 * Check files notified by the WatchService
+	 * Note: Only a limited number of notifications are handled, so that
+	 * files can be added or removed, and streams are checked, even if
+	 * files are being written continuously (remaining notifications are
+	 * handled in the next call)
+	 */
+	synchronized void tailWatchKey(WatchKey watchKey) {
+		for (int i = 0; watchKey != null; i++) {
+			Path dir = (Path) watchKey.watchable();
+			for (WatchEvent<?> event : watchKey.pollEvents()) {
+				if (event.kind() == StandardWatchEventKinds.OVERFLOW) {
+					tail(); // Some events were lost, check all files
+				} else {
+					TailFileChannel tf = filesByPath.get(dir.resolve((Path) event.context()));
+					if (tf != null) tail(tf.inputFileName, tf);
+				}
+			}
+			watchKey.reset();
 
-			if (bytes < 0) toRemove.add(name); // Problems? Remove the file from this list
-			else if (bytes > 0) anyOutput = true; // There was an output of 'bytes' number of bytes
+			watchKey = (i < MAX_WATCH_KEYS ? watchService.poll() : null); // Any other notification?
 		}
 
-		// Remove  entries (if any)
-		if (!toRemove.isEmpty()) {
-			for (String fileName : toRemove)
-				remove(fileName);
-			toRemove = new HashSet<String>();
+		removePending();
+	}
+
+	/**
+	 * Stop watching file's directory (if there are no other files in that directory)
+	 */
+	void unwatch(TailFileChannel tf) {
+		Path dir = path(tf).getParent();
+		Integer count = countByDir.get(dir);
+		if (count == null) return;
+
+		if (count > 1) {
+			countByDir.put(dir, count - 1);
+		} else {
+			countByDir.remove(dir);
+			WatchKey watchKey = watchKeyByDir.remove(dir);
+			if (watchKey != null) watchKey.cancel();
 		}
+	}
 
-		return anyOutput;
+	/**
+	 * Watch file's directory for changes
+	 */
+	void watch(TailFileChannel tf) {
+		if (watchService == null) return;
+
+		Path dir = path(tf).getParent();
+		Integer count = countByDir.get(dir);
+		countByDir.put(dir, count == null ? 1 : count + 1);
+		if (watchKeyByDir.containsKey(dir)) return;
+
+		try {
+			if (!new File(dir.toString()).isDirectory()) return; // Directory doesn't exist yet, we'll rely on polling
+			watchKeyByDir.put(dir, dir.register(watchService, StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_MODIFY));
+		} catch (IOException e) {
+			if (debug) log("Cannot watch directory '" + dir + "', using polling");
+		}
 	}
+
 }
@@ -0,0 +1,120 @@
+package org.bds.task;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * A file to use with 'Tail'
+ *
+ * The file is kept open while it is being followed, and only read
+ * when its size changes. Reading is done using a buffer shared by
+ * all files (see Tail), so no memory is allocated for each read.
+ *
+ * Since we may be following thousands of files, 'Tail' can close
+ * the channel (see closeChannel) to avoid operating system limits
+ * on number of opened file descriptors (see 'ulimit' unix command).
+ * The channel is re-opened when the file grows again.
+ *
+ * @author pcingola
+ */
+public class TailFileChannel extends TailFile {
+
+	long inputPos = 0; // Latest position read
+	File inputFile;
+	FileChannel channel;
+	ByteBuffer buffer; // Shared buffer (only used from 'Tail' thread)
+	byte bytes[]; // Shared array, same size as 'buffer'
+
+	public TailFileChannel(String inputFileName, boolean showStderr, ByteBuffer buffer, byte bytes[]) {
+		super(inputFileName, showStderr);
+		inputFile = new File(inputFileName);
+		this.buffer = buffer;
+		this.bytes = bytes;
+	}
+
+	/**
+	 * Close file
+	 */
+	@Override
+	protected synchronized void close(boolean attemptTail) {
+		try {
+			if (attemptTail) tail();
+		} catch (Exception e) {
+			// Nothing to do
+		}
+		closeChannel();
+	}
+
+	/**
+	 * Close the channel (but keep following the file)
+	 */
+	protected synchronized void closeChannel() {
+		if (channel == null) return;
+		try {
+			if (debug) log("Closing channel '" + inputFileName + "'");
+			channel.close();
+		} catch (IOException e) {
+			// Nothing to do
+		}
+		channel = null;
+	}
+
+	public File getInputFile() {
+		return inputFile;
+	}
+
+	public boolean isOpen() {
+		return channel != null;
+	}
+
+	/**
+	 * Open the channel (if not already opened)
+	 */
+	@Override
+	protected synchronized boolean open() {
+		if (channel != null) return true;
+		try {
+			channel = FileChannel.open(inputFile.toPath(), StandardOpenOption.READ);
+			return true;
+		} catch (IOException e) {
+			return false; // File does not exists yet, it may be created later
+		}
+	}
+
+	/**
+	 * Check if there is output available on any file
+	 * @returns Number of bytes read. Negative number of there were problems
+	 */
+	@Override
+	protected synchronized int tail() {
+		try {
+			// Only read if the file has grown
+			long size = (channel != null ? channel.size() : inputFile.length());
+			if (size <= inputPos) return 0;
+			if (!open()) return 0;
+
+			int count = 0;
+			while (inputPos < size) {
+				buffer.clear();
+				int len = channel.read(buffer, inputPos);
+				if (len <= 0) break;
+
+				buffer.flip();
+				buffer.get(bytes, 0, len);
+				inputPos += len;
+				count += len;
+
+				// Show bytes
+				if (showStderr) System.err.write(bytes, 0, len);
+				else System.out.write(bytes, 0, len);
+			}
+
+			return count;
+		} catch (IOException e) {
+			throw new RuntimeException(e);
+		}
+	}
+}
@@ -5,11 +5,15 @@ import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Date;
 import java.util.HashSet;
+import java.util.LinkedList;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.bds.Config;
 import org.bds.cluster.host.HostResources;
+import org.bds.data.DataStat;
 import org.bds.lang.Expression;
 import org.bds.lang.Type;
 import org.bds.lang.TypeList;
@@ -33,6 +37,8 @@ public class Task implements BdsSerialize {
 
 	public static final int MAX_HINT_LEN = 150;
 
+	public static final int DEPENDENCY_COUNT_ERROR = -1; // Dependency counter value when any dependency failed
+
 	protected boolean verbose, debug;
 	protected boolean allowEmpty; // Allow empty output file/s
 	protected boolean canFail; // Allow execution to fail
@@ -40,6 +46,8 @@ public class Task implements BdsSerialize {
 	protected int bdsLineNum; // Program's line number that created this task (used for reporting errors)
 	protected int exitValue; // Exit (error) code
 	protected int failCount, maxFailCount; // Number of times that this task failed
+	protected int priority; // Task priority (can be set by programmer). Higher priority tasks are run first
+	protected long criticalPath; // Estimated cost of the longest path from this task to the end of the dependency graph (see Executioner.updateCriticalPath)
 	protected String id; // Task ID
 	protected String bdsFileName; // Program file that created this task (used for reporting errors)
 	protected String currentDir; // Program's 'current directoy' (cd)
@@ -57,6 +65,8 @@ public class Task implements BdsSerialize {
 	protected TaskState taskState;
 	protected HostResources resources; // Resources to be consumes when executing this task
 	TaskDependency taskDependency;
+	protected List<Task> dependants; // Tasks depending on this one (i.e. reverse dependency edges)
+	protected AtomicInteger dependencyCount = new AtomicInteger(); // Number of dependencies that have not finished (DEPENDENCY_COUNT_ERROR if any dependency failed)
 
 	public Task() {
 		this(null, null, null, null, -1);
@@ -88,6 +98,17 @@ public class Task implements BdsSerialize {
 		reset();
 	}
 
+	/**
+	 * Add a task depending on this one (reverse dependency edge)
+	 * @return true if the task was added, false if this task has already finished
+	 */
+	public synchronized boolean addDependant(Task task) {
+		if (isDone()) return false;
+		if (dependants == null) dependants = new LinkedList<Task>();
+		dependants.add(task);
+		return true;
+	}
+
 	/**
 	 * Add a dependency task (i.e. taskDep must finish before this task starts)
 	 */
@@ -152,8 +173,21 @@ public class Task implements BdsSerialize {
 		return taskState == TaskState.SCHEDULED;
 	}
 
+	/**
+	 * Result of checking output files, calculated once when the task finished (see 'checkOutputFiles(Map)')
+	 * Note: This does not access any file
+	 * @return An empty string if OK, otherwise an error message
+	 */
 	public String checkOutputFiles() {
-		return taskDependency.checkOutputFiles(this);
+		return taskDependency.getCheckOutputs();
+	}
+
+	/**
+	 * Check output files and store the result
+	 * @param statByName : Output files attributes, queried in batch for many tasks (null to query them now)
+	 */
+	public String checkOutputFiles(Map<String, DataStat> statByName) {
+		return taskDependency.checkOutputFiles(this, statByName);
 	}
 
 	/**
@@ -205,6 +239,30 @@ public class Task implements BdsSerialize {
 		taskDependency.deleteOutputFilesOnExit();
 	}
 
+	/**
+	 * Decrement dependency counter (unless any dependency failed)
+	 * @return Updated counter
+	 */
+	int dependencyCountDec() {
+		while (true) {
+			int count = dependencyCount.get();
+			if (count <= 0) return count;
+			if (dependencyCount.compareAndSet(count, count - 1)) return count - 1;
+		}
+	}
+
+	/**
+	 * Increment dependency counter (unless any dependency failed)
+	 * @return Updated counter
+	 */
+	int dependencyCountInc() {
+		while (true) {
+			int count = dependencyCount.get();
+			if (count < 0) return count;
+			if (dependencyCount.compareAndSet(count, count + 1)) return count + 1;
+		}
+	}
+
 	public DependencyState dependencyState() {
 		HashSet<Task> tasks = new HashSet<Task>();
 		return dependencyState(tasks);
@@ -262,14 +320,46 @@ public class Task implements BdsSerialize {
 		return bdsLineNum;
 	}
 
+	/**
+	 * Estimated cost of running this task (cpus * timeout)
+	 */
+	public long getCost() {
+		return Math.max(1, resources.getCpus()) * Math.max(1, resources.getTimeout());
+	}
+
+	/**
+	 * Estimated cost of the longest path from this task to the end of the
+	 * dependency graph (at least this task's cost)
+	 */
+	public long getCriticalPath() {
+		return Math.max(criticalPath, getCost());
+	}
+
 	public String getCurrentDir() {
 		return currentDir;
 	}
 
+	/**
+	 * Tasks depending on this one
+	 */
+	public synchronized List<Task> getDependants() {
+		List<Task> deps = new ArrayList<Task>();
+		if (dependants != null) deps.addAll(dependants);
+		return deps;
+	}
+
 	public List<Task> getDependencies() {
 		return taskDependency.getTasks();
 	}
 
+	/**
+	 * Number of dependencies that have not finished yet
+	 * (DEPENDENCY_COUNT_ERROR if any dependency failed)
+	 */
+	public int getDependencyCount() {
+		return dependencyCount.get();
+	}
+
 	public String getErrorMsg() {
 		return errorMsg;
 	}
@@ -325,6 +415,10 @@ public class Task implements BdsSerialize {
 		return postMortemInfo;
 	}
 
+	public int getPriority() {
+		return priority;
+	}
+
 	public String getProgramFileName() {
 		return programFileName;
 	}
@@ -398,6 +492,22 @@ public class Task implements BdsSerialize {
 		return taskState;
 	}
 
+	/**
+	 * Initialize dependency counter: Register this task as a dependant of
+	 * all dependencies that have not finished yet.
+	 * @return Number of unfinished dependencies (DEPENDENCY_COUNT_ERROR if any dependency failed)
+	 */
+	public int initDependencyCount() {
+		// Note: We start the counter at one, so that dependencies finishing
+		//       while we are registering cannot make it reach zero
+		dependencyCount.set(1);
+
+		for (Task dep : getDependencies())
+			if (dep.addDependant(this)) dependencyCountInc();
+
+		return dependencyCountDec();
+	}
+
 	public boolean isAllowEmpty() {
 		return allowEmpty;
 	}
@@ -495,6 +605,7 @@ public class Task implements BdsSerialize {
 		runningEndTime = null;
 		postMortemInfo = null;
 		errorMsg = null;
+		if (taskDependency != null) taskDependency.resetCheckOutputFiles();
 	}
 
 	@SuppressWarnings("unchecked")
@@ -531,33 +642,35 @@ public class Task implements BdsSerialize {
 
 		resources = new HostResources();
 		resources.serializeParse(serializer);
+
+		// Output files are checked once, when the task finishes
+		if (isStateFinished()) checkOutputFiles(null);
 	}
 
 	@Override
-	public String serializeSave(BdsSerializer serializer) {
-		return getClass().getSimpleName() //
-				+ "\t" + id //
-				+ "\t" + serializer.serializeSaveValue(bdsFileName) //
-				+ "\t" + bdsLineNum //
-				+ "\t" + dependency //
-				+ "\t" + canFail //
-				+ "\t" + allowEmpty //
-				+ "\t" + serializer.serializeSaveValue(taskState.toString()) //
-				+ "\t" + exitValue //
-				+ "\t" + serializer.serializeSaveValue(node) //
-				+ "\t" + serializer.serializeSaveValue(queue) //
-				+ "\t" + serializer.serializeSaveValue(programFileName) //
-				+ "\t" + serializer.serializeSaveValue(programTxt) //
-				+ "\t" + serializer.serializeSaveValue(stdoutFile) //
-				+ "\t" + serializer.serializeSaveValue(stderrFile) //
-				+ "\t" + serializer.serializeSaveValue(exitCodeFile) //
-				+ "\t" + serializer.serializeSaveValue(currentDir) //
-				+ "\t" + serializer.serializeSaveValue(taskDependency.getInputs()) //
-				+ "\t" + serializer.serializeSaveValue(taskDependency.getOutputs()) //
-				+ "\t" + serializer.serializeSave(resources) //
-				+ "\n";
+	public void serializeSave(BdsSerializer serializer) {
+		serializer.serializeSaveRecord(getClass().getSimpleName());
+		serializer.serializeSaveFieldRaw(id);
+		serializer.serializeSaveField(bdsFileName);
+		serializer.serializeSaveField(bdsLineNum);
+		serializer.serializeSaveField(dependency);
+		serializer.serializeSaveField(canFail);
+		serializer.serializeSaveField(allowEmpty);
+		serializer.serializeSaveField(taskState.toString());
+		serializer.serializeSaveField(exitValue);
+		serializer.serializeSaveField(node);
+		serializer.serializeSaveField(queue);
+		serializer.serializeSaveField(programFileName);
+		serializer.serializeSaveField(programTxt);
+		serializer.serializeSaveField(stdoutFile);
+		serializer.serializeSaveField(stderrFile);
+		serializer.serializeSaveField(exitCodeFile);
+		serializer.serializeSaveField(currentDir);
+		serializer.serializeSaveField(taskDependency.getInputs());
+		serializer.serializeSaveField(taskDependency.getOutputs());
+		serializer.serializeSave(resources);
 		// TODO: Add tasks by ID. Make sure all tasks are stored before this one
-		//				+ "\t" + serializer.serializeSaveValue(taskDependency.getTasksIds()) //
+		//		serializer.serializeSaveField(taskDependency.getTasksIds());
 	}
 
 	public void setAllowEmpty(boolean allowEmpty) {
@@ -568,6 +681,10 @@ public class Task implements BdsSerialize {
 		this.canFail = canFail;
 	}
 
+	public void setCriticalPath(long criticalPath) {
+		this.criticalPath = criticalPath;
+	}
+
 	public void setCurrentDir(String currentDir) {
 		this.currentDir = currentDir;
 	}
@@ -604,12 +721,17 @@ public class Task implements BdsSerialize {
 		this.postMortemInfo = postMortemInfo;
 	}
 
+	public void setPriority(int priority) {
+		this.priority = priority;
+	}
+
 	public void setQueue(String queue) {
 		this.queue = queue;
 	}
 
 	private void setState(TaskState taskState) {
 		this.taskState = taskState;
+		if (isDone()) notifyAll(); // Wake up threads waiting for this task to finish
 	}
 
 	public void setTaskDependency(TaskDependency taskDependency) {
@@ -692,6 +814,10 @@ public class Task implements BdsSerialize {
 
 		// Finished OK? Check that output files are OK as well
 		if (isStateFinished()) {
+			// Output files are usually checked by the executioner before changing state
+			// (see Executioner.checkOutputFiles). Otherwise, check them now
+			if (!taskDependency.isCheckOutputs()) checkOutputFiles(null);
+
 			// Update failCount if output files failed to be created
 			if (!isCanFail() && !checkOutputFiles().isEmpty()) failCount++;
 		}
@@ -757,4 +883,46 @@ public class Task implements BdsSerialize {
 		return sb.toString();
 	}
 
+	/**
+	 * This task finished: Update dependency counters of all tasks depending on it.
+	 * If this task failed, the error is propagated to all descendants in one pass.
+	 * @return Tasks whose dependency state changed (i.e. they are either ready to run or have a dependency error)
+	 */
+	public List<Task> updateDependants() {
+		List<Task> changed = new ArrayList<Task>();
+
+		if (isCanFail() || isDoneOk()) {
+			// Finished OK: Decrement counters
+			for (Task task : getDependants())
+				if (task.dependencyCountDec() == 0) changed.add(task);
+		} else {
+			// Failed: Mark all descendants
+			LinkedList<Task> toVisit = new LinkedList<Task>(getDependants());
+			while (!toVisit.isEmpty()) {
+				Task task = toVisit.removeFirst();
+				if (task.dependencyCount.getAndSet(DEPENDENCY_COUNT_ERROR) != DEPENDENCY_COUNT_ERROR) {
+					changed.add(task);
+					toVisit.addAll(task.getDependants());
+				}
+			}
+		}
+
+		return changed;
+	}
+
+	/**
+	 * Block until this task finishes or 'timeout' milliseconds elapse
+	 * @return true if the task has finished
+	 */
+	public synchronized boolean waitDone(long timeout) {
+		if (!isDone()) {
+			try {
+				wait(timeout);
+			} catch (InterruptedException e) {
+				throw new RuntimeException(e);
+			}
+		}
+		return isDone();
+	}
+
 }
@@ -4,17 +4,18 @@ import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
-import java.util.HashSet;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
 
 import org.bds.Config;
 import org.bds.data.Data;
 import org.bds.lang.ExpressionTask;
 import org.bds.report.Report;
 import org.bds.run.BdsThread;
+import org.bds.run.BdsThreads;
 import org.bds.util.AutoHashMap;
 import org.bds.util.Timer;
 
@@ -33,7 +34,9 @@ public class TaskDependecies {
 	boolean verbose = false;
 	List<Task> tasks; // Sorted list of tasks (need it for serialization purposes)
 	Map<String, Task> tasksById;
+	AutoHashMap<String, List<Task>> tasksByInput;
 	AutoHashMap<String, List<Task>> tasksByOutput;
+	TaskGraph taskGraph; // Dependency graph (used to detect circular dependencies)
 	HashMap<String, String> canonicalPath;
 
 	public static TaskDependecies get() {
@@ -49,9 +52,11 @@ public class TaskDependecies {
 
 	public TaskDependecies() {
 		canonicalPath = new HashMap<String, String>();
+		tasksByInput = new AutoHashMap<String, List<Task>>(new LinkedList<Task>());
 		tasksByOutput = new AutoHashMap<String, List<Task>>(new LinkedList<Task>());
 		tasksById = new HashMap<String, Task>();
 		tasks = new ArrayList<Task>();
+		taskGraph = new TaskGraph();
 	}
 
 	/**
@@ -91,6 +96,31 @@ public class TaskDependecies {
 			for (String outFile : task.getOutputs())
 				addTaskByOutput(outFile, task);
 		}
+
+		// Add to dependency graph
+		addTaskGraph(task);
+
+		// Add task by input files
+		if (task.getInputs() != null) {
+			for (String inFile : task.getInputs())
+				if (getTask(inFile) == null) tasksByInput.getOrCreate(getCanonicalPath(inFile)).add(task);
+		}
+	}
+
+	/**
+	 * Add task and its dependencies to the graph: Tasks producing
+	 * its inputs and (already added) tasks using its outputs
+	 */
+	void addTaskGraph(Task task) {
+		List<Task> uses = new ArrayList<>();
+		if (task.getOutputs() != null) {
+			for (String outFile : task.getOutputs()) {
+				List<Task> taskUses = tasksByInput.get(getCanonicalPath(outFile));
+				if (taskUses != null) uses.addAll(taskUses);
+			}
+		}
+
+		taskGraph.add(task, getTasksByInputs(task), uses);
 	}
 
 	/**
@@ -140,65 +170,6 @@ public class TaskDependecies {
 		}
 	}
 
-	/**
-	 * Find 'leaf' nodes (i.e. nodes that do not have dependent tasks)
-	 */
-	Set<String> findLeafNodes(String out) {
-		Set<String> nodes = findNodes(out); // Find all nodes
-
-		// Only add nodes that do not have dependent tasks (i.e. are leaves)
-		Set<String> leaves = new HashSet<String>();
-		for (String n : nodes) {
-			if (!hasTasksByOutput(n)) leaves.add(n);
-		}
-
-		return leaves;
-	}
-
-	/**
-	 * Find all leaf nodes required for goal 'out'
-	 */
-	Set<String> findNodes(String out) {
-		// A set of 'goal' nodes
-		Set<String> goals = new HashSet<String>();
-		goals.add(out);
-
-		// For each goal
-		for (boolean changed = true; changed;) {
-			changed = false;
-
-			// We need a new set to avoid 'concurrent modification' exception
-			Set<String> newGoals = new HashSet<String>();
-			newGoals.addAll(goals);
-
-			// For each goal
-			for (String goal : goals) {
-				// Find all tasks required for this goal
-				List<Task> tasks = getTasksByOutput(goal);
-
-				if (tasks != null) // Add all task's input files
-					for (Task t : tasks) {
-						// Add all input files
-						if (t.getInputs() != null) {
-							for (String in : t.getInputs())
-								changed |= newGoals.add(in); // Add each node
-						}
-
-						// Add all task Ids
-						List<Task> depTasks = t.getDependencies();
-						if (depTasks != null) {
-							for (Task dt : depTasks)
-								changed |= newGoals.add(dt.getId()); // Add each task ID
-						}
-					}
-			}
-
-			goals = newGoals;
-		}
-
-		return goals;
-	}
-
 	/**
 	 * Find canonical path (cache return values)
 	 */
@@ -221,8 +192,11 @@ public class TaskDependecies {
 		return tasksById.get(taskId);
 	}
 
+	/**
+	 * All task IDs (a copy, so it can be iterated while tasks are added)
+	 */
 	public synchronized Collection<String> getTaskIds() {
-		return tasksById.keySet();
+		return new ArrayList<String>(tasksById.keySet());
 	}
 
 	public Collection<Task> getTasks() {
@@ -235,6 +209,20 @@ public class TaskDependecies {
 		return tasksCopy;
 	}
 
+	/**
+	 * Get all tasks that output any of this task's inputs
+	 */
+	List<Task> getTasksByInputs(Task task) {
+		List<Task> deps = new ArrayList<>();
+		if (task.getInputs() != null) {
+			for (String in : task.getInputs()) {
+				List<Task> depTasks = getTasksByOutput(in);
+				if (depTasks != null) deps.addAll(depTasks);
+			}
+		}
+		return deps;
+	}
+
 	/**
 	 * Get all tasks that output this outFile
 	 */
@@ -267,68 +255,7 @@ public class TaskDependecies {
 	 * Find tasks required to achieve goal 'out'
 	 */
 	public synchronized Set<Task> goal(BdsThread bdsThread, String out) {
-		Set<Task> tasks = new HashSet<>();
-		goalRun(bdsThread, out, tasks);
-		return tasks;
-	}
-
-	/**
-	 * Does this goal need to be updated respect to the leaves
-	 */
-	boolean goalNeedsUpdate(String out) {
-		// Find all 'leaf nodes' (files) required for this goal
-		Set<String> leaves = findLeafNodes(out);
-		TaskDependency tasDep = new TaskDependency(null);
-		tasDep.addOutput(out);
-		tasDep.addInput(leaves);
-
-		if (debug) {
-			Timer.showStdErr("Goal: " + out + "\n\tLeaf nodes:");
-			for (String n : leaves)
-				System.err.println("\t\t'" + n + "'");
-		}
-
-		return tasDep.depOperator();
-	}
-
-	/**
-	 * Find all leaf nodes required for goal 'out'
-	 */
-	boolean goalRun(BdsThread bdsThread, String goal, Set<Task> addedTasks) {
-
-		// Check if we really need to update this goal (with respect to the leaf nodes)
-		if (!goalNeedsUpdate(goal)) return false;
-
-		List<Task> tasks = getTasksByOutput(goal);
-		if (tasks == null) return false;
-
-		// Satisfy all goals before running
-		for (Task t : tasks) {
-			if (addedTasks.contains(t)) continue; // Don't add twice
-			addedTasks.add(t);
-
-			// Add file dependencies
-			if (t.getInputs() != null) {
-				for (String in : t.getInputs())
-					goalRun(bdsThread, in, addedTasks);
-			}
-
-			// Add task dependencies
-			if (t.getDependencies() != null) {
-				for (Task tt : t.getDependencies())
-					if (!addedTasks.contains(tt)) // Not added yet?
-						goalRun(bdsThread, tt.getId(), addedTasks);
-			}
-
-		}
-
-		// Run all tasks
-		for (Task t : tasks) {
-			t.setDependency(false); // We are executing this task, so it it no long a 'dep'
-			ExpressionTask.execute(bdsThread, t);
-		}
-
-		return true;
+		return new GoalPlanner(bdsThread, this).goal(out);
 	}
 
 	public synchronized boolean hasTask(String taskId) {
@@ -361,32 +288,16 @@ public class TaskDependecies {
 
 	/**
 	 * Is there a circular dependency for this task?
+	 * I.e. is the task (or any task it depends on) in a cycle
 	 */
 	boolean isCircular(Task task) {
-		boolean circ = isCircular(task, new HashSet<Task>());
-		return circ;
-	}
+		// Task already added: The graph knows
+		if (taskGraph.contains(task)) return taskGraph.reachesCycle(task);
 
-	/**
-	 * Is there a circular dependency for this task?
-	 */
-	@SuppressWarnings("unchecked")
-	boolean isCircular(Task task, HashSet<Task> tasks) {
-		if (!tasks.add(task)) return true;
-
-		// Get all input files, find corresponding tasks and recurse
-		if (task.getInputs() != null) {
-			for (String in : task.getInputs()) {
-				List<Task> depTasks = getTasksByOutput(in);
+		// New task: Check the tasks it depends on
+		for (Task dep : getTasksByInputs(task))
+			if (taskGraph.reachesCycle(dep)) return true;
 
-				if (depTasks != null) {
-					for (Task t : depTasks) {
-						HashSet<Task> newTasks = (HashSet<Task>) tasks.clone();
-						if (isCircular(t, newTasks)) return true;
-					}
-				}
-			}
-		}
 		return false;
 	}
 
@@ -409,14 +320,6 @@ public class TaskDependecies {
 		return tasksById.size();
 	}
 
-	void sleep() {
-		try {
-			Thread.sleep(SLEEP_TIME);
-		} catch (InterruptedException e) {
-			e.printStackTrace();
-		}
-	}
-
 	/**
 	 * A string of at most 'num' task names of tasks that failed
 	 */
@@ -452,10 +355,10 @@ public class TaskDependecies {
 	 * Wait for one task to finish
 	 * @return true if task finished OK or it was allowed to fail (i.e. canFail = true)
 	 */
-	public synchronized boolean waitTask(String taskId) {
+	public boolean waitTask(String taskId) {
 		if ((taskId == null) || taskId.isEmpty()) return true;
 
-		Task task = getTask(taskId);
+		final Task task = getTask(taskId);
 		if (task == null) return false; // No task? We are done!
 
 		// Is task a dependency?
@@ -466,10 +369,25 @@ public class TaskDependecies {
 
 		if (verbose) Timer.showStdErr("Wait: Waiting for task to finish: " + task.getId() + ", state: " + task.getTaskState());
 
-		// Wait for task to finish
-		while (!task.isDone()) {
-			sleep();
-			Report.reportTime();
+		// Wait for task to finish (the task notifies us when it reaches a final state).
+		// Note: We don't hold this object's lock, so other threads can keep adding tasks
+		try {
+			BdsThreads.block(new ForkJoinPool.ManagedBlocker() {
+
+				@Override
+				public boolean block() {
+					while (!task.waitDone(SLEEP_TIME))
+						Report.reportTime();
+					return true;
+				}
+
+				@Override
+				public boolean isReleasable() {
+					return task.isDone();
+				}
+			});
+		} catch (InterruptedException e) {
+			throw new RuntimeException(e);
 		}
 
 		// Either finished OK or it was allowed to fail
@@ -491,18 +409,14 @@ public class TaskDependecies {
 	 * Wait for all tasks to finish
 	 * @return true if all tasks finished OK or it were allowed to fail (i.e. canFail = true)
 	 */
-	public synchronized boolean waitTasksAll() {
+	public boolean waitTasksAll() {
 		// Wait for all tasks to finish
 		boolean ok = true;
 
 		if (verbose && !isAllTasksDone()) Timer.showStdErr("Waiting for all tasks to finish.");
 
-		// Get all taskIds in a new collection (to avoid concurrent modification
-		LinkedList<String> tids = new LinkedList<>();
-		tids.addAll(getTaskIds());
-
 		// Wait for each task
-		for (String tid : tids)
+		for (String tid : getTaskIds())
 			ok &= waitTask(tid);
 
 		return ok;
@@ -3,8 +3,11 @@ package org.bds.task;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.List;
+import java.util.Map;
 
 import org.bds.data.Data;
+import org.bds.data.DataStat;
+import org.bds.data.DataStatCache;
 import org.bds.lang.Expression;
 import org.bds.run.BdsThreads;
 import org.bds.util.Timer;
@@ -20,7 +23,7 @@ public class TaskDependency {
 	protected Expression expresison; // Expression that created this 'TaskDependency' (for logging & debugging purposes)
 	protected List<String> inputs; // Input files generated by this task
 	protected List<String> outputs; // Output files generated by this task
-	protected String checkOutputs; // Errors that pop-up when checking output files
+	protected volatile String checkOutputs; // Errors that pop-up when checking output files (null if not checked yet)
 	protected List<Task> tasks; // Task that need to finish before this one is executed
 
 	public TaskDependency() {
@@ -87,19 +90,23 @@ public class TaskDependency {
 	}
 
 	/**
-	 * Check if output files are OK
-	 * @return true if OK, false there is an error (output file does not exist or has zero length)
+	 * Check if output files are OK and store the result (see 'getCheckOutputs')
+	 * Note: This is done only once, when the task has finished
+	 * @param statByName : Output files attributes (e.g. queried in batch for many tasks). If null, they are queried now
+	 * @return An empty string if OK, otherwise an error message (output file does not exist or has zero length)
 	 */
-	public String checkOutputFiles(Task task) {
+	public String checkOutputFiles(Task task, Map<String, DataStat> statByName) {
 		if (checkOutputs != null) return checkOutputs;
-		if (!task.isStateFinished() || outputs == null) return ""; // Nothing to check
+		if (statByName == null) statByName = DataStatCache.get().stat(outputs);
 
-		checkOutputs = "";
+		StringBuilder sb = new StringBuilder();
 		for (String fileName : outputs) {
-			Data file = Data.factory(fileName);
-			if (!file.exists()) checkOutputs += "Error: Output file '" + fileName + "' does not exist.";
-			else if ((!task.isAllowEmpty()) && (file.size() <= 0)) checkOutputs += "Error: Output file '" + fileName + "' has zero length.";
+			DataStat dataStat = statByName.get(fileName);
+			if (dataStat == null) dataStat = DataStatCache.get().stat(Data.factory(fileName));
+			if (!dataStat.exists()) sb.append("Error: Output file '" + fileName + "' does not exist.");
+			else if ((!task.isAllowEmpty()) && (dataStat.size() <= 0)) sb.append("Error: Output file '" + fileName + "' has zero length.");
 		}
+		checkOutputs = sb.toString();
 
 		if (task.verbose && !checkOutputs.isEmpty()) Timer.showStdErr(checkOutputs);
 		return checkOutputs;
@@ -127,33 +134,8 @@ public class TaskDependency {
 		// Calculate minimum modification time
 		//---
 
-		long minModifiedLeft = Long.MAX_VALUE;
-		for (String output : outputs) {
-			Data dataOut = Data.factory(output);
-
-			// Any 'left' file does not exists? => We need to build this dependency
-			if (!dataOut.exists()) {
-				if (debug && (expresison != null)) expresison.log("Left hand side: file '" + output + "' doesn't exist");
-				return true;
-			}
-
-			if (dataOut.isFile() && dataOut.size() <= 0) {
-				if (debug && (expresison != null)) expresison.log("Left hand side: file '" + output + "' is empty");
-				return true; // File is empty? => We need to build this dependency.
-			} else if (dataOut.isDirectory()) {
-				// Notice: If it is a directory, we must rebuild if it is empty
-				List<String> dirList = dataOut.list();
-				if (dirList.isEmpty()) {
-					if (debug && (expresison != null)) expresison.log("Left hand side: file '" + output + "' is an empty dir");
-					return true;
-				}
-			}
-
-			// Analyze modification time
-			long modTime = dataOut.getLastModified().getTime();
-			minModifiedLeft = Math.min(minModifiedLeft, modTime);
-			if (debug) expresison.log("Left hand side: file '" + output + "' modified on " + modTime + ". Min modification time: " + minModifiedLeft);
-		}
+		long minModifiedLeft = minModifiedLeft(outputs, DataStatCache.get().stat(outputs));
+		if (minModifiedLeft == Long.MIN_VALUE) return true; // We need to build this dependency
 
 		//---
 		// Right hand side
@@ -162,8 +144,6 @@ public class TaskDependency {
 
 		long maxModifiedRight = Long.MIN_VALUE;
 		for (String inout : inputs) {
-			Data dataIn = Data.factory(inout);
-
 			// Is this file scheduled to be modified by a pending task? => Time will change => We'll need to update
 			List<Task> taskOutList = TaskDependecies.get().getTasksByOutput(inout);
 			if (taskOutList != null && !taskOutList.isEmpty()) {
@@ -175,7 +155,11 @@ public class TaskDependency {
 					}
 				}
 			}
+		}
 
+		Map<String, DataStat> statIns = DataStatCache.get().stat(inputs);
+		for (String inout : inputs) {
+			DataStat dataIn = statIns.get(inout);
 			if (dataIn.exists()) {
 				// Update max time
 				long modTime = dataIn.getLastModified().getTime();
@@ -197,6 +181,16 @@ public class TaskDependency {
 		return ret;
 	}
 
+	/**
+	 * Result of checking output files (see 'checkOutputFiles')
+	 * Note: No files are accessed here
+	 * @return An empty string if OK or not checked yet, otherwise an error message
+	 */
+	public String getCheckOutputs() {
+		String ch = checkOutputs;
+		return ch != null ? ch : "";
+	}
+
 	public List<String> getInputs() {
 		return inputs;
 	}
@@ -213,10 +207,61 @@ public class TaskDependency {
 		return !tasks.isEmpty();
 	}
 
+	/**
+	 * Have output files been checked?
+	 */
+	public boolean isCheckOutputs() {
+		return checkOutputs != null;
+	}
+
 	boolean isTask(String tid) {
 		return TaskDependecies.get().hasTask(tid);
 	}
 
+	/**
+	 * Left hand side of '<-' operator: Minimum modification time of all 'outputs'
+	 * @param statByName : Files attributes (e.g. queried in batch for many nodes)
+	 * @return Minimum modification time, or Long.MIN_VALUE if any output does not exist, is an empty file or an empty directory (i.e. the dependency needs to be built)
+	 */
+	long minModifiedLeft(Collection<String> outputs, Map<String, DataStat> statByName) {
+		long minModifiedLeft = Long.MAX_VALUE;
+		for (String output : outputs) {
+			DataStat dataOut = statByName.get(output);
+
+			// Any 'left' file does not exists? => We need to build this dependency
+			if (dataOut == null || !dataOut.exists()) {
+				if (debug && (expresison != null)) expresison.log("Left hand side: file '" + output + "' doesn't exist");
+				return Long.MIN_VALUE;
+			}
+
+			if (dataOut.isFile() && dataOut.size() <= 0) {
+				if (debug && (expresison != null)) expresison.log("Left hand side: file '" + output + "' is empty");
+				return Long.MIN_VALUE; // File is empty? => We need to build this dependency.
+			} else if (dataOut.isDirectory()) {
+				// Notice: If it is a directory, we must rebuild if it is empty
+				List<String> dirList = Data.factory(output).list();
+				if (dirList.isEmpty()) {
+					if (debug && (expresison != null)) expresison.log("Left hand side: file '" + output + "' is an empty dir");
+					return Long.MIN_VALUE;
+				}
+			}
+
+			// Analyze modification time
+			long modTime = dataOut.getLastModified().getTime();
+			minModifiedLeft = Math.min(minModifiedLeft, modTime);
+			if (debug && (expresison != null)) expresison.log("Left hand side: file '" + output + "' modified on " + modTime + ". Min modification time: " + minModifiedLeft);
+		}
+
+		return minModifiedLeft;
+	}
+
+	/**
+	 * Forget output files checks (e.g. the task is going to be re-executed)
+	 */
+	public void resetCheckOutputFiles() {
+		checkOutputs = null;
+	}
+
 	public void setDebug(boolean debug) {
 		this.debug = debug;
 	}
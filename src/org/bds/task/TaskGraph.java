@@ -0,0 +1,242 @@
+package org.bds.task;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Dependency graph between tasks, used to detect circular dependencies.
+ *
+ * An edge 'task -> dep' means that 'task' uses an output from 'dep'.
+ *
+ * Cycles are detected incrementally as edges are added, by keeping a
+ * topological order of the nodes (Pearce & Kelly's dynamic topological
+ * sort): An edge that agrees with the current order is added in O(1),
+ * otherwise only the nodes between both ends (in the current order)
+ * are visited and re-ordered.
+ *
+ * Nodes that are in a cycle, or can reach one, are marked as such and
+ * are no longer part of the ordering.
+ *
+ * @author pcingola
+ */
+public class TaskGraph {
+
+	/**
+	 * A node in the graph
+	 */
+	class Node {
+		List<Node> in = new ArrayList<>(); // Nodes that depend on this one
+		List<Node> out = new ArrayList<>(); // Nodes this one depends on
+		int ord; // Position in topological order
+		boolean reachesCycle; // Is this node in a cycle or does it depend on a node in a cycle?
+		boolean visited;
+
+		Node(int ord) {
+			this.ord = ord;
+		}
+	}
+
+	static final Comparator<Node> COMPARATOR_ORD = new Comparator<Node>() {
+		@Override
+		public int compare(Node n1, Node n2) {
+			return Integer.compare(n1.ord, n2.ord);
+		}
+	};
+
+	Map<Task, Node> nodes;
+	int maxOrd, minOrd; // Range of positions used in topological order
+
+	public TaskGraph() {
+		nodes = new HashMap<>();
+	}
+
+	/**
+	 * Add a node and its edges
+	 *
+	 * The node is placed at the beginning of the order if it depends on other
+	 * nodes, or at the end otherwise. So re-ordering is only required when
+	 * a node has both dependencies and nodes depending on it.
+	 *
+	 * @param deps : Nodes this task depends on
+	 * @param uses : Nodes depending on this task
+	 */
+	public void add(Task task, Collection<Task> deps, Collection<Task> uses) {
+		if (!nodes.containsKey(task)) {
+			Node n = new Node(deps.isEmpty() ? ++maxOrd : --minOrd);
+			nodes.put(task, n);
+		}
+
+		for (Task dep : deps)
+			add(task, dep);
+
+		for (Task t : uses)
+			add(t, task);
+	}
+
+	/**
+	 * Add an edge: 'task' depends on 'dep'
+	 * @return true if the new edge closes a cycle
+	 */
+	public boolean add(Task task, Task dep) {
+		Node x = node(task);
+		Node y = node(dep);
+		x.out.add(y);
+		y.in.add(x);
+
+		if (x.reachesCycle) return false; // Nothing changes
+		if (y.reachesCycle) {
+			markReachesCycle(x);
+			return false;
+		}
+		if (x.ord < y.ord) return false; // Order is still valid
+
+		// Nodes reachable from 'y' (up to 'x' in the current order)
+		List<Node> forward = new ArrayList<>();
+		boolean cycle = visitForward(y, x, forward);
+		if (cycle) {
+			clearVisited(forward);
+			markReachesCycle(x);
+			return true;
+		}
+
+		// Nodes reaching 'x' (down to 'y' in the current order)
+		List<Node> backward = new ArrayList<>();
+		visitBackward(x, y.ord, backward);
+
+		reorder(backward, forward);
+		return false;
+	}
+
+	void clearVisited(List<Node> nodeList) {
+		for (Node n : nodeList)
+			n.visited = false;
+	}
+
+	public boolean contains(Task task) {
+		return nodes.containsKey(task);
+	}
+
+	/**
+	 * Mark this node and all nodes depending on it (i.e. all nodes that can reach it)
+	 */
+	void markReachesCycle(Node node) {
+		Deque<Node> stack = new ArrayDeque<>();
+		node.reachesCycle = true;
+		stack.push(node);
+
+		while (!stack.isEmpty()) {
+			Node n = stack.pop();
+			for (Node m : n.in) {
+				if (!m.reachesCycle) {
+					m.reachesCycle = true;
+					stack.push(m);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Get (or create) a node
+	 */
+	Node node(Task task) {
+		Node n = nodes.get(task);
+		if (n == null) {
+			n = new Node(--minOrd);
+			nodes.put(task, n);
+		}
+		return n;
+	}
+
+	/**
+	 * Is this task in a cycle or does it depend on a task that is?
+	 */
+	public boolean reachesCycle(Task task) {
+		Node n = nodes.get(task);
+		return (n != null) && n.reachesCycle;
+	}
+
+	/**
+	 * Re-assign the order positions used by 'backward' and 'forward' nodes,
+	 * so that all 'backward' nodes come before all 'forward' nodes
+	 */
+	void reorder(List<Node> backward, List<Node> forward) {
+		Collections.sort(backward, COMPARATOR_ORD);
+		Collections.sort(forward, COMPARATOR_ORD);
+
+		List<Node> affected = new ArrayList<>(backward.size() + forward.size());
+		affected.addAll(backward);
+		affected.addAll(forward);
+
+		int ords[] = new int[affected.size()];
+		for (int i = 0; i < ords.length; i++)
+			ords[i] = affected.get(i).ord;
+		Arrays.sort(ords);
+
+		for (int i = 0; i < ords.length; i++) {
+			Node n = affected.get(i);
+			n.ord = ords[i];
+			n.visited = false;
+		}
+	}
+
+	public int size() {
+		return nodes.size();
+	}
+
+	/**
+	 * Visit all nodes reaching 'start' whose order is greater than 'lowerBound'
+	 */
+	void visitBackward(Node start, int lowerBound, List<Node> visited) {
+		Deque<Node> stack = new ArrayDeque<>();
+		start.visited = true;
+		visited.add(start);
+		stack.push(start);
+
+		while (!stack.isEmpty()) {
+			Node n = stack.pop();
+			for (Node m : n.in) {
+				if (!m.visited && !m.reachesCycle && m.ord > lowerBound) {
+					m.visited = true;
+					visited.add(m);
+					stack.push(m);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Visit all nodes reachable from 'start' whose order is not greater than target's
+	 * @return true if 'target' is reached (i.e. there is a cycle)
+	 */
+	boolean visitForward(Node start, Node target, List<Node> visited) {
+		int upperBound = target.ord;
+		Deque<Node> stack = new ArrayDeque<>();
+		start.visited = true;
+		visited.add(start);
+		stack.push(start);
+
+		while (!stack.isEmpty()) {
+			Node n = stack.pop();
+			if (n == target) return true;
+
+			for (Node m : n.out) {
+				if (!m.visited && !m.reachesCycle && m.ord <= upperBound) {
+					m.visited = true;
+					visited.add(m);
+					stack.push(m);
+				}
+			}
+		}
+
+		return false;
+	}
+
+}
@@ -5,6 +5,8 @@ import java.util.List;
 
 import org.bds.Bds;
 import org.bds.run.BdsThread;
+import org.bds.serialize.BdsSerializer;
+import org.bds.serialize.CheckpointBase;
 import org.bds.util.Gpr;
 import org.junit.Assert;
 import org.junit.Test;
@@ -274,4 +276,81 @@ public class TestCasesCheckpoint extends TestCasesBase {
 		}
 	}
 
+	/**
+	 * Checkpoint files in text format can be recovered
+	 */
+	@Test
+	public void test24_checkpoint_text_format() {
+		Gpr.debug("Test");
+		final String chpFileName = "test/checkpoint_24.chp";
+
+		// Re-write checkpoint file using text format
+		Runnable toText = new Runnable() {
+			@Override
+			public void run() {
+				BdsSerializer bdsSerializer = new BdsSerializer(chpFileName, null);
+				List<BdsThread> bdsThreads = bdsSerializer.load();
+				Assert.assertTrue("Checkpoint file should be binary", bdsSerializer.isBinary());
+
+				bdsSerializer = new BdsSerializer(chpFileName, null);
+				bdsSerializer.setBinary(false);
+				bdsSerializer.save(bdsThreads.get(0));
+
+				bdsSerializer = new BdsSerializer(chpFileName, null);
+				bdsSerializer.load();
+				Assert.assertFalse("Checkpoint file should be text", bdsSerializer.isBinary());
+			}
+		};
+
+		runAndCheckpoint("test/checkpoint_24.bds", chpFileName, "res", "one,two\tthree,one,say \"hi\";1;-200000;3.25;true", toText);
+	}
+
+	/**
+	 * Second checkpoint is a delta respect to the first one
+	 */
+	@Test
+	public void test25_checkpoint_delta() {
+		Gpr.debug("Test");
+		final String baseFileName = "test/checkpoint_25_base.chp";
+		final String chpFileName = "test/checkpoint_25.chp";
+
+		Runnable checkDelta = new Runnable() {
+			@Override
+			public void run() {
+				BdsSerializer bdsSerializer = new BdsSerializer(chpFileName, null);
+				bdsSerializer.load();
+				Assert.assertEquals(CheckpointBase.absolutePath(baseFileName), bdsSerializer.getBaseFileName());
+				Assert.assertTrue("Delta checkpoint should be smaller than base", new File(chpFileName).length() < new File(baseFileName).length());
+			}
+		};
+
+		runAndCheckpoint("test/checkpoint_25.bds", chpFileName, "res", "100;101;last", checkDelta);
+	}
+
+	/**
+	 * Checkpoint file is written in a background thread, values
+	 * modified after the checkpoint should not be saved
+	 */
+	@Test
+	public void test26_checkpoint_async() {
+		Gpr.debug("Test");
+		BdsTest bdsTest = new BdsTest("test/checkpoint_26.bds", verbose, debug);
+		bdsTest.bds(); // Create command now so we can change 'config' before running
+		bdsTest.bds.getConfig().setCheckpointAsync(true);
+		bdsTest.runAndCheckpoint("test/checkpoint_26.chp", "res", "a,b;1;1", null);
+	}
+
+	/**
+	 * Checkpoint file is written in a background thread, nested lists
+	 * and maps modified after the checkpoint should not be saved
+	 */
+	@Test
+	public void test27_checkpoint_async_nested() {
+		Gpr.debug("Test");
+		BdsTest bdsTest = new BdsTest("test/checkpoint_27.bds", verbose, debug);
+		bdsTest.bds(); // Create command now so we can change 'config' before running
+		bdsTest.bds.getConfig().setCheckpointAsync(true);
+		bdsTest.runAndCheckpoint("test/checkpoint_27.chp", "res", "{ x => [a, b] }", null);
+	}
+
 }
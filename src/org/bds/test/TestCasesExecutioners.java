@@ -1,14 +1,22 @@
 package org.bds.test;
 
+import java.io.File;
 import java.util.Set;
 
 import junit.framework.Assert;
 
 import org.bds.Config;
+import org.bds.cluster.Cluster;
+import org.bds.cluster.HostSelection;
+import org.bds.cluster.host.Host;
+import org.bds.cluster.host.HostResources;
 import org.bds.executioner.CheckTasksRunning;
 import org.bds.executioner.Executioner;
 import org.bds.executioner.Executioners;
 import org.bds.executioner.Executioners.ExecutionerType;
+import org.bds.task.Task;
+import org.bds.task.TaskDependency;
+import org.bds.task.TaskState;
 import org.bds.util.Gpr;
 import org.junit.Test;
 
@@ -20,6 +28,38 @@ import org.junit.Test;
  */
 public class TestCasesExecutioners extends TestCasesBase {
 
+	public static final long GB = 1024L * 1024L * 1024L;
+
+	/**
+	 * Add a task requiring 'cpus' and 'mem' to a host
+	 */
+	void addTask(Host host, int cpus, long mem) {
+		Task task = new Task("task_" + host.getHostName());
+		task.getResources().setCpus(cpus);
+		task.getResources().setMem(mem);
+		host.add(task);
+	}
+
+	/**
+	 * Create a cluster having one host for each 'cpus' value (hosts are named 'host_0', 'host_1', etc. and have 2GB per cpu)
+	 */
+	Cluster createCluster(int... cpus) {
+		Cluster cluster = new Cluster();
+		for (int i = 0; i < cpus.length; i++) {
+			Host host = new Host(cluster, "host_" + i);
+			host.getResources().setCpus(cpus[i]);
+			host.getResources().setMem(cpus[i] * 2 * GB);
+		}
+		return cluster;
+	}
+
+	HostResources resources(int cpus, long mem) {
+		HostResources hr = new HostResources();
+		hr.setCpus(cpus);
+		hr.setMem(mem);
+		return hr;
+	}
+
 	@Test
 	public void test01_parsePidQstatRegex() {
 		Gpr.debug("Test");
@@ -84,4 +124,115 @@ public class TestCasesExecutioners extends TestCasesBase {
 		if (verbose) System.out.println("Done");
 	}
 
+	/**
+	 * Best fit: Host having the least available resources that can run the task
+	 */
+	@Test
+	public void test03_hostSelectionBestFit() {
+		Gpr.debug("Test");
+		Cluster cluster = createCluster(4, 16, 8);
+
+		Assert.assertEquals("host_2", cluster.selectHost(resources(6, GB), HostSelection.BEST_FIT).getHostName());
+		Assert.assertEquals("host_0", cluster.selectHost(resources(2, GB), HostSelection.BEST_FIT).getHostName());
+		Assert.assertEquals("host_1", cluster.selectHost(resources(2, 20 * GB), HostSelection.BEST_FIT).getHostName());
+		Assert.assertNull(cluster.selectHost(resources(20, GB), HostSelection.BEST_FIT));
+
+		// Host 'host_0' is full: Next tightest host
+		addTask(cluster.getHost("host_0"), 4, GB);
+		Assert.assertEquals("host_2", cluster.selectHost(resources(2, GB), HostSelection.BEST_FIT).getHostName());
+	}
+
+	/**
+	 * Dominant resource fairness: Host having the lowest dominant share (cpus or memory) after adding the task
+	 */
+	@Test
+	public void test04_hostSelectionDrf() {
+		Gpr.debug("Test");
+		Cluster cluster = new Cluster();
+		Host hostMem = new Host(cluster, "host_mem");
+		hostMem.getResources().setCpus(8);
+		hostMem.getResources().setMem(64 * GB);
+		Host hostCpu = new Host(cluster, "host_cpu");
+		hostCpu.getResources().setCpus(16);
+		hostCpu.getResources().setMem(16 * GB);
+
+		// Memory intensive task: Share 1/8 in 'host_mem', 1/2 in 'host_cpu'
+		Assert.assertEquals("host_mem", cluster.selectHost(resources(1, 8 * GB), HostSelection.DRF).getHostName());
+
+		// CPU intensive task: Share 1/2 in 'host_mem', 1/4 in 'host_cpu'
+		Assert.assertEquals("host_cpu", cluster.selectHost(resources(4, GB), HostSelection.DRF).getHostName());
+	}
+
+	/**
+	 * First fit: Any host that can run the task
+	 */
+	@Test
+	public void test05_hostSelectionFirstFit() {
+		Gpr.debug("Test");
+		Cluster cluster = createCluster(4, 16, 8);
+
+		Assert.assertEquals("host_1", cluster.selectHost(resources(10, GB), HostSelection.FIRST_FIT).getHostName());
+		Assert.assertNull(cluster.selectHost(resources(20, GB), HostSelection.FIRST_FIT));
+
+		Host host = cluster.selectHost(resources(2, GB), HostSelection.FIRST_FIT);
+		Assert.assertTrue(host.getResourcesAvaialble().hasResources(resources(2, GB)));
+	}
+
+	/**
+	 * Worst fit: Host having the most available resources, so tasks are
+	 * spread across hosts (hosts having the same resources are used in turns)
+	 */
+	@Test
+	public void test06_hostSelectionWorstFit() {
+		Gpr.debug("Test");
+		Cluster cluster = createCluster(8, 8, 8);
+
+		StringBuilder sb = new StringBuilder();
+		for (int i = 0; i < 6; i++) {
+			Host host = cluster.selectHost(resources(1, GB), HostSelection.WORST_FIT);
+			addTask(host, 1, GB);
+			sb.append(host.getHostName() + " ");
+		}
+		Assert.assertEquals("host_2 host_1 host_0 host_2 host_1 host_0", sb.toString().trim());
+
+		// Largest host first
+		cluster = createCluster(4, 16, 8);
+		Assert.assertEquals("host_1", cluster.selectHost(resources(1, GB), HostSelection.WORST_FIT).getHostName());
+		Assert.assertNull(cluster.selectHost(resources(20, GB), HostSelection.WORST_FIT));
+	}
+
+	/**
+	 * Output files are checked once, when the task finishes, and the result is stored
+	 */
+	@Test
+	public void test07_checkOutputFilesOnce() {
+		Gpr.debug("Test");
+		String out = "tmp_test04_checkOutputFilesOnce.txt";
+		Gpr.toFile(out, "OK");
+
+		Task task = new Task("task_check_outputs");
+		TaskDependency taskDependency = new TaskDependency();
+		taskDependency.addOutput(out);
+		task.setTaskDependency(taskDependency);
+		task.state(TaskState.SCHEDULED);
+		task.state(TaskState.STARTED);
+		task.state(TaskState.RUNNING);
+		task.state(TaskState.FINISHED);
+		Assert.assertTrue(task.isDoneOk());
+
+		// Output file deleted after the task finished: Result doesn't change
+		new File(out).delete();
+		Assert.assertTrue(task.isDoneOk());
+		Assert.assertEquals(0, task.getExitValue());
+
+		// Re-run task: Output is checked again
+		task.reset();
+		task.state(TaskState.SCHEDULED);
+		task.state(TaskState.STARTED);
+		task.state(TaskState.RUNNING);
+		task.state(TaskState.FINISHED);
+		Assert.assertTrue(task.isFailed());
+		Assert.assertTrue(task.checkOutputFiles().contains("does not exist"));
+	}
+
 }
@@ -1,6 +1,7 @@
 package org.bds.test;
 
 import java.io.File;
+import java.util.HashMap;
 
 import org.bds.util.Gpr;
 import org.junit.Test;
@@ -147,4 +148,24 @@ public class TestCasesGraph extends TestCasesBase {
 		Assert.assertTrue(out.contains("Hi 2\n"));
 	}
 
+	@Test
+	public void test16_diamond() {
+		Gpr.debug("Test");
+
+		// Task shared by two branches is executed only once
+		HashMap<String, Object> expectedValues = new HashMap<String, Object>();
+		expectedValues.put("num", "4");
+		expectedValues.put("numTop", "1");
+		expectedValues.put("numLines", "4");
+		runAndCheck("test/graph_16.bds", expectedValues);
+
+		// Dry run: Each task is 'executed' exactly once
+		BdsTest bdsTest = new BdsTest("test/graph_16.bds", new String[] { "-dryRun" }, new String[] { "-dryRun" }, verbose, debug);
+		bdsTest.run();
+		bdsTest.checkRunOk();
+		bdsTest.checkVariable("num", "4");
+		int dryRunTasks = bdsTest.captureStderr.toString().split("Dry run task").length - 1;
+		Assert.assertEquals("Tasks executed in dry run", 4, dryRunTasks);
+	}
+
 }
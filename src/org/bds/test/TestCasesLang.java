@@ -356,4 +356,11 @@ public class TestCasesLang extends TestCasesBase {
 		compileErrors("test/test51.bds", errs);
 	}
 
+	@Test
+	public void test52() {
+		Gpr.debug("Test");
+		String errs = "ERROR [ file 'test/test52.bds', line 6 ] :\tVariable 'priority' is used as task priority, it must be of type 'int' instead of 'string'";
+		compileErrors("test/test52.bds", errs);
+	}
+
 }
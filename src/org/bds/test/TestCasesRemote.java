@@ -2,12 +2,16 @@ package org.bds.test;
 
 import java.io.File;
 import java.io.IOException;
+import java.util.Arrays;
+import java.util.Map;
 
 import org.bds.data.Data;
 import org.bds.data.DataFile;
 import org.bds.data.DataHttp;
 import org.bds.data.DataRemote;
 import org.bds.data.DataS3;
+import org.bds.data.DataStat;
+import org.bds.data.DataStatCache;
 import org.bds.util.Gpr;
 import org.junit.Test;
 
@@ -342,4 +346,37 @@ public class TestCasesRemote extends TestCasesBase {
 		runAndCheck("test/remote_18.bds", "ok", "true");
 	}
 
+	/**
+	 * Query several local files at once
+	 */
+	@Test
+	public void test19_stat_local() {
+		Gpr.debug("Test");
+
+		String dir = "tmp_remote_19";
+		new File(dir).mkdirs();
+		String file1 = Data.factory(dir + "/file1.txt").getAbsolutePath();
+		String file2 = Data.factory(dir + "/file2.txt").getAbsolutePath();
+		String file3 = Data.factory(dir + "/file3.txt").getAbsolutePath();
+		Gpr.toFile(file1, "hello");
+		Gpr.toFile(file2, "");
+		new File(file3).delete();
+
+		Map<String, DataStat> statByName = DataStatCache.get().stat(Arrays.asList(file1, file2, file3, dir));
+		if (verbose) Gpr.debug("Stats: " + statByName);
+
+		Assert.assertTrue(statByName.get(file1).exists());
+		Assert.assertTrue(statByName.get(file1).isFile());
+		Assert.assertEquals(5, statByName.get(file1).size());
+		Assert.assertTrue(statByName.get(file2).exists());
+		Assert.assertEquals(0, statByName.get(file2).size());
+		Assert.assertFalse(statByName.get(file3).exists());
+		Assert.assertTrue(statByName.get(dir).isDirectory());
+		Assert.assertFalse(statByName.get(dir).isFile());
+
+		new File(file1).delete();
+		new File(file2).delete();
+		new File(dir).delete();
+	}
+
 }
@@ -6,6 +6,8 @@ import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
 
+import org.bds.lang.BdsNode;
+import org.bds.lang.FunctionDeclaration;
 import org.bds.util.Gpr;
 import org.junit.Test;
 
@@ -608,4 +610,144 @@ public class TestCasesRun2 extends TestCasesBase {
 		}
 	}
 
+	@Test
+	public void test146_scheduler_event_driven() {
+		Gpr.debug("Test");
+		String args[] = { "-c", "test/run_146.config" };
+		runAndCheck("test/run_146.bds", args, "numLines", "10");
+	}
+
+	@Test
+	public void test147_scheduler_event_driven_dependency_error() {
+		Gpr.debug("Test");
+		String args[] = { "-c", "test/run_146.config" };
+		BdsTest bdsTest = new BdsTest("test/run_147.bds", args, verbose, debug);
+		bdsTest.run();
+		bdsTest.checkExitCode(1);
+		bdsTest.checkStderr("START_FAILED");
+	}
+
+	@Test
+	public void test148_retry_missing_output() {
+		Gpr.debug("Test");
+		runAndCheck("test/run_148.bds", "outs", "OK\n");
+	}
+
+	@Test
+	public void test149_task_priority() {
+		Gpr.debug("Test");
+		runAndCheck("test/run_149.bds", "order", "high,mid,low,none,");
+	}
+
+	@Test
+	public void test150_variable_slots() {
+		Gpr.debug("Test");
+		runAndCheck("test/run_150.bds", "res", "out,in0abin1abin2ab,120");
+	}
+
+	@Test
+	public void test151_operand_stack_numeric() {
+		Gpr.debug("Test");
+		runAndCheck("test/run_151.bds", "res", "998002,249500.0,489,true");
+	}
+
+	@Test
+	public void test152_compiled_functions() {
+		Gpr.debug("Test");
+		String args[] = { "-c", "test/run_152.config" };
+		BdsTest bdsTest = new BdsTest("test/run_152.bds", args, verbose, debug);
+		bdsTest.run();
+		bdsTest.checkRunOk();
+		bdsTest.checkVariable("res", "176,91cba,22.666666666666668,20");
+
+		// All functions should have been compiled
+		for (BdsNode node : bdsTest.bds.getProgramUnit().findNodes(FunctionDeclaration.class, true)) {
+			FunctionDeclaration fdecl = (FunctionDeclaration) node;
+			Assert.assertTrue("Function '" + fdecl.getFunctionName() + "' not compiled", fdecl.isCompiled());
+		}
+	}
+
+	@Test
+	public void test153_list_map_copy_on_write() {
+		Gpr.debug("Test");
+		runAndCheck("test/run_153.bds", "res", "[a, b, c, d];[z, b, c];[z, b, , , , y];{ one => 1, three => 3, two => 2 };{ two => 2 };{ two => 22 };[1, 2, 3, 1, 2, 3];3");
+	}
+
+	@Test
+	public void test154_scope_reuse() {
+		Gpr.debug("Test");
+		runAndCheck("test/run_154.bds", "res", "15150,610,3");
+	}
+
+	@Test
+	public void test155_par_thread_pool() {
+		Gpr.debug("Test");
+		runAndCheck("test/run_155.bds", "res", 200L);
+	}
+
+	@Test
+	public void test156_parallel_list_functions() {
+		Gpr.debug("Test");
+		String args[] = { "-c", "test/run_156.config" };
+		runAndCheck("test/run_156.bds", args, "res", "true,9801,50,2,100");
+	}
+
+	@Test
+	public void test157_compile_cache() {
+		Gpr.debug("Test");
+		String args[] = { "-c", "test/run_157.config" };
+
+		// Start with an empty cache
+		File cacheDir = new File("test/compile_cache_157");
+		File cacheFiles[] = cacheDir.listFiles();
+		if (cacheFiles != null) {
+			for (File f : cacheFiles)
+				f.delete();
+		}
+
+		// First run compiles the program and saves it, second run loads it from the cache
+		for (int i = 0; i < 2; i++) {
+			BdsTest bdsTest = new BdsTest("test/run_157.bds", args, verbose, debug);
+			bdsTest.run();
+			bdsTest.checkRunOk();
+			bdsTest.checkVariable("res", "12,-12,55,2,4,6");
+			Assert.assertEquals("Program loaded from cache", i > 0, bdsTest.bds.getCompileCache().isLoaded());
+		}
+
+		// Clean up
+		for (File f : cacheDir.listFiles())
+			f.delete();
+		cacheDir.delete();
+	}
+
+	@Test
+	public void test158_compile_cache_eviction() {
+		Gpr.debug("Test");
+		String args[] = { "-c", "test/run_158.config" };
+
+		// Start with an empty cache
+		File cacheDir = new File("test/compile_cache_158");
+		File cacheFiles[] = cacheDir.listFiles();
+		if (cacheFiles != null) {
+			for (File f : cacheFiles)
+				f.delete();
+		}
+
+		// The cache holds two programs, the least recently used one is removed
+		String programs[] = { "test/run_153.bds", "test/run_154.bds", "test/run_153.bds", "test/run_157.bds", "test/run_154.bds", "test/run_157.bds" };
+		boolean loaded[] = { false, false, true, false, false, true };
+		for (int i = 0; i < programs.length; i++) {
+			BdsTest bdsTest = new BdsTest(programs[i], args, verbose, debug);
+			bdsTest.run();
+			bdsTest.checkRunOk();
+			Assert.assertEquals("Program '" + programs[i] + "' (run " + i + ") loaded from cache", loaded[i], bdsTest.bds.getCompileCache().isLoaded());
+			Assert.assertTrue("Too many programs in cache", cacheDir.listFiles().length <= 2);
+		}
+
+		// Clean up
+		for (File f : cacheDir.listFiles())
+			f.delete();
+		cacheDir.delete();
+	}
+
 }
@@ -0,0 +1,161 @@
+package org.bds.util;
+
+import java.io.Serializable;
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.RandomAccess;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A list that shares its elements with its copies until
+ * one of them is modified (copy on write)
+ *
+ * Copying a list is O(1) and uses no additional memory. The
+ * elements are copied only when a shared list is modified.
+ *
+ * @author pcingola
+ */
+public class CowArrayList<E> extends AbstractList<E> implements RandomAccess, Serializable {
+
+	/**
+	 * Elements shared by several lists
+	 */
+	static class Elements<E> implements Serializable {
+		private static final long serialVersionUID = -8305711376962432918L;
+
+		ArrayList<E> list;
+		AtomicInteger refs; // Number of lists sharing these elements
+
+		Elements(ArrayList<E> list) {
+			this.list = list;
+			refs = new AtomicInteger(1);
+		}
+	}
+
+	private static final long serialVersionUID = 7460215236937436722L;
+
+	Elements<E> elements;
+
+	/**
+	 * Copy a list (O(1) if the list is a CowArrayList)
+	 */
+	@SuppressWarnings({ "rawtypes", "unchecked" })
+	public static CowArrayList copyOf(Collection values) {
+		if (values instanceof CowArrayList) return ((CowArrayList) values).copy();
+		return new CowArrayList(values);
+	}
+
+	public CowArrayList() {
+		elements = new Elements<E>(new ArrayList<E>());
+	}
+
+	public CowArrayList(Collection<? extends E> values) {
+		elements = new Elements<E>(new ArrayList<E>(values));
+	}
+
+	CowArrayList(Elements<E> elements) {
+		this.elements = elements;
+	}
+
+	@Override
+	public void add(int index, E element) {
+		own().add(index, element);
+		modCount++;
+	}
+
+	@Override
+	public boolean addAll(Collection<? extends E> values) {
+		modCount++;
+		return own().addAll(values);
+	}
+
+	@Override
+	public void clear() {
+		modCount++;
+		if (elements.refs.get() > 1) release(new ArrayList<E>());
+		else elements.list.clear();
+	}
+
+	@Override
+	public boolean contains(Object o) {
+		return elements.list.contains(o);
+	}
+
+	/**
+	 * Create a copy of this list (elements are shared until one of the lists is modified)
+	 */
+	public CowArrayList<E> copy() {
+		elements.refs.incrementAndGet();
+		return new CowArrayList<E>(elements);
+	}
+
+	public void ensureCapacity(int minCapacity) {
+		own().ensureCapacity(minCapacity);
+	}
+
+	@Override
+	public E get(int index) {
+		return elements.list.get(index);
+	}
+
+	@Override
+	public int indexOf(Object o) {
+		return elements.list.indexOf(o);
+	}
+
+	/**
+	 * Is this list sharing its elements with other lists?
+	 */
+	public boolean isShared() {
+		return elements.refs.get() > 1;
+	}
+
+	@Override
+	public int lastIndexOf(Object o) {
+		return elements.list.lastIndexOf(o);
+	}
+
+	/**
+	 * Get elements for writing (copy them if they are shared)
+	 */
+	ArrayList<E> own() {
+		if (elements.refs.get() > 1) release(new ArrayList<E>(elements.list));
+		return elements.list;
+	}
+
+	/**
+	 * Stop sharing elements, use 'list' instead
+	 */
+	void release(ArrayList<E> list) {
+		elements.refs.decrementAndGet();
+		elements = new Elements<E>(list);
+	}
+
+	@Override
+	public E remove(int index) {
+		modCount++;
+		return own().remove(index);
+	}
+
+	@Override
+	public E set(int index, E element) {
+		return own().set(index, element);
+	}
+
+	@Override
+	public int size() {
+		return elements.list.size();
+	}
+
+	@Override
+	public Object[] toArray() {
+		return elements.list.toArray();
+	}
+
+	@Override
+	public <T> T[] toArray(T[] a) {
+		return elements.list.toArray(a);
+	}
+
+}
@@ -0,0 +1,150 @@
+package org.bds.util;
+
+import java.io.Serializable;
+import java.util.AbstractMap;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A map that shares its entries with its copies until
+ * one of them is modified (copy on write)
+ *
+ * Copying a map is O(1) and uses no additional memory. The
+ * entries are copied only when a shared map is modified.
+ *
+ * Note: Views (entrySet, keySet, values) are read only
+ *
+ * @author pcingola
+ */
+public class CowHashMap<K, V> extends AbstractMap<K, V> implements Serializable {
+
+	/**
+	 * Entries shared by several maps
+	 */
+	static class Entries<K, V> implements Serializable {
+		private static final long serialVersionUID = 3017254930672452372L;
+
+		HashMap<K, V> map;
+		AtomicInteger refs; // Number of maps sharing these entries
+
+		Entries(HashMap<K, V> map) {
+			this.map = map;
+			refs = new AtomicInteger(1);
+		}
+	}
+
+	private static final long serialVersionUID = -2315460357126458219L;
+
+	Entries<K, V> entries;
+
+	/**
+	 * Copy a map (O(1) if the map is a CowHashMap)
+	 */
+	@SuppressWarnings({ "rawtypes", "unchecked" })
+	public static CowHashMap copyOf(Map values) {
+		if (values instanceof CowHashMap) return ((CowHashMap) values).copy();
+		return new CowHashMap(values);
+	}
+
+	public CowHashMap() {
+		entries = new Entries<K, V>(new HashMap<K, V>());
+	}
+
+	CowHashMap(Entries<K, V> entries) {
+		this.entries = entries;
+	}
+
+	public CowHashMap(Map<? extends K, ? extends V> values) {
+		HashMap<K, V> map = new HashMap<K, V>();
+		for (K key : values.keySet())
+			map.put(key, values.get(key));
+		entries = new Entries<K, V>(map);
+	}
+
+	@Override
+	public void clear() {
+		if (entries.refs.get() > 1) release(new HashMap<K, V>());
+		else entries.map.clear();
+	}
+
+	@Override
+	public boolean containsKey(Object key) {
+		return entries.map.containsKey(key);
+	}
+
+	@Override
+	public boolean containsValue(Object value) {
+		return entries.map.containsValue(value);
+	}
+
+	/**
+	 * Create a copy of this map (entries are shared until one of the maps is modified)
+	 */
+	public CowHashMap<K, V> copy() {
+		entries.refs.incrementAndGet();
+		return new CowHashMap<K, V>(entries);
+	}
+
+	@Override
+	public Set<Map.Entry<K, V>> entrySet() {
+		return Collections.unmodifiableMap(entries.map).entrySet();
+	}
+
+	@Override
+	public V get(Object key) {
+		return entries.map.get(key);
+	}
+
+	/**
+	 * Is this map sharing its entries with other maps?
+	 */
+	public boolean isShared() {
+		return entries.refs.get() > 1;
+	}
+
+	@Override
+	public Set<K> keySet() {
+		return Collections.unmodifiableSet(entries.map.keySet());
+	}
+
+	/**
+	 * Get entries for writing (copy them if they are shared)
+	 */
+	HashMap<K, V> own() {
+		if (entries.refs.get() > 1) release(new HashMap<K, V>(entries.map));
+		return entries.map;
+	}
+
+	@Override
+	public V put(K key, V value) {
+		return own().put(key, value);
+	}
+
+	@Override
+	public void putAll(Map<? extends K, ? extends V> values) {
+		own().putAll(values);
+	}
+
+	/**
+	 * Stop sharing entries, use 'map' instead
+	 */
+	void release(HashMap<K, V> map) {
+		entries.refs.decrementAndGet();
+		entries = new Entries<K, V>(map);
+	}
+
+	@Override
+	public V remove(Object key) {
+		if (!entries.map.containsKey(key)) return null;
+		return own().remove(key);
+	}
+
+	@Override
+	public int size() {
+		return entries.map.size();
+	}
+
+}